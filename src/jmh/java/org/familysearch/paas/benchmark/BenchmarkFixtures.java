@@ -0,0 +1,57 @@
+package org.familysearch.paas.benchmark;
+
+import com.amazonaws.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Loads the payload fixtures that live in src/jmh/resources.
+ */
+public final class BenchmarkFixtures {
+
+  private BenchmarkFixtures() {
+  }
+
+  /**
+   * @param name of the fixture on the benchmark classpath.
+   * @return the fixture contents.
+   * @throws IOException if the fixture can not be read.
+   */
+  public static String load(String name) throws IOException {
+    try (InputStream inputStream = BenchmarkFixtures.class.getClassLoader().getResourceAsStream(name)) {
+      if (inputStream == null) {
+        throw new IOException("No benchmark fixture named " + name);
+      }
+      return IOUtils.toString(inputStream);
+    }
+  }
+
+  /**
+   * Generate a repeatable access log in the Combined Log Format, with a mix of clients, paths, statuses and user
+   * agents similar to what the crawler sees.
+   * @param lines in the log.
+   * @return the log, one line per record, each ending with a newline.
+   */
+  public static byte[] accessLog(int lines) {
+    String[] methods = {"GET", "GET", "GET", "POST", "PUT", "DELETE"};
+    String[] paths = {"/", "/platform/tree/persons/KWQ7-4L3", "/service/ident/cis/cis-web/rest/session?lang=en",
+        "/static/img/logo.png", "/search/record/results?count=20&query=%2Bgivenname%3Ajohn%7E"};
+    int[] statuses = {200, 200, 200, 200, 204, 301, 304, 404, 500, 503};
+    String[] userAgents = {"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_11_1) AppleWebKit/601.2.7 (KHTML, like Gecko) Version/9.0.1 Safari/601.2.7",
+        "Mozilla/5.0 (Windows NT 10.0; WOW64; rv:42.0) Gecko/20100101 Firefox/42.0", "curl/7.43.0", "-"};
+    Random random = new Random(42);
+    StringBuilder log = new StringBuilder(lines * 220);
+    for (int i = 0; i < lines; i++) {
+      log.append("10.").append(random.nextInt(256)).append('.').append(random.nextInt(256)).append('.').append(random.nextInt(256))
+          .append(random.nextInt(10) == 0 ? " - frank [" : " - - [")
+          .append(String.format("%02d/Nov/2015:%02d:%02d:%02d -0700", 1 + random.nextInt(30), random.nextInt(24), random.nextInt(60), random.nextInt(60)))
+          .append("] \"").append(methods[random.nextInt(methods.length)]).append(' ').append(paths[random.nextInt(paths.length)])
+          .append(" HTTP/1.1\" ").append(statuses[random.nextInt(statuses.length)]).append(' ').append(random.nextInt(100000))
+          .append(" \"https://familysearch.org/\" \"").append(userAgents[random.nextInt(userAgents.length)]).append("\"\n");
+    }
+    return log.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
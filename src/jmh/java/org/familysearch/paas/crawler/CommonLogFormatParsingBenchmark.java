@@ -0,0 +1,82 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares turning access log lines into _bulk documents with the regex {@link CommonLogFormatParser}, which
+ * decodes every line and builds a String per field, against {@link CommonLogFormatByteParser}, which works on the
+ * bytes.  Scores are lines per second; run with <code>-prof gc</code> and read <code>gc.alloc.rate.norm</code> as
+ * bytes allocated per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonLogFormatParsingBenchmark {
+  private static final int LINES = 10000;
+
+  private byte[] log;
+  private int[] lineStarts;
+  private int[] lineEnds;
+  private CommonLogFormatParser referenceParser;
+  private CommonLogFormatByteParser byteParser;
+  private LogLineRecord record;
+  private ByteArrayBuilder document;
+
+  @Setup
+  public void setUp() {
+    log = BenchmarkFixtures.accessLog(LINES);
+    lineStarts = new int[LINES];
+    lineEnds = new int[LINES];
+    int line = 0;
+    int start = 0;
+    for (int i = 0; i < log.length; i++) {
+      if (log[i] == '\n') {
+        lineStarts[line] = start;
+        lineEnds[line++] = i;
+        start = i + 1;
+      }
+    }
+    referenceParser = new CommonLogFormatParser();
+    byteParser = new CommonLogFormatByteParser();
+    record = new LogLineRecord();
+    document = new ByteArrayBuilder(1024);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void referenceParser(Blackhole blackhole) {
+    for (int i = 0; i < LINES; i++) {
+      String line = new String(log, lineStarts[i], lineEnds[i] - lineStarts[i], StandardCharsets.UTF_8);
+      blackhole.consume(referenceParser.parse(line).toJson().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void byteParser(Blackhole blackhole) {
+    for (int i = 0; i < LINES; i++) {
+      byteParser.parse(log, lineStarts[i], lineEnds[i] - lineStarts[i], record);
+      document.reset();
+      record.writeJson(document);
+      blackhole.consume(document.length());
+    }
+  }
+}
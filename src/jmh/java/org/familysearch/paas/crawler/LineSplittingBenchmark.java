@@ -0,0 +1,86 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding line boundaries one byte at a time against {@link NewlineScanner}, which tests eight bytes per
+ * load, over a direct buffer of access log lines; and measures {@link MappedLineSplitter} over the same lines in a
+ * file.  Scores are microseconds per pass over the log; run with <code>-prof gc</code> to see that the splitter
+ * allocates nothing per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineSplittingBenchmark {
+  private static final int LINES = 100000;
+
+  private ByteBuffer log;
+  private Path file;
+  private MappedLineSplitter splitter;
+
+  @Setup
+  public void setUp() throws IOException {
+    byte[] bytes = BenchmarkFixtures.accessLog(LINES);
+    log = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+    log.put(bytes);
+    file = Files.createTempFile("access", ".log");
+    Files.write(file, bytes);
+    splitter = new MappedLineSplitter();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  @Benchmark
+  public long byteAtATime() {
+    long sum = 0;
+    int end = log.capacity();
+    for (int i = 0; i < end; i++) {
+      if (log.get(i) == '\n') {
+        sum += i;
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long wordAtATime() {
+    long sum = 0;
+    int end = log.capacity();
+    int newline = NewlineScanner.indexOf(log, 0, end);
+    while (newline >= 0) {
+      sum += newline;
+      newline = NewlineScanner.indexOf(log, newline + 1, end);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long mappedFile(Blackhole blackhole) throws IOException {
+    return splitter.split(file, (buffer, offset, length) -> blackhole.consume(length));
+  }
+}
@@ -0,0 +1,79 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares crawling one log file on one thread with {@link LogCrawler} against {@link ParallelLogCrawler} on a pool
+ * with a thread per available processor.  The sink drops the documents, so only splitting and parsing are measured.
+ * Scores are milliseconds per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelCrawlBenchmark {
+  private static final int LINES = 200000;
+
+  private Path file;
+  private ForkJoinPool pool;
+  private LogCrawler sequentialCrawler;
+  private ParallelLogCrawler parallelCrawler;
+
+  @Setup
+  public void setUp() throws IOException {
+    file = Files.createTempFile("access", ".log");
+    Files.write(file, BenchmarkFixtures.accessLog(LINES));
+    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    sequentialCrawler = new LogCrawler(null, new DroppingSink(), new CommonLogFormatByteParser());
+    parallelCrawler = new ParallelLogCrawler(null, new DroppingSink(), pool, 1024 * 1024);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    Files.delete(file);
+  }
+
+  @Benchmark
+  public long sequential() {
+    return sequentialCrawler.crawlFile(file).getLines();
+  }
+
+  @Benchmark
+  public long parallel() {
+    return parallelCrawler.crawlFile(file).getLines();
+  }
+
+  private static final class DroppingSink extends ElasticsearchBulkSink {
+    private DroppingSink() {
+      super(null, "http://localhost:9200", "logs", "apache", Integer.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    @Override
+    public void add(byte[] documentJson, int offset, int length) {
+    }
+
+    @Override
+    public void flush() {
+    }
+  }
+}
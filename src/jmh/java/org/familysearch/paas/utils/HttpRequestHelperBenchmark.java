@@ -0,0 +1,134 @@
+package org.familysearch.paas.utils;
+
+import com.google.api.client.http.HttpMethods;
+import com.google.api.client.json.Json;
+import com.google.api.client.util.Key;
+import com.sun.net.httpserver.HttpServer;
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link HttpRequestHelper} creating a JIRA issue for an alarm: building the request, serializing its
+ * JSON body, and the whole POST against an in-process HTTP stub over a pooled keep-alive connection, returning
+ * the status code or parsing the created issue.  The stub answers at once, so the round trips measure the client
+ * side and the loopback, not JIRA.  Scores are microseconds per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRequestHelperBenchmark {
+  private static final byte[] CREATED_ISSUE = "{\"id\":\"10000\",\"key\":\"DPT-24\",\"self\":\"https://jira.example.org/rest/api/2/issue/10000\"}"
+      .getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * The part of the JIRA create issue response that is read.
+   */
+  public static class CreatedIssue {
+    @Key
+    public String id;
+    @Key
+    public String key;
+  }
+
+  private HttpServer server;
+  private HttpRequestHelper httpRequestHelper;
+  private String url;
+  private Map<String, Object> issue;
+  private List<String> cookies;
+  private ByteArrayOutputStream serialized;
+
+  @Setup
+  public void setUp() throws IOException {
+    System.clearProperty(HttpRequestHelper.HTTP_PROXYHOST_PROPERTY);
+    System.clearProperty(HttpRequestHelper.HTTP_PROXYPORT_PROPERTY);
+    // Without TCP_NODELAY the stub writes its response headers and body in separate segments and every call waits
+    // out a delayed ACK, some 40 ms, which would hide everything the client does.
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        byte[] buffer = new byte[8192];
+        while (body.read(buffer) != -1) {
+          // The request must be read before the connection can be reused.
+        }
+      }
+      exchange.getResponseHeaders().add("Content-Type", Json.MEDIA_TYPE);
+      exchange.sendResponseHeaders(201, CREATED_ISSUE.length);
+      exchange.getResponseBody().write(CREATED_ISSUE);
+      exchange.close();
+    });
+    server.start();
+    httpRequestHelper = HttpRequestHelper.pooled();
+    url = "http://localhost:" + server.getAddress().getPort() + "/rest/api/2/issue";
+
+    Map<String, String> components = new ParserHelper(null).getKinesisComponents(BenchmarkFixtures.load("alarm-event.json"));
+    issue = createIssue(components);
+    cookies = Arrays.asList("JSESSIONID=6E3487971234567896704A9EB4AE501F", "atlassian.xsrf.token=BWP3-NZB2-6EDY-6C7K|d5a9d32b1e8d|lin");
+    serialized = new ByteArrayOutputStream(4096);
+  }
+
+  @TearDown
+  public void tearDown() {
+    httpRequestHelper.shutdown();
+    server.stop(0);
+  }
+
+  private static Map<String, Object> createIssue(Map<String, String> components) {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("project", Collections.singletonMap("key", components.get("project")));
+    fields.put("summary", components.get("summary"));
+    fields.put("description", components.get("description"));
+    fields.put("issuetype", Collections.singletonMap("name", "Incident"));
+    fields.put("priority", Collections.singletonMap("id", components.get("priority")));
+    fields.put("components", Collections.singletonList(Collections.singletonMap("name", components.get("component"))));
+    fields.put("labels", Arrays.asList("cloudwatch", components.get(ParserHelper.AWS_ACCOUNT_ID)));
+    return Collections.singletonMap("fields", fields);
+  }
+
+  @Benchmark
+  public Object buildRequest() throws IOException {
+    return httpRequestHelper.buildRequest(HttpMethods.POST, url, issue, cookies, false);
+  }
+
+  @Benchmark
+  public int serializeBody() throws IOException {
+    serialized.reset();
+    httpRequestHelper.buildRequest(HttpMethods.POST, url, issue, cookies, false).getContent().writeTo(serialized);
+    return serialized.size();
+  }
+
+  @Benchmark
+  public int executePostRequest() throws IOException {
+    return httpRequestHelper.executePostRequest(url, issue, cookies);
+  }
+
+  @Benchmark
+  public CreatedIssue executePostRequestAndParse() throws IOException {
+    return httpRequestHelper.executePostRequest(url, issue, cookies, CreatedIssue.class);
+  }
+}
@@ -0,0 +1,73 @@
+package org.familysearch.paas.utils;
+
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steps {@link ParserHelper} takes for every alarm event: the JIRA components of an SNS event, the
+ * search summary, the console and runbook URLs, and reading the JIRA credentials.  The account alias comes from a
+ * stub, so no IAM call is measured.  Scores are nanoseconds per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserHelperBenchmark {
+  private static final String ACCOUNT_ALIAS = "familysearch-paas-prod";
+
+  private ParserHelper parserHelper;
+  private String snsEvent;
+  private String jiraCredentials;
+  private String summary;
+  private String alarmName;
+
+  @Setup
+  public void setUp() throws IOException {
+    parserHelper = new ParserHelper(new IamHelper(() -> null, null) {
+      @Override
+      public String getFirstAccountAlias() {
+        return ACCOUNT_ALIAS;
+      }
+    });
+    snsEvent = BenchmarkFixtures.load("alarm-event.json");
+    jiraCredentials = BenchmarkFixtures.load("jira-credentials.json");
+    Map<String, String> components = parserHelper.getKinesisComponents(snsEvent);
+    summary = components.get("summary");
+    alarmName = SnsEventReader.readAlarm(parserHelper.getSnsMessages(snsEvent).get(0)).alarmName;
+  }
+
+  @Benchmark
+  public Map<String, String> getKinesisComponents() {
+    return parserHelper.getKinesisComponents(snsEvent);
+  }
+
+  @Benchmark
+  public String replaceSpecialCharacters() {
+    return parserHelper.replaceSpecialCharacters(summary);
+  }
+
+  @Benchmark
+  public String convertToURL() {
+    return parserHelper.convertToURL(ParserHelper.ALARM_URL, alarmName);
+  }
+
+  @Benchmark
+  public Map<String, String> getJiraCreds() {
+    return parserHelper.getJiraCreds(jiraCredentials);
+  }
+}
@@ -0,0 +1,66 @@
+package org.familysearch.paas.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.familysearch.paas.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the tree model extraction that getKinesisComponents used to do with the streaming
+ * {@link SnsEventReader}, on a large multi record alarm event.  Run with <code>-prof gc</code> and compare
+ * <code>gc.alloc.rate.norm</code> for the bytes allocated per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnsEventParsingBenchmark {
+
+  private String snsEvent;
+
+  @Setup
+  public void setUp() throws IOException {
+    snsEvent = BenchmarkFixtures.load("large-alarm-event.json");
+  }
+
+  @Benchmark
+  public void treeModel(Blackhole blackhole) {
+    JsonParser jsonParser = new JsonParser();
+    for (JsonElement record : jsonParser.parse(snsEvent).getAsJsonObject().getAsJsonArray("Records")) {
+      String message = record.getAsJsonObject().get("Sns").getAsJsonObject().get("Message").getAsString();
+      JsonObject messageSection = jsonParser.parse(message).getAsJsonObject();
+      JsonObject alarmDescription = jsonParser.parse(messageSection.get("AlarmDescription").getAsString()).getAsJsonObject();
+      blackhole.consume(messageSection.get("AlarmName").getAsString());
+      blackhole.consume(messageSection.get("Region").getAsString());
+      blackhole.consume(messageSection.get("NewStateReason").getAsString());
+      blackhole.consume(messageSection.get("AWSAccountId").getAsString());
+      blackhole.consume(alarmDescription.get("project").getAsString());
+      blackhole.consume(alarmDescription.get("component").getAsString());
+      blackhole.consume(alarmDescription.get("priority").getAsString());
+      blackhole.consume(alarmDescription.get("recipient").getAsString());
+    }
+  }
+
+  @Benchmark
+  public void streaming(Blackhole blackhole) {
+    for (String message : SnsEventReader.readMessages(snsEvent)) {
+      blackhole.consume(SnsEventReader.readAlarm(message));
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package org.familysearch.paas;
+
+import static net.logstash.logback.marker.Markers.append;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a single JVM running and processes SNS events that are dropped into a spool directory.
+ *
+ * Producers should write the event to a temporary name and then rename it to <code>*.json</code> inside
+ * the spool directory, so the daemon never sees a partially written file.  Each event is claimed by an
+ * atomic move into a directory of its own under the <code>processing</code> sub directory, so an event of the same
+ * name spooled while it is in progress never replaces it.  It is handed to
+ * {@link PaasLogCrawlerEventService#processEvent(String)} on a fixed worker pool and then deleted on success
+ * or moved to the <code>failed</code> sub directory for inspection, under a name with the time it failed, so a later
+ * failure of an event with the same name does not replace it.  Events left in <code>processing</code> by
+ * a previous run are put back into the spool on start, under a new name if an event of their name was spooled since.
+ *
+ * Only one daemon may watch a spool directory; it holds a lock on the <code>daemon.lock</code> file of the
+ * spool while it runs and a second daemon fails to start.  Run more workers, or give each daemon its own spool.
+ *
+ * @author kriskrishna
+ */
+public class PaasLogCrawlerDaemon {
+  private static final Logger LOG = LoggerFactory.getLogger(PaasLogCrawlerDaemon.class);
+
+  static final String EVENT_SUFFIX = ".json";
+  static final String PROCESSING_DIRECTORY = "processing";
+  static final String FAILED_DIRECTORY = "failed";
+  static final String LOCK_FILE = "daemon.lock";
+  private static final String CLAIM_PREFIX = "event-";
+  private static final long POLL_INTERVAL_SECONDS = 5;
+  private static final int SUCCESS = 0;
+
+  private final PaasLogCrawlerEventService eventService;
+  private final File spoolDirectory;
+  private final File processingDirectory;
+  private final File failedDirectory;
+  private final int workerThreads;
+  private final Semaphore workerSlots;
+
+  private volatile boolean running;
+  private ExecutorService workers;
+
+  /**
+   * Construct the daemon.
+   * @param eventService that is shared by every worker, so its helpers are built once.
+   * @param spoolDirectory that will be watched for new events.
+   * @param workerThreads is the number of events that are processed concurrently.
+   */
+  public PaasLogCrawlerDaemon(PaasLogCrawlerEventService eventService, File spoolDirectory, int workerThreads) {
+    if (workerThreads < 1) {
+      throw new IllegalArgumentException("workerThreads must be at least 1 but was " + workerThreads);
+    }
+    this.eventService = eventService;
+    this.spoolDirectory = spoolDirectory;
+    this.processingDirectory = new File(spoolDirectory, PROCESSING_DIRECTORY);
+    this.failedDirectory = new File(spoolDirectory, FAILED_DIRECTORY);
+    this.workerThreads = workerThreads;
+    // Allow one event to wait behind each busy worker, anything more stays in the spool.
+    this.workerSlots = new Semaphore(workerThreads * 2);
+  }
+
+  /**
+   * Watch the spool directory until {@link #stop()} is called or the thread is interrupted.
+   * @throws IOException if the spool directory can not be prepared or watched.
+   */
+  public void run() throws IOException {
+    prepareDirectories();
+    try (FileChannel lockChannel = FileChannel.open(new File(spoolDirectory, LOCK_FILE).toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // Closing the channel releases the lock.
+      if (tryLock(lockChannel) == null) {
+        throw new IOException("Spool directory=" + spoolDirectory.getAbsolutePath() + " is in use by another daemon.");
+      }
+      recoverInterruptedEvents();
+      watch();
+    }
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    }
+    catch (OverlappingFileLockException e) {
+      // Held by a daemon of this process.
+      return null;
+    }
+  }
+
+  private void watch() throws IOException {
+    workers = Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory());
+    running = true;
+    LOG.info(append("spoolDirectory", spoolDirectory.getAbsolutePath()), "Started daemon with {} workers.", workerThreads);
+
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      spoolDirectory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      while (running) {
+        // Always rescan the whole directory, that way an OVERFLOW or a missed event can not strand a file.
+        dispatchPendingEvents();
+        WatchKey watchKey = watchService.poll(POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (watchKey != null) {
+          watchKey.pollEvents();
+          watchKey.reset();
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      shutdownWorkers();
+    }
+  }
+
+  /**
+   * Stop watching the spool directory.  Events already handed to a worker are allowed to finish.
+   */
+  public void stop() {
+    running = false;
+  }
+
+  void dispatchPendingEvents() throws InterruptedException {
+    File[] pending = spoolDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(EVENT_SUFFIX);
+      }
+    });
+    if (pending == null) {
+      return;
+    }
+    // Oldest first so a burst is drained in arrival order.
+    Arrays.sort(pending, new Comparator<File>() {
+      @Override
+      public int compare(File left, File right) {
+        return Long.compare(left.lastModified(), right.lastModified());
+      }
+    });
+
+    for (File event : pending) {
+      if (!running) {
+        return;
+      }
+      workerSlots.acquire();
+      File claimed = claim(event);
+      if (claimed == null) {
+        workerSlots.release();
+        continue;
+      }
+      workers.execute(new EventTask(claimed));
+    }
+  }
+
+  /**
+   * Move the event into a new directory under <code>processing</code>, which only this claim uses.
+   * @return the claimed event, or null if it is gone.
+   */
+  private File claim(File event) {
+    Path claimDirectory = null;
+    try {
+      claimDirectory = Files.createTempDirectory(processingDirectory.toPath(), CLAIM_PREFIX);
+      File claimed = new File(claimDirectory.toFile(), event.getName());
+      Files.move(event.toPath(), claimed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      return claimed;
+    }
+    catch (IOException e) {
+      // A retry of this loop got there first, or the producer took the event back.
+      LOG.debug("Unable to claim event={}, will skip it.", event, e);
+      deleteQuietly(claimDirectory);
+      return null;
+    }
+  }
+
+  private void complete(File event, int processStatus) {
+    try {
+      if (processStatus == SUCCESS) {
+        Files.deleteIfExists(event.toPath());
+      }
+      else {
+        moveAside(event, failedDirectory);
+      }
+      Files.deleteIfExists(event.getParentFile().toPath());
+    }
+    catch (IOException e) {
+      LOG.error(append("eventPath", event.getAbsolutePath()), "Error occurred trying to clean up the spooled event.", e);
+    }
+  }
+
+  /**
+   * Move the event into a directory under a name with the time, so that it never replaces a file of that name.
+   */
+  private static void moveAside(File event, File directory) throws IOException {
+    long movedAt = System.currentTimeMillis();
+    for (int attempt = 0; ; attempt++) {
+      Path target = new File(directory, timedName(event.getName(), movedAt, attempt)).toPath();
+      try {
+        Files.move(event.toPath(), target);
+        return;
+      }
+      catch (FileAlreadyExistsException e) {
+        // An event of the same name was moved in the same millisecond, try the next suffix.
+      }
+    }
+  }
+
+  private static void deleteQuietly(Path directory) {
+    if (directory == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(directory);
+    }
+    catch (IOException e) {
+      LOG.warn(append("directory", directory.toString()), "Error occurred deleting an unused claim directory.  Will ignore.", e);
+    }
+  }
+
+  /**
+   * @return the name with the time, and the attempt when it is not the first, before its extension, e.g.
+   * <code>event.1500000000000.json</code>.
+   */
+  static String timedName(String name, long movedAt, int attempt) {
+    int dot = name.lastIndexOf('.');
+    String base = dot > 0 ? name.substring(0, dot) : name;
+    String extension = dot > 0 ? name.substring(dot) : "";
+    return base + "." + movedAt + (attempt == 0 ? "" : "-" + attempt) + extension;
+  }
+
+  private void prepareDirectories() throws IOException {
+    for (File directory : new File[] {spoolDirectory, processingDirectory, failedDirectory}) {
+      Files.createDirectories(directory.toPath());
+    }
+  }
+
+  private void recoverInterruptedEvents() throws IOException {
+    recoverInterruptedEvents(processingDirectory);
+  }
+
+  /**
+   * Put the events of a directory under <code>processing</code>, and of the claim directories in it, back into the
+   * spool.  An event of the same name spooled since is kept, and the interrupted one gets a name with the time.
+   */
+  private void recoverInterruptedEvents(File directory) throws IOException {
+    File[] interrupted = directory.listFiles();
+    if (interrupted == null) {
+      return;
+    }
+    for (File event : interrupted) {
+      if (event.isDirectory()) {
+        recoverInterruptedEvents(event);
+        Files.delete(event.toPath());
+        continue;
+      }
+      LOG.warn(append("eventPath", event.getAbsolutePath()), "Re-queuing event that was in progress when the daemon last stopped.");
+      try {
+        Files.move(event.toPath(), new File(spoolDirectory, event.getName()).toPath());
+      }
+      catch (FileAlreadyExistsException e) {
+        moveAside(event, spoolDirectory);
+      }
+    }
+  }
+
+  private void shutdownWorkers() {
+    if (workers == null) {
+      return;
+    }
+    workers.shutdown();
+    try {
+      if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.warn("Workers did not finish within a minute, the remaining events will be recovered on the next start.");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private class EventTask implements Runnable {
+    private final File event;
+
+    EventTask(File event) {
+      this.event = event;
+    }
+
+    @Override
+    public void run() {
+      int processStatus = PaasLogCrawlerEventService.UNKNOWN_ERROR;
+      try {
+        processStatus = eventService.processEvent(event.getAbsolutePath());
+      }
+      finally {
+        complete(event, processStatus);
+        workerSlots.release();
+      }
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "paas-log-crawler-worker-" + count.incrementAndGet());
+      thread.setDaemon(false);
+      return thread;
+    }
+  }
+}
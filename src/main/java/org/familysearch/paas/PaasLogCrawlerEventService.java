@@ -2,15 +2,33 @@ package org.familysearch.paas;
 
 import static net.logstash.logback.marker.Markers.append;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-import net.logstash.logback.marker.ObjectAppendingMarker;
+import net.logstash.logback.marker.LogstashMarker;
 
 import org.familysearch.paas.kinesis.KinesisFireHoseElasticSearchFacadeException;
+import org.familysearch.paas.metrics.Counter;
+import org.familysearch.paas.metrics.EmfMetricsReporter;
+import org.familysearch.paas.metrics.EventTrace;
+import org.familysearch.paas.metrics.Histogram;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
+import org.familysearch.paas.utils.ConfigurationHelper;
 import org.familysearch.paas.utils.CredentialHelper;
 import org.familysearch.paas.utils.ParserHelper;
 import org.slf4j.Logger;
@@ -29,16 +47,31 @@ public class PaasLogCrawlerEventService {
   private static final Logger LOG = LoggerFactory.getLogger(PaasLogCrawlerEventService.class);
   private static final int SUCCESS = 0;
   private static final int CONFIG_ERROR = -1;
-  private static final int UNKNOWN_ERROR = -3;
+  static final int UNKNOWN_ERROR = -3;
+  private static final String DAEMON_ARGUMENT = "--daemon";
+  private static final int DEFAULT_DAEMON_WORKERS = 4;
+  private static final int DEFAULT_RECORD_PARALLELISM = Runtime.getRuntime().availableProcessors();
+  private static final String STREAM_EVENT_PATH = "stream";
+  private static final Histogram PROCESS_EVENT = MetricsRegistry.getDefault().timer("ProcessEvent");
+  private static final Stage PROCESS_RECORD = MetricsRegistry.getDefault().stage("ProcessRecord");
+  private static final Counter CONFIGURATION_ERRORS = MetricsRegistry.getDefault().counter("ConfigurationErrors");
+  private static final Counter UNKNOWN_ERRORS = MetricsRegistry.getDefault().counter("UnknownErrors");
 
   private final CredentialHelper credentialHelper;
   private final ParserHelper parserHelper;
+  private final ExecutorService recordExecutor;
+  private final int traceSamplePercent;
 
   /**
    * Program main.  Currently has no argument checking.
-   * @param args should contain the SNS Event string.
+   * @param args should contain the SNS Event string, or <code>--daemon spoolDirectory [workers]</code> to keep the
+   *             JVM running and process every event dropped into the spool directory.
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && DAEMON_ARGUMENT.equals(args[0])) {
+      runDaemon(args);
+      return;
+    }
     System.exit(init(args));
   }
 
@@ -52,7 +85,52 @@ public class PaasLogCrawlerEventService {
 
     reportVersion();
 
-    return paasLogCrawlerEventService.processEvent(args[0]);
+    try {
+      return paasLogCrawlerEventService.processEvent(args[0]);
+    }
+    finally {
+      paasLogCrawlerEventService.shutdown();
+      newMetricsReporter(new ConfigurationHelper()).flush();
+    }
+  }
+
+  /**
+   * @return a reporter of the default registry, configured by METRICS_NAMESPACE and METRICS_SERVICE.
+   */
+  static EmfMetricsReporter newMetricsReporter(ConfigurationHelper configurationHelper) {
+    return new EmfMetricsReporter(MetricsRegistry.getDefault(), configurationHelper.metricsNamespace(), configurationHelper.metricsService());
+  }
+
+  private static void runDaemon(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Usage: " + DAEMON_ARGUMENT + " spoolDirectory [workers]");
+    }
+    int workers = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DAEMON_WORKERS;
+
+    reportVersion();
+
+    ConfigurationHelper configurationHelper = new ConfigurationHelper();
+    final EmfMetricsReporter metricsReporter = newMetricsReporter(configurationHelper);
+    metricsReporter.start(configurationHelper.metricsFlushSeconds());
+    final PaasLogCrawlerEventService eventService = new PaasLogCrawlerEventService(new CredentialHelper(), new ParserHelper(),
+        configurationHelper, DEFAULT_RECORD_PARALLELISM);
+    final PaasLogCrawlerDaemon daemon = new PaasLogCrawlerDaemon(eventService, new File(args[1]), workers);
+    final Thread daemonThread = Thread.currentThread();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        daemon.stop();
+        try {
+          daemonThread.join();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        eventService.shutdown();
+        metricsReporter.close();
+      }
+    });
+    daemon.run();
   }
 
   private static void reportVersion() {
@@ -90,26 +168,202 @@ public class PaasLogCrawlerEventService {
    * Construct with specific instances.
    * @param credentialHelper that will be used.
    * @param parserHelper that will be used.
-   * @param jiraFacade that will be used.
    */
   public PaasLogCrawlerEventService(CredentialHelper credentialHelper, ParserHelper parserHelper) {
+    this(credentialHelper, parserHelper, DEFAULT_RECORD_PARALLELISM);
+  }
+
+  /**
+   * Construct with specific instances.
+   * @param credentialHelper that will be used.
+   * @param parserHelper that will be used.
+   * @param recordParallelism is the most records of a single SNS event that are processed concurrently.
+   */
+  public PaasLogCrawlerEventService(CredentialHelper credentialHelper, ParserHelper parserHelper, int recordParallelism) {
+    this(credentialHelper, parserHelper, new ConfigurationHelper(), recordParallelism);
+  }
+
+  /**
+   * Construct with specific instances.
+   * @param credentialHelper that will be used.
+   * @param parserHelper that will be used.
+   * @param configurationHelper that gives the trace sample rate.
+   * @param recordParallelism is the most records of a single SNS event that are processed concurrently.
+   */
+  public PaasLogCrawlerEventService(CredentialHelper credentialHelper, ParserHelper parserHelper,
+                                    ConfigurationHelper configurationHelper, int recordParallelism) {
     this.credentialHelper = credentialHelper;
     this.parserHelper = parserHelper;
+    this.recordExecutor = Executors.newFixedThreadPool(recordParallelism, new RecordThreadFactory());
+    this.traceSamplePercent = configurationHelper.traceSamplePercent();
+  }
+
+  /**
+   * Stop the record threads once the records in flight are processed.  Events must not be processed afterwards.
+   */
+  public void shutdown() {
+    recordExecutor.shutdown();
   }
 
   /**
    * The main entry point.
    *
    * @param eventPath that will be processed.
+   * @return the first non zero status of the records in the event, or 0 when every record succeeded.
    */
   public int processEvent(String eventPath) {
+    return aggregateStatus(processEventBatch(eventPath));
+  }
+
+  /**
+   * Process every record of the SNS event in the file.
+   *
+   * @param eventPath that will be processed.
+   * @return the status of each record, in record order, where 0 means success.
+   */
+  public List<Integer> processEventBatch(String eventPath) {
+    return traced(eventPath, () -> {
+      long start = System.nanoTime();
+      String snsEvent;
+      try {
+        snsEvent = loadEvent(eventPath);
+      }
+      catch (Exception e) {
+        CONFIGURATION_ERRORS.increment();
+        LOG.error(append("eventPath", eventPath), "Error occurred trying to get configuration.", e);
+        return Collections.singletonList(CONFIG_ERROR);
+      }
+      EventTrace.span("LoadEvent", start);
+      return processSnsEventBatch(snsEvent, eventPath);
+    });
+  }
+
+  /**
+   * Process an SNS event that has already been read, e.g. straight from a Lambda invocation stream.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the first non zero status of the records in the event, or 0 when every record succeeded.
+   */
+  public int processSnsEvent(String snsEvent) {
+    return aggregateStatus(processSnsEventBatch(snsEvent));
+  }
+
+  /**
+   * Process every record of an SNS event that has already been read.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the status of each record, in record order, where 0 means success.
+   */
+  public List<Integer> processSnsEventBatch(String snsEvent) {
+    return traced(STREAM_EVENT_PATH, () -> processSnsEventBatch(snsEvent, STREAM_EVENT_PATH));
+  }
+
+  /**
+   * Reduce per record statuses to a single exit code.
+   *
+   * @param statuses of each record.
+   * @return the first non zero status, or 0 when every record succeeded.
+   */
+  public static int aggregateStatus(List<Integer> statuses) {
+    for (Integer status : statuses) {
+      if (status != SUCCESS) {
+        return status;
+      }
+    }
+    return SUCCESS;
+  }
+
+  /**
+   * Process an event under a new trace, recording its latency and logging its spans when it is sampled.
+   */
+  private List<Integer> traced(String eventPath, Supplier<List<Integer>> processing) {
+    long start = System.nanoTime();
+    EventTrace trace = EventTrace.begin(eventPath, traceSamplePercent);
+    List<Integer> statuses = null;
+    try {
+      statuses = processing.get();
+      return statuses;
+    }
+    finally {
+      PROCESS_EVENT.recordSince(start);
+      trace.end(statuses == null ? null : append("recordStatuses", statuses));
+    }
+  }
+
+  private List<Integer> processSnsEventBatch(String snsEvent, final String eventPath) {
+    final List<String> messages;
+    try {
+      messages = parserHelper.getSnsMessages(snsEvent);
+    }
+    catch (Exception e) {
+      CONFIGURATION_ERRORS.increment();
+      LOG.error(append("eventPath", eventPath), "Error occurred trying to get configuration.", e);
+      return Collections.singletonList(CONFIG_ERROR);
+    }
+
+    if (messages.size() == 1) {
+      // Nothing to overlap, so skip the hand off to the record executor.
+      return Collections.singletonList(processRecord(messages.get(0), eventPath, 0));
+    }
+
+    final EventTrace trace = EventTrace.current();
+    List<Future<Integer>> futures = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      final int recordIndex = i;
+      futures.add(recordExecutor.submit(() -> {
+        EventTrace previous = EventTrace.attach(trace);
+        try {
+          return processRecord(messages.get(recordIndex), eventPath, recordIndex);
+        }
+        finally {
+          EventTrace.attach(previous);
+        }
+      }));
+    }
+
+    List<Integer> statuses = new ArrayList<>(futures.size());
+    for (int i = 0; i < futures.size(); i++) {
+      statuses.add(awaitRecord(futures.get(i), eventPath, i));
+    }
+    LOG.info(append("eventPath", eventPath).and(append("recordStatuses", statuses)), "Processed {} records.", statuses.size());
+    return statuses;
+  }
+
+  private int awaitRecord(Future<Integer> future, String eventPath, int recordIndex) {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      UNKNOWN_ERRORS.increment();
+      return UNKNOWN_ERROR;
+    }
+    catch (ExecutionException e) {
+      UNKNOWN_ERRORS.increment();
+      LOG.error(recordMarker(eventPath, recordIndex), "Error occurred trying to create notification.", e.getCause());
+      return UNKNOWN_ERROR;
+    }
+  }
+
+  private int processRecord(String message, String eventPath, int recordIndex) {
+    long start = System.nanoTime();
+    try {
+      return processRecord(message, recordMarker(eventPath, recordIndex));
+    }
+    finally {
+      PROCESS_RECORD.recordSince(start);
+    }
+  }
+
+  private int processRecord(String message, LogstashMarker marker) {
     Map<String, String> map = null;
     int processStatus = 0;
-    ObjectAppendingMarker marker = append("eventPath", eventPath);
     try {
-      map = getKinesisFireHoseElasticSearchClusterInputs(loadEvent(eventPath));
+      map = getKinesisFireHoseElasticSearchClusterInputs(message);
     }
     catch (Exception e) {
+      CONFIGURATION_ERRORS.increment();
       LOG.error(marker, "Error occurred trying to get configuration.", e);
       processStatus = CONFIG_ERROR;
     }
@@ -120,6 +374,7 @@ public class PaasLogCrawlerEventService {
       catch (KinesisFireHoseElasticSearchFacadeException e) {
       }
       catch (Exception e) {
+        UNKNOWN_ERRORS.increment();
         LOG.error(marker, "Error occurred trying to create notification.", e);
         processStatus = UNKNOWN_ERROR;
       }
@@ -127,13 +382,17 @@ public class PaasLogCrawlerEventService {
     return processStatus;
   }
 
+  private LogstashMarker recordMarker(String eventPath, int recordIndex) {
+    return append("eventPath", eventPath).and(append("recordIndex", recordIndex));
+  }
+
   private String getAwsAccountId(Map<String, String> map) {
     return map.get(ParserHelper.AWS_ACCOUNT_ID);
   }
 
   private String loadEvent(String eventPath) {
-    try {
-      InputStream inputStream = getFileInputStream(eventPath);
+    // Closed right away, as the daemon moves or deletes the file and runs for good.
+    try (InputStream inputStream = getFileInputStream(eventPath)) {
       return IOUtils.toString(inputStream);
     }
     catch (IOException e) {
@@ -146,7 +405,19 @@ public class PaasLogCrawlerEventService {
     return new FileInputStream(eventPath);
   }
 
-  private Map<String, String> getKinesisFireHoseElasticSearchClusterInputs(String event) {
-    return parserHelper.getKinesisComponents(event);
+  private Map<String, String> getKinesisFireHoseElasticSearchClusterInputs(String message) {
+    return parserHelper.getKinesisComponentsFromMessage(message);
+  }
+
+  private static class RecordThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "paas-log-crawler-record-" + count.incrementAndGet());
+      // Never keep the single event CLI alive just because the pool is idle.
+      thread.setDaemon(true);
+      return thread;
+    }
   }
 }
@@ -0,0 +1,120 @@
+package org.familysearch.paas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.familysearch.paas.metrics.EmfMetricsReporter;
+import org.familysearch.paas.utils.AwsClientRegistry;
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.familysearch.paas.utils.CredentialHelper;
+import org.familysearch.paas.utils.HttpRequestHelper;
+import org.familysearch.paas.utils.IamHelper;
+import org.familysearch.paas.utils.ParserHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Java Lambda entry point that reads the SNS event straight from the invocation stream.
+ *
+ * The helpers are built once per container while Lambda initializes the handler class and are primed with
+ * a synthetic event, so class loading, JSON reflection and the AWS/TLS clients are warm before the first real
+ * invocation.  Configure the function with the handler
+ * <code>org.familysearch.paas.PaasLogCrawlerLambdaHandler::handleRequest</code>.
+ *
+ * The metrics are reported at the end of every invocation, as the container may be frozen until the next one.
+ *
+ * @author kriskrishna
+ */
+public class PaasLogCrawlerLambdaHandler implements RequestStreamHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(PaasLogCrawlerLambdaHandler.class);
+  private static final String SYNTHETIC_EVENT = "synthetic-sns-event.json";
+  private static final String RESPONSE = "{\"status\":%d,\"recordStatuses\":%s}";
+
+  private final PaasLogCrawlerEventService eventService;
+  private final EmfMetricsReporter metricsReporter;
+
+  /**
+   * Constructor used by the Lambda runtime.  Shares the helpers that were primed during static init.
+   */
+  public PaasLogCrawlerLambdaHandler() {
+    this(PrimedHelpers.EVENT_SERVICE);
+  }
+
+  /**
+   * Construct with a specific instance.
+   * @param eventService that will be used.
+   */
+  public PaasLogCrawlerLambdaHandler(PaasLogCrawlerEventService eventService) {
+    this(eventService, PaasLogCrawlerEventService.newMetricsReporter(new ConfigurationHelper()));
+  }
+
+  /**
+   * Construct with specific instances.
+   * @param eventService that will be used.
+   * @param metricsReporter that is flushed after every invocation.
+   */
+  public PaasLogCrawlerLambdaHandler(PaasLogCrawlerEventService eventService, EmfMetricsReporter metricsReporter) {
+    this.eventService = eventService;
+    this.metricsReporter = metricsReporter;
+  }
+
+  @Override
+  public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+    int processStatus;
+    try {
+      List<Integer> recordStatuses = eventService.processSnsEventBatch(IOUtils.toString(input));
+      processStatus = PaasLogCrawlerEventService.aggregateStatus(recordStatuses);
+
+      output.write(String.format(RESPONSE, processStatus, recordStatuses.toString().replace(" ", "")).getBytes(StandardCharsets.UTF_8));
+    }
+    finally {
+      metricsReporter.flush();
+    }
+    if (processStatus != 0) {
+      // Fail the invocation so that Lambda reports and retries it, as the Node wrapper did on a non zero exit.
+      throw new IllegalStateException("Processing the SNS event failed with status=" + processStatus);
+    }
+  }
+
+  /**
+   * Holds the helpers that are shared across invocations.  Kept in a holder class so that tests which inject
+   * their own service never build real AWS clients.
+   */
+  static final class PrimedHelpers {
+    static final HttpRequestHelper HTTP_REQUEST_HELPER;
+    static final PaasLogCrawlerEventService EVENT_SERVICE;
+
+    static {
+      long start = System.nanoTime();
+      IamHelper iamHelper = new IamHelper();
+      ParserHelper parserHelper = new ParserHelper(iamHelper);
+      CredentialHelper credentialHelper = new CredentialHelper();
+      HTTP_REQUEST_HELPER = AwsClientRegistry.getDefault().httpRequestHelper();
+      EVENT_SERVICE = new PaasLogCrawlerEventService(credentialHelper, parserHelper);
+
+      prime(parserHelper, HTTP_REQUEST_HELPER);
+      LOG.info("Built and primed helpers in {} ms.", (System.nanoTime() - start) / 1000000);
+    }
+
+    private PrimedHelpers() {
+    }
+
+    private static void prime(ParserHelper parserHelper, HttpRequestHelper httpRequestHelper) {
+      try (InputStream inputStream = PaasLogCrawlerLambdaHandler.class.getClassLoader().getResourceAsStream(SYNTHETIC_EVENT)) {
+        // Parsing the synthetic event loads Gson and makes the first IAM call, which also warms the TLS stack.
+        parserHelper.getKinesisComponents(IOUtils.toString(inputStream));
+        httpRequestHelper.warmUp();
+      }
+      catch (Exception e) {
+        LOG.warn("Error occurred trying to prime the helpers.  The first invocation will pay for it instead.", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.familysearch.paas;
+
+import static net.logstash.logback.marker.Markers.append;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.familysearch.paas.crawler.CrawlResult;
+import org.familysearch.paas.crawler.LogCrawler;
+import org.familysearch.paas.crawler.S3EventReader;
+import org.familysearch.paas.metrics.EmfMetricsReporter;
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Java Lambda entry point for S3 event notifications of new log objects, the Java port of <code>s3LogsToES</code>
+ * in the Node service.  Every object of the event is crawled in record order by a {@link LogCrawler}, which ships
+ * to the sink of the configuration.  Configure the function with the handler
+ * <code>org.familysearch.paas.PaasLogCrawlerS3LambdaHandler::handleRequest</code> and filter the event source for
+ * the log suffix.
+ *
+ * An object that can not be crawled fails the invocation, so that Lambda reports and retries it.  Documents the
+ * sink rejected are only counted, since a retry would index the accepted ones again.  The metrics are reported at
+ * the end of every invocation.
+ *
+ * @author kriskrishna
+ */
+public class PaasLogCrawlerS3LambdaHandler implements RequestStreamHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(PaasLogCrawlerS3LambdaHandler.class);
+  private static final String RESPONSE = "{\"objects\":%d,\"lines\":%d,\"skippedLines\":%d,\"indexed\":%d,\"failed\":%d}";
+
+  private final LogCrawler logCrawler;
+  private final EmfMetricsReporter metricsReporter;
+
+  /**
+   * Constructor used by the Lambda runtime.  Shares one crawler across invocations, which Lambda runs one at a time.
+   */
+  public PaasLogCrawlerS3LambdaHandler() {
+    this(SharedCrawler.LOG_CRAWLER, PaasLogCrawlerEventService.newMetricsReporter(new ConfigurationHelper()));
+  }
+
+  /**
+   * Construct with specific instances.
+   * @param logCrawler that crawls the objects.
+   * @param metricsReporter that is flushed after every invocation.
+   */
+  public PaasLogCrawlerS3LambdaHandler(LogCrawler logCrawler, EmfMetricsReporter metricsReporter) {
+    this.logCrawler = logCrawler;
+    this.metricsReporter = metricsReporter;
+  }
+
+  @Override
+  public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+    try {
+      List<S3EventReader.LogObject> objects = S3EventReader.readObjects(IOUtils.toString(input));
+      long lines = 0;
+      long skippedLines = 0;
+      long indexed = 0;
+      long failed = 0;
+      for (S3EventReader.LogObject object : objects) {
+        CrawlResult result = logCrawler.crawlS3Object(object.getBucket(), object.getKey());
+        lines += result.getLines();
+        skippedLines += result.getSkippedLines();
+        indexed += result.getIndexedDocuments();
+        failed += result.getFailedDocuments();
+      }
+      if (failed > 0) {
+        LOG.warn(append("objects", objects.size()).and(append("failed", failed)), "The sink rejected {} documents.", failed);
+      }
+      output.write(String.format(RESPONSE, objects.size(), lines, skippedLines, indexed, failed).getBytes(StandardCharsets.UTF_8));
+    }
+    finally {
+      metricsReporter.flush();
+    }
+  }
+
+  /**
+   * Holds the crawler shared across invocations.  Kept in a holder class so that tests which inject their own
+   * crawler never build real AWS clients.
+   */
+  static final class SharedCrawler {
+    static final LogCrawler LOG_CRAWLER = new LogCrawler();
+
+    private SharedCrawler() {
+    }
+  }
+}
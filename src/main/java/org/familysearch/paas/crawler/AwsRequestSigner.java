@@ -0,0 +1,63 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.http.HttpMethodName;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Signs requests to an AWS service endpoint, such as an Amazon Elasticsearch Service domain, with Signature
+ * Version 4, the way the node crawler did with AWS.Signers.V4.
+ *
+ * @author kriskrishna
+ */
+public class AwsRequestSigner {
+  private static final String HOST = "Host";
+
+  private final AWSCredentialsProvider credentialsProvider;
+  private final String serviceName;
+  private final String regionName;
+
+  /**
+   * Construct the signer.
+   * @param credentialsProvider that gives the credentials to sign with, typically the Lambda or instance role.
+   * @param serviceName is the signing name of the service, es for Elasticsearch.
+   * @param regionName is the region of the endpoint.
+   */
+  public AwsRequestSigner(AWSCredentialsProvider credentialsProvider, String serviceName, String regionName) {
+    this.credentialsProvider = credentialsProvider;
+    this.serviceName = serviceName;
+    this.regionName = regionName;
+  }
+
+  /**
+   * Gives the headers that sign a POST request.
+   * @param url of the request.
+   * @param contentType of the content.
+   * @param content of the request.
+   * @return the headers to add to the request.  The Host header is left out, the transport sets it.
+   */
+  public Map<String, String> signPost(String url, String contentType, byte[] content) {
+    URI uri = URI.create(url);
+    DefaultRequest<Void> request = new DefaultRequest<>(serviceName);
+    request.setHttpMethod(HttpMethodName.POST);
+    request.setEndpoint(URI.create(uri.getScheme() + "://" + uri.getRawAuthority()));
+    request.setResourcePath(uri.getRawPath());
+    request.setContent(new ByteArrayInputStream(content));
+    request.addHeader("Content-Type", contentType);
+
+    AWS4Signer signer = new AWS4Signer();
+    signer.setServiceName(serviceName);
+    signer.setRegionName(regionName);
+    signer.sign(request, credentialsProvider.getCredentials());
+
+    Map<String, String> headers = new HashMap<>(request.getHeaders());
+    headers.remove(HOST);
+    return headers;
+  }
+}
@@ -0,0 +1,61 @@
+package org.familysearch.paas.crawler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Recycles byte arrays between decompression tasks instead of leaving every member's buffers to the garbage
+ * collector.  Arrays come in power of two sizes and at most <code>maxPerSize</code> of each size are kept.  Arrays
+ * larger than <code>maxPooledSize</code> are left to the garbage collector, so that one large member does not pin
+ * its buffers for the life of the process.  Thread safe.
+ *
+ * @author kriskrishna
+ */
+final class BufferPool {
+  private static final int MIN_SIZE = 4096;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final ArrayBlockingQueue<byte[]>[] pools = new ArrayBlockingQueue[Integer.SIZE];
+  private final int maxPooledSize;
+
+  BufferPool(int maxPerSize, int maxPooledSize) {
+    this.maxPooledSize = maxPooledSize;
+    for (int i = 0; i < pools.length; i++) {
+      pools[i] = new ArrayBlockingQueue<>(maxPerSize);
+    }
+  }
+
+  /**
+   * @return an array of at least minSize bytes, with any content.
+   */
+  byte[] acquire(int minSize) {
+    int size = minSize <= MIN_SIZE ? MIN_SIZE : Integer.highestOneBit(minSize - 1) << 1;
+    if (size <= 0) {
+      return new byte[minSize]; // Larger than the largest power of two array.
+    }
+    if (size > maxPooledSize) {
+      return new byte[size];
+    }
+    byte[] buffer = pools[Integer.numberOfTrailingZeros(size)].poll();
+    return buffer != null ? buffer : new byte[size];
+  }
+
+  /**
+   * Give an array back.  It must not be used afterwards.
+   */
+  void release(byte[] buffer) {
+    if (buffer != null && Integer.bitCount(buffer.length) == 1 && buffer.length >= MIN_SIZE
+        && buffer.length <= maxPooledSize) {
+      pools[Integer.numberOfTrailingZeros(buffer.length)].offer(buffer);
+    }
+  }
+
+  /**
+   * @return a copy of the first length bytes of buffer in an array of at least minSize bytes; buffer is released.
+   */
+  byte[] grow(byte[] buffer, int length, int minSize) {
+    byte[] grown = acquire(minSize);
+    System.arraycopy(buffer, 0, grown, 0, length);
+    release(buffer);
+    return grown;
+  }
+}
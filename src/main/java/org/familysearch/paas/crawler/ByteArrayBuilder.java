@@ -0,0 +1,97 @@
+package org.familysearch.paas.crawler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable byte array that is reset and reused instead of reallocated.  Unlike ByteArrayOutputStream it is not
+ * synchronized and exposes its array, so its contents can be handed on without a copy.
+ *
+ * @author kriskrishna
+ */
+final class ByteArrayBuilder {
+  private byte[] bytes;
+  private int length;
+
+  ByteArrayBuilder(int initialCapacity) {
+    bytes = new byte[Math.max(16, initialCapacity)];
+  }
+
+  void append(byte value) {
+    ensureCapacity(length + 1);
+    bytes[length++] = value;
+  }
+
+  void append(byte[] source, int offset, int count) {
+    ensureCapacity(length + count);
+    System.arraycopy(source, offset, bytes, length, count);
+    length += count;
+  }
+
+  void append(ByteBuffer source, int offset, int count) {
+    ensureCapacity(length + count);
+    ByteBuffer view = source.duplicate();
+    view.position(offset);
+    view.get(bytes, length, count);
+    length += count;
+  }
+
+  void appendAscii(String value) {
+    int count = value.length();
+    ensureCapacity(length + count);
+    for (int i = 0; i < count; i++) {
+      bytes[length++] = (byte) value.charAt(i);
+    }
+  }
+
+  void appendDecimal(long value) {
+    if (value < 0) {
+      append((byte) '-');
+      value = -value;
+    }
+    ensureCapacity(length + 20);
+    int start = length;
+    do {
+      bytes[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    while (value > 0);
+    // Digits were written least significant first.
+    for (int i = start, j = length - 1; i < j; i++, j--) {
+      byte swap = bytes[i];
+      bytes[i] = bytes[j];
+      bytes[j] = swap;
+    }
+  }
+
+  void appendDigits(int value, int width) {
+    ensureCapacity(length + width);
+    for (int i = length + width - 1; i >= length; i--) {
+      bytes[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    length += width;
+  }
+
+  byte[] array() {
+    return bytes;
+  }
+
+  int length() {
+    return length;
+  }
+
+  void reset() {
+    length = 0;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(bytes, length);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.crawler.LogLineRecord.Field;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses Apache Common and Combined Log Format lines straight from their bytes into a reusable
+ * {@link LogLineRecord}, without decoding the line or allocating per field.  Accepts and rejects the same lines
+ * as the regular expression of <code>CommonLogFormatParser</code>, the readable reference that the tests and the
+ * benchmark hold it to.
+ *
+ * Not thread safe; use one parser and one record per thread.
+ *
+ * @author kriskrishna
+ */
+public class CommonLogFormatByteParser {
+  private static final long INVALID = Long.MIN_VALUE;
+  private static final int TIME_LENGTH = "10/Oct/2000:13:55:36 -0700".length();
+  private static final byte[] MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec".getBytes(StandardCharsets.US_ASCII);
+  private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  private ByteBuffer wrapped;
+
+  /**
+   * Parse a line held in an array.
+   * @param bytes that hold the line.
+   * @param offset of the first byte of the line.
+   * @param length of the line, without its terminator.
+   * @param record that is filled in.
+   * @return true if the line is in Common Log Format, otherwise the record must not be used.
+   */
+  public boolean parse(byte[] bytes, int offset, int length, LogLineRecord record) {
+    if (wrapped == null || wrapped.array() != bytes) {
+      wrapped = ByteBuffer.wrap(bytes);
+    }
+    return parse(wrapped, offset, length, record);
+  }
+
+  /**
+   * Parse a line held in a buffer, which may be direct or memory mapped.  The buffer's position and limit are
+   * not used or changed.
+   * @param buffer that holds the line.
+   * @param offset of the first byte of the line.
+   * @param length of the line, without its terminator.
+   * @param record that is filled in with offsets into the buffer.
+   * @return true if the line is in Common Log Format, otherwise the record must not be used.
+   */
+  public boolean parse(ByteBuffer buffer, int offset, int length, LogLineRecord record) {
+    record.reset(buffer);
+    int end = offset + length;
+    int p = offset;
+
+    int start = p;
+    p = skipNonSpace(buffer, p, end);
+    if (p == start || !is(buffer, p, end, ' ')) {
+      return false;
+    }
+    record.set(Field.REMOTE_ADDR, start, p);
+
+    start = ++p; // identd, never used.
+    p = skipNonSpace(buffer, p, end);
+    if (p == start || !is(buffer, p, end, ' ')) {
+      return false;
+    }
+
+    start = ++p;
+    p = skipNonSpace(buffer, p, end);
+    if (p == start || !is(buffer, p, end, ' ')) {
+      return false;
+    }
+    setUnlessAbsent(buffer, record, Field.REMOTE_USER, start, p);
+
+    if (!is(buffer, ++p, end, '[')) {
+      return false;
+    }
+    start = ++p;
+    p = indexOf(buffer, p, end, ']');
+    if (p <= start) {
+      return false;
+    }
+    long time = parseTime(buffer, start, p);
+    if (time == INVALID || !is(buffer, ++p, end, ' ') || !is(buffer, ++p, end, '"')) {
+      return false;
+    }
+    record.setTimeEpochSeconds(time);
+
+    start = ++p;
+    p = indexOf(buffer, p, end, '"');
+    if (p < 0) {
+      return false;
+    }
+    record.set(Field.REQUEST, start, p);
+    splitRequest(buffer, record, start, p);
+    if (!is(buffer, ++p, end, ' ')) {
+      return false;
+    }
+
+    start = ++p;
+    if (p + 3 > end || !isDigit(buffer.get(p)) || !isDigit(buffer.get(p + 1)) || !isDigit(buffer.get(p + 2))) {
+      return false;
+    }
+    record.setStatus((buffer.get(p) - '0') * 100 + (buffer.get(p + 1) - '0') * 10 + (buffer.get(p + 2) - '0'));
+    p += 3;
+    if (!is(buffer, p, end, ' ')) {
+      return false;
+    }
+
+    start = ++p;
+    p = skipNonSpace(buffer, p, end);
+    long bodyBytesSent = parseBodyBytesSent(buffer, start, p);
+    if (bodyBytesSent == INVALID) {
+      return false;
+    }
+    record.setBodyBytesSent(bodyBytesSent);
+
+    parseRefererAndUserAgent(buffer, record, p, end);
+    return true;
+  }
+
+  /**
+   * The combined format adds <code> "referer" "user agent"</code>; anything after it, or anything else, is ignored.
+   */
+  private static void parseRefererAndUserAgent(ByteBuffer buffer, LogLineRecord record, int p, int end) {
+    if (!is(buffer, p, end, ' ') || !is(buffer, p + 1, end, '"')) {
+      return;
+    }
+    int refererStart = p + 2;
+    int refererEnd = indexOf(buffer, refererStart, end, '"');
+    if (refererEnd < 0 || !is(buffer, refererEnd + 1, end, ' ') || !is(buffer, refererEnd + 2, end, '"')) {
+      return;
+    }
+    int userAgentStart = refererEnd + 3;
+    int userAgentEnd = indexOf(buffer, userAgentStart, end, '"');
+    if (userAgentEnd < 0) {
+      return;
+    }
+    setUnlessAbsent(buffer, record, Field.HTTP_REFERER, refererStart, refererEnd);
+    setUnlessAbsent(buffer, record, Field.HTTP_USER_AGENT, userAgentStart, userAgentEnd);
+  }
+
+  /**
+   * Split <code>METHOD PATH PROTOCOL</code> the way String.split(" ") does, trailing empty parts dropped, and only
+   * when that gives exactly three parts.
+   */
+  private static void splitRequest(ByteBuffer buffer, LogLineRecord record, int start, int end) {
+    while (end > start && buffer.get(end - 1) == ' ') {
+      end--;
+    }
+    int firstSpace = indexOf(buffer, start, end, ' ');
+    if (firstSpace < 0) {
+      return;
+    }
+    int secondSpace = indexOf(buffer, firstSpace + 1, end, ' ');
+    if (secondSpace < 0 || indexOf(buffer, secondSpace + 1, end, ' ') >= 0) {
+      return;
+    }
+    record.set(Field.METHOD, start, firstSpace);
+    record.set(Field.PATH, firstSpace + 1, secondSpace);
+    record.set(Field.PROTOCOL, secondSpace + 1, end);
+  }
+
+  private static long parseBodyBytesSent(ByteBuffer buffer, int start, int end) {
+    if (end == start) {
+      return INVALID;
+    }
+    if (end - start == 1 && buffer.get(start) == '-') {
+      return 0;
+    }
+    if (end - start > 18) {
+      return INVALID;
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (!isDigit(b)) {
+        return INVALID;
+      }
+      value = value * 10 + (b - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Parse <code>dd/MMM/yyyy:HH:mm:ss +hhmm</code> into seconds since the epoch.  A day past the end of its month
+   * is moved to the last day of the month and 24:00:00 is midnight of the next day, as the SMART resolver of
+   * java.time does.
+   */
+  static long parseTime(ByteBuffer buffer, int start, int end) {
+    if (end - start != TIME_LENGTH
+        || buffer.get(start + 2) != '/' || buffer.get(start + 6) != '/' || buffer.get(start + 11) != ':'
+        || buffer.get(start + 14) != ':' || buffer.get(start + 17) != ':' || buffer.get(start + 20) != ' ') {
+      return INVALID;
+    }
+    int day = digits(buffer, start, 2);
+    int month = month(buffer, start + 3);
+    int year = digits(buffer, start + 7, 4);
+    int hour = digits(buffer, start + 12, 2);
+    int minute = digits(buffer, start + 15, 2);
+    int second = digits(buffer, start + 18, 2);
+    byte sign = buffer.get(start + 21);
+    int offsetHours = digits(buffer, start + 22, 2);
+    int offsetMinutes = digits(buffer, start + 24, 2);
+    if (day < 1 || day > 31 || month < 1 || year < 0 || hour < 0 || hour > 24 || minute < 0 || minute > 59
+        || second < 0 || second > 59 || (sign != '+' && sign != '-') || offsetHours < 0 || offsetHours > 18
+        || offsetMinutes < 0 || offsetMinutes > 59) {
+      return INVALID;
+    }
+    if (hour == 24 && (minute != 0 || second != 0)) {
+      return INVALID; // 24:00:00 is the end of the day and is accepted, like java.time does.
+    }
+    day = Math.min(day, lastDayOfMonth(year, month));
+    int offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+    return daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+  }
+
+  private static int lastDayOfMonth(int year, int month) {
+    if (month == 2) {
+      boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+      return leap ? 29 : 28;
+    }
+    return DAYS_IN_MONTH[month - 1];
+  }
+
+  /**
+   * Days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    year -= month <= 2 ? 1 : 0;
+    long era = Math.floorDiv(year, 400);
+    long yearOfEra = year - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  private static int month(ByteBuffer buffer, int start) {
+    byte a = buffer.get(start);
+    byte b = buffer.get(start + 1);
+    byte c = buffer.get(start + 2);
+    for (int i = 0; i < MONTHS.length; i += 3) {
+      if (MONTHS[i] == a && MONTHS[i + 1] == b && MONTHS[i + 2] == c) {
+        return i / 3 + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static int digits(ByteBuffer buffer, int start, int count) {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      byte b = buffer.get(i);
+      if (!isDigit(b)) {
+        return -1;
+      }
+      value = value * 10 + (b - '0');
+    }
+    return value;
+  }
+
+  private static void setUnlessAbsent(ByteBuffer buffer, LogLineRecord record, Field field, int start, int end) {
+    if (!(end - start == 1 && buffer.get(start) == '-')) {
+      record.set(field, start, end);
+    }
+  }
+
+  private static int skipNonSpace(ByteBuffer buffer, int p, int end) {
+    while (p < end && !isSpace(buffer.get(p))) {
+      p++;
+    }
+    return p;
+  }
+
+  private static int indexOf(ByteBuffer buffer, int p, int end, char value) {
+    for (; p < end; p++) {
+      if (buffer.get(p) == value) {
+        return p;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean is(ByteBuffer buffer, int p, int end, char value) {
+    return p < end && buffer.get(p) == value;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  /**
+   * The whitespace of regex \s.
+   */
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+  }
+}
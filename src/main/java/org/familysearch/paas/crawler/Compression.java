@@ -0,0 +1,90 @@
+package org.familysearch.paas.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The compression formats of log objects.
+ *
+ * @author kriskrishna
+ */
+public enum Compression {
+  NONE,
+  GZIP,
+  ZSTD;
+
+  /**
+   * Bytes of content {@link #detect(String, byte[], int)} wants to look at.
+   */
+  public static final int MAGIC_LENGTH = 4;
+
+  /**
+   * Detect the compression of content.  The magic bytes decide; the name is only used when the content is too short
+   * to hold them.
+   * @param name of the object or file, may be null.
+   * @param head holds the first bytes of the content.
+   * @param length of the head, up to {@link #MAGIC_LENGTH} is used.
+   * @return the compression, NONE for plain text.
+   */
+  public static Compression detect(String name, byte[] head, int length) {
+    if (length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) {
+      return GZIP;
+    }
+    if (length >= MAGIC_LENGTH && (isZstdFrame(head) || isZstdSkippableFrame(head))) {
+      return ZSTD;
+    }
+    return length < MAGIC_LENGTH ? fromName(name) : NONE;
+  }
+
+  /**
+   * Detect the compression of a file from its first bytes.
+   * @param file to look at.
+   * @return the compression, NONE for plain text.
+   * @throws IOException if the file can not be read.
+   */
+  public static Compression detect(Path file) throws IOException {
+    byte[] head = new byte[MAGIC_LENGTH];
+    int length = 0;
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      int read;
+      while (length < head.length && (read = inputStream.read(head, length, head.length - length)) != -1) {
+        length += read;
+      }
+    }
+    return detect(file.toString(), head, length);
+  }
+
+  /**
+   * @return the compression the suffix of a name gives, NONE when it gives none.
+   */
+  public static Compression fromName(String name) {
+    if (name == null) {
+      return NONE;
+    }
+    String lowerCase = name.toLowerCase(Locale.ROOT);
+    if (lowerCase.endsWith(".gz") || lowerCase.endsWith(".gzip")) {
+      return GZIP;
+    }
+    if (lowerCase.endsWith(".zst") || lowerCase.endsWith(".zstd")) {
+      return ZSTD;
+    }
+    return NONE;
+  }
+
+  /**
+   * A zstd frame starts with 0xFD2FB528, little endian.
+   */
+  static boolean isZstdFrame(byte[] magic) {
+    return (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd;
+  }
+
+  /**
+   * A skippable zstd frame starts with 0x184D2A50 to 0x184D2A5F, little endian.
+   */
+  static boolean isZstdSkippableFrame(byte[] magic) {
+    return (magic[0] & 0xf0) == 0x50 && (magic[1] & 0xff) == 0x2a && (magic[2] & 0xff) == 0x4d && (magic[3] & 0xff) == 0x18;
+  }
+}
@@ -0,0 +1,56 @@
+package org.familysearch.paas.crawler;
+
+/**
+ * The counts of one crawled log object.
+ *
+ * @author kriskrishna
+ */
+public class CrawlResult {
+  private final long lines;
+  private final long skippedLines;
+  private final long indexedDocuments;
+  private final long failedDocuments;
+
+  /**
+   * Construct the result.
+   * @param lines that were read, not counting empty ones.
+   * @param skippedLines that could not be parsed.
+   * @param indexedDocuments that Elasticsearch accepted.
+   * @param failedDocuments that were rejected or could not be sent.
+   */
+  public CrawlResult(long lines, long skippedLines, long indexedDocuments, long failedDocuments) {
+    this.lines = lines;
+    this.skippedLines = skippedLines;
+    this.indexedDocuments = indexedDocuments;
+    this.failedDocuments = failedDocuments;
+  }
+
+  public long getLines() {
+    return lines;
+  }
+
+  public long getSkippedLines() {
+    return skippedLines;
+  }
+
+  public long getIndexedDocuments() {
+    return indexedDocuments;
+  }
+
+  public long getFailedDocuments() {
+    return failedDocuments;
+  }
+
+  /**
+   * @return true when every parsed line was indexed.
+   */
+  public boolean isComplete() {
+    return failedDocuments == 0 && indexedDocuments == lines - skippedLines;
+  }
+
+  @Override
+  public String toString() {
+    return "CrawlResult{lines=" + lines + ", skippedLines=" + skippedLines + ", indexedDocuments=" + indexedDocuments
+        + ", failedDocuments=" + failedDocuments + '}';
+  }
+}
@@ -0,0 +1,515 @@
+package org.familysearch.paas.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only spool of records in memory mapped segment files, so documents survive a slow or failing sink and
+ * a restart of the process.
+ *
+ * A record is its length, the CRC32 of its bytes and its bytes.  Records are addressed by position, a byte offset
+ * that only grows: segment <code>n</code> holds the positions from <code>n * segmentBytes</code>.  The segment size
+ * is kept in a <code>segment-bytes</code> file, and a spool that holds segments goes on with the size they were
+ * written with, whatever size it is opened with.  Records up to
+ * the ack position have been delivered; segments wholly before it are deleted, and {@link #read} replays from it
+ * after a restart.  On open, the last segment is scanned and a torn record at its end is cut off.  When
+ * <code>maxSegments</code> hold unacknowledged records, {@link #append} waits for an {@link #ack}, which pushes back
+ * on the parse stage.
+ *
+ * Writes to a mapped segment survive the process dying as soon as they are made; the {@link FsyncPolicy} decides
+ * when they are forced to the disk so they survive the machine too.  Thread safe.
+ *
+ * A spool holds an exclusive lock on a <code>lock</code> file in its directory until it is closed, so two spools,
+ * in this process or another, never map the same segments.  {@link #openFreeSlot} gives concurrent crawlers a
+ * spool each in numbered subdirectories of one directory.
+ *
+ * @author kriskrishna
+ */
+public class DiskSpool implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(DiskSpool.class);
+  static final int HEADER_BYTES = 8;
+  private static final int END_OF_SEGMENT = -1;
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String ACK_FILE = "ack";
+  private static final String SEGMENT_BYTES_FILE = "segment-bytes";
+  private static final String LOCK_FILE = "lock";
+
+  /**
+   * When appended records are forced to the disk.
+   */
+  public enum FsyncPolicy {
+    /** After every record; the slowest and safest. */
+    EVERY_RECORD,
+    /** On {@link #flush()}, once per crawl. */
+    ON_FLUSH,
+    /** Never; the operating system writes the pages back when it likes. */
+    NEVER
+  }
+
+  /**
+   * Receives the records that are read.  The buffer is only valid during the call.
+   */
+  public interface RecordHandler {
+    void onRecord(ByteBuffer buffer, int offset, int length);
+  }
+
+  private final Path directory;
+  private int segmentBytes;
+  private final int maxSegments;
+  private final FsyncPolicy fsyncPolicy;
+  private final FileLock lock;
+  private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+  private final CRC32 crc = new CRC32();
+  private long writePosition;
+  private long ackPosition;
+  private long corruptRecords;
+  private boolean closed;
+
+  /**
+   * Open the spool in a directory, creating it if needed, and recover the records that are not acknowledged.
+   * @param directory that holds the segments and the ack position.
+   * @param segmentBytes is the size of a segment file; a record must fit in one.  Ignored when the directory holds
+   * segments written with another size.
+   * @param maxSegments is the most segments that hold records not yet acknowledged.
+   * @param fsyncPolicy decides when records are forced to the disk.
+   * @throws LogCrawlerException if the spool can not be opened or another spool has the directory.
+   */
+  public DiskSpool(Path directory, int segmentBytes, int maxSegments, FsyncPolicy fsyncPolicy) {
+    this(directory, segmentBytes, maxSegments, fsyncPolicy, lockOrFail(directory));
+  }
+
+  private DiskSpool(Path directory, int segmentBytes, int maxSegments, FsyncPolicy fsyncPolicy, FileLock lock) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = Math.max(2, maxSegments);
+    this.fsyncPolicy = fsyncPolicy;
+    this.lock = lock;
+    try {
+      open();
+    }
+    catch (IOException | RuntimeException e) {
+      unlock(lock);
+      throw new LogCrawlerException("Error opening the spool in " + directory + ".", e);
+    }
+  }
+
+  /**
+   * Open the spool of the first numbered subdirectory, <code>0</code>, <code>1</code> and so on, that no other
+   * spool has, so every concurrent crawler gets its own.  A subdirectory holding records that were never
+   * acknowledged replays them when a crawler next opens it.
+   * @param directory that holds the subdirectories.
+   * @return the spool, see {@link #DiskSpool(Path, int, int, FsyncPolicy)}.
+   * @throws LogCrawlerException if the spool can not be opened.
+   */
+  public static DiskSpool openFreeSlot(Path directory, int segmentBytes, int maxSegments, FsyncPolicy fsyncPolicy) {
+    for (int slot = 0; ; slot++) {
+      Path slotDirectory = directory.resolve(Integer.toString(slot));
+      FileLock lock = tryLock(slotDirectory);
+      if (lock != null) {
+        return new DiskSpool(slotDirectory, segmentBytes, maxSegments, fsyncPolicy, lock);
+      }
+    }
+  }
+
+  private static FileLock lockOrFail(Path directory) {
+    FileLock lock = tryLock(directory);
+    if (lock == null) {
+      throw new LogCrawlerException("Spool=" + directory + " is in use by another spool.");
+    }
+    return lock;
+  }
+
+  /**
+   * @return the lock of the directory, created if needed, or null when another spool holds it.
+   */
+  private static FileLock tryLock(Path directory) {
+    try {
+      Files.createDirectories(directory);
+      FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = null;
+      try {
+        lock = channel.tryLock();
+      }
+      catch (OverlappingFileLockException e) {
+        // Held by a spool of this process.
+      }
+      if (lock == null) {
+        channel.close();
+      }
+      return lock;
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error locking the spool in " + directory + ".", e);
+    }
+  }
+
+  private static void unlock(FileLock lock) {
+    try {
+      // Closing the channel releases the lock.
+      lock.channel().close();
+    }
+    catch (IOException e) {
+      LOG.warn("Error occurred releasing the lock of a spool.  Will ignore.", e);
+    }
+  }
+
+  private void open() throws IOException {
+    ackPosition = readAckPosition();
+    openSegmentBytes();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long index = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        if ((index + 1) * segmentBytes <= ackPosition) {
+          Files.delete(file);
+        }
+        else {
+          segments.put(index, map(file));
+        }
+      }
+    }
+
+    if (segments.isEmpty()) {
+      // Start afresh at the segment after the acknowledged records.
+      long index = (ackPosition + segmentBytes - 1) / segmentBytes;
+      ackPosition = index * segmentBytes;
+      writePosition = ackPosition;
+      segments.put(index, map(segmentPath(index)));
+      return;
+    }
+    ackPosition = Math.max(ackPosition, segments.firstKey() * segmentBytes);
+
+    // Only the last segment was being written; find its end and cut off a torn record.
+    long last = segments.lastKey();
+    long position = Math.max(ackPosition, last * segmentBytes);
+    long end = (last + 1) * segmentBytes;
+    long next;
+    while (position < end && (next = next(position, end, null)) > position) {
+      position = next;
+    }
+    writePosition = position;
+    if (position < end) {
+      MappedByteBuffer segment = segments.get(last);
+      for (int i = offset(position); i < segmentBytes; i++) {
+        if (segment.get(i) != 0) {
+          segment.put(i, (byte) 0); // Only touch written pages, so a sparse segment stays sparse.
+        }
+      }
+    }
+    LOG.info("Opened spool={} with {} bytes to replay.", directory, writePosition - ackPosition);
+  }
+
+  /**
+   * Append a record, waiting while the spool is full.
+   * @param bytes that hold the record.
+   * @param offset of the record in the array.
+   * @param length of the record.
+   * @return the position after the record, to acknowledge once it is delivered.
+   * @throws LogCrawlerException if the record does not fit in a segment or the spool can not be written.
+   */
+  public synchronized long append(byte[] bytes, int offset, int length) {
+    if (closed) {
+      throw new LogCrawlerException("Spool=" + directory + " is closed.");
+    }
+    if (length == 0) {
+      return writePosition;
+    }
+    if (length + HEADER_BYTES > segmentBytes) {
+      throw new LogCrawlerException("Record of " + length + " bytes does not fit in a spool segment of " + segmentBytes + " bytes.");
+    }
+    if (offset(writePosition) + HEADER_BYTES + length > segmentBytes || !segments.containsKey(segmentIndex(writePosition))) {
+      nextSegment();
+    }
+    MappedByteBuffer segment = segments.get(segmentIndex(writePosition));
+    int at = offset(writePosition);
+    crc.reset();
+    crc.update(bytes, offset, length);
+    segment.putInt(at + 4, (int) crc.getValue());
+    ByteBuffer record = segment.duplicate();
+    record.position(at + HEADER_BYTES);
+    record.put(bytes, offset, length);
+    // The length goes last, so a record is only seen once it is whole.
+    segment.putInt(at, length);
+    writePosition += HEADER_BYTES + length;
+    if (fsyncPolicy == FsyncPolicy.EVERY_RECORD) {
+      segment.force();
+    }
+    notifyAll();
+    return writePosition;
+  }
+
+  private void nextSegment() {
+    long index = segmentIndex(writePosition);
+    MappedByteBuffer current = segments.get(index);
+    if (current != null && offset(writePosition) != 0) {
+      if (offset(writePosition) + 4 <= segmentBytes) {
+        current.putInt(offset(writePosition), END_OF_SEGMENT);
+      }
+      if (fsyncPolicy != FsyncPolicy.NEVER) {
+        current.force();
+      }
+      index++;
+    }
+    while (index - segmentIndex(ackPosition) >= maxSegments && !closed) {
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LogCrawlerException("Interrupted waiting for room in spool=" + directory + ".", e);
+      }
+    }
+    if (closed) {
+      throw new LogCrawlerException("Spool=" + directory + " is closed.");
+    }
+    try {
+      segments.put(index, map(segmentPath(index)));
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error creating a segment in spool=" + directory + ".", e);
+    }
+    writePosition = index * segmentBytes;
+  }
+
+  /**
+   * Force the appended records to the disk, unless the policy is {@link FsyncPolicy#NEVER}.
+   */
+  public synchronized void flush() {
+    if (fsyncPolicy != FsyncPolicy.NEVER) {
+      for (MappedByteBuffer segment : segments.tailMap(segmentIndex(Math.max(ackPosition, writePosition - 1))).values()) {
+        segment.force();
+      }
+    }
+  }
+
+  /**
+   * Wait until there are records after a position.
+   * @return true if there are, false if the time ran out or the spool was closed.
+   */
+  public synchronized boolean awaitRecords(long position, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while (writePosition <= position && !closed && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return writePosition > position;
+  }
+
+  /**
+   * Read records from a position.  A record that fails its CRC is counted and the rest of its segment skipped.
+   * @param position to read from, the ack position or one returned before.
+   * @param maxRecords is the most records to read.
+   * @param handler that receives the records.
+   * @return the position after the last record read.
+   */
+  public synchronized long read(long position, int maxRecords, RecordHandler handler) {
+    position = Math.max(position, ackPosition);
+    int records = 0;
+    while (position < writePosition && records < maxRecords) {
+      long segmentEnd = (segmentIndex(position) + 1) * segmentBytes;
+      long next = next(position, Math.min(segmentEnd, writePosition), handler);
+      if (next > position) {
+        records++;
+        position = next;
+      }
+      else {
+        if (!isEndOfSegment(position, segmentEnd)) {
+          corruptRecords++;
+          LOG.warn("Skipped the rest of a spool segment at a corrupt record at position={} in spool={}.", position, directory);
+        }
+        position = segmentEnd;
+      }
+    }
+    return Math.min(position, writePosition);
+  }
+
+  /**
+   * Validate the record at a position and hand it on.
+   * @return the position after the record, or the same position if there is no whole record there.
+   */
+  private long next(long position, long limit, RecordHandler handler) {
+    MappedByteBuffer segment = segments.get(segmentIndex(position));
+    int at = offset(position);
+    if (segment == null || position + HEADER_BYTES > limit) {
+      return position;
+    }
+    int length = segment.getInt(at);
+    if (length <= 0 || position + HEADER_BYTES + length > limit) {
+      return position;
+    }
+    ByteBuffer record = segment.duplicate();
+    record.limit(at + HEADER_BYTES + length).position(at + HEADER_BYTES);
+    crc.reset();
+    crc.update(record);
+    if ((int) crc.getValue() != segment.getInt(at + 4)) {
+      return position;
+    }
+    if (handler != null) {
+      handler.onRecord(segment, at + HEADER_BYTES, length);
+    }
+    return position + HEADER_BYTES + length;
+  }
+
+  private boolean isEndOfSegment(long position, long segmentEnd) {
+    MappedByteBuffer segment = segments.get(segmentIndex(position));
+    return position + 4 > segmentEnd || segment == null || segment.getInt(offset(position)) == END_OF_SEGMENT;
+  }
+
+  /**
+   * Acknowledge that the records before a position are delivered.  The position is kept on disk and segments
+   * that only hold delivered records are deleted.
+   * @throws LogCrawlerException if the ack position can not be written.
+   */
+  public synchronized void ack(long position) {
+    if (position <= ackPosition) {
+      return;
+    }
+    ackPosition = Math.min(position, writePosition);
+    long segmentEnd = (segmentIndex(ackPosition) + 1) * segmentBytes;
+    if (segmentEnd <= writePosition && isEndOfSegment(ackPosition, segmentEnd)) {
+      // Nothing follows in a sealed segment, so all of it is delivered.
+      ackPosition = segmentEnd;
+    }
+    writeAckPosition();
+    long current = segmentIndex(writePosition);
+    for (Long index : new ArrayList<>(segments.headMap(segmentIndex(ackPosition)).keySet())) {
+      if (index < current) {
+        segments.remove(index);
+        try {
+          Files.deleteIfExists(segmentPath(index));
+        }
+        catch (IOException e) {
+          LOG.warn("Error deleting a delivered segment of spool={}.", directory, e);
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  public synchronized long getAckPosition() {
+    return ackPosition;
+  }
+
+  public synchronized long getWritePosition() {
+    return writePosition;
+  }
+
+  /**
+   * @return the records that failed their CRC and were skipped.
+   */
+  public synchronized long getCorruptRecords() {
+    return corruptRecords;
+  }
+
+  /**
+   * Force the records to the disk, per the policy, wake the threads that wait on the spool and release the
+   * directory.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    unlock(lock);
+    notifyAll();
+  }
+
+  /**
+   * Go on with the segment size of the segments in the directory, or keep the size of a new spool.
+   */
+  private void openSegmentBytes() throws IOException {
+    Path file = directory.resolve(SEGMENT_BYTES_FILE);
+    byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+    int written = bytes.length == 4 ? ByteBuffer.wrap(bytes).getInt() : 0;
+    if (written == segmentBytes) {
+      return;
+    }
+    boolean hasSegments;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      hasSegments = files.iterator().hasNext();
+    }
+    if (written > 0 && hasSegments) {
+      LOG.warn("Spool={} has segments of {} bytes, will use them instead of {} bytes.", directory, written, segmentBytes);
+      segmentBytes = written;
+      return;
+    }
+    replaceFile(SEGMENT_BYTES_FILE, ByteBuffer.allocate(4).putInt(0, segmentBytes), "segment size");
+  }
+
+  private long readAckPosition() throws IOException {
+    Path file = directory.resolve(ACK_FILE);
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    byte[] bytes = Files.readAllBytes(file);
+    return bytes.length == 8 ? ByteBuffer.wrap(bytes).getLong() : 0;
+  }
+
+  private void writeAckPosition() {
+    replaceFile(ACK_FILE, ByteBuffer.allocate(8).putLong(0, ackPosition), "ack position");
+  }
+
+  /**
+   * Write a file of the directory through a temporary file, so a crash leaves the old content or the new.
+   */
+  private void replaceFile(String name, ByteBuffer buffer, String what) {
+    Path file = directory.resolve(name);
+    Path temp = directory.resolve(name + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (fsyncPolicy != FsyncPolicy.NEVER) {
+        channel.force(false);
+      }
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error writing the " + what + " of spool=" + directory + ".", e);
+    }
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error writing the " + what + " of spool=" + directory + ".", e);
+    }
+  }
+
+  private MappedByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+  }
+
+  private Path segmentPath(long index) {
+    return directory.resolve(String.format("%019d%s", index, SEGMENT_SUFFIX));
+  }
+
+  private long segmentIndex(long position) {
+    return position / segmentBytes;
+  }
+
+  private int offset(long position) {
+    return (int) (position % segmentBytes);
+  }
+}
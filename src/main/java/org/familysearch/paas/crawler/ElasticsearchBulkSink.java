@@ -0,0 +1,327 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.familysearch.paas.utils.HttpRequestHelper;
+import org.familysearch.paas.utils.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Ships JSON documents to Elasticsearch with the _bulk API instead of one POST per document.
+ *
+ * Documents are buffered as newline delimited index actions and sent when the batch reaches
+ * <code>maxDocuments</code> documents or <code>maxBytes</code> bytes, whichever comes first, and on {@link #flush()}.
+ * Documents that Elasticsearch rejects individually are counted as failed; a _bulk request that fails as a whole
+ * throws a {@link LogCrawlerException}.  Documents rejected with 429 or 503, because the cluster was busy, are sent
+ * again in a _bulk request of their own, as the retry policy allows; the documents that were indexed are not sent
+ * twice.  Not thread safe, use one sink per crawl.
+ *
+ * @author kriskrishna
+ */
+public class ElasticsearchBulkSink implements LogSink {
+  private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchBulkSink.class);
+  static final String BULK_CONTENT_TYPE = "application/x-ndjson";
+  private static final String BULK_PATH = "/_bulk";
+  private static final String ACTION = "{\"index\":{\"_index\":\"%s\",\"_type\":\"%s\"}}\n";
+  private static final byte NEWLINE = '\n';
+
+  private final HttpRequestHelper httpRequestHelper;
+  private final String bulkUrl;
+  private final byte[] action;
+  private final int maxDocuments;
+  private final int maxBytes;
+  private final AwsRequestSigner signer;
+  private final RetryPolicy retryPolicy;
+  private final ByteArrayBuilder batch;
+  private int[] documentEnds = new int[16];
+  private int batchDocuments;
+  private long indexedDocuments;
+  private long failedDocuments;
+  private long bulkRequests;
+
+  /**
+   * Construct the sink from the Elasticsearch settings of the configuration.  Requests are signed when a region
+   * is configured.
+   * @param httpRequestHelper that sends the _bulk requests.
+   * @param configurationHelper that gives the endpoint, index and batch limits.
+   */
+  public ElasticsearchBulkSink(HttpRequestHelper httpRequestHelper, ConfigurationHelper configurationHelper) {
+    this(httpRequestHelper, configurationHelper.elasticsearchEndpoint(), configurationHelper.elasticsearchIndex(),
+        configurationHelper.elasticsearchDocumentType(), configurationHelper.elasticsearchBulkMaxDocuments(),
+        configurationHelper.elasticsearchBulkMaxBytes(), createSigner(configurationHelper.elasticsearchRegion()),
+        RetryPolicy.standard());
+  }
+
+  /**
+   * Construct the sink.
+   * @param httpRequestHelper that sends the _bulk requests.
+   * @param endpoint of the Elasticsearch cluster, without a trailing slash.
+   * @param index that documents are added to.
+   * @param documentType of the documents.
+   * @param maxDocuments in one _bulk request.
+   * @param maxBytes in one _bulk request.  A single document larger than this is sent on its own.
+   * @param signer that signs the requests, or null to send them unsigned.
+   */
+  public ElasticsearchBulkSink(HttpRequestHelper httpRequestHelper, String endpoint, String index, String documentType,
+                               int maxDocuments, int maxBytes, AwsRequestSigner signer) {
+    this(httpRequestHelper, endpoint, index, documentType, maxDocuments, maxBytes, signer, RetryPolicy.none());
+  }
+
+  /**
+   * Construct the sink.
+   * @param httpRequestHelper that sends the _bulk requests.
+   * @param endpoint of the Elasticsearch cluster, without a trailing slash.
+   * @param index that documents are added to.
+   * @param documentType of the documents.
+   * @param maxDocuments in one _bulk request.
+   * @param maxBytes in one _bulk request.  A single document larger than this is sent on its own.
+   * @param signer that signs the requests, or null to send them unsigned.
+   * @param retryPolicy that decides when the documents rejected with 429 or 503 are sent again.
+   */
+  public ElasticsearchBulkSink(HttpRequestHelper httpRequestHelper, String endpoint, String index, String documentType,
+                               int maxDocuments, int maxBytes, AwsRequestSigner signer, RetryPolicy retryPolicy) {
+    if (endpoint == null) {
+      throw new LogCrawlerException("No Elasticsearch endpoint is configured!");
+    }
+    this.httpRequestHelper = httpRequestHelper;
+    this.bulkUrl = endpoint + BULK_PATH;
+    this.action = String.format(ACTION, index, documentType).getBytes(StandardCharsets.UTF_8);
+    this.maxDocuments = maxDocuments;
+    this.maxBytes = maxBytes;
+    this.signer = signer;
+    this.retryPolicy = retryPolicy;
+    this.batch = new ByteArrayBuilder(Math.min(maxBytes, 1024 * 1024));
+  }
+
+  /**
+   * Add a document to the current batch, sending the batch first if the document would not fit.
+   * @param documentJson is the document, on a single line.
+   */
+  public void add(String documentJson) {
+    add(documentJson.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Add a UTF-8 encoded document to the current batch, sending the batch first if the document would not fit.
+   * @param documentJson is the document, on a single line.
+   */
+  public void add(byte[] documentJson) {
+    add(documentJson, 0, documentJson.length);
+  }
+
+  /**
+   * Add a UTF-8 encoded document to the current batch, sending the batch first if the document would not fit.
+   * The bytes are copied, so the caller may reuse the array.
+   * @param documentJson holds the document, on a single line.
+   * @param offset of the document in the array.
+   * @param length of the document.
+   */
+  @Override
+  public void add(byte[] documentJson, int offset, int length) {
+    int size = action.length + length + 1;
+    if (batchDocuments > 0 && batch.length() + size > maxBytes) {
+      flush();
+    }
+    batch.append(action, 0, action.length);
+    batch.append(documentJson, offset, length);
+    batch.append(NEWLINE);
+    if (batchDocuments == documentEnds.length) {
+      documentEnds = Arrays.copyOf(documentEnds, batchDocuments * 2);
+    }
+    documentEnds[batchDocuments++] = batch.length();
+    if (batchDocuments >= maxDocuments || batch.length() >= maxBytes) {
+      flush();
+    }
+  }
+
+  /**
+   * Send the current batch, if there is one, and send again the documents that were rejected because the cluster
+   * was busy.
+   */
+  @Override
+  public void flush() {
+    if (batchDocuments == 0) {
+      return;
+    }
+    byte[] content = batch.toByteArray();
+    int[] ends = Arrays.copyOf(documentEnds, batchDocuments);
+    batch.reset();
+    batchDocuments = 0;
+
+    for (int attempt = 1; ; attempt++) {
+      int documents = ends.length;
+      int[] statuses = itemStatuses(send(content, documents));
+      if (statuses == null) {
+        indexedDocuments += documents;
+        if (attempt == 1) {
+          retryPolicy.onSuccess();
+        }
+        return;
+      }
+
+      int rejected = 0;
+      int retryable = 0;
+      boolean throttled = false;
+      for (int i = 0; i < documents; i++) {
+        int status = i < statuses.length ? statuses[i] : 0;
+        if (isSuccessful(status)) {
+          indexedDocuments++;
+        }
+        else if (RetryPolicy.isRetryableStatus(status, false)) {
+          retryable++;
+          throttled |= RetryPolicy.isThrottlingStatus(status);
+        }
+        else {
+          rejected++;
+        }
+      }
+      failedDocuments += rejected;
+      if (rejected > 0) {
+        LOG.warn("Elasticsearch rejected {} of {} documents in a _bulk request to url={}.", rejected, documents, bulkUrl);
+      }
+      if (retryable == 0) {
+        return;
+      }
+      if (!retryPolicy.retry(attempt, throttled)) {
+        failedDocuments += retryable;
+        LOG.warn("Elasticsearch was too busy for {} of {} documents in a _bulk request to url={}, attempt={}.",
+            retryable, documents, bulkUrl, attempt);
+        return;
+      }
+
+      // Only the documents that were not processed go again, each with its action line.
+      ByteArrayBuilder retryContent = new ByteArrayBuilder(content.length);
+      int[] retryEnds = new int[retryable];
+      int retried = 0;
+      for (int i = 0; i < documents; i++) {
+        int status = i < statuses.length ? statuses[i] : 0;
+        if (RetryPolicy.isRetryableStatus(status, false)) {
+          int start = i == 0 ? 0 : ends[i - 1];
+          retryContent.append(content, start, ends[i] - start);
+          retryEnds[retried++] = retryContent.length();
+        }
+      }
+      content = retryContent.toByteArray();
+      ends = retryEnds;
+    }
+  }
+
+  private String send(byte[] content, int documents) {
+    Map<String, String> headers = signer == null ? null : signer.signPost(bulkUrl, BULK_CONTENT_TYPE, content);
+    try {
+      String response = httpRequestHelper.executeRawPostRequest(bulkUrl, BULK_CONTENT_TYPE, content, headers);
+      bulkRequests++;
+      return response;
+    }
+    catch (IOException e) {
+      failedDocuments += documents;
+      throw new LogCrawlerException("Error occurred sending " + documents + " documents to url=" + bulkUrl, e);
+    }
+  }
+
+  /**
+   * Send the current batch.
+   */
+  @Override
+  public void close() {
+    flush();
+  }
+
+  /**
+   * @return the documents Elasticsearch accepted.
+   */
+  @Override
+  public long getIndexedDocuments() {
+    return indexedDocuments;
+  }
+
+  /**
+   * @return the documents that were rejected or could not be sent.
+   */
+  @Override
+  public long getFailedDocuments() {
+    return failedDocuments;
+  }
+
+  /**
+   * @return the _bulk requests that were sent.
+   */
+  public long getBulkRequests() {
+    return bulkRequests;
+  }
+
+  /**
+   * Read the status of every item of a _bulk response, in the order of the documents, without building a tree of a
+   * response that has one item per document.
+   * @return the statuses, or null when the response says there were no errors.
+   */
+  static int[] itemStatuses(String response) {
+    int[] statuses = new int[16];
+    int items = 0;
+    try (JsonReader reader = new JsonReader(new StringReader(response))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("errors".equals(name) && reader.peek() == JsonToken.BOOLEAN) {
+          if (!reader.nextBoolean()) {
+            return null;
+          }
+        }
+        else if ("items".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            if (items == statuses.length) {
+              statuses = Arrays.copyOf(statuses, items * 2);
+            }
+            statuses[items++] = itemStatus(reader);
+          }
+          reader.endArray();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      throw new LogCrawlerException("Elasticsearch _bulk response is not valid!", e);
+    }
+    return Arrays.copyOf(statuses, items);
+  }
+
+  private static int itemStatus(JsonReader reader) throws IOException {
+    int status = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      reader.nextName(); // the action, index in our case.
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("status".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+          status = reader.nextInt();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    return status;
+  }
+
+  private static boolean isSuccessful(int status) {
+    return status >= 200 && status < 300;
+  }
+
+  private static AwsRequestSigner createSigner(String region) {
+    return region == null ? null : new AwsRequestSigner(new DefaultAWSCredentialsProviderChain(), "es", region);
+  }
+}
@@ -0,0 +1,338 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+import com.amazonaws.services.kinesisfirehose.model.ServiceUnavailableException;
+import org.familysearch.paas.utils.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Ships JSON documents to a Kinesis Firehose delivery stream with PutRecordBatch instead of one PutRecord per
+ * document.
+ *
+ * Log lines are tiny next to the 1000 KiB a record holds and Firehose bills per record in 5 KB increments, so
+ * documents are aggregated: each record holds as many newline terminated documents, in the order they were added,
+ * as fit in <code>maxRecordBytes</code>.  A record is also closed and sent once its first document is
+ * <code>maxRecordMillis</code> old, checked as documents are added.  Records are batched up to the PutRecordBatch
+ * limits of 500 records and 4 MiB, and full batches are sent on background threads, up to
+ * <code>maxBatchesInFlight</code> at a time, while the crawler keeps parsing.  Records that a response reports as
+ * failed are resubmitted on their own after a backoff, as the retry policy allows, and only then are their
+ * documents counted as failed; a call that fails as a whole is retried the same way when the failure is transient.
+ * The retry budget of the policy is shared by every batch, so a throttled stream is not hit harder by retries.
+ * Firehose does not order records of different calls, so only the order of the documents within a record is kept.
+ * {@link #flush()} waits for every batch.  {@link #add(byte[], int, int)} must be called from one thread.
+ *
+ * @author kriskrishna
+ */
+public class FirehoseBatchSink implements LogSink {
+  private static final Logger LOG = LoggerFactory.getLogger(FirehoseBatchSink.class);
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  static final int MAX_BATCH_RECORDS = 500;
+  static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+  static final int MAX_RECORD_BYTES = 1000 * 1024;
+  static final String THROTTLED_ERROR_CODE = "ServiceUnavailableException";
+  private static final byte NEWLINE = '\n';
+
+  private final AmazonKinesisFirehose firehoseClient;
+  private final String deliveryStreamName;
+  private final ExecutorService executor;
+  private final int maxBatchesInFlight;
+  private final Semaphore batchesInFlight;
+  private final RetryPolicy retryPolicy;
+  private final int maxRecordBytes;
+  private final long maxRecordNanos;
+  private final LongSupplier nanoClock;
+  private final AtomicLong deliveredDocuments = new AtomicLong();
+  private final AtomicLong failedDocuments = new AtomicLong();
+  private final AtomicLong putRecordBatchCalls = new AtomicLong();
+  private final AtomicReference<AmazonClientException> sendError = new AtomicReference<>();
+  private final ByteArrayBuilder record = new ByteArrayBuilder(64 * 1024);
+  private int recordDocuments;
+  private long recordStartNanos;
+  private List<AggregatedRecord> batch = new ArrayList<>(MAX_BATCH_RECORDS);
+  private int batchBytes;
+
+  /**
+   * Construct the sink with threads of its own.
+   * @param firehoseClient that sends the batches.
+   * @param deliveryStreamName of the delivery stream.
+   * @param maxBatchesInFlight is the batches that are sent at once.
+   * @param maxRecordBytes is the most bytes of documents aggregated into one record, at most 1000 KiB.
+   * @param maxRecordMillis is the longest a document waits in a record before the record is sent.
+   */
+  public FirehoseBatchSink(AmazonKinesisFirehose firehoseClient, String deliveryStreamName, int maxBatchesInFlight,
+                           int maxRecordBytes, long maxRecordMillis) {
+    this(firehoseClient, deliveryStreamName, Executors.newFixedThreadPool(maxBatchesInFlight, runnable -> {
+      Thread thread = new Thread(runnable, "firehose-put-" + THREAD_NUMBER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }), maxBatchesInFlight, RetryPolicy.standard(), maxRecordBytes, maxRecordMillis, System::nanoTime);
+  }
+
+  FirehoseBatchSink(AmazonKinesisFirehose firehoseClient, String deliveryStreamName, ExecutorService executor,
+                    int maxBatchesInFlight, RetryPolicy retryPolicy, int maxRecordBytes, long maxRecordMillis,
+                    LongSupplier nanoClock) {
+    if (deliveryStreamName == null) {
+      throw new LogCrawlerException("No Firehose delivery stream is configured!");
+    }
+    this.firehoseClient = firehoseClient;
+    this.deliveryStreamName = deliveryStreamName;
+    this.executor = executor;
+    this.maxBatchesInFlight = maxBatchesInFlight;
+    this.batchesInFlight = new Semaphore(maxBatchesInFlight);
+    this.retryPolicy = retryPolicy;
+    this.maxRecordBytes = Math.min(maxRecordBytes, MAX_RECORD_BYTES);
+    this.maxRecordNanos = TimeUnit.MILLISECONDS.toNanos(maxRecordMillis);
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Add a UTF-8 encoded document to the current record, closing the record first if the document would not fit
+   * or the record is too old.  A document too large for a Firehose record is counted as failed.
+   */
+  @Override
+  public void add(byte[] documentJson, int offset, int length) {
+    int size = length + 1;
+    if (size > MAX_RECORD_BYTES) {
+      LOG.warn("Dropped a document of {} bytes, more than a Firehose record holds, for stream={}.", length, deliveryStreamName);
+      failedDocuments.incrementAndGet();
+      return;
+    }
+    if (recordDocuments > 0 && nanoClock.getAsLong() - recordStartNanos >= maxRecordNanos) {
+      closeRecord();
+      sendBatch();
+    }
+    else if (recordDocuments > 0 && record.length() + size > maxRecordBytes) {
+      closeRecord();
+    }
+    if (recordDocuments == 0) {
+      recordStartNanos = nanoClock.getAsLong();
+    }
+    record.append(documentJson, offset, length);
+    record.append(NEWLINE);
+    recordDocuments++;
+    if (record.length() >= maxRecordBytes) {
+      closeRecord();
+    }
+  }
+
+  /**
+   * Send the current batch and wait for every batch that is in flight.
+   * @throws LogCrawlerException if a PutRecordBatch call kept failing; its records are counted as failed.
+   */
+  @Override
+  public void flush() {
+    closeRecord();
+    sendBatch();
+    acquire(maxBatchesInFlight);
+    batchesInFlight.release(maxBatchesInFlight);
+    AmazonClientException error = sendError.getAndSet(null);
+    if (error != null) {
+      throw new LogCrawlerException("Error occurred sending records to Firehose stream=" + deliveryStreamName, error);
+    }
+  }
+
+  /**
+   * Send everything and stop the threads.
+   */
+  @Override
+  public void close() {
+    try {
+      flush();
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @return the documents Firehose accepted.
+   */
+  @Override
+  public long getIndexedDocuments() {
+    return deliveredDocuments.get();
+  }
+
+  /**
+   * @return the documents that were rejected on every attempt or could not be sent.
+   */
+  @Override
+  public long getFailedDocuments() {
+    return failedDocuments.get();
+  }
+
+  /**
+   * @return the PutRecordBatch calls that were made, including resubmissions.
+   */
+  public long getPutRecordBatchCalls() {
+    return putRecordBatchCalls.get();
+  }
+
+  /**
+   * Move the current record to the batch, sending the batch first if the record would not fit.
+   */
+  private void closeRecord() {
+    if (recordDocuments == 0) {
+      return;
+    }
+    if (batchBytes + record.length() > MAX_BATCH_BYTES) {
+      sendBatch();
+    }
+    batch.add(new AggregatedRecord(new Record().withData(ByteBuffer.wrap(record.toByteArray())), recordDocuments));
+    batchBytes += record.length();
+    record.reset();
+    recordDocuments = 0;
+    if (batch.size() == MAX_BATCH_RECORDS) {
+      sendBatch();
+    }
+  }
+
+  private void sendBatch() {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<AggregatedRecord> records = batch;
+    batch = new ArrayList<>(MAX_BATCH_RECORDS);
+    batchBytes = 0;
+    acquire(1);
+    try {
+      executor.execute(() -> {
+        try {
+          put(records);
+        }
+        finally {
+          batchesInFlight.release();
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      batchesInFlight.release();
+      failedDocuments.addAndGet(documents(records));
+      throw new LogCrawlerException("Error occurred queueing records for Firehose stream=" + deliveryStreamName, e);
+    }
+  }
+
+  /**
+   * Put the records, then put again only the ones that failed.
+   */
+  private void put(List<AggregatedRecord> records) {
+    for (int attempt = 1; ; attempt++) {
+      List<Record> request = new ArrayList<>(records.size());
+      for (AggregatedRecord aggregated : records) {
+        request.add(aggregated.record);
+      }
+      PutRecordBatchResult result;
+      try {
+        putRecordBatchCalls.incrementAndGet();
+        result = firehoseClient.putRecordBatch(new PutRecordBatchRequest()
+            .withDeliveryStreamName(deliveryStreamName).withRecords(request));
+      }
+      catch (AmazonClientException e) {
+        if (isTransient(e) && retryPolicy.retry(attempt, e instanceof ServiceUnavailableException)) {
+          continue;
+        }
+        failedDocuments.addAndGet(documents(records));
+        sendError.compareAndSet(null, e);
+        return;
+      }
+
+      Integer failedPutCount = result.getFailedPutCount();
+      if (failedPutCount == null || failedPutCount == 0) {
+        deliveredDocuments.addAndGet(documents(records));
+        if (attempt == 1) {
+          retryPolicy.onSuccess();
+        }
+        return;
+      }
+      List<PutRecordBatchResponseEntry> responses = result.getRequestResponses();
+      List<AggregatedRecord> failed = failedRecords(records, responses);
+      deliveredDocuments.addAndGet(documents(records) - documents(failed));
+      if (!retryPolicy.retry(attempt, isThrottled(responses))) {
+        failedDocuments.addAndGet(documents(failed));
+        LOG.warn("Firehose rejected {} records on {} attempts for stream={}.", failed.size(), attempt, deliveryStreamName);
+        return;
+      }
+      records = failed;
+    }
+  }
+
+  /**
+   * A call is worth repeating when it did not reach Firehose or Firehose failed or throttled it; a request Firehose
+   * found invalid fails the same way every time.
+   */
+  private static boolean isTransient(AmazonClientException e) {
+    if (e instanceof AmazonServiceException) {
+      return e instanceof ServiceUnavailableException || ((AmazonServiceException) e).getStatusCode() >= 500;
+    }
+    return e.isRetryable();
+  }
+
+  private static boolean isThrottled(List<PutRecordBatchResponseEntry> responses) {
+    for (PutRecordBatchResponseEntry response : responses) {
+      if (THROTTLED_ERROR_CODE.equals(response.getErrorCode())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The response entries line up with the request records; the failed ones have an error code.
+   */
+  private static List<AggregatedRecord> failedRecords(List<AggregatedRecord> records,
+                                                      List<PutRecordBatchResponseEntry> responses) {
+    List<AggregatedRecord> failed = new ArrayList<>();
+    for (int i = 0; i < records.size(); i++) {
+      if (i >= responses.size() || responses.get(i).getErrorCode() != null) {
+        failed.add(records.get(i));
+      }
+    }
+    return failed;
+  }
+
+  private static long documents(List<AggregatedRecord> records) {
+    long documents = 0;
+    for (AggregatedRecord aggregated : records) {
+      documents += aggregated.documents;
+    }
+    return documents;
+  }
+
+  private void acquire(int permits) {
+    try {
+      batchesInFlight.acquire(permits);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LogCrawlerException("Interrupted waiting for Firehose batches to be sent.", e);
+    }
+  }
+
+  private static final class AggregatedRecord {
+    private final Record record;
+    private final int documents;
+
+    private AggregatedRecord(Record record, int documents) {
+      this.record = record;
+      this.documents = documents;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package org.familysearch.paas.crawler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the lines found by a splitter as slices of the buffer they were found in, without a copy.
+ *
+ * @author kriskrishna
+ */
+public interface LineHandler {
+  /**
+   * Handle one line.  The slice is only valid during the call.
+   * @param buffer that holds the line.  Its position and limit are not meaningful, use the offsets.
+   * @param offset of the first byte of the line.
+   * @param length of the line, without the newline.  A preceding carriage return is kept.
+   */
+  void onLine(ByteBuffer buffer, int offset, int length);
+}
@@ -0,0 +1,266 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+import org.familysearch.paas.utils.AwsClientRegistry;
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static net.logstash.logback.marker.Markers.append;
+
+/**
+ * Streams an access log object out of S3, parses each line and ships the records to a {@link LogSink}, Elasticsearch
+ * _bulk batches or Firehose PutRecordBatch calls.  This is the Java replacement of s3LogsToES in KinesisFireHoseElasticSearchLogEventService.js, which
+ * made one request per line and counted lines in globals to decide when it was done.
+ *
+ * The object is never held in memory as a whole; only the current read buffer and the current batch are.
+ * Local files are memory mapped and parsed in place, see {@link #crawlFile(java.nio.file.Path)}.
+ * Not thread safe, use one crawler per thread.
+ *
+ * @author kriskrishna
+ */
+public class LogCrawler {
+  private static final Logger LOG = LoggerFactory.getLogger(LogCrawler.class);
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  private static final byte CARRIAGE_RETURN = '\r';
+
+  private final AmazonS3Client s3Client;
+  private final RangedS3Downloader downloader;
+  private final LogDecompressor decompressor;
+  private final LogSink sink;
+  private final CommonLogFormatByteParser parser;
+  private final LogLineRecord record = new LogLineRecord();
+  private final ByteArrayBuilder document = new ByteArrayBuilder(1024);
+  private final MappedLineSplitter splitter = new MappedLineSplitter();
+
+  /**
+   * Default Constructor.  Downloads objects with concurrent ranged GETs, decompresses them on as many threads as
+   * the configured parallelism and ships to the sink of the configuration, see {@link #createSink(ConfigurationHelper)}.
+   */
+  public LogCrawler() {
+    this(AwsClientRegistry.getDefault().s3(), new ConfigurationHelper());
+  }
+
+  private LogCrawler(AmazonS3Client s3Client, ConfigurationHelper configurationHelper) {
+    this(s3Client, new RangedS3Downloader(s3Client, configurationHelper), new LogDecompressor(configurationHelper.crawlParallelism()),
+        createSink(configurationHelper), new CommonLogFormatByteParser());
+  }
+
+  /**
+   * Construct with specific instances.  Objects are read with a single GET and decompressed on the reading thread.
+   * @param s3Client that reads the log objects.
+   * @param sink that the records are shipped to.
+   * @param parser that parses the log lines.
+   */
+  public LogCrawler(AmazonS3Client s3Client, LogSink sink, CommonLogFormatByteParser parser) {
+    this(s3Client, null, sink, parser);
+  }
+
+  /**
+   * Construct with specific instances.  Objects are decompressed on the reading thread.
+   * @param s3Client that reads the log objects when there is no downloader.
+   * @param downloader that reads the log objects with ranged GETs, or null to read them with a single GET.
+   * @param sink that the records are shipped to.
+   * @param parser that parses the log lines.
+   */
+  public LogCrawler(AmazonS3Client s3Client, RangedS3Downloader downloader, LogSink sink, CommonLogFormatByteParser parser) {
+    this(s3Client, downloader, LogDecompressor.sequential(), sink, parser);
+  }
+
+  /**
+   * Construct with specific instances.
+   * @param s3Client that reads the log objects when there is no downloader.
+   * @param downloader that reads the log objects with ranged GETs, or null to read them with a single GET.
+   * @param decompressor that decompresses gzip and zstd logs.
+   * @param sink that the records are shipped to.
+   * @param parser that parses the log lines.
+   */
+  public LogCrawler(AmazonS3Client s3Client, RangedS3Downloader downloader, LogDecompressor decompressor,
+                    LogSink sink, CommonLogFormatByteParser parser) {
+    this.s3Client = s3Client;
+    this.downloader = downloader;
+    this.decompressor = decompressor;
+    this.sink = sink;
+    this.parser = parser;
+  }
+
+  /**
+   * Crawl one log object, plain or compressed.
+   * @param bucket that holds the object.
+   * @param key of the object.
+   * @return the counts of the crawl.
+   * @throws LogCrawlerException if the object can not be read or a batch can not be sent.
+   */
+  public CrawlResult crawlS3Object(String bucket, String key) {
+    try (InputStream inputStream = decompressor.decompress(openObject(bucket, key), key)) {
+      CrawlResult result = crawl(inputStream);
+      LOG.info(append("bucket", bucket).and(append("key", key)).and(append("lines", result.getLines()))
+              .and(append("indexed", result.getIndexedDocuments())).and(append("failed", result.getFailedDocuments())),
+          "Crawled log object.");
+      return result;
+    }
+    catch (AmazonClientException | IOException e) {
+      throw new LogCrawlerException("Error getting object " + key + " from bucket " + bucket
+          + ".  Make sure they exist and your bucket is in the same region as this service.", e);
+    }
+  }
+
+  /**
+   * Create the sink of the configuration: a Firehose delivery stream when one is configured, otherwise the
+   * Elasticsearch cluster over pooled connections.  With a spool directory, the documents are spooled to disk
+   * first.
+   */
+  static LogSink createSink(ConfigurationHelper configurationHelper) {
+    LogSink sink;
+    String deliveryStream = configurationHelper.firehoseDeliveryStream();
+    if (deliveryStream != null) {
+      sink = new FirehoseBatchSink(AwsClientRegistry.getDefault().firehose(), deliveryStream,
+          configurationHelper.firehoseBatchesInFlight(), configurationHelper.firehoseRecordBytes(),
+          configurationHelper.firehoseRecordMillis());
+    }
+    else {
+      sink = new ElasticsearchBulkSink(AwsClientRegistry.getDefault().httpRequestHelper(), configurationHelper);
+    }
+
+    String spoolDirectory = configurationHelper.spoolDirectory();
+    if (spoolDirectory == null) {
+      return sink;
+    }
+    DiskSpool.FsyncPolicy fsyncPolicy;
+    try {
+      fsyncPolicy = DiskSpool.FsyncPolicy.valueOf(configurationHelper.spoolFsync().trim());
+    }
+    catch (IllegalArgumentException e) {
+      throw new LogCrawlerException("SPOOL_FSYNC must be one of " + Arrays.toString(DiskSpool.FsyncPolicy.values()) + ".", e);
+    }
+    // Crawlers run one per thread, so each takes a spool of its own under the directory.
+    return new SpoolingLogSink(DiskSpool.openFreeSlot(Paths.get(spoolDirectory), configurationHelper.spoolSegmentBytes(),
+        configurationHelper.spoolMaxSegments(), fsyncPolicy), sink);
+  }
+
+  private InputStream openObject(String bucket, String key) {
+    if (downloader != null) {
+      return downloader.open(bucket, key);
+    }
+    S3Object s3Object = s3Client.getObject(bucket, key);
+    return s3Object.getObjectContent();
+  }
+
+  /**
+   * Crawl a local log file.  A plain file is memory mapped and its lines are parsed in place, so heap use does not
+   * depend on the size of the file; a compressed file is decompressed as it is read.
+   * @param file of UTF-8 log lines, plain or compressed.
+   * @return the counts of the crawl.
+   * @throws LogCrawlerException if the file can not be read or a batch can not be sent.
+   */
+  public CrawlResult crawlFile(Path file) {
+    CrawlResult result;
+    try {
+      if (Compression.detect(file) == Compression.NONE) {
+        result = crawlMapped(file);
+      }
+      else {
+        try (InputStream inputStream = decompressor.decompress(Files.newInputStream(file), file.toString())) {
+          result = crawl(inputStream);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error reading log file " + file + ".", e);
+    }
+
+    LOG.info(append("file", file.toString()).and(append("lines", result.getLines()))
+            .and(append("indexed", result.getIndexedDocuments())).and(append("failed", result.getFailedDocuments())),
+        "Crawled log file.");
+    return result;
+  }
+
+  private CrawlResult crawlMapped(Path file) throws IOException {
+    long indexedBefore = sink.getIndexedDocuments();
+    long failedBefore = sink.getFailedDocuments();
+    LineCounts counts = new LineCounts();
+    splitter.split(file, (buffer, offset, length) -> crawlLine(buffer, offset, offset + length, counts));
+    sink.flush();
+
+    return new CrawlResult(counts.lines, counts.skipped, sink.getIndexedDocuments() - indexedBefore, sink.getFailedDocuments() - failedBefore);
+  }
+
+  /**
+   * Crawl a stream of log lines.  Lines are split and parsed as bytes; the read buffer, the parsed record and the
+   * document buffer are reused, so nothing is allocated per line.
+   * @param inputStream of UTF-8 log lines.
+   * @return the counts of the crawl.
+   * @throws IOException if the stream can not be read.
+   */
+  CrawlResult crawl(InputStream inputStream) throws IOException {
+    long indexedBefore = sink.getIndexedDocuments();
+    long failedBefore = sink.getFailedDocuments();
+    LineCounts counts = new LineCounts();
+
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    ByteBuffer view = wrap(buffer);
+    int filled = 0;
+    int read;
+    while ((read = inputStream.read(buffer, filled, buffer.length - filled)) != -1) {
+      int lineStart = 0;
+      int newline = NewlineScanner.indexOf(view, filled, filled + read);
+      filled += read;
+      while (newline >= 0) {
+        crawlLine(view, lineStart, newline, counts);
+        lineStart = newline + 1;
+        newline = NewlineScanner.indexOf(view, lineStart, filled);
+      }
+      if (lineStart > 0) {
+        // Keep the partial last line for the next read.
+        System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+        filled -= lineStart;
+      }
+      else if (filled == buffer.length) {
+        // A line longer than the buffer.
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        view = wrap(buffer);
+      }
+    }
+    crawlLine(view, 0, filled, counts);
+    sink.flush();
+
+    return new CrawlResult(counts.lines, counts.skipped, sink.getIndexedDocuments() - indexedBefore, sink.getFailedDocuments() - failedBefore);
+  }
+
+  private void crawlLine(ByteBuffer buffer, int start, int end, LineCounts counts) {
+    if (end > start && buffer.get(end - 1) == CARRIAGE_RETURN) {
+      end--;
+    }
+    if (end == start) {
+      return;
+    }
+    counts.lines++;
+    if (!parser.parse(buffer, start, end - start, record)) {
+      counts.skipped++;
+      return;
+    }
+    document.reset();
+    record.writeJson(document);
+    sink.add(document.array(), 0, document.length());
+  }
+
+  private static ByteBuffer wrap(byte[] buffer) {
+    return ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+  }
+
+  private static final class LineCounts {
+    private long lines;
+    private long skipped;
+  }
+}
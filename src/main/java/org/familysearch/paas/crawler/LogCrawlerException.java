@@ -0,0 +1,27 @@
+package org.familysearch.paas.crawler;
+
+/**
+ * Exception that is thrown when a log object can not be crawled or shipped.
+ *
+ * @author kriskrishna
+ */
+public class LogCrawlerException extends RuntimeException {
+  /**
+   * Construct an exception message.
+   *
+   * @param message to be added.
+   */
+  public LogCrawlerException(String message) {
+    super(message);
+  }
+
+  /**
+   * Construct an exception with a message and a cause.
+   *
+   * @param message to be used
+   * @param cause parent exception
+   */
+  public LogCrawlerException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
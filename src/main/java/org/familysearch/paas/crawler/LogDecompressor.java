@@ -0,0 +1,497 @@
+package org.familysearch.paas.crawler;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Turns a possibly compressed log stream into a plain text stream.  gzip and zstd are detected by their magic bytes
+ * (see {@link Compression}) and decompressed as the stream is read, so a compressed object never has to fit in
+ * memory or on disk.
+ *
+ * When the format tells where its independent members end and how large they decompress to, the members are
+ * decompressed in parallel and read back in order: zstd frames, whose block headers give their length and whose
+ * header gives the content size, and gzip members that carry their size in a BGZF extra field and their content
+ * size in the trailer.  Both sizes must be at most <code>maxMemberBytes</code>, which bounds the memory of a stream
+ * to twice the parallelism of members and their output.  Other gzip streams, zstd frames written without a content
+ * size, larger members and everything after them are decompressed on the reading thread.  Member and output
+ * buffers come from a {@link BufferPool}.
+ *
+ * The decompressor may be shared; each stream is for one reader.
+ *
+ * @author kriskrishna
+ */
+public class LogDecompressor {
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  static final int DEFAULT_MAX_MEMBER_BYTES = 16 * 1024 * 1024;
+  private static final int BGZF_HEADER_LENGTH = 18;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+  private static final int[] ZSTD_DICTIONARY_ID_LENGTHS = {0, 1, 2, 4};
+  private static final int[] ZSTD_CONTENT_SIZE_LENGTHS = {0, 2, 4, 8};
+
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final int parallelism;
+  private final int maxMemberBytes;
+  private final BufferPool bufferPool;
+
+  /**
+   * @return a decompressor that decompresses every stream on its reading thread.
+   */
+  public static LogDecompressor sequential() {
+    return new LogDecompressor(null, false, 1, DEFAULT_MAX_MEMBER_BYTES);
+  }
+
+  /**
+   * Construct a decompressor with threads of its own.
+   * @param parallelism is the members decompressed at once for one stream; 1 decompresses on the reading thread.
+   */
+  public LogDecompressor(int parallelism) {
+    this(parallelism > 1 ? Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "log-decompress-" + THREAD_NUMBER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }) : null, true, parallelism, DEFAULT_MAX_MEMBER_BYTES);
+  }
+
+  /**
+   * Construct a decompressor that runs on a shared executor.
+   * @param executor that decompresses the members.
+   * @param parallelism is the members decompressed at once for one stream.
+   */
+  public LogDecompressor(ExecutorService executor, int parallelism) {
+    this(executor, false, parallelism, DEFAULT_MAX_MEMBER_BYTES);
+  }
+
+  LogDecompressor(ExecutorService executor, boolean ownsExecutor, int parallelism, int maxMemberBytes) {
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.parallelism = Math.max(1, parallelism);
+    this.maxMemberBytes = maxMemberBytes;
+    this.bufferPool = new BufferPool(4 * this.parallelism, MAX_POOLED_BUFFER_SIZE);
+  }
+
+  /**
+   * Wrap a stream in the decompression its content needs.
+   * @param inputStream that may be compressed.  It is closed with the returned stream.
+   * @param name of the object or file, used when the content is too short to have magic bytes.  May be null.
+   * @return the plain content.
+   * @throws IOException if the stream can not be read.
+   */
+  public InputStream decompress(InputStream inputStream, String name) throws IOException {
+    try {
+      PushbackInputStream in = new PushbackInputStream(inputStream, BGZF_HEADER_LENGTH);
+      byte[] head = new byte[BGZF_HEADER_LENGTH];
+      int length = readFully(in, head, 0, head.length);
+      in.unread(head, 0, length);
+
+      Compression compression = Compression.detect(name, head, length);
+      if (compression == Compression.GZIP && executor != null && isBgzfHeader(head, length)
+          || compression == Compression.ZSTD && executor != null) {
+        return new MemberInputStream(in, compression);
+      }
+      return sequentialStream(in, compression);
+    }
+    catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Stop the threads of a decompressor that made its own.
+   */
+  public void shutdown() {
+    if (ownsExecutor && executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static InputStream sequentialStream(InputStream in, Compression compression) throws IOException {
+    switch (compression) {
+      case GZIP:
+        return new GZIPInputStream(new ConcatenatedMembers(in), STREAM_BUFFER_SIZE);
+      case ZSTD:
+        return new ZstdInputStream(in);
+      default:
+        return in;
+    }
+  }
+
+  /**
+   * A gzip member whose header has the BGZF extra field, which holds the size of the member.
+   */
+  private static boolean isBgzfHeader(byte[] header, int length) {
+    return length >= BGZF_HEADER_LENGTH && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b
+        && header[2] == 8 && (header[3] & 0x04) != 0 && u16(header, 10) == 6
+        && header[12] == 'B' && header[13] == 'C' && u16(header, 14) == 2;
+  }
+
+  private static int u16(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+  }
+
+  private static int readFully(InputStream in, byte[] bytes, int offset, int count) throws IOException {
+    int filled = 0;
+    while (filled < count) {
+      int read = in.read(bytes, offset + filled, count - filled);
+      if (read == -1) {
+        break;
+      }
+      filled += read;
+    }
+    return filled;
+  }
+
+  /**
+   * GZIPInputStream only looks for another member when available() is positive, which a network stream may not
+   * be at a member boundary; claiming there is always more makes it read on, and it stops cleanly at the end.
+   */
+  private static final class ConcatenatedMembers extends FilterInputStream {
+    private ConcatenatedMembers(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int available() {
+      return 1;
+    }
+  }
+
+  /**
+   * The compressed bytes of one member, read into a pooled buffer.
+   */
+  private final class Member {
+    private byte[] bytes;
+    private int length;
+    private boolean splittable = true;
+    private int contentSize;
+
+    private Member() {
+      this(STREAM_BUFFER_SIZE);
+    }
+
+    private Member(int capacity) {
+      bytes = bufferPool.acquire(capacity);
+    }
+
+    /**
+     * @return true if count more bytes were read, false if they would make the member too large, in which case
+     * nothing is read, or the stream ended.
+     */
+    private boolean read(InputStream in, int count) throws IOException {
+      if ((long) length + count > maxMemberBytes) {
+        return false;
+      }
+      if (length + count > bytes.length) {
+        bytes = bufferPool.grow(bytes, length, length + count);
+      }
+      int read = readFully(in, bytes, length, count);
+      length += read;
+      return read == count;
+    }
+
+    private int u8(int offset) {
+      return bytes[offset] & 0xff;
+    }
+
+    private int u16(int offset) {
+      return LogDecompressor.u16(bytes, offset);
+    }
+
+    private int u24(int offset) {
+      return u8(offset) | u8(offset + 1) << 8 | u8(offset + 2) << 16;
+    }
+
+    private long u32(int offset) {
+      return (u24(offset) | (long) u8(offset + 3) << 24);
+    }
+
+    /**
+     * @return true if size is a content size that can be decompressed apart, in which case it is kept.
+     */
+    private boolean hasContentSize(long size) {
+      if (size < 0 || size > maxMemberBytes) {
+        return false;
+      }
+      contentSize = (int) size;
+      return true;
+    }
+  }
+
+  /**
+   * Reads members off the stream, decompresses up to twice the parallelism of them ahead of the reader and returns
+   * their output in order.
+   */
+  private final class MemberInputStream extends InputStream {
+    private final PushbackInputStream in;
+    private final Compression compression;
+    private final Deque<Future<Member>> members = new ArrayDeque<>();
+    private final byte[] single = new byte[1];
+    private InputStream tail;
+    private boolean inputDone;
+    private Member current;
+    private int position;
+    private boolean closed;
+
+    private MemberInputStream(PushbackInputStream in, Compression compression) {
+      this.in = in;
+      this.compression = compression;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream is closed.");
+      }
+      if (len == 0) {
+        return 0;
+      }
+      while (true) {
+        if (current != null && position < current.length) {
+          int count = Math.min(len, current.length - position);
+          System.arraycopy(current.bytes, position, b, off, count);
+          position += count;
+          return count;
+        }
+        releaseCurrent();
+        readAhead();
+        Future<Member> next = members.pollFirst();
+        if (next != null) {
+          current = await(next);
+          position = 0;
+        }
+        else if (tail != null) {
+          return tail.read(b, off, len);
+        }
+        else {
+          return -1;
+        }
+      }
+    }
+
+    private void readAhead() throws IOException {
+      while (!inputDone && tail == null && members.size() < 2 * parallelism) {
+        Member member = compression == Compression.GZIP ? readGzipMember() : readZstdFrame();
+        if (member == null) {
+          inputDone = true;
+        }
+        else if (!member.splittable) {
+          // The rest of the stream can not be split; decompress it here, starting with what was read of it.
+          tail = sequentialStream(new SequenceInputStream(new ByteArrayInputStream(member.bytes, 0, member.length), in), compression);
+        }
+        else {
+          members.addLast(executor.submit(() -> decompressMember(member)));
+        }
+      }
+    }
+
+    /**
+     * @return the next BGZF member, null at the end of the stream, or an unsplittable member when the stream can
+     * not be split from here on.
+     */
+    private Member readGzipMember() throws IOException {
+      Member member = new Member();
+      if (!member.read(in, BGZF_HEADER_LENGTH)) {
+        return endOrUnsplittable(member);
+      }
+      if (!isBgzfHeader(member.bytes, member.length)) {
+        return unsplittable(member);
+      }
+      int size = u16(member.bytes, 16) + 1;
+      if (size < BGZF_HEADER_LENGTH || !member.read(in, size - BGZF_HEADER_LENGTH)
+          || !member.hasContentSize(member.u32(member.length - 4))) {
+        return unsplittable(member);
+      }
+      return member;
+    }
+
+    /**
+     * Walk a zstd frame by its block headers, without decompressing it.  Skippable frames are dropped, and a frame
+     * without a content size in its header can not be split.
+     * @return the next frame, null at the end of the stream, or an unsplittable member when the stream can not be
+     * split from here on.
+     */
+    private Member readZstdFrame() throws IOException {
+      Member member = new Member();
+      while (true) {
+        if (!member.read(in, 4)) {
+          return endOrUnsplittable(member);
+        }
+        if (!Compression.isZstdSkippableFrame(member.bytes)) {
+          break;
+        }
+        if (!member.read(in, 4)) {
+          return unsplittable(member);
+        }
+        skipFully(member.u32(4));
+        member.length = 0;
+      }
+      if (!Compression.isZstdFrame(member.bytes) || !member.read(in, 1)) {
+        return unsplittable(member);
+      }
+      int descriptor = member.u8(4);
+      boolean singleSegment = (descriptor & 0x20) != 0;
+      boolean checksum = (descriptor & 0x04) != 0;
+      int contentSizeFlag = descriptor >>> 6;
+      int headerRest = (singleSegment ? 0 : 1) + ZSTD_DICTIONARY_ID_LENGTHS[descriptor & 0x03]
+          + (contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : ZSTD_CONTENT_SIZE_LENGTHS[contentSizeFlag]);
+      if (!member.read(in, headerRest) || !member.hasContentSize(zstdContentSize(member, descriptor))) {
+        return unsplittable(member);
+      }
+      boolean lastBlock = false;
+      while (!lastBlock) {
+        int blockHeader = member.length;
+        if (!member.read(in, 3)) {
+          return unsplittable(member);
+        }
+        int header = member.u24(blockHeader);
+        lastBlock = (header & 1) != 0;
+        int blockType = header >>> 1 & 0x03;
+        if (blockType == 3 || !member.read(in, blockType == 1 ? 1 : header >>> 3)) {
+          return unsplittable(member);
+        }
+      }
+      if (checksum && !member.read(in, 4)) {
+        return unsplittable(member);
+      }
+      return member;
+    }
+
+    /**
+     * @return the Frame_Content_Size of the frame header in member, or -1 when the header does not give it.
+     */
+    private long zstdContentSize(Member member, int descriptor) {
+      boolean singleSegment = (descriptor & 0x20) != 0;
+      int offset = 5 + (singleSegment ? 0 : 1) + ZSTD_DICTIONARY_ID_LENGTHS[descriptor & 0x03];
+      switch (descriptor >>> 6) {
+        case 0:
+          return singleSegment ? member.u8(offset) : -1;
+        case 1:
+          return member.u16(offset) + 256;
+        case 2:
+          return member.u32(offset);
+        default:
+          return member.u32(offset) | member.u32(offset + 4) << 32;
+      }
+    }
+
+    private void skipFully(long count) throws IOException {
+      while (count > 0) {
+        long skipped = in.skip(count);
+        if (skipped <= 0) {
+          if (in.read() == -1) {
+            throw new EOFException("A skippable zstd frame is truncated.");
+          }
+          skipped = 1;
+        }
+        count -= skipped;
+      }
+    }
+
+    private Member endOrUnsplittable(Member member) {
+      if (member.length == 0) {
+        bufferPool.release(member.bytes);
+        return null;
+      }
+      return unsplittable(member);
+    }
+
+    private Member unsplittable(Member member) {
+      // Not given back to the pool, the tail stream reads from it.
+      member.splittable = false;
+      return member;
+    }
+
+    /**
+     * Decompress a member into a buffer of its content size, which is never grown.
+     * @throws IOException if the member is corrupt or does not decompress to its content size.
+     */
+    private Member decompressMember(Member member) throws IOException {
+      Member output = new Member(member.contentSize);
+      try (InputStream decompressed = sequentialStream(new ByteArrayInputStream(member.bytes, 0, member.length), compression)) {
+        int read = 0;
+        while (output.length < output.bytes.length && read != -1) {
+          read = decompressed.read(output.bytes, output.length, output.bytes.length - output.length);
+          output.length += Math.max(read, 0);
+        }
+        if (output.length != member.contentSize || decompressed.read() != -1) {
+          throw new IOException("A member does not decompress to the content size in its header.");
+        }
+        return output;
+      }
+      catch (IOException | RuntimeException e) {
+        bufferPool.release(output.bytes);
+        throw e;
+      }
+      finally {
+        bufferPool.release(member.bytes);
+      }
+    }
+
+    private Member await(Future<Member> member) throws IOException {
+      try {
+        return member.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for a member to be decompressed.");
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Error decompressing a member.", cause);
+      }
+    }
+
+    private void releaseCurrent() {
+      if (current != null) {
+        bufferPool.release(current.bytes);
+        current = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      releaseCurrent();
+      for (Future<Member> member : members) {
+        member.cancel(true);
+      }
+      members.clear();
+      if (tail != null) {
+        tail.close();
+      }
+      else {
+        in.close();
+      }
+    }
+  }
+}
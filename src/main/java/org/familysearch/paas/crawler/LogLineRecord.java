@@ -0,0 +1,225 @@
+package org.familysearch.paas.crawler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable view of one parsed log line.  Text fields are kept as offsets into the buffer that was parsed, so
+ * nothing is allocated per line; a String is only built when {@link #getString(Field)} is called.  The view is
+ * only valid until the buffer is reused or the record is parsed into again.
+ *
+ * @author kriskrishna
+ */
+public final class LogLineRecord {
+
+  /**
+   * The text fields of a line, named after the JSON fields of the clf-parser node module.
+   */
+  public enum Field {
+    REMOTE_ADDR("remote_addr"),
+    REMOTE_USER("remote_user"),
+    REQUEST("request"),
+    METHOD("method"),
+    PATH("path"),
+    PROTOCOL("protocol"),
+    HTTP_REFERER("http_referer"),
+    HTTP_USER_AGENT("http_user_agent");
+
+    private final String jsonName;
+
+    Field(String jsonName) {
+      this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+      return jsonName;
+    }
+  }
+
+  private static final Field[] FIELDS = Field.values();
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private final int[] starts = new int[FIELDS.length];
+  private final int[] ends = new int[FIELDS.length];
+  private ByteBuffer buffer;
+  private long timeEpochSeconds;
+  private int status;
+  private long bodyBytesSent;
+
+  void reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = -1;
+      ends[i] = -1;
+    }
+  }
+
+  void set(Field field, int start, int end) {
+    starts[field.ordinal()] = start;
+    ends[field.ordinal()] = end;
+  }
+
+  void setTimeEpochSeconds(long timeEpochSeconds) {
+    this.timeEpochSeconds = timeEpochSeconds;
+  }
+
+  void setStatus(int status) {
+    this.status = status;
+  }
+
+  void setBodyBytesSent(long bodyBytesSent) {
+    this.bodyBytesSent = bodyBytesSent;
+  }
+
+  /**
+   * @return the buffer the offsets point into.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @return true unless the field was absent, or logged as <code>-</code>.
+   */
+  public boolean isPresent(Field field) {
+    return starts[field.ordinal()] >= 0;
+  }
+
+  /**
+   * @return the absolute offset of the first byte of the field in the buffer, or -1 when it is absent.
+   */
+  public int getStart(Field field) {
+    return starts[field.ordinal()];
+  }
+
+  /**
+   * @return the absolute offset just past the last byte of the field in the buffer, or -1 when it is absent.
+   */
+  public int getEnd(Field field) {
+    return ends[field.ordinal()];
+  }
+
+  /**
+   * Decode a field.  This is the only accessor that allocates.
+   * @return the field, or null when it is absent.
+   */
+  public String getString(Field field) {
+    int start = getStart(field);
+    if (start < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[getEnd(field) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the time of the request in seconds since the epoch.
+   */
+  public long getTimeEpochSeconds() {
+    return timeEpochSeconds;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public long getBodyBytesSent() {
+    return bodyBytesSent;
+  }
+
+  /**
+   * Write the record as the JSON document the clf-parser node module gave, straight from the parsed bytes.
+   * @param out that the document is appended to.
+   */
+  void writeJson(ByteArrayBuilder out) {
+    out.append((byte) '{');
+    writeField(out, Field.REMOTE_ADDR);
+    out.append((byte) ',');
+    writeField(out, Field.REMOTE_USER);
+    out.appendAscii(",\"time_local\":\"");
+    writeIsoInstant(out, timeEpochSeconds);
+    out.appendAscii("\",");
+    writeField(out, Field.REQUEST);
+    out.append((byte) ',');
+    writeField(out, Field.METHOD);
+    out.append((byte) ',');
+    writeField(out, Field.PATH);
+    out.append((byte) ',');
+    writeField(out, Field.PROTOCOL);
+    out.appendAscii(",\"status\":");
+    out.appendDecimal(status);
+    out.appendAscii(",\"body_bytes_sent\":");
+    out.appendDecimal(bodyBytesSent);
+    out.append((byte) ',');
+    writeField(out, Field.HTTP_REFERER);
+    out.append((byte) ',');
+    writeField(out, Field.HTTP_USER_AGENT);
+    out.append((byte) '}');
+  }
+
+  private void writeField(ByteArrayBuilder out, Field field) {
+    out.append((byte) '"');
+    out.appendAscii(field.getJsonName());
+    out.appendAscii("\":");
+    int start = getStart(field);
+    if (start < 0) {
+      out.appendAscii("null");
+      return;
+    }
+    out.append((byte) '"');
+    int end = getEnd(field);
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b == '"' || b == '\\') {
+        out.append((byte) '\\');
+        out.append(b);
+      }
+      else if (b == '\t') {
+        out.appendAscii("\\t");
+      }
+      else if (b >= 0 && b < 0x20) {
+        out.appendAscii("\\u00");
+        out.append(HEX[b >> 4]);
+        out.append(HEX[b & 0xf]);
+      }
+      else {
+        out.append(b);
+      }
+    }
+    out.append((byte) '"');
+  }
+
+  /**
+   * Write yyyy-MM-ddTHH:mm:ssZ in UTC, as Instant.toString does for whole seconds.
+   */
+  private static void writeIsoInstant(ByteArrayBuilder out, long epochSeconds) {
+    long days = Math.floorDiv(epochSeconds, 86400);
+    int secondOfDay = (int) Math.floorMod(epochSeconds, 86400);
+    // Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+    long z = days + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long mp = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+    out.appendDigits(year, 4);
+    out.append((byte) '-');
+    out.appendDigits(month, 2);
+    out.append((byte) '-');
+    out.appendDigits(day, 2);
+    out.append((byte) 'T');
+    out.appendDigits(secondOfDay / 3600, 2);
+    out.append((byte) ':');
+    out.appendDigits(secondOfDay / 60 % 60, 2);
+    out.append((byte) ':');
+    out.appendDigits(secondOfDay % 60, 2);
+    out.append((byte) 'Z');
+  }
+}
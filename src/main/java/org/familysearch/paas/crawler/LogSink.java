@@ -0,0 +1,40 @@
+package org.familysearch.paas.crawler;
+
+import java.io.Closeable;
+
+/**
+ * Where the crawlers ship the JSON documents of the parsed log lines.
+ *
+ * @author kriskrishna
+ */
+public interface LogSink extends Closeable {
+  /**
+   * Add a UTF-8 encoded document.  The bytes are copied, so the caller may reuse the array.
+   * @param documentJson holds the document, on a single line.
+   * @param offset of the document in the array.
+   * @param length of the document.
+   */
+  void add(byte[] documentJson, int offset, int length);
+
+  /**
+   * Send everything that was added and wait for it, so the counts are final.
+   * @throws LogCrawlerException if documents could not be sent at all.
+   */
+  void flush();
+
+  /**
+   * Send everything that was added.
+   */
+  @Override
+  void close();
+
+  /**
+   * @return the documents the destination accepted.
+   */
+  long getIndexedDocuments();
+
+  /**
+   * @return the documents that were rejected or could not be sent.
+   */
+  long getFailedDocuments();
+}
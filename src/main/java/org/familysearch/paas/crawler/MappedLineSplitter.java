@@ -0,0 +1,131 @@
+package org.familysearch.paas.crawler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a local file into lines by memory mapping it a window at a time and scanning the mapping with
+ * {@link NewlineScanner}.  Lines are handed to a {@link LineHandler} as slices of the mapping, so nothing is
+ * copied onto the heap and heap use does not grow with the size of the file.
+ *
+ * A window ends at the last newline in it; the next window is mapped from the start of the following line, so no
+ * line is ever split across two mappings.  A line longer than the window gets a larger window.
+ *
+ * @author kriskrishna
+ */
+public class MappedLineSplitter {
+  static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+  private static final int SCAN_BUFFER_SIZE = 4096;
+
+  private final int windowSize;
+
+  /**
+   * Construct with 64 MiB windows.
+   */
+  public MappedLineSplitter() {
+    this(DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Construct with a specific window size.  Generally used for testing.
+   */
+  MappedLineSplitter(int windowSize) {
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Hand every line of the file to the handler, in order.
+   * @param file to split.
+   * @param handler that receives the lines.
+   * @return the number of lines, counting a last line that has no newline.
+   * @throws IOException if the file can not be mapped.
+   */
+  public long split(Path file, LineHandler handler) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return split(channel, 0, channel.size(), handler);
+    }
+  }
+
+  /**
+   * Hand every line of a range of the channel to the handler, in order.  The range should start at the start of a
+   * line and end just past a newline or at the end of the channel, see {@link #nextLineStart(FileChannel, long)}.
+   * Ranges of one channel may be split concurrently.
+   * @param channel to split.
+   * @param start of the range.
+   * @param end of the range, exclusive.
+   * @param handler that receives the lines.
+   * @return the number of lines, counting a last line that has no newline.
+   * @throws IOException if the channel can not be mapped.
+   */
+  public long split(FileChannel channel, long start, long end, LineHandler handler) throws IOException {
+    long lines = 0;
+    long position = start;
+    int window = windowSize;
+    while (position < end) {
+      int length = (int) Math.min(window, end - position);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      buffer.order(ByteOrder.nativeOrder());
+
+      int lineStart = 0;
+      int newline;
+      while ((newline = NewlineScanner.indexOf(buffer, lineStart, length)) >= 0) {
+        handler.onLine(buffer, lineStart, newline - lineStart);
+        lines++;
+        lineStart = newline + 1;
+      }
+
+      if (position + length == end) {
+        if (lineStart < length) {
+          handler.onLine(buffer, lineStart, length - lineStart);
+          lines++;
+        }
+        break;
+      }
+      if (lineStart == 0) {
+        if (window == Integer.MAX_VALUE) {
+          throw new LogCrawlerException("Line at offset=" + position + " is longer than 2 GiB");
+        }
+        window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+        continue;
+      }
+      position += lineStart;
+      window = windowSize;
+    }
+    return lines;
+  }
+
+  /**
+   * Find where the line that follows a position starts, to cut a channel into ranges of whole lines.
+   * @param channel to look in.
+   * @param position to look from.  A newline just before it counts, so a position that already starts a line is
+   *                 returned as is.
+   * @return the offset just past the first newline at or after position - 1, or the size of the channel.
+   * @throws IOException if the channel can not be read.
+   */
+  public static long nextLineStart(FileChannel channel, long position) throws IOException {
+    long size = channel.size();
+    if (position <= 0 || position >= size) {
+      return Math.max(0, Math.min(position, size));
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+    long scanned = position - 1;
+    while (scanned < size) {
+      buffer.clear();
+      int read = channel.read(buffer, scanned);
+      if (read <= 0) {
+        break;
+      }
+      int newline = NewlineScanner.indexOf(buffer, 0, read);
+      if (newline >= 0) {
+        return scanned + newline + 1;
+      }
+      scanned += read;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,44 @@
+package org.familysearch.paas.crawler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds newlines eight bytes at a time: each long read from the buffer is tested for a '\n' byte with a few
+ * arithmetic operations (SWAR) instead of eight compares and branches.
+ *
+ * @author kriskrishna
+ */
+final class NewlineScanner {
+  private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+  private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+  private NewlineScanner() {
+  }
+
+  /**
+   * @param buffer to scan, in either byte order.
+   * @param from is the first offset to look at.
+   * @param to is the offset to stop before.
+   * @return the offset of the first newline in [from, to), or -1 when there is none.
+   */
+  static int indexOf(ByteBuffer buffer, int from, int to) {
+    boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+    int i = from;
+    for (; i + Long.BYTES <= to; i += Long.BYTES) {
+      long word = buffer.getLong(i) ^ NEWLINES;
+      // The high bit of each byte is set exactly where the byte of word is zero, with no false positives.
+      long found = ~(((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word | LOW_SEVEN_BITS);
+      if (found != 0) {
+        int bit = littleEndian ? Long.numberOfTrailingZeros(found) : Long.numberOfLeadingZeros(found);
+        return i + (bit >>> 3);
+      }
+    }
+    for (; i < to; i++) {
+      if (buffer.get(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,256 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import org.familysearch.paas.utils.AwsClientRegistry;
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static net.logstash.logback.marker.Markers.append;
+
+/**
+ * Crawls one large log on several cores.  The file is cut into chunks of about <code>chunkBytes</code> whose
+ * boundaries are moved forward to the next line, the chunks are parsed in parallel on a {@link ForkJoinPool} and
+ * their documents are handed to the sink in the order of the file, so the _bulk batches are the same as a
+ * {@link LogCrawler} would send.
+ *
+ * At most twice the parallelism of the pool chunks are parsed ahead of the one being sent, which bounds the heap
+ * to a few chunks of documents however large the file is.  A log object is downloaded to a temporary file, with
+ * concurrent ranged GETs when there is a downloader, and a compressed log is then decompressed to another one on
+ * the same pool, since chunks need random access.  Not thread safe, use one crawler per thread.
+ *
+ * @author kriskrishna
+ */
+public class ParallelLogCrawler {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelLogCrawler.class);
+  // Documents run about twice as long as their lines, but most chunks never get that far, so grow on demand.
+  private static final int INITIAL_CHUNK_CAPACITY = 64 * 1024;
+
+  private final AmazonS3Client s3Client;
+  private final RangedS3Downloader downloader;
+  private final LogSink sink;
+  private final ForkJoinPool pool;
+  private final int chunkBytes;
+  private final MappedLineSplitter splitter;
+  private final LogDecompressor decompressor;
+  private final boolean ownsThreads;
+
+  /**
+   * Default Constructor.  Downloads objects with concurrent ranged GETs, ships to the sink of the configuration,
+   * Elasticsearch or a Firehose delivery stream, and parses on a pool of the configured parallelism.  Call
+   * {@link #shutdown()} when done.
+   */
+  public ParallelLogCrawler() {
+    this(AwsClientRegistry.getDefault().s3(), new ConfigurationHelper());
+  }
+
+  private ParallelLogCrawler(AmazonS3Client s3Client, ConfigurationHelper configurationHelper) {
+    this(s3Client, new RangedS3Downloader(s3Client, configurationHelper), LogCrawler.createSink(configurationHelper),
+        new ForkJoinPool(configurationHelper.crawlParallelism()), configurationHelper.crawlChunkBytes(),
+        new MappedLineSplitter(), true);
+  }
+
+  /**
+   * Construct with specific instances.  Objects are downloaded with a single GET.
+   * @param s3Client that downloads the log objects.
+   * @param sink that the records are shipped to.
+   * @param pool that parses the chunks.
+   * @param chunkBytes is the size chunks are cut at, before they are aligned to a line.
+   */
+  public ParallelLogCrawler(AmazonS3Client s3Client, LogSink sink, ForkJoinPool pool, int chunkBytes) {
+    this(s3Client, null, sink, pool, chunkBytes);
+  }
+
+  /**
+   * Construct with specific instances, which stay the caller's to shut down.
+   * @param s3Client that downloads the log objects when there is no downloader.
+   * @param downloader that downloads the log objects with ranged GETs, or null to download them with a single GET.
+   * @param sink that the records are shipped to.
+   * @param pool that parses the chunks.
+   * @param chunkBytes is the size chunks are cut at, before they are aligned to a line.
+   */
+  public ParallelLogCrawler(AmazonS3Client s3Client, RangedS3Downloader downloader, LogSink sink, ForkJoinPool pool,
+                            int chunkBytes) {
+    this(s3Client, downloader, sink, pool, chunkBytes, new MappedLineSplitter(), false);
+  }
+
+  ParallelLogCrawler(AmazonS3Client s3Client, RangedS3Downloader downloader, LogSink sink, ForkJoinPool pool,
+                     int chunkBytes, MappedLineSplitter splitter, boolean ownsThreads) {
+    this.s3Client = s3Client;
+    this.downloader = downloader;
+    this.sink = sink;
+    this.pool = pool;
+    this.chunkBytes = chunkBytes;
+    this.splitter = splitter;
+    this.decompressor = new LogDecompressor(pool, pool.getParallelism());
+    this.ownsThreads = ownsThreads;
+  }
+
+  /**
+   * Stop the parse pool and download threads of the default constructor.  A pool or downloader given to the other
+   * constructors is left to the caller.  The crawler must not be used afterwards.
+   */
+  public void shutdown() {
+    if (!ownsThreads) {
+      return;
+    }
+    pool.shutdownNow();
+    if (downloader != null) {
+      downloader.shutdown();
+    }
+  }
+
+  /**
+   * Download a log object to a temporary file and crawl it in chunks.
+   * @param bucket that holds the object.
+   * @param key of the object.
+   * @return the counts of the crawl.
+   * @throws LogCrawlerException if the object can not be downloaded or a batch can not be sent.
+   */
+  public CrawlResult crawlS3Object(String bucket, String key) {
+    Path file = null;
+    try {
+      file = Files.createTempFile("access", ".log");
+      download(bucket, key, file);
+      CrawlResult result = crawlFile(file);
+      LOG.info(append("bucket", bucket).and(append("key", key)).and(append("lines", result.getLines()))
+              .and(append("indexed", result.getIndexedDocuments())).and(append("failed", result.getFailedDocuments())),
+          "Crawled log object in parallel.");
+      return result;
+    }
+    catch (AmazonClientException | IOException e) {
+      throw new LogCrawlerException("Error getting object " + key + " from bucket " + bucket
+          + ".  Make sure they exist and your bucket is in the same region as this service.", e);
+    }
+    finally {
+      deleteQuietly(file);
+    }
+  }
+
+  private void download(String bucket, String key, Path file) throws IOException {
+    if (downloader == null) {
+      s3Client.getObject(new GetObjectRequest(bucket, key), file.toFile());
+      return;
+    }
+    try (InputStream inputStream = downloader.open(bucket, key)) {
+      Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Crawl a local log file in chunks.
+   * @param file of UTF-8 log lines, plain or compressed.
+   * @return the counts of the crawl.
+   * @throws LogCrawlerException if the file can not be read or a batch can not be sent.
+   */
+  public CrawlResult crawlFile(Path file) {
+    Path decompressed = null;
+    try {
+      if (Compression.detect(file) == Compression.NONE) {
+        return crawlPlainFile(file);
+      }
+      decompressed = Files.createTempFile("access", ".log");
+      try (InputStream inputStream = decompressor.decompress(Files.newInputStream(file), file.toString())) {
+        Files.copy(inputStream, decompressed, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return crawlPlainFile(decompressed);
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error reading log file " + file + ".", e);
+    }
+    finally {
+      deleteQuietly(decompressed);
+    }
+  }
+
+  private CrawlResult crawlPlainFile(Path file) {
+    long indexedBefore = sink.getIndexedDocuments();
+    long failedBefore = sink.getFailedDocuments();
+    long lines = 0;
+    long skippedLines = 0;
+    int maxChunksAhead = 2 * pool.getParallelism();
+    Deque<ForkJoinTask<ParsedChunk>> chunks = new ArrayDeque<>();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long start = 0;
+      while (start < size || !chunks.isEmpty()) {
+        while (start < size && chunks.size() < maxChunksAhead) {
+          long end = MappedLineSplitter.nextLineStart(channel, start + chunkBytes);
+          chunks.addLast(pool.submit(new ChunkTask(channel, start, end)));
+          start = end;
+        }
+        ParsedChunk chunk = chunks.removeFirst().join();
+        chunk.drainTo(sink);
+        lines += chunk.getLines();
+        skippedLines += chunk.getSkippedLines();
+      }
+    }
+    catch (IOException e) {
+      throw new LogCrawlerException("Error reading log file " + file + ".", e);
+    }
+    finally {
+      for (ForkJoinTask<ParsedChunk> chunk : chunks) {
+        chunk.cancel(false);
+      }
+    }
+    sink.flush();
+
+    return new CrawlResult(lines, skippedLines, sink.getIndexedDocuments() - indexedBefore, sink.getFailedDocuments() - failedBefore);
+  }
+
+  private static void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      LOG.warn("Error deleting temporary file={}.", file, e);
+    }
+  }
+
+  /**
+   * Parses the lines of one range of the file.  The ranges are already the unit of work, so the task never splits
+   * and the pool runs it as an adapted callable.
+   */
+  private final class ChunkTask implements Callable<ParsedChunk> {
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    private ChunkTask(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public ParsedChunk call() {
+      ParsedChunk chunk = new ParsedChunk(INITIAL_CHUNK_CAPACITY);
+      try {
+        splitter.split(channel, start, end, chunk);
+      }
+      catch (IOException e) {
+        throw new LogCrawlerException("Error reading bytes " + start + "-" + end + " of the log file.", e);
+      }
+      return chunk;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.familysearch.paas.crawler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The lines of one chunk of a log, parsed into JSON documents that wait to be handed to the sink in order.  Each
+ * chunk has its own parser and record, so chunks can be parsed on different threads.
+ *
+ * @author kriskrishna
+ */
+final class ParsedChunk implements LineHandler {
+  private static final byte CARRIAGE_RETURN = '\r';
+
+  private final CommonLogFormatByteParser parser = new CommonLogFormatByteParser();
+  private final LogLineRecord record = new LogLineRecord();
+  private final ByteArrayBuilder documents;
+  private int[] documentEnds = new int[1024];
+  private int documentCount;
+  private long lines;
+  private long skippedLines;
+
+  ParsedChunk(int initialCapacity) {
+    documents = new ByteArrayBuilder(initialCapacity);
+  }
+
+  /**
+   * Parse a line and keep its document.
+   */
+  @Override
+  public void onLine(ByteBuffer buffer, int offset, int length) {
+    int end = offset + length;
+    if (end > offset && buffer.get(end - 1) == CARRIAGE_RETURN) {
+      end--;
+    }
+    if (end == offset) {
+      return;
+    }
+    lines++;
+    if (!parser.parse(buffer, offset, end - offset, record)) {
+      skippedLines++;
+      return;
+    }
+    record.writeJson(documents);
+    if (documentCount == documentEnds.length) {
+      documentEnds = Arrays.copyOf(documentEnds, documentCount * 2);
+    }
+    documentEnds[documentCount++] = documents.length();
+  }
+
+  /**
+   * Add the documents of the chunk to the sink, in the order their lines were in.
+   */
+  void drainTo(LogSink sink) {
+    byte[] array = documents.array();
+    int start = 0;
+    for (int i = 0; i < documentCount; i++) {
+      sink.add(array, start, documentEnds[i] - start);
+      start = documentEnds[i];
+    }
+  }
+
+  long getLines() {
+    return lines;
+  }
+
+  long getSkippedLines() {
+    return skippedLines;
+  }
+}
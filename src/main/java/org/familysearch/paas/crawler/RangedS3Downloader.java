@@ -0,0 +1,224 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import org.familysearch.paas.utils.ConfigurationHelper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads an S3 object as concurrent ranged GETs of <code>partSize</code> bytes and reads it back as one stream
+ * in order.  Up to <code>parallelism</code> parts are fetched ahead of the reader, so the first bytes are available
+ * as soon as the first part is and the whole object arrives several connections wide.  A stream holds at most
+ * <code>parallelism + 1</code> parts in memory: the one being read and the ones fetched ahead of it.
+ *
+ * Every part asks for the ETag the object had when the stream was opened, so an object that is replaced during the
+ * download fails the stream instead of mixing two versions.  The downloader may be shared; each stream is for one
+ * reader.
+ *
+ * @author kriskrishna
+ */
+public class RangedS3Downloader {
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+  private final AmazonS3Client s3Client;
+  private final ExecutorService executor;
+  private final int partSize;
+  private final int parallelism;
+
+  /**
+   * Construct with the part size and parallelism of the configuration, on threads of its own.
+   * @param s3Client that downloads the parts.
+   * @param configurationHelper that gives the part size and parallelism.
+   */
+  public RangedS3Downloader(AmazonS3Client s3Client, ConfigurationHelper configurationHelper) {
+    this(s3Client, configurationHelper.s3DownloadPartBytes(), configurationHelper.s3DownloadParallelism());
+  }
+
+  /**
+   * Construct on threads of its own.
+   * @param s3Client that downloads the parts.
+   * @param partSize is the bytes of one ranged GET.
+   * @param parallelism is the ranged GETs that are in flight for one stream, and the threads that run them.
+   */
+  public RangedS3Downloader(AmazonS3Client s3Client, int partSize, int parallelism) {
+    this(s3Client, Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "s3-ranged-get-" + THREAD_NUMBER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }), partSize, parallelism);
+  }
+
+  RangedS3Downloader(AmazonS3Client s3Client, ExecutorService executor, int partSize, int parallelism) {
+    this.s3Client = s3Client;
+    this.executor = executor;
+    this.partSize = partSize;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Start downloading an object.
+   * @param bucket that holds the object.
+   * @param key of the object.
+   * @return the content of the object, which must be closed.
+   * @throws AmazonClientException if the object does not exist or can not be read.
+   */
+  public InputStream open(String bucket, String key) {
+    ObjectMetadata metadata = s3Client.getObjectMetadata(bucket, key);
+    return new RangedInputStream(bucket, key, metadata.getETag(), metadata.getContentLength());
+  }
+
+  /**
+   * Stop the download threads.  Streams that are still open fail.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private byte[] downloadPart(String bucket, String key, String eTag, long start, int length) throws IOException {
+    GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(start, start + length - 1);
+    if (eTag != null) {
+      request.withMatchingETagConstraint(eTag);
+    }
+    S3Object part = s3Client.getObject(request);
+    if (part == null) {
+      throw new IOException("Object " + key + " in bucket " + bucket + " changed during the download.");
+    }
+    byte[] bytes = new byte[length];
+    try (InputStream inputStream = part.getObjectContent()) {
+      int filled = 0;
+      while (filled < length) {
+        int read = inputStream.read(bytes, filled, length - filled);
+        if (read == -1) {
+          throw new EOFException("Part at offset=" + start + " of object " + key + " ended after " + filled + " of " + length + " bytes.");
+        }
+        filled += read;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Reads the parts in order while the next ones download.
+   */
+  private final class RangedInputStream extends InputStream {
+    private final String bucket;
+    private final String key;
+    private final String eTag;
+    private final long contentLength;
+    private final Deque<Future<byte[]>> parts = new ArrayDeque<>();
+    private long nextPartStart;
+    private byte[] current;
+    private int position;
+    private boolean closed;
+
+    private RangedInputStream(String bucket, String key, String eTag, long contentLength) {
+      this.bucket = bucket;
+      this.key = key;
+      this.eTag = eTag;
+      this.contentLength = contentLength;
+      while (parts.size() < parallelism && submitNextPart()) {
+        // Fill the read ahead.
+      }
+    }
+
+    private boolean submitNextPart() {
+      if (nextPartStart >= contentLength) {
+        return false;
+      }
+      long start = nextPartStart;
+      int length = (int) Math.min(partSize, contentLength - start);
+      parts.addLast(executor.submit(() -> downloadPart(bucket, key, eTag, start, length)));
+      nextPartStart += length;
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureAvailable()) {
+        return -1;
+      }
+      return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureAvailable()) {
+        return -1;
+      }
+      int count = Math.min(len, current.length - position);
+      System.arraycopy(current, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return current == null ? 0 : current.length - position;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+      if (closed) {
+        throw new IOException("Stream of object " + key + " is closed.");
+      }
+      while (current == null || position == current.length) {
+        Future<byte[]> next = parts.pollFirst();
+        if (next == null) {
+          return false;
+        }
+        submitNextPart();
+        // Let the part that was read go before waiting, so no more than parallelism + 1 parts are held.
+        current = null;
+        current = await(next);
+        position = 0;
+      }
+      return true;
+    }
+
+    private byte[] await(Future<byte[]> part) throws IOException {
+      try {
+        return part.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for a part of object " + key + ".");
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Error downloading a part of object " + key + " from bucket " + bucket + ".", cause);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      current = null;
+      for (Future<byte[]> part : parts) {
+        part.cancel(true);
+      }
+      parts.clear();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.familysearch.paas.crawler;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pulls the bucket and key of every record out of an S3 event notification with a streaming {@link JsonReader}.
+ * Keys arrive URL encoded with spaces as '+', and are decoded the way the Node service did.
+ *
+ * @author kriskrishna
+ */
+public final class S3EventReader {
+
+  private static final String RECORDS = "Records";
+  private static final String S3 = "s3";
+  private static final String BUCKET = "bucket";
+  private static final String OBJECT = "object";
+  private static final String NAME = "name";
+  private static final String KEY = "key";
+
+  private S3EventReader() {
+  }
+
+  /**
+   * Gives the object of every record in an S3 event.
+   *
+   * @param s3Event is the S3 event JSON document.
+   * @return the object of each record, in record order.
+   * @throws LogCrawlerException if the document is not an S3 event.
+   */
+  public static List<LogObject> readObjects(String s3Event) {
+    List<LogObject> objects = new ArrayList<>();
+    try (JsonReader reader = new JsonReader(new StringReader(s3Event))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (RECORDS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            objects.add(readRecord(reader));
+          }
+          reader.endArray();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      throw new LogCrawlerException("S3 event does not appear to be valid!", e);
+    }
+    return objects;
+  }
+
+  private static LogObject readRecord(JsonReader reader) throws IOException {
+    String bucket = null;
+    String key = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (S3.equals(reader.nextName())) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if (BUCKET.equals(name)) {
+            bucket = readField(reader, NAME);
+          }
+          else if (OBJECT.equals(name)) {
+            key = readField(reader, KEY);
+          }
+          else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (bucket == null || key == null) {
+      throw new LogCrawlerException("S3 event record has no bucket name or object key.");
+    }
+    return new LogObject(bucket, decodeKey(key));
+  }
+
+  private static String readField(JsonReader reader, String field) throws IOException {
+    String value = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (field.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+        value = reader.nextString();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return value;
+  }
+
+  private static String decodeKey(String key) {
+    try {
+      return URLDecoder.decode(key, "UTF-8");
+    }
+    catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      throw new LogCrawlerException("S3 event record has a malformed object key=" + key + ".", e);
+    }
+  }
+
+  /**
+   * The bucket and key of an object in an S3 event.
+   */
+  public static final class LogObject {
+    private final String bucket;
+    private final String key;
+
+    LogObject(String bucket, String key) {
+      this.bucket = bucket;
+      this.key = key;
+    }
+
+    public String getBucket() {
+      return bucket;
+    }
+
+    public String getKey() {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package org.familysearch.paas.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a {@link DiskSpool} between the parse stage and a sink, so a slow or failing sink neither stalls the crawl
+ * nor loses documents.
+ *
+ * {@link #add(byte[], int, int)} appends to the spool and returns; a drain thread reads the spool from its ack
+ * position, hands up to <code>batchRecords</code> documents to the sink and flushes it, and only then acknowledges
+ * them.  When the sink throws, the drain thread waits <code>retryMillis</code> and replays from the ack position,
+ * and on a restart the spool replays what was never acknowledged, so delivery is at least once.  {@link #flush()}
+ * makes the documents durable per the fsync policy of the spool and then waits, up to <code>flushTimeoutMillis</code>,
+ * until the sink has them, so the counts of a crawl are final.  A sink that fails records one by one, like
+ * Elasticsearch rejecting a document, counts them as failed without a replay.
+ *
+ * The indexed and failed counts are those of the acknowledged batches only: what the sink counted during a delivery
+ * that threw is dropped, so a replayed document is counted once, even if the destination took it twice.
+ *
+ * @author kriskrishna
+ */
+public class SpoolingLogSink implements LogSink {
+  private static final Logger LOG = LoggerFactory.getLogger(SpoolingLogSink.class);
+  static final int DEFAULT_BATCH_RECORDS = 10000;
+  static final long DEFAULT_RETRY_MILLIS = 1000;
+  static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final long AWAIT_MILLIS = 100;
+
+  private final DiskSpool spool;
+  private final LogSink sink;
+  private final int batchRecords;
+  private final long retryMillis;
+  private final long flushTimeoutMillis;
+  private final Thread drainer;
+  private volatile boolean closed;
+  private volatile long deliveredPosition;
+  private volatile long indexedDocuments;
+  private volatile long failedDocuments;
+
+  /**
+   * Construct the sink and start draining the spool, replaying what it holds, 10000 documents at a time, a
+   * second after a failure and waiting up to ten minutes on a flush.
+   * @param spool that the documents are appended to.
+   * @param sink that the documents are delivered to, only from the drain thread.
+   */
+  public SpoolingLogSink(DiskSpool spool, LogSink sink) {
+    this(spool, sink, DEFAULT_BATCH_RECORDS, DEFAULT_RETRY_MILLIS);
+  }
+
+  /**
+   * Construct the sink and start draining the spool, replaying what it holds.
+   * @param spool that the documents are appended to.
+   * @param sink that the documents are delivered to, only from the drain thread.
+   * @param batchRecords is the most documents delivered between acknowledgements.
+   * @param retryMillis is the wait before the documents are replayed after the sink failed.
+   */
+  public SpoolingLogSink(DiskSpool spool, LogSink sink, int batchRecords, long retryMillis) {
+    this(spool, sink, batchRecords, retryMillis, DEFAULT_FLUSH_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Construct the sink and start draining the spool, replaying what it holds.
+   * @param spool that the documents are appended to.
+   * @param sink that the documents are delivered to, only from the drain thread.
+   * @param batchRecords is the most documents delivered between acknowledgements.
+   * @param retryMillis is the wait before the documents are replayed after the sink failed.
+   * @param flushTimeoutMillis is the longest {@link #flush()} waits for the sink to have the documents.
+   */
+  public SpoolingLogSink(DiskSpool spool, LogSink sink, int batchRecords, long retryMillis, long flushTimeoutMillis) {
+    this.spool = spool;
+    this.sink = sink;
+    this.batchRecords = batchRecords;
+    this.retryMillis = retryMillis;
+    this.flushTimeoutMillis = flushTimeoutMillis;
+    this.deliveredPosition = spool.getAckPosition();
+    this.drainer = new Thread(this::drain, "spool-drain");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /**
+   * Append a document to the spool, waiting while the spool is full.
+   */
+  @Override
+  public void add(byte[] documentJson, int offset, int length) {
+    spool.append(documentJson, offset, length);
+  }
+
+  /**
+   * Make the spooled documents durable and wait until the sink has them.
+   * @throws LogCrawlerException if the sink does not have them within the flush timeout; they stay spooled and
+   * are replayed.
+   */
+  @Override
+  public void flush() {
+    spool.flush();
+    try {
+      if (!awaitDelivered(flushTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new LogCrawlerException("The sink did not take the spooled documents within " + flushTimeoutMillis
+            + " ms.  They stay spooled and will be replayed.");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LogCrawlerException("Interrupted waiting for the sink to take the spooled documents.", e);
+    }
+  }
+
+  /**
+   * Wait until the sink has the documents spooled so far.
+   * @return true if it does, false if the time ran out.
+   */
+  public boolean awaitDelivered(long timeout, TimeUnit unit) throws InterruptedException {
+    long position = spool.getWritePosition();
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (deliveredPosition < position) {
+      if (System.nanoTime() >= deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  /**
+   * Stop draining and close the spool and the sink; what is not delivered yet is replayed when the spool is
+   * opened again.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    spool.close();
+    try {
+      drainer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    sink.close();
+  }
+
+  @Override
+  public long getIndexedDocuments() {
+    return indexedDocuments;
+  }
+
+  @Override
+  public long getFailedDocuments() {
+    return failedDocuments;
+  }
+
+  private void drain() {
+    ByteArrayBuilder documents = new ByteArrayBuilder(64 * 1024);
+    int[] ends = new int[batchRecords];
+    int[] count = new int[1];
+    long position = spool.getAckPosition();
+    while (!closed) {
+      try {
+        if (!spool.awaitRecords(position, AWAIT_MILLIS)) {
+          continue;
+        }
+        documents.reset();
+        count[0] = 0;
+        long next = spool.read(position, batchRecords, (buffer, offset, length) -> {
+          documents.append(buffer, offset, length);
+          ends[count[0]++] = documents.length();
+        });
+        long indexedBefore = sink.getIndexedDocuments();
+        long failedBefore = sink.getFailedDocuments();
+        int start = 0;
+        for (int i = 0; i < count[0]; i++) {
+          sink.add(documents.array(), start, ends[i] - start);
+          start = ends[i];
+        }
+        sink.flush();
+        spool.ack(next);
+        // Only the drain thread writes the counts.
+        indexedDocuments += sink.getIndexedDocuments() - indexedBefore;
+        failedDocuments += sink.getFailedDocuments() - failedBefore;
+        position = next;
+        deliveredPosition = next;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      catch (RuntimeException e) {
+        LOG.warn("Error occurred delivering spooled documents; will replay them in {} ms.", retryMillis, e);
+        position = spool.getAckPosition();
+        sleep(retryMillis);
+      }
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
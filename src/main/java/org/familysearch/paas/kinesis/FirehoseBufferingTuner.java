@@ -0,0 +1,155 @@
+package org.familysearch.paas.kinesis;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.BufferingHints;
+import com.amazonaws.services.kinesisfirehose.model.ConcurrentModificationException;
+import com.amazonaws.services.kinesisfirehose.model.DeliveryStreamDescription;
+import com.amazonaws.services.kinesisfirehose.model.DescribeDeliveryStreamRequest;
+import com.amazonaws.services.kinesisfirehose.model.DestinationDescription;
+import com.amazonaws.services.kinesisfirehose.model.S3DestinationUpdate;
+import com.amazonaws.services.kinesisfirehose.model.UpdateDestinationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the buffering hints of the S3 destination of a delivery stream to its traffic.  Firehose writes an object
+ * when either hint is reached, so a fixed 5 MB / 300 s makes a quiet stream wait five minutes for every object and
+ * a busy one write many small objects.
+ *
+ * Given the observed ingest rate and delivery latency (CloudWatch DeliveryToS3.DataFreshness), the tuner aims for
+ * objects of <code>targetSizeMBs</code> while keeping the latency within <code>maxLatencySeconds</code>.  Latency
+ * that is not explained by buffering is taken as delivery overhead and subtracted from the budget.  A stream too
+ * quiet to fill even 1 MB within the budget is delivered every 60 seconds.  The destination is only updated when a
+ * hint moves by more than a quarter, since every update makes a new stream version.
+ *
+ * The tuner does not read the metrics itself, as this service has no CloudWatch client.  The caller runs it on its
+ * own schedule, e.g. every few minutes, with the rate from the <code>IncomingBytes</code> sum of the stream divided
+ * by the period and the latency from the maximum of <code>DeliveryToS3.DataFreshness</code>.
+ *
+ * @author kriskrishna
+ */
+public class FirehoseBufferingTuner {
+  private static final Logger LOG = LoggerFactory.getLogger(FirehoseBufferingTuner.class);
+  static final int MIN_SIZE_MBS = 1;
+  static final int MAX_SIZE_MBS = 128;
+  static final int MIN_INTERVAL_SECONDS = 60;
+  static final int MAX_INTERVAL_SECONDS = 900;
+  private static final double MB = 1024 * 1024;
+  private static final double CHANGE_THRESHOLD = 0.25;
+
+  private final AmazonKinesisFirehose firehoseClient;
+  private final String deliveryStreamName;
+  private final int maxLatencySeconds;
+  private final int targetSizeMBs;
+
+  /**
+   * Construct the tuner.
+   * @param firehoseClient that describes and updates the delivery stream.
+   * @param deliveryStreamName of the delivery stream.
+   * @param maxLatencySeconds is the longest a record should take to reach S3.
+   * @param targetSizeMBs is the size of the objects to aim for.
+   */
+  public FirehoseBufferingTuner(AmazonKinesisFirehose firehoseClient, String deliveryStreamName, int maxLatencySeconds,
+                                int targetSizeMBs) {
+    this.firehoseClient = firehoseClient;
+    this.deliveryStreamName = deliveryStreamName;
+    this.maxLatencySeconds = maxLatencySeconds;
+    this.targetSizeMBs = clamp(targetSizeMBs, MIN_SIZE_MBS, MAX_SIZE_MBS);
+  }
+
+  /**
+   * Update the buffering hints of the S3 destination when the observations call for different ones.  Nothing in
+   * this service calls it; see the class comment for the metrics the caller supplies.
+   * @param ingestBytesPerSecond is the observed ingest rate of the stream.
+   * @param deliveryLatencySeconds is the observed age of the oldest record not yet in S3, or a negative number when
+   *                               it is not known.
+   * @return true if the destination was updated.
+   */
+  public boolean tune(double ingestBytesPerSecond, double deliveryLatencySeconds) {
+    try {
+      DeliveryStreamDescription stream = firehoseClient.describeDeliveryStream(
+          new DescribeDeliveryStreamRequest().withDeliveryStreamName(deliveryStreamName)).getDeliveryStreamDescription();
+      DestinationDescription destination = s3Destination(stream);
+      if (destination == null) {
+        LOG.warn("Delivery stream={} has no S3 destination to tune.", deliveryStreamName);
+        return false;
+      }
+      BufferingHints current = destination.getS3DestinationDescription().getBufferingHints();
+      BufferingHints recommended = recommend(current, ingestBytesPerSecond, deliveryLatencySeconds);
+      if (!isSignificantChange(current, recommended)) {
+        return false;
+      }
+
+      firehoseClient.updateDestination(new UpdateDestinationRequest()
+          .withDeliveryStreamName(deliveryStreamName)
+          .withCurrentDeliveryStreamVersionId(stream.getVersionId())
+          .withDestinationId(destination.getDestinationId())
+          .withS3DestinationUpdate(new S3DestinationUpdate().withBufferingHints(recommended)));
+      LOG.info("Updated the buffering hints of stream={} from {} MB / {} s to {} MB / {} s.", deliveryStreamName,
+          current.getSizeInMBs(), current.getIntervalInSeconds(), recommended.getSizeInMBs(), recommended.getIntervalInSeconds());
+      return true;
+    }
+    catch (ConcurrentModificationException e) {
+      // Someone else updated the stream since it was described; the next observation tunes the new version.
+      LOG.info("Delivery stream={} changed while it was tuned.", deliveryStreamName);
+      return false;
+    }
+    catch (AmazonClientException e) {
+      throw new KinesisFireHoseElasticSearchFacadeException("Error occurred tuning the buffering hints of stream=" + deliveryStreamName, e);
+    }
+  }
+
+  /**
+   * @return the buffering hints for the observations.
+   */
+  BufferingHints recommend(BufferingHints current, double ingestBytesPerSecond, double deliveryLatencySeconds) {
+    double rate = Math.max(0, ingestBytesPerSecond);
+    double overhead = deliveryLatencySeconds < 0 ? 0 : Math.max(0, deliveryLatencySeconds - bufferSeconds(current, rate));
+    int budget = clamp((int) (maxLatencySeconds - overhead), MIN_INTERVAL_SECONDS, MAX_INTERVAL_SECONDS);
+
+    double bytesInBudget = rate * budget;
+    if (bytesInBudget >= targetSizeMBs * MB) {
+      return new BufferingHints().withSizeInMBs(targetSizeMBs).withIntervalInSeconds(budget);
+    }
+    if (bytesInBudget < MIN_SIZE_MBS * MB) {
+      return new BufferingHints().withSizeInMBs(MIN_SIZE_MBS).withIntervalInSeconds(MIN_INTERVAL_SECONDS);
+    }
+    return new BufferingHints().withSizeInMBs(clamp((int) (bytesInBudget / MB), MIN_SIZE_MBS, targetSizeMBs))
+        .withIntervalInSeconds(budget);
+  }
+
+  /**
+   * The seconds a record waits in the Firehose buffer with the current hints: until the interval passes or the
+   * buffer fills, whichever comes first.
+   */
+  private static double bufferSeconds(BufferingHints current, double rate) {
+    double interval = current.getIntervalInSeconds() == null ? MAX_INTERVAL_SECONDS : current.getIntervalInSeconds();
+    if (rate == 0 || current.getSizeInMBs() == null) {
+      return interval;
+    }
+    return Math.min(interval, current.getSizeInMBs() * MB / rate);
+  }
+
+  private static boolean isSignificantChange(BufferingHints current, BufferingHints recommended) {
+    return isSignificantChange(current.getSizeInMBs(), recommended.getSizeInMBs())
+        || isSignificantChange(current.getIntervalInSeconds(), recommended.getIntervalInSeconds());
+  }
+
+  private static boolean isSignificantChange(Integer current, int recommended) {
+    return current == null || Math.abs(recommended - current) > current * CHANGE_THRESHOLD;
+  }
+
+  private static DestinationDescription s3Destination(DeliveryStreamDescription stream) {
+    for (DestinationDescription destination : stream.getDestinations()) {
+      if (destination.getS3DestinationDescription() != null) {
+        return destination;
+      }
+    }
+    return null;
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
@@ -1,4 +1,4 @@
-package org.familysearch.firehose.crawler;
+package org.familysearch.paas.kinesis;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -7,12 +7,21 @@ import java.util.Properties;
 
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
 import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseClient;
 import com.amazonaws.services.kinesisfirehose.model.BufferingHints;
 import com.amazonaws.services.kinesisfirehose.model.CreateDeliveryStreamRequest;
 import com.amazonaws.services.kinesisfirehose.model.S3DestinationConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Helper {
+	private static final Logger LOG = LoggerFactory.getLogger(Helper.class);
+	static final int DEFAULT_BUFFERING_INTERVAL_SECONDS = 300;
+	static final int DEFAULT_BUFFERING_SIZE_MBS = 5;
+	static final int DEFAULT_BUFFERING_MAX_LATENCY_SECONDS = 300;
+	static final int DEFAULT_BUFFERING_TARGET_SIZE_MBS = 64;
+
 	private static Properties properties;
 
 	public static Properties properties() {
@@ -43,10 +52,7 @@ public class Helper {
 		S3DestinationConfiguration s3DestinationConfiguration = new S3DestinationConfiguration();
 		s3DestinationConfiguration.setBucketARN( Helper.properties().getProperty("s3bucketARN"));
 		s3DestinationConfiguration.setRoleARN( Helper.properties().getProperty("roleARN"));
-		BufferingHints bufferingHints = new BufferingHints();
-		bufferingHints.setIntervalInSeconds(300);
-		bufferingHints.setSizeInMBs(5);
-		s3DestinationConfiguration.setBufferingHints(bufferingHints);
+		s3DestinationConfiguration.setBufferingHints(bufferingHints(Helper.properties(), createDeliveryStreamRequest.getDeliveryStreamName()));
 		
 		createDeliveryStreamRequest.setS3DestinationConfiguration(s3DestinationConfiguration);
 		
@@ -54,4 +60,42 @@ public class Helper {
 		
 		return kinesisfirehoseClient;
 	}
+
+	/**
+	 * Gives the buffering hints of a delivery stream: bufferingIntervalSeconds.&lt;stream&gt; and
+	 * bufferingSizeMBs.&lt;stream&gt;, else bufferingIntervalSeconds and bufferingSizeMBs, else 300 seconds and 5 MB.
+	 */
+	static BufferingHints bufferingHints(Properties properties, String deliveryStreamName) {
+		return new BufferingHints()
+				.withIntervalInSeconds(intProperty(properties, "bufferingIntervalSeconds", deliveryStreamName, DEFAULT_BUFFERING_INTERVAL_SECONDS))
+				.withSizeInMBs(intProperty(properties, "bufferingSizeMBs", deliveryStreamName, DEFAULT_BUFFERING_SIZE_MBS));
+	}
+
+	/**
+	 * Creates a tuner for the buffering hints of the configured delivery stream, from
+	 * bufferingMaxLatencySeconds and bufferingTargetSizeMBs, which may be qualified by the stream name too.  The
+	 * caller schedules {@link FirehoseBufferingTuner#tune(double, double)} with the CloudWatch metrics of the stream.
+	 */
+	public static FirehoseBufferingTuner setupBufferingTuner(AmazonKinesisFirehose kinesisfirehoseClient) {
+		String deliveryStreamName = Helper.properties().getProperty("kinesisStreamName");
+		return new FirehoseBufferingTuner(kinesisfirehoseClient, deliveryStreamName,
+				intProperty(Helper.properties(), "bufferingMaxLatencySeconds", deliveryStreamName, DEFAULT_BUFFERING_MAX_LATENCY_SECONDS),
+				intProperty(Helper.properties(), "bufferingTargetSizeMBs", deliveryStreamName, DEFAULT_BUFFERING_TARGET_SIZE_MBS));
+	}
+
+	/**
+	 * Gives an int property, defaulting when it is not set, or with a warning when it is not a number.
+	 */
+	static int intProperty(Properties properties, String name, String deliveryStreamName, int defaultValue) {
+		String value = properties == null ? null : properties.getProperty(name + "." + deliveryStreamName, properties.getProperty(name));
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			LOG.warn("Property={} of stream={} is not a number: '{}'.  Will use the default={}.", name, deliveryStreamName, value, defaultValue);
+			return defaultValue;
+		}
+	}
 }
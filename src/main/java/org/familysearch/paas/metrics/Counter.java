@@ -0,0 +1,40 @@
+package org.familysearch.paas.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts occurrences.  Backed by a {@link LongAdder}, so threads that count at once do not contend on one word.
+ * Reported as the count since the previous report.  The adder is never reset, as a reset races with the threads
+ * that count; a report takes the difference to the total of the previous one, so no occurrence is lost.
+ *
+ * @author kriskrishna
+ */
+public class Counter {
+  private final LongAdder count = new LongAdder();
+  private volatile long reported;
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  /**
+   * @return the count since the previous report, without resetting it.
+   */
+  public long get() {
+    return count.sum() - reported;
+  }
+
+  /**
+   * @return the count since the previous report, and start counting again.
+   */
+  synchronized long getAndReset() {
+    long total = count.sum();
+    long sinceReport = total - reported;
+    reported = total;
+    return sinceReport;
+  }
+}
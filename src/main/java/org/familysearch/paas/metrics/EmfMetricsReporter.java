@@ -0,0 +1,164 @@
+package org.familysearch.paas.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static net.logstash.logback.marker.Markers.appendEntries;
+
+/**
+ * Reports a {@link MetricsRegistry} as CloudWatch Embedded Metric Format documents, logged through the logstash
+ * encoder, so CloudWatch Logs turns them into metrics without a metric filter per log message.
+ *
+ * Every report holds, since the previous one: the count of each counter, the value of each gauge, and for each
+ * histogram <code>name.count</code>, <code>name.p50</code>, <code>name.p99</code> and <code>name.max</code>.  All
+ * metrics carry the <code>Service</code> dimension.  Reports are logged on a daemon thread every period once
+ * {@link #start(long)} is called, and on {@link #flush()}, which a Lambda invocation calls before it returns since
+ * the container may be frozen before the next period.  The logger must be enabled at INFO.
+ *
+ * @author kriskrishna
+ */
+public class EmfMetricsReporter implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(EmfMetricsReporter.class);
+  static final String SERVICE_DIMENSION = "Service";
+  // CloudWatch takes at most 100 metrics per directive.
+  static final int MAX_METRICS_PER_DIRECTIVE = 100;
+  private static final String COUNT = "Count";
+  private static final String NONE = "None";
+
+  private final MetricsRegistry registry;
+  private final String namespace;
+  private final String service;
+  private final LongSupplier clockMillis;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Construct the reporter.
+   * @param registry whose metrics are reported.
+   * @param namespace of the metrics in CloudWatch.
+   * @param service is the value of the Service dimension.
+   */
+  public EmfMetricsReporter(MetricsRegistry registry, String namespace, String service) {
+    this(registry, namespace, service, System::currentTimeMillis);
+  }
+
+  EmfMetricsReporter(MetricsRegistry registry, String namespace, String service, LongSupplier clockMillis) {
+    this.registry = registry;
+    this.namespace = namespace;
+    this.service = service;
+    this.clockMillis = clockMillis;
+  }
+
+  /**
+   * Report every period on a daemon thread, until {@link #close()}.
+   * @param periodSeconds between reports.
+   */
+  public synchronized void start(long periodSeconds) {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "metrics-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::flush, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Log the metrics recorded since the previous report, if there are any.
+   */
+  public void flush() {
+    try {
+      Map<String, Object> document = document(clockMillis.getAsLong());
+      if (document != null) {
+        LOG.info(appendEntries(document), "Metrics.");
+      }
+    }
+    catch (RuntimeException e) {
+      LOG.warn("Error occurred reporting metrics.  Will try again at the next report.", e);
+    }
+  }
+
+  /**
+   * Stop reporting every period and report what is left.
+   */
+  @Override
+  public synchronized void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    flush();
+  }
+
+  /**
+   * @return the EMF document of the metrics since the previous report, or null when there are none.
+   */
+  synchronized Map<String, Object> document(long timestampMillis) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    List<Map<String, String>> definitions = new ArrayList<>();
+    for (Map.Entry<String, Counter> counter : new TreeMap<>(registry.getCounters()).entrySet()) {
+      add(values, definitions, counter.getKey(), COUNT, counter.getValue().getAndReset());
+    }
+    for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(registry.getGauges()).entrySet()) {
+      try {
+        add(values, definitions, gauge.getKey(), NONE, gauge.getValue().getAsLong());
+      }
+      catch (RuntimeException e) {
+        LOG.warn("Error occurred reading gauge={}.  Will leave it out of this report.", gauge.getKey(), e);
+      }
+    }
+    for (Map.Entry<String, Histogram> histogram : new TreeMap<>(registry.getHistograms()).entrySet()) {
+      String name = histogram.getKey();
+      String unit = histogram.getValue().getUnit();
+      Histogram.Snapshot snapshot = histogram.getValue().snapshotAndReset();
+      add(values, definitions, name + ".count", COUNT, snapshot.getCount());
+      if (snapshot.getCount() > 0) {
+        add(values, definitions, name + ".p50", unit, snapshot.percentile(0.5));
+        add(values, definitions, name + ".p99", unit, snapshot.percentile(0.99));
+        add(values, definitions, name + ".max", unit, snapshot.getMax());
+      }
+    }
+    if (definitions.isEmpty()) {
+      return null;
+    }
+
+    List<Map<String, Object>> directives = new ArrayList<>();
+    for (int i = 0; i < definitions.size(); i += MAX_METRICS_PER_DIRECTIVE) {
+      Map<String, Object> directive = new LinkedHashMap<>();
+      directive.put("Namespace", namespace);
+      directive.put("Dimensions", Collections.singletonList(Collections.singletonList(SERVICE_DIMENSION)));
+      directive.put("Metrics", definitions.subList(i, Math.min(definitions.size(), i + MAX_METRICS_PER_DIRECTIVE)));
+      directives.add(directive);
+    }
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("Timestamp", timestampMillis);
+    metadata.put("CloudWatchMetrics", directives);
+
+    Map<String, Object> document = new LinkedHashMap<>();
+    document.put("_aws", metadata);
+    document.put(SERVICE_DIMENSION, service);
+    document.putAll(values);
+    return document;
+  }
+
+  private static void add(Map<String, Object> values, List<Map<String, String>> definitions, String name, String unit, long value) {
+    Map<String, String> definition = new LinkedHashMap<>();
+    definition.put("Name", name);
+    definition.put("Unit", unit);
+    definitions.add(definition);
+    values.put(name, value);
+  }
+}
@@ -0,0 +1,170 @@
+package org.familysearch.paas.metrics;
+
+import net.logstash.logback.marker.LogstashMarker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static net.logstash.logback.marker.Markers.append;
+
+/**
+ * Traces the stages of processing one event, as nanosecond spans that are logged together in one record when the
+ * event is done, so a slow event can be broken down without correlating log lines.
+ *
+ * The trace of the current thread is held in a {@link ThreadLocal} and its ID is put in the MDC under
+ * <code>traceId</code>, so every log line of the event carries it.  Work handed to another thread must
+ * {@link #attach(EventTrace)} the trace there.  Only a sample of the events record spans; the rest only carry an
+ * ID, so {@link #span(String, long, long)} costs a ThreadLocal read when the event is not sampled.
+ *
+ * @author kriskrishna
+ */
+public final class EventTrace {
+  private static final Logger LOG = LoggerFactory.getLogger(EventTrace.class);
+  /**
+   * The MDC key of the trace ID.
+   */
+  public static final String TRACE_ID = "traceId";
+  private static final int ALL = 100;
+  private static final ThreadLocal<EventTrace> CURRENT = new ThreadLocal<>();
+
+  private final String traceId;
+  private final String eventPath;
+  private final long startNanos;
+  private final List<Span> spans;
+
+  EventTrace(String traceId, String eventPath, long startNanos, boolean sampled) {
+    this.traceId = traceId;
+    this.eventPath = eventPath;
+    this.startNanos = startNanos;
+    this.spans = sampled ? new ArrayList<>() : null;
+  }
+
+  /**
+   * Start tracing an event on the current thread.  Call {@link #end(LogstashMarker)} in a finally block.
+   * @param eventPath of the event.
+   * @param samplePercent is the percentage of the events, from 0 to 100, whose spans are recorded and logged.
+   * @return the trace, now current on this thread.
+   */
+  public static EventTrace begin(String eventPath, int samplePercent) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    boolean sampled = samplePercent >= ALL || samplePercent > 0 && random.nextInt(ALL) < samplePercent;
+    EventTrace trace = new EventTrace(Long.toHexString(random.nextLong()), eventPath, System.nanoTime(), sampled);
+    attach(trace);
+    return trace;
+  }
+
+  /**
+   * @return the trace of the current thread, or null when no event is being traced.
+   */
+  public static EventTrace current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Make a trace the current one of this thread, e.g. on a worker that processes part of the event.
+   * @param trace to make current, or null to stop tracing on this thread.
+   * @return the trace that was current, to attach again when the work is done.
+   */
+  public static EventTrace attach(EventTrace trace) {
+    EventTrace previous = CURRENT.get();
+    if (trace == null) {
+      CURRENT.remove();
+      MDC.remove(TRACE_ID);
+    }
+    else {
+      CURRENT.set(trace);
+      MDC.put(TRACE_ID, trace.traceId);
+    }
+    return previous;
+  }
+
+  /**
+   * Add a span to the trace of the current thread, if it is sampled.
+   * @param stage that took place.
+   * @param startNanos from {@link System#nanoTime()} when the stage began.
+   * @param endNanos from {@link System#nanoTime()} when the stage ended.
+   */
+  public static void span(String stage, long startNanos, long endNanos) {
+    EventTrace trace = CURRENT.get();
+    if (trace != null && trace.spans != null) {
+      trace.add(new Span(stage, startNanos - trace.startNanos, endNanos - startNanos, Thread.currentThread().getName()));
+    }
+  }
+
+  /**
+   * Add a span that ends now to the trace of the current thread, if it is sampled.
+   */
+  public static void span(String stage, long startNanos) {
+    span(stage, startNanos, System.nanoTime());
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public boolean isSampled() {
+    return spans != null;
+  }
+
+  /**
+   * Stop tracing on the current thread and, when sampled, log the spans in one record.
+   * @param outcome is added to the record, e.g. the status of each record of the event, or null.
+   */
+  public void end(LogstashMarker outcome) {
+    long durationNanos = System.nanoTime() - startNanos;
+    if (CURRENT.get() == this) {
+      attach(null);
+    }
+    if (spans == null) {
+      return;
+    }
+    LogstashMarker marker = append(TRACE_ID, traceId).and(append("eventPath", eventPath))
+        .and(append("durationNanos", durationNanos)).and(append("spans", getSpans()));
+    LOG.info(outcome == null ? marker : marker.and(outcome), "Traced event.");
+  }
+
+  synchronized List<Span> getSpans() {
+    return new ArrayList<>(spans);
+  }
+
+  private synchronized void add(Span span) {
+    spans.add(span);
+  }
+
+  /**
+   * A stage of the event, timed from the start of the trace.
+   */
+  public static final class Span {
+    private final String stage;
+    private final long startNanos;
+    private final long durationNanos;
+    private final String thread;
+
+    Span(String stage, long startNanos, long durationNanos, String thread) {
+      this.stage = stage;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+      this.thread = thread;
+    }
+
+    public String getStage() {
+      return stage;
+    }
+
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public String getThread() {
+      return thread;
+    }
+  }
+}
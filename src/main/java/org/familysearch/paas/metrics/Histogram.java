@@ -0,0 +1,140 @@
+package org.familysearch.paas.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of a value, such as the latency of a stage, without locks.
+ *
+ * Values are counted in log-linear buckets: exact below 16, then 16 buckets per power of two, so a percentile is
+ * off by at most 1/16 of the value, whatever its magnitude, in a fixed 960 counters.  A value is one atomic
+ * increment of its bucket plus a {@link LongAdder} for the sum and an {@link AtomicLong} for the max, so recording
+ * never blocks and never allocates.  Negative values are recorded as 0.
+ *
+ * @author kriskrishna
+ */
+public class Histogram {
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private static final long NANOS_PER_MICRO = 1000;
+
+  private final String unit;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+  private long reportedSum;
+
+  /**
+   * Construct the histogram.
+   * @param unit of the values, one of the CloudWatch units such as <code>Microseconds</code> or <code>Bytes</code>.
+   */
+  public Histogram(String unit) {
+    this.unit = unit;
+  }
+
+  public String getUnit() {
+    return unit;
+  }
+
+  public void record(long value) {
+    long v = Math.max(0, value);
+    buckets.incrementAndGet(bucket(v));
+    sum.add(v);
+    max.accumulateAndGet(v, Math::max);
+  }
+
+  /**
+   * Record the microseconds since a start time.
+   * @param startNanos from {@link System#nanoTime()} when the measured work began.
+   */
+  public void recordSince(long startNanos) {
+    record((System.nanoTime() - startNanos) / NANOS_PER_MICRO);
+  }
+
+  /**
+   * @return the values recorded since the previous snapshot, and start recording again.  Each bucket and the max
+   * are taken with an atomic swap and the sum as the difference to the previous total, so no value is lost or
+   * reported twice.  A value recorded while the snapshot is taken may be counted in this one and summed or maxed in
+   * the next.
+   */
+  synchronized Snapshot snapshotAndReset() {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.getAndSet(i, 0);
+      count += counts[i];
+    }
+    long totalSum = sum.sum();
+    long sumSinceSnapshot = totalSum - reportedSum;
+    reportedSum = totalSum;
+    return new Snapshot(counts, count, sumSinceSnapshot, max.getAndSet(0));
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  static long lowestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  static long highestValue(int bucket) {
+    return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+  }
+
+  /**
+   * The values of one reporting interval.
+   */
+  static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    long getSum() {
+      return sum;
+    }
+
+    long getMax() {
+      return max;
+    }
+
+    /**
+     * @param quantile between 0 and 1.
+     * @return the highest value of the bucket that holds the quantile, but no more than the max, or 0 when nothing
+     * was recorded.
+     */
+    long percentile(double quantile) {
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValue(i), max);
+        }
+      }
+      return 0;
+    }
+  }
+}
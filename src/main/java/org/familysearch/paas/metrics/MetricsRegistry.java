@@ -0,0 +1,79 @@
+package org.familysearch.paas.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the counters, gauges and histograms of the process by name, for {@link EmfMetricsReporter} to report.
+ * Looking a metric up is a map read; keep the metric in a field where it is used on a hot path.  Thread safe.
+ *
+ * @author kriskrishna
+ */
+public class MetricsRegistry {
+  /**
+   * The CloudWatch unit of the histograms made by {@link #timer(String)}.
+   */
+  public static final String MICROSECONDS = "Microseconds";
+  private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  /**
+   * @return the registry the helpers record into.
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return the counter of the name, made on first use.
+   */
+  public Counter counter(String name) {
+    return counters.computeIfAbsent(name, key -> new Counter());
+  }
+
+  /**
+   * Report the value of the supplier under the name, replacing any gauge of the same name.
+   */
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * @return the histogram of latencies in microseconds of the name, made on first use.
+   */
+  public Histogram timer(String name) {
+    return histogram(name, MICROSECONDS);
+  }
+
+  /**
+   * @return a stage whose times are recorded in the {@link #timer(String)} of the name and as spans of the
+   * {@link EventTrace} of the current thread.
+   */
+  public Stage stage(String name) {
+    return new Stage(name, timer(name));
+  }
+
+  /**
+   * @return the histogram of the name, made on first use with the unit.
+   */
+  public Histogram histogram(String name, String unit) {
+    return histograms.computeIfAbsent(name, key -> new Histogram(unit));
+  }
+
+  Map<String, Counter> getCounters() {
+    return counters;
+  }
+
+  Map<String, LongSupplier> getGauges() {
+    return gauges;
+  }
+
+  Map<String, Histogram> getHistograms() {
+    return histograms;
+  }
+}
@@ -0,0 +1,33 @@
+package org.familysearch.paas.metrics;
+
+/**
+ * A timed stage of processing an event, such as an IAM or HTTP call.  Each time is recorded in the latency
+ * histogram of the stage and, when the event on the current thread is sampled, as a span of its {@link EventTrace}.
+ *
+ * @author kriskrishna
+ */
+public class Stage {
+  private static final long NANOS_PER_MICRO = 1000;
+
+  private final String name;
+  private final Histogram histogram;
+
+  Stage(String name, Histogram histogram) {
+    this.name = name;
+    this.histogram = histogram;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Record the time since a start time.
+   * @param startNanos from {@link System#nanoTime()} when the stage began.
+   */
+  public void recordSince(long startNanos) {
+    long endNanos = System.nanoTime();
+    histogram.record((endNanos - startNanos) / NANOS_PER_MICRO);
+    EventTrace.span(name, startNanos, endNanos);
+  }
+}
@@ -0,0 +1,224 @@
+package org.familysearch.paas.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Caches the account alias of each AWS account.
+ *
+ * An alias younger than <code>refreshAfterMillis</code> is served as is.  Between <code>refreshAfterMillis</code>
+ * and <code>ttlMillis</code> it is still served, but a reload is started in the background so the next caller
+ * sees a fresh value without waiting.  Past <code>ttlMillis</code> the caller waits for the reload, and if that
+ * fails the stale alias is served rather than nothing.  Concurrent loads of the same account share one call.
+ *
+ * When a snapshot file is configured every successful load is written to it with the time it was fetched, and a new
+ * JVM starts from the aliases in it, aged from that time: an alias is served immediately and refreshed in the
+ * background once it is older than <code>refreshAfterMillis</code>, and only past <code>ttlMillis</code> does the
+ * first caller wait for a reload.
+ *
+ * @author kriskrishna
+ */
+public class AccountAliasCache {
+  private static final Logger LOG = LoggerFactory.getLogger(AccountAliasCache.class);
+  private static final String FETCHED_AT_SUFFIX = ".fetchedAt";
+  private static final Executor DEFAULT_REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "account-alias-refresh");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Loads the alias of an account, typically with a remote call.
+   */
+  public interface AliasLoader {
+    /**
+     * @param awsAccountId whose alias should be loaded.
+     * @return the alias.
+     * @throws Exception if the alias could not be loaded.
+     */
+    String load(String awsAccountId) throws Exception;
+  }
+
+  private final AliasLoader loader;
+  private final long ttlMillis;
+  private final long refreshAfterMillis;
+  private final File snapshotFile;
+  private final Executor refreshExecutor;
+  private final Clock clock;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<String>> loads = new ConcurrentHashMap<>();
+
+  /**
+   * Construct the cache.
+   * @param loader that fetches an alias.
+   * @param ttlMillis after which callers wait for a reload.
+   * @param refreshAfterMillis after which a reload is started in the background.
+   * @param snapshotFile that aliases are persisted to, or null to keep them in memory only.
+   */
+  public AccountAliasCache(AliasLoader loader, long ttlMillis, long refreshAfterMillis, File snapshotFile) {
+    this(loader, ttlMillis, refreshAfterMillis, snapshotFile, DEFAULT_REFRESH_EXECUTOR, Clock.systemUTC());
+  }
+
+  /**
+   * Construct the cache with a specific executor and clock.  Generally used for testing.
+   */
+  AccountAliasCache(AliasLoader loader, long ttlMillis, long refreshAfterMillis, File snapshotFile, Executor refreshExecutor, Clock clock) {
+    if (refreshAfterMillis > ttlMillis) {
+      throw new IllegalArgumentException("refreshAfterMillis must not be larger than ttlMillis");
+    }
+    this.loader = loader;
+    this.ttlMillis = ttlMillis;
+    this.refreshAfterMillis = refreshAfterMillis;
+    this.snapshotFile = snapshotFile;
+    this.refreshExecutor = refreshExecutor;
+    this.clock = clock;
+    restoreSnapshot();
+  }
+
+  /**
+   * Gives the alias of the account.
+   * @param awsAccountId whose alias is wanted.
+   * @return the alias, or null if it has never been loaded successfully.
+   */
+  public String get(String awsAccountId) {
+    Entry entry = entries.get(awsAccountId);
+    long now = clock.millis();
+    if (entry != null && now - entry.fetchedAt < ttlMillis) {
+      if (now - entry.fetchedAt >= refreshAfterMillis) {
+        load(awsAccountId, refreshExecutor);
+      }
+      return entry.alias;
+    }
+
+    try {
+      return load(awsAccountId, Runnable::run).join();
+    }
+    catch (CompletionException e) {
+      if (entry == null) {
+        LOG.error("Error occurred loading the alias for account={} and nothing is cached.", awsAccountId, e.getCause());
+        return null;
+      }
+      LOG.warn("Error occurred reloading the alias for account={}.  Will keep using alias={}.", awsAccountId, entry.alias, e.getCause());
+      return entry.alias;
+    }
+  }
+
+  /**
+   * Forget the alias of an account, so the next caller reloads it.
+   * @param awsAccountId whose alias should be forgotten.
+   */
+  public void invalidate(String awsAccountId) {
+    entries.remove(awsAccountId);
+  }
+
+  private CompletableFuture<String> load(String awsAccountId, Executor executor) {
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    CompletableFuture<String> existing = loads.putIfAbsent(awsAccountId, pending);
+    if (existing != null) {
+      return existing;
+    }
+    executor.execute(() -> {
+      try {
+        String alias = loader.load(awsAccountId);
+        if (alias == null) {
+          throw new IllegalStateException("No alias for account=" + awsAccountId);
+        }
+        entries.put(awsAccountId, new Entry(alias, clock.millis()));
+        writeSnapshot();
+        pending.complete(alias);
+      }
+      catch (Exception e) {
+        pending.completeExceptionally(e);
+      }
+      finally {
+        loads.remove(awsAccountId, pending);
+      }
+    });
+    return pending;
+  }
+
+  private void restoreSnapshot() {
+    if (snapshotFile == null || !snapshotFile.isFile()) {
+      return;
+    }
+    Properties snapshot = new Properties();
+    try (InputStream inputStream = new FileInputStream(snapshotFile)) {
+      snapshot.load(inputStream);
+    }
+    catch (IOException e) {
+      LOG.warn("Error occurred reading the account alias snapshot={}.  Will start with an empty cache.", snapshotFile, e);
+      return;
+    }
+    // An alias without a usable fetch time is served right away, but refreshed on first use.  A fetch time in the
+    // future, from a clock that was ahead, counts as now.
+    long now = clock.millis();
+    for (String name : snapshot.stringPropertyNames()) {
+      if (!name.endsWith(FETCHED_AT_SUFFIX)) {
+        long fetchedAt = parseFetchedAt(snapshot.getProperty(name + FETCHED_AT_SUFFIX), now - refreshAfterMillis);
+        entries.put(name, new Entry(snapshot.getProperty(name), Math.min(fetchedAt, now)));
+      }
+    }
+    LOG.info("Restored {} account aliases from snapshot={}.", entries.size(), snapshotFile);
+  }
+
+  private static long parseFetchedAt(String fetchedAt, long defaultFetchedAt) {
+    if (fetchedAt == null) {
+      return defaultFetchedAt;
+    }
+    try {
+      return Long.parseLong(fetchedAt.trim());
+    }
+    catch (NumberFormatException e) {
+      return defaultFetchedAt;
+    }
+  }
+
+  private synchronized void writeSnapshot() {
+    if (snapshotFile == null) {
+      return;
+    }
+    Properties snapshot = new Properties();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      snapshot.setProperty(entry.getKey(), entry.getValue().alias);
+      snapshot.setProperty(entry.getKey() + FETCHED_AT_SUFFIX, String.valueOf(entry.getValue().fetchedAt));
+    }
+    File temporary = new File(snapshotFile.getPath() + ".tmp");
+    try {
+      try (OutputStream outputStream = new FileOutputStream(temporary)) {
+        snapshot.store(outputStream, "Account aliases, see AccountAliasCache");
+      }
+      Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOG.warn("Error occurred writing the account alias snapshot={}.  Will ignore.", snapshotFile, e);
+    }
+  }
+
+  private static final class Entry {
+    private final String alias;
+    private final long fetchedAt;
+
+    private Entry(String alias, long fetchedAt) {
+      this.alias = alias;
+      this.fetchedAt = fetchedAt;
+    }
+  }
+}
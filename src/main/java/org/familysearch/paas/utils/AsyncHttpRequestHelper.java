@@ -0,0 +1,244 @@
+package org.familysearch.paas.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the requests of an {@link HttpRequestHelper} on a bounded pool of I/O threads and gives back a
+ * {@link CompletableFuture} instead of blocking the caller, so JIRA and Elasticsearch calls for many events can
+ * overlap.
+ *
+ * At most <code>maxConcurrentRequestsPerHost</code> requests run against a host at once; the rest wait in a per host
+ * queue without holding an I/O thread.  A request that has not completed within <code>timeoutMillis</code> of being
+ * submitted, queueing included, fails with a {@link TimeoutException}.  The underlying blocking call can not be
+ * interrupted, so it keeps its host slot until the transport's own read timeout ends it.
+ *
+ * @author kriskrishna
+ */
+public class AsyncHttpRequestHelper {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncHttpRequestHelper.class);
+  private static final int DEFAULT_MAX_QUEUED_REQUESTS_PER_HOST = 1000;
+
+  /**
+   * A blocking request made with the wrapped helper.
+   */
+  interface BlockingCall<T> {
+    T call() throws Exception;
+  }
+
+  private final HttpRequestHelper httpRequestHelper;
+  private final int maxConcurrentRequestsPerHost;
+  private final int maxQueuedRequestsPerHost;
+  private final long timeoutMillis;
+  private final ExecutorService ioExecutor;
+  private final ScheduledExecutorService timeoutScheduler;
+  private final ConcurrentMap<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+  /**
+   * Construct the helper.
+   * @param httpRequestHelper that makes the requests, ideally a pooled one.
+   * @param ioThreads is the number of requests that can be running at once, across all hosts.
+   * @param maxConcurrentRequestsPerHost is the number of requests that can be running at once against one host.
+   * @param timeoutMillis after which a request that has not completed fails.
+   */
+  public AsyncHttpRequestHelper(HttpRequestHelper httpRequestHelper, int ioThreads, int maxConcurrentRequestsPerHost, long timeoutMillis) {
+    this(httpRequestHelper, maxConcurrentRequestsPerHost, DEFAULT_MAX_QUEUED_REQUESTS_PER_HOST, timeoutMillis,
+        createIoExecutor(ioThreads), Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("http-timeout")));
+  }
+
+  /**
+   * Construct the helper with specific executors.  Generally used for testing.
+   */
+  AsyncHttpRequestHelper(HttpRequestHelper httpRequestHelper, int maxConcurrentRequestsPerHost, int maxQueuedRequestsPerHost,
+                         long timeoutMillis, ExecutorService ioExecutor, ScheduledExecutorService timeoutScheduler) {
+    if (maxConcurrentRequestsPerHost < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequestsPerHost must be at least 1");
+    }
+    this.httpRequestHelper = httpRequestHelper;
+    this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    this.maxQueuedRequestsPerHost = maxQueuedRequestsPerHost;
+    this.timeoutMillis = timeoutMillis;
+    this.ioExecutor = ioExecutor;
+    this.timeoutScheduler = timeoutScheduler;
+  }
+
+  /**
+   * Asynchronous {@link HttpRequestHelper#executePutRequest(String, Object, List)}.
+   * @return the http status code resulting from the PUT request.
+   */
+  public CompletableFuture<Integer> executePutRequest(String url, Object body, List<String> cookies) {
+    return submit(url, () -> httpRequestHelper.executePutRequest(url, body, cookies));
+  }
+
+  /**
+   * Asynchronous {@link HttpRequestHelper#executePostRequest(String, Object, List)}.
+   * @return the http status code resulting from the POST request.
+   */
+  public CompletableFuture<Integer> executePostRequest(String url, Object body, List<String> cookies) {
+    return submit(url, () -> httpRequestHelper.executePostRequest(url, body, cookies));
+  }
+
+  /**
+   * Asynchronous {@link HttpRequestHelper#executePostRequest(String, Object, List, Class)}.
+   * @return the response body as an object of type T.
+   */
+  public <T> CompletableFuture<T> executePostRequest(String url, Object body, List<String> cookies, Class<T> type) {
+    return submit(url, () -> httpRequestHelper.executePostRequest(url, body, cookies, type));
+  }
+
+  /**
+   * Asynchronous {@link HttpRequestHelper#executePostLoginRequest(String, Object)}.
+   * @return the Cookie headers that should be used in subsequent requests.
+   */
+  public CompletableFuture<List<String>> executePostLoginRequest(String url, Object body) {
+    return submit(url, () -> httpRequestHelper.executePostLoginRequest(url, body));
+  }
+
+  /**
+   * Stop accepting requests.  Requests that are already running are allowed to finish.
+   */
+  public void shutdown() {
+    ioExecutor.shutdown();
+    timeoutScheduler.shutdownNow();
+  }
+
+  <T> CompletableFuture<T> submit(String url, BlockingCall<T> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    String host;
+    try {
+      host = hostOf(url);
+    }
+    catch (IllegalArgumentException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+
+    ScheduledFuture<?> timeout = timeoutScheduler.schedule(
+        () -> result.completeExceptionally(new TimeoutException("HTTP request to url=" + url + " took more than " + timeoutMillis + " ms")),
+        timeoutMillis, TimeUnit.MILLISECONDS);
+    result.whenComplete((value, throwable) -> timeout.cancel(false));
+
+    HostLimiter limiter = hostLimiters.computeIfAbsent(host, key -> new HostLimiter());
+    limiter.submit(() -> {
+      if (result.isDone()) {
+        return; // timed out while queued, do not bother the host.
+      }
+      try {
+        result.complete(call.call());
+      }
+      catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    }, result);
+    return result;
+  }
+
+  private static String hostOf(String url) {
+    URI uri = URI.create(url);
+    if (uri.getHost() == null) {
+      throw new IllegalArgumentException("url=" + url + " has no host");
+    }
+    return uri.getHost() + ":" + uri.getPort();
+  }
+
+  private static ExecutorService createIoExecutor(int ioThreads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), daemonThreadFactory("http-io"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ThreadFactory daemonThreadFactory(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Lets a limited number of requests run against one host and queues the rest.  A finishing request hands its
+   * slot straight to the next queued one.
+   */
+  private final class HostLimiter {
+    private final Queue<Pending> queued = new ArrayDeque<>();
+    private int running;
+
+    void submit(Runnable task, CompletableFuture<?> result) {
+      Pending pending = new Pending(task, result);
+      synchronized (this) {
+        if (running >= maxConcurrentRequestsPerHost) {
+          if (queued.size() >= maxQueuedRequestsPerHost) {
+            result.completeExceptionally(new RejectedExecutionException("Too many HTTP requests are queued for one host"));
+          }
+          else {
+            queued.add(pending);
+          }
+          return;
+        }
+        running++;
+      }
+      dispatch(pending);
+    }
+
+    private void release() {
+      Pending next;
+      synchronized (this) {
+        next = queued.poll();
+        if (next == null) {
+          running--;
+          return;
+        }
+      }
+      dispatch(next);
+    }
+
+    private void dispatch(Pending pending) {
+      try {
+        ioExecutor.execute(() -> {
+          try {
+            pending.task.run();
+          }
+          finally {
+            release();
+          }
+        });
+      }
+      catch (RejectedExecutionException e) {
+        LOG.warn("HTTP I/O executor rejected a request.  Has it been shut down?", e);
+        pending.result.completeExceptionally(e);
+        release();
+      }
+    }
+  }
+
+  private static final class Pending {
+    private final Runnable task;
+    private final CompletableFuture<?> result;
+
+    private Pending(Runnable task, CompletableFuture<?> result) {
+      this.task = task;
+      this.result = result;
+    }
+  }
+}
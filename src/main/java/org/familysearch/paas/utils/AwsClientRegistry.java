@@ -0,0 +1,140 @@
+package org.familysearch.paas.utils;
+
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseClient;
+import com.amazonaws.services.s3.AmazonS3Client;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+import static net.logstash.logback.marker.Markers.append;
+
+/**
+ * Holds the AWS and HTTP clients of the process.  Each client is built on first use and then shared by every
+ * helper and thread, so a cold start only pays for the clients the event needs; e.g. the S3 client is never built
+ * when TEST_JIRA_CREDENTIALS_FILE is set or the credentials are cached.
+ *
+ * Helpers take a {@link Supplier} of their client, such as <code>AwsClientRegistry.getDefault()::s3</code>, and
+ * call it where they use the client.  The time to build each client is logged and recorded as the
+ * <code>Create...Client</code> stage, so it shows in the metrics and in the trace of the event that paid for it.
+ *
+ * @author kriskrishna
+ */
+public class AwsClientRegistry {
+  private static final Logger LOG = LoggerFactory.getLogger(AwsClientRegistry.class);
+  private static final AwsClientRegistry DEFAULT = new AwsClientRegistry();
+
+  private final Lazy<AmazonS3Client> s3;
+  private final Lazy<AmazonIdentityManagementClient> iam;
+  private final Lazy<AmazonKinesisFirehoseClient> firehose;
+  private final Lazy<HttpRequestHelper> httpRequestHelper;
+
+  /**
+   * Construct a registry of the default clients.
+   */
+  public AwsClientRegistry() {
+    this(AmazonS3Client::new, AmazonIdentityManagementClient::new, AmazonKinesisFirehoseClient::new, HttpRequestHelper::pooled);
+  }
+
+  /**
+   * Construct with specific factories, which are each called at most once.
+   */
+  AwsClientRegistry(Supplier<AmazonS3Client> s3Factory,
+                    Supplier<AmazonIdentityManagementClient> iamFactory,
+                    Supplier<AmazonKinesisFirehoseClient> firehoseFactory,
+                    Supplier<HttpRequestHelper> httpRequestHelperFactory) {
+    this.s3 = new Lazy<>("S3", s3Factory);
+    this.iam = new Lazy<>("Iam", iamFactory);
+    this.firehose = new Lazy<>("Firehose", firehoseFactory);
+    this.httpRequestHelper = new Lazy<>("Http", httpRequestHelperFactory);
+  }
+
+  /**
+   * @return the registry the default constructors of the helpers use.
+   */
+  public static AwsClientRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  public AmazonS3Client s3() {
+    return s3.get();
+  }
+
+  public AmazonIdentityManagementClient iam() {
+    return iam.get();
+  }
+
+  public AmazonKinesisFirehoseClient firehose() {
+    return firehose.get();
+  }
+
+  /**
+   * @return the helper with a connection pool, see {@link HttpRequestHelper#pooled()}.
+   */
+  public HttpRequestHelper httpRequestHelper() {
+    return httpRequestHelper.get();
+  }
+
+  boolean isS3Created() {
+    return s3.isCreated();
+  }
+
+  boolean isIamCreated() {
+    return iam.isCreated();
+  }
+
+  boolean isFirehoseCreated() {
+    return firehose.isCreated();
+  }
+
+  boolean isHttpRequestHelperCreated() {
+    return httpRequestHelper.isCreated();
+  }
+
+  /**
+   * A client that is built by the first thread that asks for it.  After that, getting it is a volatile read.
+   */
+  private static final class Lazy<T> implements Supplier<T> {
+    private final String name;
+    private final Supplier<T> factory;
+    private final Stage stage;
+    private volatile T instance;
+
+    private Lazy(String name, Supplier<T> factory) {
+      this.name = name;
+      this.factory = factory;
+      this.stage = MetricsRegistry.getDefault().stage("Create" + name + "Client");
+    }
+
+    @Override
+    public T get() {
+      T result = instance;
+      if (result == null) {
+        synchronized (this) {
+          result = instance;
+          if (result == null) {
+            result = create();
+            instance = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    private T create() {
+      long start = System.nanoTime();
+      T result = factory.get();
+      stage.recordSince(start);
+      LOG.info(append("client", name).and(append("constructionMillis", (System.nanoTime() - start) / 1000000)),
+          "Built the {} client.", name);
+      return result;
+    }
+
+    private boolean isCreated() {
+      return instance != null;
+    }
+  }
+}
@@ -19,6 +19,46 @@ public class ConfigurationHelper {
   private static final String PRODUCTION_JIRA_URL = "https://almtools.ldschurch.org:443";
   private static final String PROPERTY_TEST_JIRA_URL = "TEST_JIRA_URL";
   private static final String PROPERTY_TEST_JIRA_CREDENTIALS_FILE = "TEST_JIRA_CREDENTIALS_FILE";
+  private static final String PROPERTY_ACCOUNT_ALIAS_SNAPSHOT_FILE = "ACCOUNT_ALIAS_SNAPSHOT_FILE";
+  private static final String PROPERTY_ES_ENDPOINT = "ES_ENDPOINT";
+  private static final String PROPERTY_ES_REGION = "ES_REGION";
+  private static final String PROPERTY_ES_INDEX = "ES_INDEX";
+  private static final String PROPERTY_ES_DOCUMENT_TYPE = "ES_DOCUMENT_TYPE";
+  private static final String PROPERTY_ES_BULK_MAX_DOCUMENTS = "ES_BULK_MAX_DOCUMENTS";
+  private static final String PROPERTY_ES_BULK_MAX_BYTES = "ES_BULK_MAX_BYTES";
+  private static final String PROPERTY_CRAWL_PARALLELISM = "CRAWL_PARALLELISM";
+  private static final String PROPERTY_CRAWL_CHUNK_BYTES = "CRAWL_CHUNK_BYTES";
+  private static final String PROPERTY_S3_DOWNLOAD_PART_BYTES = "S3_DOWNLOAD_PART_BYTES";
+  private static final String PROPERTY_S3_DOWNLOAD_PARALLELISM = "S3_DOWNLOAD_PARALLELISM";
+  private static final String PROPERTY_FIREHOSE_DELIVERY_STREAM = "FIREHOSE_DELIVERY_STREAM";
+  private static final String PROPERTY_FIREHOSE_BATCHES_IN_FLIGHT = "FIREHOSE_BATCHES_IN_FLIGHT";
+  private static final String PROPERTY_FIREHOSE_RECORD_BYTES = "FIREHOSE_RECORD_BYTES";
+  private static final String PROPERTY_FIREHOSE_RECORD_MILLIS = "FIREHOSE_RECORD_MILLIS";
+  private static final String PROPERTY_SPOOL_DIRECTORY = "SPOOL_DIRECTORY";
+  private static final String PROPERTY_SPOOL_SEGMENT_BYTES = "SPOOL_SEGMENT_BYTES";
+  private static final String PROPERTY_SPOOL_MAX_SEGMENTS = "SPOOL_MAX_SEGMENTS";
+  private static final String PROPERTY_SPOOL_FSYNC = "SPOOL_FSYNC";
+  private static final String PROPERTY_METRICS_NAMESPACE = "METRICS_NAMESPACE";
+  private static final String PROPERTY_METRICS_SERVICE = "METRICS_SERVICE";
+  private static final String PROPERTY_METRICS_FLUSH_SECONDS = "METRICS_FLUSH_SECONDS";
+  private static final String PROPERTY_TRACE_SAMPLE_PERCENT = "TRACE_SAMPLE_PERCENT";
+  private static final String DEFAULT_ES_INDEX = "logs";
+  private static final String DEFAULT_ES_DOCUMENT_TYPE = "apache";
+  private static final int DEFAULT_ES_BULK_MAX_DOCUMENTS = 5000;
+  private static final int DEFAULT_ES_BULK_MAX_BYTES = 5 * 1024 * 1024;
+  private static final int DEFAULT_CRAWL_CHUNK_BYTES = 8 * 1024 * 1024;
+  private static final int DEFAULT_S3_DOWNLOAD_PART_BYTES = 8 * 1024 * 1024;
+  private static final int DEFAULT_S3_DOWNLOAD_PARALLELISM = 4;
+  private static final int DEFAULT_FIREHOSE_BATCHES_IN_FLIGHT = 4;
+  private static final int DEFAULT_FIREHOSE_RECORD_BYTES = 1000 * 1024;
+  private static final int DEFAULT_FIREHOSE_RECORD_MILLIS = 1000;
+  private static final int DEFAULT_SPOOL_SEGMENT_BYTES = 64 * 1024 * 1024;
+  private static final int DEFAULT_SPOOL_MAX_SEGMENTS = 16;
+  private static final String DEFAULT_SPOOL_FSYNC = "ON_FLUSH";
+  private static final String DEFAULT_METRICS_NAMESPACE = "CWEventService";
+  private static final String DEFAULT_METRICS_SERVICE = "paas-cw-event-service";
+  private static final int DEFAULT_METRICS_FLUSH_SECONDS = 60;
+  private static final int DEFAULT_TRACE_SAMPLE_PERCENT = 100;
 
   /**
    * Gives the JIRA Base URL that will be used in all JIRA HTTP requests.
@@ -53,4 +93,234 @@ public class ConfigurationHelper {
     }
     return inputStream;
   }
+
+  /**
+   * Gives the file that cached account aliases are persisted to, so a new JVM can start from the last known
+   * aliases.  Define ACCOUNT_ALIAS_SNAPSHOT_FILE as a System Property with the full path to enable it.
+   *
+   * @return the snapshot file, or null when aliases should only be kept in memory.
+   */
+  public File accountAliasSnapshotFile() {
+    String fileName = System.getProperty(PROPERTY_ACCOUNT_ALIAS_SNAPSHOT_FILE);
+    return fileName == null ? null : new File(fileName);
+  }
+
+  /**
+   * Gives the Elasticsearch endpoint that crawled log records are indexed into, for example
+   * https://search-logs-abc123.us-east-1.es.amazonaws.com.  Define ES_ENDPOINT as a System Property.
+   *
+   * @return the endpoint, or null when it is not configured.
+   */
+  public String elasticsearchEndpoint() {
+    return System.getProperty(PROPERTY_ES_ENDPOINT);
+  }
+
+  /**
+   * Gives the region of an Amazon Elasticsearch Service domain, which turns on signing of the requests to it.
+   * Define ES_REGION as a System Property.
+   *
+   * @return the region, or null when requests should not be signed.
+   */
+  public String elasticsearchRegion() {
+    return System.getProperty(PROPERTY_ES_REGION);
+  }
+
+  /**
+   * Gives the Elasticsearch index that crawled log records are added to.  Defaults to logs.
+   *
+   * @return the index name.
+   */
+  public String elasticsearchIndex() {
+    return System.getProperty(PROPERTY_ES_INDEX, DEFAULT_ES_INDEX);
+  }
+
+  /**
+   * Gives the Elasticsearch document type of crawled log records.  Defaults to apache.
+   *
+   * @return the document type.
+   */
+  public String elasticsearchDocumentType() {
+    return System.getProperty(PROPERTY_ES_DOCUMENT_TYPE, DEFAULT_ES_DOCUMENT_TYPE);
+  }
+
+  /**
+   * Gives the most documents that are sent in one _bulk request.  Define ES_BULK_MAX_DOCUMENTS to override.
+   *
+   * @return the document count.
+   */
+  public int elasticsearchBulkMaxDocuments() {
+    return intProperty(PROPERTY_ES_BULK_MAX_DOCUMENTS, DEFAULT_ES_BULK_MAX_DOCUMENTS);
+  }
+
+  /**
+   * Gives the most bytes that are sent in one _bulk request.  Define ES_BULK_MAX_BYTES to override.
+   *
+   * @return the byte count.
+   */
+  public int elasticsearchBulkMaxBytes() {
+    return intProperty(PROPERTY_ES_BULK_MAX_BYTES, DEFAULT_ES_BULK_MAX_BYTES);
+  }
+
+  /**
+   * Gives the threads that parse the chunks of one log in parallel.  Define CRAWL_PARALLELISM to override.
+   *
+   * @return the thread count, by default the number of available processors.
+   */
+  public int crawlParallelism() {
+    return Math.max(1, intProperty(PROPERTY_CRAWL_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Gives the size a log is cut into chunks at for parallel parsing.  Define CRAWL_CHUNK_BYTES to override.
+   *
+   * @return the byte count.
+   */
+  public int crawlChunkBytes() {
+    return Math.max(1, intProperty(PROPERTY_CRAWL_CHUNK_BYTES, DEFAULT_CRAWL_CHUNK_BYTES));
+  }
+
+  /**
+   * Gives the bytes of one ranged GET when a log object is downloaded.  Define S3_DOWNLOAD_PART_BYTES to override.
+   *
+   * @return the byte count.
+   */
+  public int s3DownloadPartBytes() {
+    return Math.max(1, intProperty(PROPERTY_S3_DOWNLOAD_PART_BYTES, DEFAULT_S3_DOWNLOAD_PART_BYTES));
+  }
+
+  /**
+   * Gives the ranged GETs that are in flight for one log object.  Define S3_DOWNLOAD_PARALLELISM to override.
+   *
+   * @return the request count.
+   */
+  public int s3DownloadParallelism() {
+    return Math.max(1, intProperty(PROPERTY_S3_DOWNLOAD_PARALLELISM, DEFAULT_S3_DOWNLOAD_PARALLELISM));
+  }
+
+  /**
+   * Gives the Kinesis Firehose delivery stream the crawled documents are sent to instead of Elasticsearch.  Define
+   * FIREHOSE_DELIVERY_STREAM to use one.
+   *
+   * @return the stream name or null when the documents go to Elasticsearch.
+   */
+  public String firehoseDeliveryStream() {
+    return System.getProperty(PROPERTY_FIREHOSE_DELIVERY_STREAM);
+  }
+
+  /**
+   * Gives the PutRecordBatch calls that are in flight for one crawl.  Define FIREHOSE_BATCHES_IN_FLIGHT to override.
+   *
+   * @return the call count.
+   */
+  public int firehoseBatchesInFlight() {
+    return Math.max(1, intProperty(PROPERTY_FIREHOSE_BATCHES_IN_FLIGHT, DEFAULT_FIREHOSE_BATCHES_IN_FLIGHT));
+  }
+
+  /**
+   * Gives the most bytes of log lines aggregated into one Firehose record.  Define FIREHOSE_RECORD_BYTES to override.
+   *
+   * @return the byte count, by default the 1000 KiB a record holds.
+   */
+  public int firehoseRecordBytes() {
+    return Math.max(1, intProperty(PROPERTY_FIREHOSE_RECORD_BYTES, DEFAULT_FIREHOSE_RECORD_BYTES));
+  }
+
+  /**
+   * Gives the longest a log line waits in a Firehose record before the record is sent.  Define
+   * FIREHOSE_RECORD_MILLIS to override.
+   *
+   * @return the milliseconds.
+   */
+  public int firehoseRecordMillis() {
+    return Math.max(0, intProperty(PROPERTY_FIREHOSE_RECORD_MILLIS, DEFAULT_FIREHOSE_RECORD_MILLIS));
+  }
+
+  /**
+   * Gives the directory of the disk spool between the crawler and its sink.  Define SPOOL_DIRECTORY to use one.
+   *
+   * @return the directory or null when documents go straight to the sink.
+   */
+  public String spoolDirectory() {
+    return System.getProperty(PROPERTY_SPOOL_DIRECTORY);
+  }
+
+  /**
+   * Gives the size of a segment file of the spool.  Define SPOOL_SEGMENT_BYTES to override.
+   *
+   * @return the byte count.
+   */
+  public int spoolSegmentBytes() {
+    return Math.max(1024, intProperty(PROPERTY_SPOOL_SEGMENT_BYTES, DEFAULT_SPOOL_SEGMENT_BYTES));
+  }
+
+  /**
+   * Gives the most spool segments that hold undelivered documents before the crawl waits.  Define
+   * SPOOL_MAX_SEGMENTS to override.
+   *
+   * @return the segment count.
+   */
+  public int spoolMaxSegments() {
+    return Math.max(2, intProperty(PROPERTY_SPOOL_MAX_SEGMENTS, DEFAULT_SPOOL_MAX_SEGMENTS));
+  }
+
+  /**
+   * Gives when spooled documents are forced to the disk: EVERY_RECORD, ON_FLUSH or NEVER.  Define SPOOL_FSYNC to
+   * override.
+   *
+   * @return the policy name.
+   */
+  public String spoolFsync() {
+    return System.getProperty(PROPERTY_SPOOL_FSYNC, DEFAULT_SPOOL_FSYNC);
+  }
+
+  /**
+   * Gives the CloudWatch namespace of the metrics.  Define METRICS_NAMESPACE to override.
+   *
+   * @return the namespace.
+   */
+  public String metricsNamespace() {
+    return System.getProperty(PROPERTY_METRICS_NAMESPACE, DEFAULT_METRICS_NAMESPACE);
+  }
+
+  /**
+   * Gives the value of the Service dimension of the metrics.  Define METRICS_SERVICE to override.
+   *
+   * @return the service name.
+   */
+  public String metricsService() {
+    return System.getProperty(PROPERTY_METRICS_SERVICE, DEFAULT_METRICS_SERVICE);
+  }
+
+  /**
+   * Gives the seconds between metric reports of the daemon.  Define METRICS_FLUSH_SECONDS to override.
+   *
+   * @return the period in seconds.
+   */
+  public int metricsFlushSeconds() {
+    return Math.max(1, intProperty(PROPERTY_METRICS_FLUSH_SECONDS, DEFAULT_METRICS_FLUSH_SECONDS));
+  }
+
+  /**
+   * Gives the percentage of events whose stage spans are logged, from 0 to 100.  Define TRACE_SAMPLE_PERCENT to
+   * override.
+   *
+   * @return the percentage.
+   */
+  public int traceSamplePercent() {
+    return Math.min(100, Math.max(0, intProperty(PROPERTY_TRACE_SAMPLE_PERCENT, DEFAULT_TRACE_SAMPLE_PERCENT)));
+  }
+
+  private int intProperty(String name, int defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    }
+    catch (NumberFormatException e) {
+      LOG.error("Error occurred trying to read {}={} as a number.  Will assume the default={} and continue.", name, value, defaultValue, e);
+      return defaultValue;
+    }
+  }
 }
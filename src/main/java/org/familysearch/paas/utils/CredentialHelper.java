@@ -2,16 +2,32 @@ package org.familysearch.paas.utils;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.util.IOUtils;
+import org.familysearch.paas.metrics.Counter;
+import org.familysearch.paas.metrics.EventTrace;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Makes calls to an S3 bucket that contain JIRA credentials.
  *
+ * The credentials of each account are cached for a short TTL.  Once it has passed, the object is only
+ * downloaded again if its ETag changed, so rotated secrets are picked up within the TTL without paying for a
+ * full GET on every event.
+ *
  * @author barclays
  */
 public class CredentialHelper {
@@ -21,15 +37,21 @@ public class CredentialHelper {
   // The %s is the AWS account ID
   private static final String BUCKET_NAME_PATTERN = "account-info-%s";
   private static final String KEY_NAME = "superadmin/us-east-1/jira-creds";
+  private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final Stage GET_CREDENTIALS = MetricsRegistry.getDefault().stage("S3GetCredentials");
+  private static final Counter GET_CREDENTIALS_ERRORS = MetricsRegistry.getDefault().counter("S3GetCredentialsErrors");
 
-  private AmazonS3Client s3Client;
+  private final Supplier<AmazonS3Client> s3Client;
   private ConfigurationHelper configurationHelper;
+  private final long ttlMillis;
+  private final Clock clock;
+  private final ConcurrentMap<String, CachedCredentials> cache = new ConcurrentHashMap<>();
 
   /**
    * Default Constructor.
    */
   public CredentialHelper(){
-    this(new AmazonS3Client(), new ConfigurationHelper());
+    this(AwsClientRegistry.getDefault()::s3, new ConfigurationHelper());
   }
 
   /**
@@ -38,8 +60,36 @@ public class CredentialHelper {
    * @param s3Client Mock data source object
    */
   public CredentialHelper(AmazonS3Client s3Client, ConfigurationHelper configurationHelper){
+    this(() -> s3Client, configurationHelper);
+  }
+
+  /**
+   * Construct with a client that is only asked for when the credentials are read from S3.
+   *
+   * @param s3Client gives the client, e.g. <code>AwsClientRegistry.getDefault()::s3</code>.
+   * @param configurationHelper that will be used.
+   */
+  public CredentialHelper(Supplier<AmazonS3Client> s3Client, ConfigurationHelper configurationHelper){
+    this(s3Client, configurationHelper, DEFAULT_TTL_MILLIS, Clock.systemUTC());
+  }
+
+  /**
+   * Construct with a specific cache TTL and clock.
+   *
+   * @param s3Client that will be used.
+   * @param configurationHelper that will be used.
+   * @param ttlMillis is how long credentials are used before they are revalidated against S3.
+   * @param clock that is used to age the cached credentials.
+   */
+  CredentialHelper(AmazonS3Client s3Client, ConfigurationHelper configurationHelper, long ttlMillis, Clock clock){
+    this(() -> s3Client, configurationHelper, ttlMillis, clock);
+  }
+
+  private CredentialHelper(Supplier<AmazonS3Client> s3Client, ConfigurationHelper configurationHelper, long ttlMillis, Clock clock){
     this.s3Client = s3Client;
     this.configurationHelper = configurationHelper;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
   }
 
   /**
@@ -48,22 +98,85 @@ public class CredentialHelper {
    * @return content of S3 object
    */
   public String getJiraCreds(String awsAccountId){
+    long start = System.nanoTime();
+    try {
+      return jiraCreds(awsAccountId);
+    }
+    finally {
+      EventTrace.span("CredentialFetch", start);
+    }
+  }
+
+  private String jiraCreds(String awsAccountId) {
     InputStream objStream = configurationHelper.jiraCredentialsInputStream();
     String bucketName = String.format(BUCKET_NAME_PATTERN, awsAccountId);
-    if (objStream == null) {
-      S3Object content;
-      try {
-        content = this.s3Client.getObject(bucketName, KEY_NAME);
+    if (objStream != null) {
+      LOG.info("Did NOT read from bucket={} key={} but used testing configuration.", bucketName, KEY_NAME);
+      return readCredentials(objStream);
+    }
+
+    CachedCredentials cached = cache.get(awsAccountId);
+    long now = clock.millis();
+    if (cached != null && now - cached.validatedAt < ttlMillis) {
+      return cached.content;
+    }
+
+    S3Object content;
+    try {
+      content = getObject(bucketName, cached);
+    }
+    catch (AmazonServiceException e) {
+      throw new CredentialHelperException("No Such Key. Verify that Bucket: \"" + bucketName + "\" and Key: \"" + KEY_NAME + "\" are in S3", e);
+    }
+
+    if (content == null) {
+      if (cached == null) {
+        throw new CredentialHelperException("No object returned for Bucket: \"" + bucketName + "\" and Key: \"" + KEY_NAME + "\"");
       }
-      catch (AmazonServiceException e) {
-        throw new CredentialHelperException("No Such Key. Verify that Bucket: \"" + bucketName + "\" and Key: \"" + KEY_NAME + "\" are in S3", e);
+      // S3 answered 304 Not Modified, the cached copy is still current.
+      cache.put(awsAccountId, new CachedCredentials(cached.content, cached.eTag, now));
+      return cached.content;
+    }
+
+    String streamOutput = readCredentials(content.getObjectContent());
+    ObjectMetadata metadata = content.getObjectMetadata();
+    cache.put(awsAccountId, new CachedCredentials(streamOutput, metadata == null ? null : metadata.getETag(), now));
+    return streamOutput;
+  }
+
+  /**
+   * Forget the cached credentials of an account, so the next call reads them from S3 again.  Call this when
+   * JIRA rejects the credentials with a 401, as they have probably been rotated.
+   *
+   * @param awsAccountId whose credentials should be forgotten.
+   */
+  public void invalidate(String awsAccountId) {
+    if (cache.remove(awsAccountId) != null) {
+      LOG.info("Invalidated cached JIRA credentials for account={}.", awsAccountId);
+    }
+  }
+
+  private S3Object getObject(String bucketName, CachedCredentials cached) {
+    long start = System.nanoTime();
+    try {
+      if (cached == null || cached.eTag == null) {
+        return this.s3Client.get().getObject(bucketName, KEY_NAME);
       }
-      objStream = content.getObjectContent();
+      GetObjectRequest request = new GetObjectRequest(bucketName, KEY_NAME);
+      request.setNonmatchingETagConstraints(Collections.singletonList(cached.eTag));
+      // Returns null when the ETag still matches.
+      return this.s3Client.get().getObject(request);
     }
-    else {
-      LOG.info("Did NOT read from bucket={} key={} but used testing configuration.", bucketName, KEY_NAME);
+    catch (RuntimeException e) {
+      GET_CREDENTIALS_ERRORS.increment();
+      throw e;
+    }
+    finally {
+      GET_CREDENTIALS.recordSince(start);
     }
+  }
 
+  private String readCredentials(InputStream objStream) {
     String streamOutput;
     try {
       streamOutput = IOUtils.toString(objStream);
@@ -74,5 +187,15 @@ public class CredentialHelper {
     return streamOutput;
   }
 
+  private static final class CachedCredentials {
+    private final String content;
+    private final String eTag;
+    private final long validatedAt;
 
+    private CachedCredentials(String content, String eTag, long validatedAt) {
+      this.content = content;
+      this.eTag = eTag;
+      this.validatedAt = validatedAt;
+    }
+  }
 }
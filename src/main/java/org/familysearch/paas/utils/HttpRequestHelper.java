@@ -1,20 +1,36 @@
 package org.familysearch.paas.utils;
 
 import com.google.api.client.http.*;
+import com.google.api.client.http.apache.ApacheHttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.json.Json;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.JsonObjectParser;
 import com.google.api.client.json.gson.GsonFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.pool.PoolStats;
+import org.familysearch.paas.metrics.Counter;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class HttpRequestHelper {
 
@@ -29,23 +45,64 @@ public class HttpRequestHelper {
    */
   public static final String HTTP_PROXYPORT_PROPERTY = "http.proxyPort";
   private static final String COOKIE_SEPERATOR = ";";
+  private static final String WARM_UP_URL = "https://localhost/warm-up";
+  private static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 50;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final int SOCKET_BUFFER_SIZE = 8192;
+  private static final Stage HTTP_REQUEST = MetricsRegistry.getDefault().stage("HttpRequest");
+  private static final Counter HTTP_REQUEST_ERRORS = MetricsRegistry.getDefault().counter("HttpRequestErrors");
+  private static final Counter HTTP_RETRIES = MetricsRegistry.getDefault().counter("HttpRetries");
 
   private final JsonFactory jsonFactory = new GsonFactory();
   private final String acceptHeader = Json.MEDIA_TYPE;
   private final String contentTypeHeader = Json.MEDIA_TYPE;
 
   private final Proxy proxy;
+  // The HttpClient 4.2 API that ApacheHttpTransport is built on is deprecated; named in full, as imports can not
+  // suppress the warning.
+  @SuppressWarnings("deprecation")
+  private final org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager;
+  private final ScheduledExecutorService idleConnectionEvictor;
   private HttpTransport httpTransport;
+  private HttpRequestFactory requestFactory;
+  private RetryPolicy retryPolicy = RetryPolicy.standard();
 
   /**
-   * Construct the helper.
+   * Construct the helper.  Every request opens its own connection through {@link NetHttpTransport}.
    */
   public HttpRequestHelper() {
     // Explicitly configure the HTTP proxy if the standard http proxy system properties are set
-    String proxyHost = System.getProperty(HTTP_PROXYHOST_PROPERTY);
-    String proxyPort = System.getProperty(HTTP_PROXYPORT_PROPERTY);
-    proxy = createProxy(proxyHost, proxyPort);
-    this.httpTransport = new NetHttpTransport.Builder().setProxy(proxy).build();
+    proxy = createProxyFromSystemProperties();
+    connectionManager = null;
+    idleConnectionEvictor = null;
+    setHttpTransport(new NetHttpTransport.Builder().setProxy(proxy).build());
+  }
+
+  /**
+   * Construct the helper with a pool of keep-alive connections that is shared by every request, so bursts of
+   * requests to JIRA or Elasticsearch do not pay for a TCP and TLS handshake each.
+   *
+   * @param maxConnectionsTotal is the most connections that are open at once, across all hosts.
+   * @param maxConnectionsPerRoute is the most connections that are open at once to a single host.
+   * @param idleConnectionTimeoutMillis is how long a connection may sit unused in the pool before it is closed.
+   */
+  @SuppressWarnings("deprecation") // ApacheHttpTransport is built on the HttpClient 4.2 API.
+  public HttpRequestHelper(int maxConnectionsTotal, int maxConnectionsPerRoute, long idleConnectionTimeoutMillis) {
+    proxy = createProxyFromSystemProperties();
+    connectionManager = new org.apache.http.impl.conn.PoolingClientConnectionManager(
+        org.apache.http.impl.conn.SchemeRegistryFactory.createDefault());
+    connectionManager.setMaxTotal(maxConnectionsTotal);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    idleConnectionEvictor = startIdleConnectionEvictor(connectionManager, idleConnectionTimeoutMillis);
+    setHttpTransport(createPooledTransport(proxy, connectionManager));
+  }
+
+  /**
+   * @return a helper with a connection pool sized for the crawler.
+   */
+  public static HttpRequestHelper pooled() {
+    return new HttpRequestHelper(DEFAULT_MAX_CONNECTIONS_TOTAL, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_IDLE_CONNECTION_TIMEOUT_MILLIS);
   }
 
   /**
@@ -93,11 +150,16 @@ public class HttpRequestHelper {
     HttpResponse httpResponse = executeRequest(HttpMethods.POST, url, body, null, true);
 
     List<String> fixedCookieHeader = new ArrayList<>();
-    List<String> cookieHeaders = httpResponse.getHeaders().getHeaderStringValues("Set-Cookie");
-    for (String cookieHeader : cookieHeaders) {
-      cookieHeader += COOKIE_SEPERATOR; // make sure that there is at least one.  Removes conditional logic.
-      String cookie = cookieHeader.substring(0, cookieHeader.indexOf(COOKIE_SEPERATOR));
-      fixedCookieHeader.add(cookie);
+    try {
+      List<String> cookieHeaders = httpResponse.getHeaders().getHeaderStringValues("Set-Cookie");
+      for (String cookieHeader : cookieHeaders) {
+        cookieHeader += COOKIE_SEPERATOR; // make sure that there is at least one.  Removes conditional logic.
+        String cookie = cookieHeader.substring(0, cookieHeader.indexOf(COOKIE_SEPERATOR));
+        fixedCookieHeader.add(cookie);
+      }
+    }
+    finally {
+      release(httpResponse);
     }
     return fixedCookieHeader;
   }
@@ -118,25 +180,114 @@ public class HttpRequestHelper {
     try {
       return httpResponse.parseAs(type);
     } finally {
-      httpResponse.disconnect();
+      release(httpResponse);
     }
   }
 
-  private int executeRequestAndReturnStatusCode(String url, Object body, List<String> cookies, String method) throws IOException {
-    HttpResponse httpResponse = executeRequest(method, url, body, cookies, false);
-    try {
-      if(!httpResponse.isSuccessStatusCode()) {
-        // Since this method only returns the status code, the message will be lost unless it is retrieved and logged here
-        String responseContent = new HttpResponseException.Builder(httpResponse).getContent();
-        LOG.error(String.format("Failed HTTP %s request to url=\"%s\", body=%s, responseContent=%s", method, url, body, responseContent));
+  /**
+   * Executes an HTTP POST operation with a body that is already serialized, such as an Elasticsearch _bulk request.
+   * Returns the response body as a String, throwing an IOException if the connection fails or gives back a non-2XX
+   * status code, in which case a @link com.google.api.client.http.HttpResponseException containing the status code
+   * is thrown.
+   *
+   * @param url         a string containing the URL that the POST operation should be performed on
+   * @param contentType the media type of the content
+   * @param content     the serialized body of the request
+   * @param headers     additional headers, such as a request signature, or null
+   * @return the response body
+   * @throws IOException
+   */
+  public String executeRawPostRequest(String url, String contentType, byte[] content, Map<String, String> headers) throws IOException {
+    HttpRequest request = requestFactory.buildRequest(HttpMethods.POST, new GenericUrl(url), new ByteArrayContent(contentType, content));
+
+    HttpHeaders httpHeaders = new HttpHeaders().setAccept(acceptHeader).setContentType(contentType);
+    if (headers != null) {
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        httpHeaders.set(header.getKey(), Collections.singletonList(header.getValue()));
+      }
+    }
+    request.setHeaders(httpHeaders);
+
+    HttpResponse httpResponse;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        httpResponse = execute(request);
+        if (attempt == 1) {
+          retryPolicy.onSuccess();
+        }
+        break;
+      }
+      catch (HttpResponseException e) {
+        int statusCode = e.getStatusCode();
+        if (!RetryPolicy.isRetryableStatus(statusCode, false)
+            || !retryPolicy.retry(attempt, RetryPolicy.isThrottlingStatus(statusCode), retryAfterMillis(e.getHeaders()))) {
+          throw e;
+        }
+        HTTP_RETRIES.increment();
+        LOG.warn(String.format("Retrying HTTP request with url=\"%s\", method=%s, http_status_code=%s, attempt=%s", url, HttpMethods.POST, statusCode, attempt));
       }
-      return httpResponse.getStatusCode();
+    }
+    LOG.debug(String.format("Executed HTTP request with url=\"%s\", method=%s, http_status_code=%s", url, HttpMethods.POST, httpResponse.getStatusCode()));
+    try {
+      return httpResponse.parseAsString();
     }
     finally {
-      httpResponse.disconnect();
+      release(httpResponse);
+    }
+  }
+
+  /**
+   * Execute the request, sending it again while the status code says it was throttled or not processed, as long as
+   * the retry policy allows; a POST is only sent again when it was throttled, see
+   * {@link RetryPolicy#isRetryableStatus(int, boolean)}.  The response is released before backing off, so a pooled
+   * connection is not held while waiting.
+   */
+  private int executeRequestAndReturnStatusCode(String url, Object body, List<String> cookies, String method) throws IOException {
+    boolean idempotent = !HttpMethods.POST.equals(method);
+    for (int attempt = 1; ; attempt++) {
+      HttpResponse httpResponse = executeRequest(method, url, body, cookies, false);
+      int statusCode = httpResponse.getStatusCode();
+      long retryAfterMillis = retryAfterMillis(httpResponse.getHeaders());
+      try {
+        if(!httpResponse.isSuccessStatusCode()) {
+          // Since this method only returns the status code, the message will be lost unless it is retrieved and logged here
+          String responseContent = new HttpResponseException.Builder(httpResponse).getContent();
+          LOG.error(String.format("Failed HTTP %s request to url=\"%s\", body=%s, responseContent=%s, attempt=%s", method, url, body, responseContent, attempt));
+        }
+      }
+      finally {
+        release(httpResponse);
+      }
+
+      if (httpResponse.isSuccessStatusCode()) {
+        if (attempt == 1) {
+          retryPolicy.onSuccess();
+        }
+        return statusCode;
+      }
+      if (!RetryPolicy.isRetryableStatus(statusCode, idempotent)
+          || !retryPolicy.retry(attempt, RetryPolicy.isThrottlingStatus(statusCode), retryAfterMillis)) {
+        return statusCode;
+      }
+      HTTP_RETRIES.increment();
     }
   }
 
+  /**
+   * @return the wait the Retry-After header of a response asks for, or 0.
+   */
+  private static long retryAfterMillis(HttpHeaders headers) {
+    return headers == null ? 0 : RetryPolicy.retryAfterMillis(headers.getRetryAfter(), System.currentTimeMillis());
+  }
+
+  /**
+   * Consume and close the response content so the connection can be reused.  Unlike
+   * {@link HttpResponse#disconnect()} this does not tear down the underlying connection.
+   */
+  private void release(HttpResponse httpResponse) throws IOException {
+    httpResponse.ignore();
+  }
+
   /**
    * Allow raw access to the HttpResponse.  This is ideal for getting content and logging it.
    * @param method that will be used in the HTTP Request.
@@ -152,9 +303,42 @@ public class HttpRequestHelper {
                                       Object body,
                                       List<String> cookies,
                                       boolean throwExceptionOnNon2xxStatusCode) throws IOException {
+    HttpRequest request = buildRequest(method, url, body, cookies, throwExceptionOnNon2xxStatusCode);
+    HttpResponse httpResponse = execute(request);
 
-    HttpRequest request = httpTransport.createRequestFactory().buildRequest(
-        method, new GenericUrl(url), new JsonHttpContent(jsonFactory, body));
+    LOG.debug(String.format("Executed HTTP request with url=\"%s\", method=%s, http_status_code=%s", url, method, httpResponse.getStatusCode()));
+
+    return httpResponse;
+  }
+
+  /**
+   * Send the request, recording its latency and whether it failed, either with an exception or a non 2xx status.
+   */
+  private HttpResponse execute(HttpRequest request) throws IOException {
+    long start = System.nanoTime();
+    try {
+      HttpResponse httpResponse = request.execute();
+      if (!httpResponse.isSuccessStatusCode()) {
+        HTTP_REQUEST_ERRORS.increment();
+      }
+      return httpResponse;
+    }
+    catch (IOException | RuntimeException e) {
+      HTTP_REQUEST_ERRORS.increment();
+      throw e;
+    }
+    finally {
+      HTTP_REQUEST.recordSince(start);
+    }
+  }
+
+  /**
+   * Build a request with a JSON body, the JSON Accept and Content-Type headers and the cookies, without sending it.
+   * Package protected so the benchmarks can measure building and serializing a request on its own.
+   */
+  HttpRequest buildRequest(String method, String url, Object body, List<String> cookies,
+                           boolean throwExceptionOnNon2xxStatusCode) throws IOException {
+    HttpRequest request = requestFactory.buildRequest(method, new GenericUrl(url), new JsonHttpContent(jsonFactory, body));
 
     request.setParser(new JsonObjectParser(jsonFactory));
 
@@ -165,30 +349,98 @@ public class HttpRequestHelper {
     HttpHeaders httpHeaders = new HttpHeaders().setAccept(acceptHeader).setContentType(contentTypeHeader);
 
     if (cookies != null && !cookies.isEmpty()) {
+      StringBuilder cookieHeader = new StringBuilder();
       for (String cookie : cookies) {
-        String existingCookie;
-        if (httpHeaders.getCookie() == null) {
-          existingCookie = cookie;
+        if (cookieHeader.length() > 0) {
+          cookieHeader.append(COOKIE_SEPERATOR);
         }
-        else {
-          existingCookie = httpHeaders.getCookie() + COOKIE_SEPERATOR + cookie;
-        }
-        httpHeaders.setCookie(existingCookie);
+        cookieHeader.append(cookie);
       }
+      httpHeaders.setCookie(cookieHeader.toString());
     }
 
     request.setHeaders(httpHeaders);
-    HttpResponse httpResponse = request.execute();
-
-    LOG.debug(String.format("Executed HTTP request with url=\"%s\", method=%s, http_status_code=%s", url, method, httpResponse.getStatusCode()));
+    return request;
+  }
 
-    return httpResponse;
+  /**
+   * Build and serialize a request without sending it, so the HTTP client, JSON and TLS classes are loaded and
+   * initialized before the first real request is made.
+   * @throws IOException if the request can not be built or serialized.
+   */
+  public void warmUp() throws IOException {
+    Map<String, String> body = Collections.singletonMap("warmUp", "true");
+    HttpRequest request = requestFactory.buildRequest(HttpMethods.POST, new GenericUrl(WARM_UP_URL), new JsonHttpContent(jsonFactory, body));
+    request.getContent().writeTo(new ByteArrayOutputStream());
+    jsonFactory.fromString(jsonFactory.toString(body), HashMap.class);
+    try {
+      SSLContext.getDefault().createSSLEngine();
+    }
+    catch (GeneralSecurityException e) {
+      throw new IOException("Unable to initialize the default SSLContext.", e);
+    }
   }
 
   public Proxy getProxy() {
     return proxy;
   }
 
+  /**
+   * Gives the utilization of the connection pool.
+   * @return the leased, pending, available and maximum connections, or null when this helper is not pooled.
+   */
+  public PoolStats getPoolStats() {
+    return connectionManager == null ? null : connectionManager.getTotalStats();
+  }
+
+  /**
+   * Close the pooled connections and stop evicting idle ones.  Does nothing when this helper is not pooled.
+   */
+  public void shutdown() {
+    if (connectionManager != null) {
+      idleConnectionEvictor.shutdownNow();
+      connectionManager.shutdown();
+    }
+  }
+
+  private Proxy createProxyFromSystemProperties() {
+    String proxyHost = System.getProperty(HTTP_PROXYHOST_PROPERTY);
+    String proxyPort = System.getProperty(HTTP_PROXYPORT_PROPERTY);
+    return createProxy(proxyHost, proxyPort);
+  }
+
+  @SuppressWarnings("deprecation") // ApacheHttpTransport is built on the HttpClient 4.2 API.
+  private static HttpTransport createPooledTransport(Proxy proxy,
+                                                     org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager) {
+    org.apache.http.params.HttpParams params = new org.apache.http.params.BasicHttpParams();
+    // Pooled connections may have been closed by the server while idle, check before reusing one.
+    org.apache.http.params.HttpConnectionParams.setStaleCheckingEnabled(params, true);
+    org.apache.http.params.HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+    if (proxy.address() instanceof InetSocketAddress) {
+      InetSocketAddress address = (InetSocketAddress) proxy.address();
+      org.apache.http.conn.params.ConnRouteParams.setDefaultProxy(params, new HttpHost(address.getHostString(), address.getPort()));
+    }
+    org.apache.http.impl.client.DefaultHttpClient httpClient = new org.apache.http.impl.client.DefaultHttpClient(connectionManager, params);
+    httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    return new ApacheHttpTransport(httpClient);
+  }
+
+  @SuppressWarnings("deprecation") // ApacheHttpTransport is built on the HttpClient 4.2 API.
+  private static ScheduledExecutorService startIdleConnectionEvictor(
+      final org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager, final long idleConnectionTimeoutMillis) {
+    ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "http-idle-connection-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, idleConnectionTimeoutMillis / 2);
+    evictor.scheduleWithFixedDelay(() -> {
+      connectionManager.closeExpiredConnections();
+      connectionManager.closeIdleConnections(idleConnectionTimeoutMillis, TimeUnit.MILLISECONDS);
+    }, period, period, TimeUnit.MILLISECONDS);
+    return evictor;
+  }
+
   /**
    * Package protected method so that unit tests can run REALLY fast.  I.e. this method is REALLY slow.
    * @param proxyHost that will be used.
@@ -207,7 +459,21 @@ public class HttpRequestHelper {
     }
   }
 
+  /**
+   * Replace the policy that retries throttled and unprocessed requests, by default {@link RetryPolicy#standard()}.
+   * Only 429 and 503, which JIRA and Elasticsearch answer before they act on a request, are retried, and also 502
+   * for a PUT; see {@link RetryPolicy#isRetryableStatus(int, boolean)}.
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
   public void setHttpTransport(HttpTransport httpTransport) {
     this.httpTransport = httpTransport;
+    this.requestFactory = httpTransport.createRequestFactory();
   }
 }
\ No newline at end of file
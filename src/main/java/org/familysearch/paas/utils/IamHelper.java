@@ -1,11 +1,23 @@
 package org.familysearch.paas.utils;
 
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
+import org.familysearch.paas.metrics.Counter;
+import org.familysearch.paas.metrics.EventTrace;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 /**
  * Utility class that performs IAM functions.
+ *
+ * IAM ListAccountAliases only gives the alias of the account whose credentials make the call, so there is one alias
+ * to know: it is cached as a single entry, not per account of the events.
  */
 public class IamHelper {
   private static final Logger LOG = LoggerFactory.getLogger(IamHelper.class);
@@ -14,13 +26,22 @@ public class IamHelper {
    * Unknown Account Alias.
    */
   public static final String UNKNOWN = "unknown";
-  private AmazonIdentityManagementClient iamClient;
+  // Aliases almost never change, so only go back to IAM once an hour and do it ahead of time.
+  private static final long ALIAS_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long ALIAS_REFRESH_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(45);
+  private static final Stage LIST_ACCOUNT_ALIASES = MetricsRegistry.getDefault().stage("IamListAccountAliases");
+  private static final Counter LIST_ACCOUNT_ALIASES_ERRORS = MetricsRegistry.getDefault().counter("IamListAccountAliasesErrors");
+  // The key of the one cached alias, and its name in the snapshot file.
+  static final String CALLER_ACCOUNT = "caller";
+
+  private final Supplier<AmazonIdentityManagementClient> iamClient;
+  private final AccountAliasCache aliasCache;
 
   /**
    * Default Constructor.
    */
   public IamHelper() {
-    this(new AmazonIdentityManagementClient());
+    this(AwsClientRegistry.getDefault()::iam, new ConfigurationHelper().accountAliasSnapshotFile());
   }
 
   /**
@@ -28,20 +49,56 @@ public class IamHelper {
    * @param iamClient that should be used.  Generally a mock.
    */
   public IamHelper(AmazonIdentityManagementClient iamClient) {
+    this(iamClient, new ConfigurationHelper().accountAliasSnapshotFile());
+  }
+
+  /**
+   * Construct with a specific alias snapshot file.
+   * @param iamClient that should be used.
+   * @param aliasSnapshotFile that cached aliases are persisted to, or null to keep them in memory only.
+   */
+  public IamHelper(AmazonIdentityManagementClient iamClient, File aliasSnapshotFile) {
+    this(() -> iamClient, aliasSnapshotFile);
+  }
+
+  /**
+   * Construct with a client that is only asked for when an alias is listed from IAM.
+   * @param iamClient gives the client, e.g. <code>AwsClientRegistry.getDefault()::iam</code>.
+   * @param aliasSnapshotFile that cached aliases are persisted to, or null to keep them in memory only.
+   */
+  public IamHelper(Supplier<AmazonIdentityManagementClient> iamClient, File aliasSnapshotFile) {
     this.iamClient = iamClient;
+    this.aliasCache = new AccountAliasCache(account -> listFirstAccountAlias(), ALIAS_TTL_MILLIS, ALIAS_REFRESH_AFTER_MILLIS, aliasSnapshotFile);
   }
 
   /**
-   * Will get first alias associated with the account.
-   * @return a String representing the first alias associated with the account.
+   * Will get first alias associated with the account of the credentials in use, from the cache when possible.
+   * @return the first alias associated with the account, or {@link #UNKNOWN} if the account has none or it has never
+   * been loaded.
    */
   public String getFirstAccountAlias() {
+    long start = System.nanoTime();
+    String alias = aliasCache.get(CALLER_ACCOUNT);
+    EventTrace.span("AliasLookup", start);
+    return alias == null ? UNKNOWN : alias;
+  }
+
+  /**
+   * @return the first alias from IAM, or {@link #UNKNOWN} for an account without one, which is cached like an alias
+   * so that it is not listed again for every event.
+   */
+  private String listFirstAccountAlias() {
+    long start = System.nanoTime();
     try {
-      return iamClient.listAccountAliases().getAccountAliases().get(0);
+      List<String> aliases = iamClient.get().listAccountAliases().getAccountAliases();
+      return aliases == null || aliases.isEmpty() ? UNKNOWN : aliases.get(0);
+    }
+    catch (RuntimeException e) {
+      LIST_ACCOUNT_ALIASES_ERRORS.increment();
+      throw e;
     }
-    catch (Exception e) {
-      LOG.error("Error occurred looking for Account Alias.  Will assume {} for now.  Perhaps the account alias has not been configured yet?", UNKNOWN, e);
-      return UNKNOWN;
+    finally {
+      LIST_ACCOUNT_ALIASES.recordSince(start);
     }
   }
 }
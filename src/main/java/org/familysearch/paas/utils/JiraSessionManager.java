@@ -0,0 +1,216 @@
+package org.familysearch.paas.utils;
+
+import com.google.api.client.http.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps one JIRA login session per JIRA base URL and AWS account and shares its cookies across requests and events.
+ * Each account logs in with its own JIRA credentials, so a session is never used for another account.
+ *
+ * A request that is answered with a 401 logs in again and is retried once.  Logins are single-flight: when many
+ * requests of an account find the session expired at the same time, the first one logs in and the rest reuse its
+ * new session.
+ * When the login itself is answered with a 401 the cached credentials of the account are dropped and the login
+ * is tried once more with freshly read ones.
+ *
+ * @author kriskrishna
+ */
+public class JiraSessionManager {
+  private static final Logger LOG = LoggerFactory.getLogger(JiraSessionManager.class);
+  static final String LOGIN_PATH = "/rest/auth/1/session";
+  private static final int UNAUTHORIZED = 401;
+
+  /**
+   * A request made with the cookies of a session.
+   */
+  interface SessionRequest<T> {
+    T execute(String url, List<String> cookies) throws IOException;
+  }
+
+  private final HttpRequestHelper httpRequestHelper;
+  private final CredentialHelper credentialHelper;
+  private final ParserHelper parserHelper;
+  private final ConfigurationHelper configurationHelper;
+  private final ConcurrentMap<SessionKey, Session> sessions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<SessionKey, Object> loginLocks = new ConcurrentHashMap<>();
+
+  /**
+   * Construct the manager.
+   * @param httpRequestHelper that makes the requests.
+   * @param credentialHelper that gives the JIRA credentials of an account.
+   * @param parserHelper that parses the JIRA credentials.
+   * @param configurationHelper that gives the JIRA base URL.
+   */
+  public JiraSessionManager(HttpRequestHelper httpRequestHelper, CredentialHelper credentialHelper, ParserHelper parserHelper,
+                            ConfigurationHelper configurationHelper) {
+    this.httpRequestHelper = httpRequestHelper;
+    this.credentialHelper = credentialHelper;
+    this.parserHelper = parserHelper;
+    this.configurationHelper = configurationHelper;
+  }
+
+  /**
+   * PUT to JIRA with the session cookies, see {@link HttpRequestHelper#executePutRequest(String, Object, List)}.
+   * @param awsAccountId whose JIRA credentials are used if a login is needed.
+   * @param path relative to the JIRA base URL.
+   * @param body a bean representing the body of the request.
+   * @return the http status code resulting from the PUT request.
+   * @throws IOException if the request or the login fails.
+   */
+  public int executePutRequest(String awsAccountId, String path, Object body) throws IOException {
+    return executeStatusCodeRequest(awsAccountId, path, (url, cookies) -> httpRequestHelper.executePutRequest(url, body, cookies));
+  }
+
+  /**
+   * POST to JIRA with the session cookies, see {@link HttpRequestHelper#executePostRequest(String, Object, List)}.
+   * @param awsAccountId whose JIRA credentials are used if a login is needed.
+   * @param path relative to the JIRA base URL.
+   * @param body a bean representing the body of the request.
+   * @return the http status code resulting from the POST request.
+   * @throws IOException if the request or the login fails.
+   */
+  public int executePostRequest(String awsAccountId, String path, Object body) throws IOException {
+    return executeStatusCodeRequest(awsAccountId, path, (url, cookies) -> httpRequestHelper.executePostRequest(url, body, cookies));
+  }
+
+  /**
+   * POST to JIRA with the session cookies, see {@link HttpRequestHelper#executePostRequest(String, Object, List, Class)}.
+   * @param awsAccountId whose JIRA credentials are used if a login is needed.
+   * @param path relative to the JIRA base URL.
+   * @param body a bean representing the body of the request.
+   * @param type the type that the response body should be returned as.
+   * @return the response body as an object of type T.
+   * @throws IOException if the request or the login fails.
+   */
+  public <T> T executePostRequest(String awsAccountId, String path, Object body, Class<T> type) throws IOException {
+    String baseUrl = configurationHelper.jiraBaseUrl();
+    Session session = getSession(baseUrl, awsAccountId);
+    try {
+      return httpRequestHelper.executePostRequest(baseUrl + path, body, session.cookies, type);
+    }
+    catch (HttpResponseException e) {
+      if (e.getStatusCode() != UNAUTHORIZED) {
+        throw e;
+      }
+      session = renewSession(baseUrl, awsAccountId, session);
+      return httpRequestHelper.executePostRequest(baseUrl + path, body, session.cookies, type);
+    }
+  }
+
+  /**
+   * Gives the cookies of the current session, logging in if there is none.
+   * @param awsAccountId whose JIRA credentials are used if a login is needed.
+   * @return the Cookie headers of the session.
+   * @throws IOException if the login fails.
+   */
+  public List<String> getCookies(String awsAccountId) throws IOException {
+    return getSession(configurationHelper.jiraBaseUrl(), awsAccountId).cookies;
+  }
+
+  /**
+   * Forget the sessions of every account at the JIRA base URL, so the next request of each logs in.
+   */
+  public void invalidate() {
+    String baseUrl = configurationHelper.jiraBaseUrl();
+    sessions.keySet().removeIf(key -> key.baseUrl.equals(baseUrl));
+  }
+
+  private int executeStatusCodeRequest(String awsAccountId, String path, SessionRequest<Integer> request) throws IOException {
+    String baseUrl = configurationHelper.jiraBaseUrl();
+    Session session = getSession(baseUrl, awsAccountId);
+    int statusCode = request.execute(baseUrl + path, session.cookies);
+    if (statusCode != UNAUTHORIZED) {
+      return statusCode;
+    }
+    session = renewSession(baseUrl, awsAccountId, session);
+    return request.execute(baseUrl + path, session.cookies);
+  }
+
+  private Session getSession(String baseUrl, String awsAccountId) throws IOException {
+    Session session = sessions.get(new SessionKey(baseUrl, awsAccountId));
+    return session != null ? session : renewSession(baseUrl, awsAccountId, null);
+  }
+
+  /**
+   * Log in unless another caller already replaced the stale session while this one waited for the lock.
+   */
+  private Session renewSession(String baseUrl, String awsAccountId, Session staleSession) throws IOException {
+    SessionKey sessionKey = new SessionKey(baseUrl, awsAccountId);
+    synchronized (loginLocks.computeIfAbsent(sessionKey, key -> new Object())) {
+      Session current = sessions.get(sessionKey);
+      if (current != null && current != staleSession) {
+        return current;
+      }
+      Session session = new Session(login(baseUrl, awsAccountId));
+      sessions.put(sessionKey, session);
+      return session;
+    }
+  }
+
+  private List<String> login(String baseUrl, String awsAccountId) throws IOException {
+    try {
+      return executeLogin(baseUrl, awsAccountId);
+    }
+    catch (HttpResponseException e) {
+      if (e.getStatusCode() != UNAUTHORIZED) {
+        throw e;
+      }
+      LOG.warn("JIRA login to url={} was rejected for account={}.  Will re-read the credentials and try once more.", baseUrl, awsAccountId);
+      credentialHelper.invalidate(awsAccountId);
+      return executeLogin(baseUrl, awsAccountId);
+    }
+  }
+
+  private List<String> executeLogin(String baseUrl, String awsAccountId) throws IOException {
+    Map<String, String> jiraCreds = parserHelper.getJiraCreds(credentialHelper.getJiraCreds(awsAccountId));
+    List<String> cookies = httpRequestHelper.executePostLoginRequest(baseUrl + LOGIN_PATH, jiraCreds);
+    LOG.info("Logged in to JIRA url={} for account={}.", baseUrl, awsAccountId);
+    return cookies;
+  }
+
+  /**
+   * Identifies a session: the JIRA it is logged in to and the account whose credentials logged in.
+   */
+  private static final class SessionKey {
+    private final String baseUrl;
+    private final String awsAccountId;
+
+    private SessionKey(String baseUrl, String awsAccountId) {
+      this.baseUrl = baseUrl;
+      this.awsAccountId = awsAccountId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SessionKey)) {
+        return false;
+      }
+      SessionKey that = (SessionKey) o;
+      return baseUrl.equals(that.baseUrl) && Objects.equals(awsAccountId, that.awsAccountId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * baseUrl.hashCode() + Objects.hashCode(awsAccountId);
+    }
+  }
+
+  private static final class Session {
+    private final List<String> cookies;
+
+    private Session(List<String> cookies) {
+      this.cookies = cookies;
+    }
+  }
+}
@@ -2,13 +2,13 @@ package org.familysearch.paas.utils;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.familysearch.paas.metrics.EventTrace;
+import org.familysearch.paas.metrics.MetricsRegistry;
+import org.familysearch.paas.metrics.Stage;
 
-import java.io.UnsupportedEncodingException;
-import java.net.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,17 +18,25 @@ import java.util.Map;
  */
 public class ParserHelper {
 
-  private static final Logger LOG = LoggerFactory.getLogger(ParserHelper.class);
-
-  private static final String ALARM_DESCRIPTION = "AlarmDescription";
   /**
    * The Key for the AWS Account Id in the jira components map.
    */
   public static final String AWS_ACCOUNT_ID = "aws_account_id";
-  private static final String DESCRIPTION = "Reason:  %s \nAlarm Link: %s\nRunbook Link: %s";
+  private static final String SUMMARY_PREFIX = "CloudWatch Alert [ ";
+  private static final String DESCRIPTION_REASON = "Reason:  ";
+  private static final String DESCRIPTION_ALARM_LINK = " \nAlarm Link: ";
+  private static final String DESCRIPTION_RUNBOOK_LINK = "\nRunbook Link: ";
   // Hard coded to us-east-1 as we do not yet have the CloudWatch Event Service client in any other region.
-  private static final String ALARM_URL_PATTERN = "https://console.aws.amazon.com/cloudwatch/home?region=us-east-1#alarm:alarmFilter=ANY;name=%s";
-  private static final String RUNBOOK_URL_PATTERN = "https://almtools.ldschurch.org/fhconfluence/dosearchsite.action?where=ORB&spaceSearch=true&queryString=%s";
+  static final String ALARM_URL_PATTERN = "https://console.aws.amazon.com/cloudwatch/home?region=us-east-1#alarm:alarmFilter=ANY;name=%s";
+  static final String RUNBOOK_URL_PATTERN = "https://almtools.ldschurch.org/fhconfluence/dosearchsite.action?where=ORB&spaceSearch=true&queryString=%s";
+  static final UrlTemplate ALARM_URL = new UrlTemplate(ALARM_URL_PATTERN);
+  static final UrlTemplate RUNBOOK_URL = new UrlTemplate(RUNBOOK_URL_PATTERN);
+  // The summary and description of an event are built in a buffer of the thread; one that grew on a huge reason
+  // is dropped rather than kept.
+  private static final int TEXT_CAPACITY = 1024;
+  private static final int MAX_RETAINED_TEXT_CAPACITY = 64 * 1024;
+  private static final Stage GET_KINESIS_COMPONENTS = MetricsRegistry.getDefault().stage("GetKinesisComponents");
+  private static final ThreadLocal<StringBuilder> TEXT = ThreadLocal.withInitial(() -> new StringBuilder(TEXT_CAPACITY));
 
   private IamHelper iamHelper;
 
@@ -65,50 +73,92 @@ public class ParserHelper {
     return jiraCreds;
   }
 
+  /**
+   * Gives the components of the first record in the SNS event.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the components of the first record.
+   */
   public Map<String, String> getKinesisComponents(String snsEvent){
-    Map<String, String> jiraComponents = new HashMap<>();
-    JsonParser jsonParser = new JsonParser();
-    JsonObject snsSection;
-    try {
-      snsSection = (JsonObject) jsonParser.parse(snsEvent).getAsJsonObject().getAsJsonArray("Records").get(0).getAsJsonObject().get("Sns");
+    return getKinesisComponentsFromMessage(getSnsMessages(snsEvent).get(0));
+  }
+
+  /**
+   * Gives the components of every record in the SNS event, in record order.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the components of each record.
+   */
+  public List<Map<String, String>> getKinesisComponentsBatch(String snsEvent) {
+    List<String> messages = getSnsMessages(snsEvent);
+    List<Map<String, String>> batch = new ArrayList<>(messages.size());
+    for (String message : messages) {
+      batch.add(getKinesisComponentsFromMessage(message));
     }
-    catch(NullPointerException e) {
-      throw new ParserHelperException("JSON document does not appear to be valid!", e);
+    return batch;
+  }
+
+  /**
+   * Splits an SNS event into the Message of each of its records, so that records can be parsed independently.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the Message string of each record, in record order.
+   */
+  public List<String> getSnsMessages(String snsEvent) {
+    long start = System.nanoTime();
+    List<String> messages = SnsEventReader.readMessages(snsEvent);
+    EventTrace.span("ParseEvent", start);
+    if (messages.isEmpty()) {
+      throw new ParserHelperException("JSON document does not contain any Records!");
     }
+    return messages;
+  }
 
-    String message = snsSection.get("Message").getAsString();
-    JsonObject messageSection;
-    messageSection = jsonParser.parse(message).getAsJsonObject();
-    String alarmDescription = messageSection.get(ALARM_DESCRIPTION).getAsString();
-    JsonObject alarmDesJson;
+  /**
+   * Gives the components of a single SNS record.
+   *
+   * @param message is the Message string of the SNS record.
+   * @return the components of the record.
+   */
+  public Map<String, String> getKinesisComponentsFromMessage(String message) {
+    long start = System.nanoTime();
     try {
-      alarmDesJson = (JsonObject) jsonParser.parse(alarmDescription);
+      return kinesisComponents(message);
     }
-    catch (JsonSyntaxException e) {
-      throw new ParserHelperException("Alarm Description is not valid!", e);
+    finally {
+      GET_KINESIS_COMPONENTS.recordSince(start);
     }
+  }
 
-    String alarmName = messageSection.getAsJsonObject().get("AlarmName").getAsString();
-    String region = messageSection.getAsJsonObject().get("Region").getAsString();
-    String summary = "CloudWatch Alert [ " + getAccountFriendlyName() + " - " + region + " ] - " + alarmName;
-    String summarySearch = replaceSpecialCharacters(summary);
-    String description = String.format(DESCRIPTION, messageSection.getAsJsonObject().get("NewStateReason").getAsString(), getAlarmUrl(alarmName), getRunbookUrl(summarySearch));
-
-    String accountId = messageSection.getAsJsonObject().get("AWSAccountId").getAsString();
-
-    String project = alarmDesJson.getAsJsonObject().get("project").getAsString();
-    String component = alarmDesJson.getAsJsonObject().get("component").getAsString();
-    String priority = alarmDesJson.getAsJsonObject().get("priority").getAsString();
-    String recipient = alarmDesJson.getAsJsonObject().get("recipient").getAsString();
+  private Map<String, String> kinesisComponents(String message) {
+    Map<String, String> jiraComponents = new HashMap<>();
+    SnsEventReader.AlarmMessage alarm = SnsEventReader.readAlarm(message);
+
+    StringBuilder text = TEXT.get();
+    text.setLength(0);
+    text.append(SUMMARY_PREFIX).append(getAccountFriendlyName()).append(" - ").append(alarm.region)
+        .append(" ] - ").append(alarm.alarmName);
+    String summary = text.toString();
+
+    text.setLength(0);
+    String summarySearch = TextEncoding.appendSearchText(text, summary).toString();
+
+    text.setLength(0);
+    text.append(DESCRIPTION_REASON).append(alarm.newStateReason).append(DESCRIPTION_ALARM_LINK);
+    ALARM_URL.appendTo(text, alarm.alarmName).append(DESCRIPTION_RUNBOOK_LINK);
+    String description = RUNBOOK_URL.appendTo(text, summarySearch).toString();
+    if (text.capacity() > MAX_RETAINED_TEXT_CAPACITY) {
+      TEXT.remove();
+    }
 
     jiraComponents.put("summary", summary);
     jiraComponents.put("summary_search", summarySearch);
-    jiraComponents.put("project", project);
-    jiraComponents.put("component", component);
-    jiraComponents.put("priority", priority);
-    jiraComponents.put("recipient", recipient);
+    jiraComponents.put("project", alarm.project);
+    jiraComponents.put("component", alarm.component);
+    jiraComponents.put("priority", alarm.priority);
+    jiraComponents.put("recipient", alarm.recipient);
     jiraComponents.put("description", description);
-    jiraComponents.put(AWS_ACCOUNT_ID, accountId);
+    jiraComponents.put(AWS_ACCOUNT_ID, alarm.awsAccountId);
 
     return jiraComponents;
   }
@@ -120,28 +170,19 @@ public class ParserHelper {
     return replaceSpecialCharacters(iamHelper.getFirstAccountAlias());
   }
 
-  private String getRunbookUrl(String summarySearch) {
-    return convertToURL(RUNBOOK_URL_PATTERN, summarySearch);
-  }
-
-  private String getAlarmUrl(String alarmName) {
-    return convertToURL(ALARM_URL_PATTERN, alarmName);
-  }
-
-  private String convertToURL(String urlPattern, String value) {
-    try {
-      // This is a PAIN!!!  Doesn't appear to be a simple library that will get this right.
-      // I.e. without the + replaced as %20 AWS CloudWatch does not work correctly.
-      value = URLEncoder.encode(value, "UTF-8").replaceAll("\\+", "%20");
-    }
-    catch (UnsupportedEncodingException e) {
-      LOG.info("Error encoding value={} and will ignore the error!", value, e);
-    }
-    return String.format(urlPattern, value);
+  /**
+   * Percent-encode the value as RFC 3986 has it, spaces as %20 which AWS CloudWatch needs, and put it into the URL
+   * template.
+   */
+  String convertToURL(UrlTemplate urlTemplate, String value) {
+    return urlTemplate.expand(value);
   }
 
-  private String replaceSpecialCharacters(String summary) {
-    return summary.replaceAll("[+&|!(){}^~*?\\:\\[\\]-]", " ");
+  /**
+   * Replace the characters that are special in a JIRA or Confluence search with spaces.
+   */
+  String replaceSpecialCharacters(String summary) {
+    return TextEncoding.toSearchText(summary);
   }
 
 }
@@ -0,0 +1,218 @@
+package org.familysearch.paas.utils;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether and when a failed request is tried again: exponential backoff with full jitter, bounded by a
+ * number of attempts and by a retry budget that is shared by every request made with the policy.
+ *
+ * The budget is a token bucket.  A retry costs tokens and a request that succeeds on its first attempt puts one
+ * back, so while the other side is healthy retries are nearly free, and when it is failing or throttling the
+ * bucket empties and requests fail fast instead of multiplying the load.  A throttled retry costs twice as much
+ * and backs off from a longer base delay.  Full jitter spreads the retries of many clients that failed together.
+ * A <code>Retry-After</code> from the other side is a floor on the wait; a request is not retried when it asks
+ * for more than the most any retry waits.  Thread safe.
+ *
+ * @author kriskrishna
+ */
+public class RetryPolicy {
+  static final int BUDGET_CAPACITY = 500;
+  static final int RETRY_COST = 5;
+  static final int THROTTLED_RETRY_COST = 10;
+  private static final int SUCCESS_REFUND = 1;
+
+  /**
+   * Waits between attempts; replaced in tests.
+   */
+  interface Sleeper {
+    void sleep(long millis) throws InterruptedException;
+  }
+
+  private final int maxAttempts;
+  private final long baseDelayMillis;
+  private final long throttledBaseDelayMillis;
+  private final long maxDelayMillis;
+  private final Sleeper sleeper;
+  private final AtomicInteger budget = new AtomicInteger(BUDGET_CAPACITY);
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong budgetExhausted = new AtomicLong();
+
+  /**
+   * Construct the policy.
+   * @param maxAttempts is the most times a request is sent, including the first.
+   * @param baseDelayMillis is the most the first retry waits; the bound doubles with every retry.
+   * @param throttledBaseDelayMillis is the base delay when the request was throttled.
+   * @param maxDelayMillis is the most any retry waits.
+   */
+  public RetryPolicy(int maxAttempts, long baseDelayMillis, long throttledBaseDelayMillis, long maxDelayMillis) {
+    this(maxAttempts, baseDelayMillis, throttledBaseDelayMillis, maxDelayMillis, Thread::sleep);
+  }
+
+  RetryPolicy(int maxAttempts, long baseDelayMillis, long throttledBaseDelayMillis, long maxDelayMillis, Sleeper sleeper) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.baseDelayMillis = baseDelayMillis;
+    this.throttledBaseDelayMillis = throttledBaseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.sleeper = sleeper;
+  }
+
+  /**
+   * @return a policy of 4 attempts, backing off from 100 ms, or 500 ms when throttled, up to 20 s.
+   */
+  public static RetryPolicy standard() {
+    return new RetryPolicy(4, 100, 500, 20000);
+  }
+
+  /**
+   * @return a policy that never retries.
+   */
+  public static RetryPolicy none() {
+    return new RetryPolicy(1, 0, 0, 0);
+  }
+
+  /**
+   * A 429 or 503 says the request was refused before it was processed, so any request may be sent again.  A 502
+   * only says a gateway got no good answer from the server, which may still have processed the request, so it is
+   * retryable only for idempotent requests; sending a POST again could, for example, create an issue twice.
+   * @param statusCode of the response.
+   * @param idempotent is true when sending the request twice has the same effect as sending it once, e.g. a PUT.
+   * @return true when the request may be sent again.
+   */
+  public static boolean isRetryableStatus(int statusCode, boolean idempotent) {
+    return isThrottlingStatus(statusCode) || (idempotent && statusCode == 502);
+  }
+
+  /**
+   * @return true for the HTTP status codes that say the other side is shedding load: 429 and 503.
+   */
+  public static boolean isThrottlingStatus(int statusCode) {
+    return statusCode == 429 || statusCode == 503;
+  }
+
+  /**
+   * Decide whether to try again after a failed attempt and, if so, wait for the backoff.
+   * @param attempt is the attempt that failed, starting at 1.
+   * @param throttled is true when the attempt was throttled.
+   * @return true to send the request again, false when attempts or budget ran out or the thread was interrupted.
+   */
+  public boolean retry(int attempt, boolean throttled) {
+    return retry(attempt, throttled, 0);
+  }
+
+  /**
+   * Decide whether to try again after a failed attempt and, if so, wait for the backoff, but at least as long as
+   * the other side asked for.
+   * @param attempt is the attempt that failed, starting at 1.
+   * @param throttled is true when the attempt was throttled.
+   * @param retryAfterMillis is the wait the other side asked for, see {@link #retryAfterMillis(String, long)}.
+   * @return true to send the request again, false when attempts or budget ran out, the wait asked for is longer
+   * than the most any retry waits, or the thread was interrupted.
+   */
+  public boolean retry(int attempt, boolean throttled, long retryAfterMillis) {
+    if (attempt >= maxAttempts || retryAfterMillis > maxDelayMillis) {
+      return false;
+    }
+    if (!acquire(throttled ? THROTTLED_RETRY_COST : RETRY_COST)) {
+      budgetExhausted.incrementAndGet();
+      return false;
+    }
+    retries.incrementAndGet();
+    try {
+      sleeper.sleep(Math.max(retryAfterMillis, delayMillis(attempt, throttled)));
+      return true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Parse a <code>Retry-After</code> header, which is either a number of seconds or an HTTP date.
+   * @param retryAfter is the value of the header, or null.
+   * @param nowMillis is the current time, for an HTTP date.
+   * @return the wait it asks for, or 0 when there is none or it does not parse.
+   */
+  public static long retryAfterMillis(String retryAfter, long nowMillis) {
+    if (retryAfter == null || retryAfter.trim().isEmpty()) {
+      return 0;
+    }
+    String value = retryAfter.trim();
+    try {
+      return Math.max(0, Math.min(Long.parseLong(value), Long.MAX_VALUE / 1000)) * 1000;
+    }
+    catch (NumberFormatException e) {
+      try {
+        return Math.max(0, ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - nowMillis);
+      }
+      catch (DateTimeParseException notADate) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Record that a request succeeded on its first attempt, which refills the budget a little.
+   */
+  public void onSuccess() {
+    int tokens;
+    do {
+      tokens = budget.get();
+      if (tokens >= BUDGET_CAPACITY) {
+        return;
+      }
+    }
+    while (!budget.compareAndSet(tokens, Math.min(BUDGET_CAPACITY, tokens + SUCCESS_REFUND)));
+  }
+
+  /**
+   * Full jitter: a uniform wait between zero and the exponential bound.
+   */
+  long delayMillis(int attempt, boolean throttled) {
+    long base = throttled ? throttledBaseDelayMillis : baseDelayMillis;
+    long bound = Math.min(maxDelayMillis, base << Math.min(attempt - 1, 30));
+    return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+  }
+
+  private boolean acquire(int cost) {
+    int tokens;
+    do {
+      tokens = budget.get();
+      if (tokens < cost) {
+        return false;
+      }
+    }
+    while (!budget.compareAndSet(tokens, tokens - cost));
+    return true;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @return the retries that were allowed.
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return the retries that were refused because the budget was empty.
+   */
+  public long getBudgetExhausted() {
+    return budgetExhausted.get();
+  }
+
+  /**
+   * @return the tokens left in the budget.
+   */
+  int getBudget() {
+    return budget.get();
+  }
+}
@@ -0,0 +1,207 @@
+package org.familysearch.paas.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pulls the few fields we use out of SNS envelopes and CloudWatch alarm messages with a streaming
+ * {@link JsonReader}.  Everything else is skipped without building a tree, so large alarm payloads (long
+ * reasons, many dimensions, signatures) cost little more than a scan.
+ *
+ * @author kriskrishna
+ */
+class SnsEventReader {
+
+  private static final String RECORDS = "Records";
+  private static final String SNS = "Sns";
+  private static final String MESSAGE = "Message";
+  private static final String ALARM_NAME = "AlarmName";
+  private static final String REGION = "Region";
+  private static final String NEW_STATE_REASON = "NewStateReason";
+  private static final String AWS_ACCOUNT_ID = "AWSAccountId";
+  private static final String ALARM_DESCRIPTION = "AlarmDescription";
+  private static final String PROJECT = "project";
+  private static final String COMPONENT = "component";
+  private static final String PRIORITY = "priority";
+  private static final String RECIPIENT = "recipient";
+
+  private SnsEventReader() {
+  }
+
+  /**
+   * Gives the Message string of every record in an SNS event.
+   *
+   * @param snsEvent is the SNS event JSON document.
+   * @return the Message of each record, in record order.
+   */
+  static List<String> readMessages(String snsEvent) {
+    List<String> messages = new ArrayList<>();
+    try (JsonReader reader = newReader(snsEvent)) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (RECORDS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            messages.add(readRecordMessage(reader));
+          }
+          reader.endArray();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      throw new ParserHelperException("JSON document does not appear to be valid!", e);
+    }
+    return messages;
+  }
+
+  /**
+   * Gives the fields of a CloudWatch alarm message, including the JSON document in its AlarmDescription.
+   *
+   * @param message is the Message string of an SNS record.
+   * @return the alarm fields.
+   */
+  static AlarmMessage readAlarm(String message) {
+    AlarmMessage alarm = new AlarmMessage();
+    String alarmDescription = null;
+    try (JsonReader reader = newReader(message)) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (ALARM_NAME.equals(name)) {
+          alarm.alarmName = nextStringOrNull(reader);
+        }
+        else if (REGION.equals(name)) {
+          alarm.region = nextStringOrNull(reader);
+        }
+        else if (NEW_STATE_REASON.equals(name)) {
+          alarm.newStateReason = nextStringOrNull(reader);
+        }
+        else if (AWS_ACCOUNT_ID.equals(name)) {
+          alarm.awsAccountId = nextStringOrNull(reader);
+        }
+        else if (ALARM_DESCRIPTION.equals(name)) {
+          alarmDescription = nextStringOrNull(reader);
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      throw new ParserHelperException("Alarm Message is not valid!", e);
+    }
+
+    readAlarmDescription(required(ALARM_DESCRIPTION, alarmDescription), alarm);
+    required(ALARM_NAME, alarm.alarmName);
+    required(REGION, alarm.region);
+    required(NEW_STATE_REASON, alarm.newStateReason);
+    required(AWS_ACCOUNT_ID, alarm.awsAccountId);
+    return alarm;
+  }
+
+  private static void readAlarmDescription(String alarmDescription, AlarmMessage alarm) {
+    try (JsonReader reader = newReader(alarmDescription)) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (PROJECT.equals(name)) {
+          alarm.project = nextStringOrNull(reader);
+        }
+        else if (COMPONENT.equals(name)) {
+          alarm.component = nextStringOrNull(reader);
+        }
+        else if (PRIORITY.equals(name)) {
+          alarm.priority = nextStringOrNull(reader);
+        }
+        else if (RECIPIENT.equals(name)) {
+          alarm.recipient = nextStringOrNull(reader);
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+    }
+    catch (IOException | IllegalStateException e) {
+      throw new ParserHelperException("Alarm Description is not valid!", e);
+    }
+    required(PROJECT, alarm.project);
+    required(COMPONENT, alarm.component);
+    required(PRIORITY, alarm.priority);
+    required(RECIPIENT, alarm.recipient);
+  }
+
+  private static String readRecordMessage(JsonReader reader) throws IOException {
+    String message = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (SNS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          if (MESSAGE.equals(reader.nextName())) {
+            message = nextStringOrNull(reader);
+          }
+          else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (message == null) {
+      throw new ParserHelperException("JSON document does not appear to be valid!  A record has no Sns Message.");
+    }
+    return message;
+  }
+
+  private static JsonReader newReader(String json) {
+    JsonReader reader = new JsonReader(new StringReader(json));
+    // Match the leniency of JsonParser, which is what this replaced.
+    reader.setLenient(true);
+    return reader;
+  }
+
+  private static String nextStringOrNull(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+      return reader.nextString();
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return String.valueOf(reader.nextBoolean());
+    }
+    reader.skipValue();
+    return null;
+  }
+
+  private static String required(String name, String value) {
+    if (value == null) {
+      throw new ParserHelperException("Alarm is missing the " + name + " field!");
+    }
+    return value;
+  }
+
+  /**
+   * The fields of a CloudWatch alarm message that are used to build the components.
+   */
+  static class AlarmMessage {
+    String alarmName;
+    String region;
+    String newStateReason;
+    String awsAccountId;
+    String project;
+    String component;
+    String priority;
+    String recipient;
+  }
+}
@@ -0,0 +1,128 @@
+package org.familysearch.paas.utils;
+
+/**
+ * Table driven text transforms for the alarm summaries and links, written into a caller's StringBuilder so nothing
+ * is allocated per character and no regular expression is compiled or run.
+ *
+ * @author kriskrishna
+ */
+public final class TextEncoding {
+  /**
+   * The characters that are operators in a JIRA or Confluence search.
+   */
+  static final String SEARCH_SPECIAL_CHARACTERS = "+&|!(){}^~*?:[]-";
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final boolean[] SEARCH_SPECIAL = new boolean[128];
+  private static final boolean[] UNRESERVED = new boolean[128];
+
+  static {
+    for (char c : SEARCH_SPECIAL_CHARACTERS.toCharArray()) {
+      SEARCH_SPECIAL[c] = true;
+    }
+    for (char c = 'a'; c <= 'z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for (char c = 'A'; c <= 'Z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      UNRESERVED[c] = true;
+    }
+    UNRESERVED['-'] = true;
+    UNRESERVED['.'] = true;
+    UNRESERVED['_'] = true;
+    UNRESERVED['~'] = true;
+  }
+
+  private TextEncoding() {
+  }
+
+  /**
+   * Replace the characters that are special in a JIRA or Confluence search with spaces.
+   * @return the text, the same instance when there is nothing to replace.
+   */
+  public static String toSearchText(String text) {
+    int i = 0;
+    while (i < text.length() && !isSearchSpecial(text.charAt(i))) {
+      i++;
+    }
+    if (i == text.length()) {
+      return text;
+    }
+    char[] chars = text.toCharArray();
+    for (; i < chars.length; i++) {
+      if (isSearchSpecial(chars[i])) {
+        chars[i] = ' ';
+      }
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Append the text with the characters that are special in a JIRA or Confluence search replaced by spaces.
+   * @return the builder.
+   */
+  public static StringBuilder appendSearchText(StringBuilder out, CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      out.append(isSearchSpecial(c) ? ' ' : c);
+    }
+    return out;
+  }
+
+  /**
+   * Append the text percent-encoded as RFC 3986 has it for a URI component: the unreserved characters as they
+   * are, every other character as the %XX escapes of its UTF-8 bytes.  A space becomes %20, never +.  An unpaired
+   * surrogate is encoded as ?, like {@link java.net.URLEncoder} does.
+   * @return the builder.
+   */
+  public static StringBuilder appendPercentEncoded(StringBuilder out, CharSequence text) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        if (UNRESERVED[c]) {
+          out.append(c);
+        }
+        else {
+          appendEscape(out, c);
+        }
+      }
+      else if (c < 0x800) {
+        appendEscape(out, 0xC0 | (c >> 6));
+        appendEscape(out, 0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        appendEscape(out, 0xF0 | (codePoint >> 18));
+        appendEscape(out, 0x80 | ((codePoint >> 12) & 0x3F));
+        appendEscape(out, 0x80 | ((codePoint >> 6) & 0x3F));
+        appendEscape(out, 0x80 | (codePoint & 0x3F));
+      }
+      else if (Character.isSurrogate(c)) {
+        appendEscape(out, '?');
+      }
+      else {
+        appendEscape(out, 0xE0 | (c >> 12));
+        appendEscape(out, 0x80 | ((c >> 6) & 0x3F));
+        appendEscape(out, 0x80 | (c & 0x3F));
+      }
+    }
+    return out;
+  }
+
+  /**
+   * @return the text percent-encoded, see {@link #appendPercentEncoded(StringBuilder, CharSequence)}.
+   */
+  public static String percentEncode(String text) {
+    return appendPercentEncoded(new StringBuilder(text.length() + 16), text).toString();
+  }
+
+  private static boolean isSearchSpecial(char c) {
+    return c < 0x80 && SEARCH_SPECIAL[c];
+  }
+
+  private static void appendEscape(StringBuilder out, int b) {
+    out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+  }
+}
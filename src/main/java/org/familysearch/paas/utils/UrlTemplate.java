@@ -0,0 +1,45 @@
+package org.familysearch.paas.utils;
+
+/**
+ * A URL with one <code>%s</code> placeholder, split once into the text before and after it, so expanding it is
+ * two appends around the percent-encoded value instead of a {@link String#format(String, Object...)}.
+ *
+ * @author kriskrishna
+ */
+public final class UrlTemplate {
+  private static final String PLACEHOLDER = "%s";
+
+  private final String prefix;
+  private final String suffix;
+
+  /**
+   * Construct the template.
+   * @param pattern of the URL, with exactly one <code>%s</code> where the value goes.
+   * @throws IllegalArgumentException if the pattern does not have exactly one placeholder.
+   */
+  public UrlTemplate(String pattern) {
+    int placeholder = pattern.indexOf(PLACEHOLDER);
+    if (placeholder < 0 || pattern.indexOf(PLACEHOLDER, placeholder + PLACEHOLDER.length()) >= 0) {
+      throw new IllegalArgumentException("URL pattern must have exactly one %s: " + pattern);
+    }
+    this.prefix = pattern.substring(0, placeholder);
+    this.suffix = pattern.substring(placeholder + PLACEHOLDER.length());
+  }
+
+  /**
+   * Append the URL with the value percent-encoded in place of the placeholder.
+   * @return the builder.
+   */
+  public StringBuilder appendTo(StringBuilder out, CharSequence value) {
+    out.append(prefix);
+    TextEncoding.appendPercentEncoded(out, value);
+    return out.append(suffix);
+  }
+
+  /**
+   * @return the URL with the value percent-encoded in place of the placeholder.
+   */
+  public String expand(CharSequence value) {
+    return appendTo(new StringBuilder(prefix.length() + value.length() * 3 / 2 + suffix.length()), value).toString();
+  }
+}
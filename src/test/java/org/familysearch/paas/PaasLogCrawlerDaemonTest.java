@@ -0,0 +1,225 @@
+package org.familysearch.paas;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.endsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for PaasLogCrawlerDaemon class.
+ */
+public class PaasLogCrawlerDaemonTest {
+
+  private static final int WAIT_MILLIS = 10000;
+
+  @Mock
+  private PaasLogCrawlerEventService mockEventService;
+
+  private File spoolDirectory;
+  private PaasLogCrawlerDaemon testModel;
+  private Thread daemonThread;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockEventService.processEvent(anyString())).thenReturn(0);
+    spoolDirectory = Files.createTempDirectory("paas-log-crawler-spool").toFile();
+    testModel = new PaasLogCrawlerDaemon(mockEventService, spoolDirectory, 2);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    testModel.stop();
+    if (daemonThread != null) {
+      daemonThread.interrupt();
+      daemonThread.join(WAIT_MILLIS);
+    }
+    Files.walk(spoolDirectory.toPath()).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+  }
+
+  private void startDaemon() {
+    daemonThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          testModel.run();
+        }
+        catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    daemonThread.start();
+  }
+
+  private File spoolEvent(File directory, String name) throws IOException {
+    File event = new File(directory, name);
+    Files.write(event.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+    return event;
+  }
+
+  @Test
+  public void itShouldProcessAndRemoveSpooledEvents() throws Exception {
+    File event = spoolEvent(spoolDirectory, "first.json");
+
+    startDaemon();
+
+    verify(mockEventService, timeout(WAIT_MILLIS)).processEvent(endsWith("first.json"));
+    waitUntilGone(event);
+    assertFalse(new File(new File(spoolDirectory, PaasLogCrawlerDaemon.PROCESSING_DIRECTORY), "first.json").exists());
+  }
+
+  @Test
+  public void itShouldMoveFailedEventsAside() throws Exception {
+    when(mockEventService.processEvent(endsWith("bad.json"))).thenReturn(PaasLogCrawlerEventService.UNKNOWN_ERROR);
+    spoolEvent(spoolDirectory, "bad.json");
+
+    startDaemon();
+
+    File failedDirectory = new File(spoolDirectory, PaasLogCrawlerDaemon.FAILED_DIRECTORY);
+    waitUntilFailed(failedDirectory, 1);
+    assertEquals(failedDirectory.list().length, 1);
+    assertTrue(failedDirectory.list()[0].matches("bad\\.\\d+\\.json"), failedDirectory.list()[0]);
+  }
+
+  @Test
+  public void itShouldKeepEveryFailureOfEventsWithTheSameName() throws Exception {
+    when(mockEventService.processEvent(endsWith("bad.json"))).thenReturn(PaasLogCrawlerEventService.UNKNOWN_ERROR);
+    File failedDirectory = new File(spoolDirectory, PaasLogCrawlerDaemon.FAILED_DIRECTORY);
+    spoolEvent(spoolDirectory, "bad.json");
+
+    startDaemon();
+    waitUntilFailed(failedDirectory, 1);
+    spoolEvent(spoolDirectory, "bad.json");
+
+    waitUntilFailed(failedDirectory, 2);
+    assertEquals(failedDirectory.list().length, 2);
+  }
+
+  @Test
+  public void timedName_itShouldPutTheTimeBeforeTheExtension() {
+    assertEquals(PaasLogCrawlerDaemon.timedName("bad.json", 1500000000000L, 0), "bad.1500000000000.json");
+    assertEquals(PaasLogCrawlerDaemon.timedName("bad.json", 1500000000000L, 2), "bad.1500000000000-2.json");
+    assertEquals(PaasLogCrawlerDaemon.timedName("bad", 1500000000000L, 0), "bad.1500000000000");
+  }
+
+  @Test
+  public void itShouldKeepAnEventOfTheSameNameSpooledWhileOneIsInProgress() throws Exception {
+    final CountDownLatch secondStarted = new CountDownLatch(1);
+    final CountDownLatch firstStarted = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      if (firstStarted.getCount() > 0) {
+        firstStarted.countDown();
+        secondStarted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      else {
+        secondStarted.countDown();
+      }
+      return 0;
+    }).when(mockEventService).processEvent(anyString());
+    spoolEvent(spoolDirectory, "same.json");
+
+    startDaemon();
+    assertTrue(firstStarted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    spoolEvent(spoolDirectory, "same.json");
+
+    verify(mockEventService, timeout(WAIT_MILLIS).times(2)).processEvent(endsWith("same.json"));
+    waitUntilEmpty(new File(spoolDirectory, PaasLogCrawlerDaemon.PROCESSING_DIRECTORY));
+  }
+
+  @Test
+  public void itShouldNotReplaceAnEventSpooledSinceWhenRequeueing() throws Exception {
+    File claim = new File(new File(spoolDirectory, PaasLogCrawlerDaemon.PROCESSING_DIRECTORY), "event-1");
+    assertTrue(claim.mkdirs());
+    spoolEvent(claim, "same.json");
+    spoolEvent(spoolDirectory, "same.json");
+
+    startDaemon();
+
+    verify(mockEventService, timeout(WAIT_MILLIS).times(2)).processEvent(contains("same"));
+    waitUntilEmpty(new File(spoolDirectory, PaasLogCrawlerDaemon.PROCESSING_DIRECTORY));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void run_itShouldFail_whenAnotherDaemonHasTheSpool() throws Exception {
+    File event = spoolEvent(spoolDirectory, "first.json");
+    startDaemon();
+    verify(mockEventService, timeout(WAIT_MILLIS)).processEvent(endsWith("first.json"));
+    waitUntilGone(event);
+
+    new PaasLogCrawlerDaemon(mockEventService, spoolDirectory, 1).run();
+  }
+
+  @Test
+  public void itShouldRequeueEventsLeftInProcessing() throws Exception {
+    File processing = new File(spoolDirectory, PaasLogCrawlerDaemon.PROCESSING_DIRECTORY);
+    assertTrue(processing.mkdirs());
+    spoolEvent(processing, "interrupted.json");
+
+    startDaemon();
+
+    verify(mockEventService, timeout(WAIT_MILLIS)).processEvent(endsWith("interrupted.json"));
+  }
+
+  @Test
+  public void itShouldIgnoreFilesThatAreStillBeingWritten() throws Exception {
+    spoolEvent(spoolDirectory, "partial.json.tmp");
+    File event = spoolEvent(spoolDirectory, "complete.json");
+
+    startDaemon();
+
+    verify(mockEventService, timeout(WAIT_MILLIS)).processEvent(endsWith("complete.json"));
+    waitUntilGone(event);
+    assertTrue(new File(spoolDirectory, "partial.json.tmp").exists());
+  }
+
+  private void waitUntilGone(File file) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (file.exists() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertFalse(file.exists(), "Expected " + file + " to be removed");
+  }
+
+  private void waitUntilEmpty(File directory) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (fileCount(directory) > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(fileCount(directory), 0, "Expected " + directory + " to be empty");
+  }
+
+  private void waitUntilFailed(File failedDirectory, int events) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (fileCount(failedDirectory) < events && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+  }
+
+  private static int fileCount(File failedDirectory) {
+    String[] names = failedDirectory.list();
+    return names == null ? 0 : names.length;
+  }
+}
@@ -0,0 +1,166 @@
+package org.familysearch.paas;
+
+import org.familysearch.paas.utils.ConfigurationHelper;
+import org.familysearch.paas.utils.CredentialHelper;
+import org.familysearch.paas.utils.ParserHelper;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for PaasLogCrawlerEventService class.
+ */
+public class PaasLogCrawlerEventServiceTest {
+
+  private static final String TEST_SNS_EVENT = "{\"Records\":[]}";
+  private static final int CONFIG_ERROR = -1;
+
+  @Mock
+  private CredentialHelper mockCredentialHelper;
+  @Mock
+  private ParserHelper mockParserHelper;
+  @Mock
+  private ConfigurationHelper mockConfigurationHelper;
+
+  private PaasLogCrawlerEventService testModel;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockParserHelper.getKinesisComponentsFromMessage(anyString())).thenReturn(new HashMap<>());
+    testModel = new PaasLogCrawlerEventService(mockCredentialHelper, mockParserHelper, mockConfigurationHelper, 2);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    testModel.shutdown();
+  }
+
+  private void whenTheEventHasRecords(String... messages) {
+    when(mockParserHelper.getSnsMessages(TEST_SNS_EVENT)).thenReturn(Arrays.asList(messages));
+  }
+
+  @Test
+  public void itShouldReturnTheStatusesInRecordOrder() throws Exception {
+    whenTheEventHasRecords("slow", "fast");
+    doAnswer(invocation -> {
+      Thread.sleep(200);
+      throw new IllegalStateException("Bad record");
+    }).when(mockParserHelper).getKinesisComponentsFromMessage("slow");
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Arrays.asList(CONFIG_ERROR, 0));
+  }
+
+  @Test
+  public void itShouldProcessTheOtherRecordsWhenOneFails() throws Exception {
+    whenTheEventHasRecords("first", "bad", "third");
+    doThrow(new IllegalStateException("Bad record")).when(mockParserHelper).getKinesisComponentsFromMessage("bad");
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Arrays.asList(0, CONFIG_ERROR, 0));
+    assertEquals(testModel.processSnsEvent(TEST_SNS_EVENT), CONFIG_ERROR);
+  }
+
+  @Test
+  public void itShouldReportAnUnknownErrorWhenARecordThreadDies() throws Exception {
+    whenTheEventHasRecords("first", "fatal");
+    doThrow(new AssertionError("Record thread died")).when(mockParserHelper).getKinesisComponentsFromMessage("fatal");
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Arrays.asList(0, PaasLogCrawlerEventService.UNKNOWN_ERROR));
+  }
+
+  @Test
+  public void itShouldReportUnknownErrorsAndKeepTheInterruptWhenInterrupted() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    whenTheEventHasRecords("first", "second");
+    doAnswer(invocation -> {
+      release.await(10, TimeUnit.SECONDS);
+      return new HashMap<>();
+    }).when(mockParserHelper).getKinesisComponentsFromMessage(anyString());
+
+    Thread.currentThread().interrupt();
+    List<Integer> statuses;
+    try {
+      statuses = testModel.processSnsEventBatch(TEST_SNS_EVENT);
+    }
+    finally {
+      assertTrue(Thread.interrupted(), "The interrupt should be kept");
+      release.countDown();
+    }
+
+    assertEquals(statuses, Arrays.asList(PaasLogCrawlerEventService.UNKNOWN_ERROR, PaasLogCrawlerEventService.UNKNOWN_ERROR));
+  }
+
+  @Test
+  public void itShouldProcessASingleRecordOnTheCallingThread() throws Exception {
+    final AtomicReference<Thread> recordThread = new AtomicReference<>();
+    whenTheEventHasRecords("only");
+    doAnswer(invocation -> {
+      recordThread.set(Thread.currentThread());
+      return new HashMap<>();
+    }).when(mockParserHelper).getKinesisComponentsFromMessage("only");
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Collections.singletonList(0));
+    assertEquals(recordThread.get(), Thread.currentThread());
+  }
+
+  @Test
+  public void itShouldSucceedWhenThereAreNoRecords() throws Exception {
+    whenTheEventHasRecords();
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Collections.emptyList());
+    assertEquals(testModel.processSnsEvent(TEST_SNS_EVENT), 0);
+  }
+
+  @Test
+  public void itShouldReportAConfigurationErrorWhenTheEventDoesNotParse() throws Exception {
+    doThrow(new IllegalStateException("Not an SNS event")).when(mockParserHelper).getSnsMessages(TEST_SNS_EVENT);
+
+    assertEquals(testModel.processSnsEventBatch(TEST_SNS_EVENT), Collections.singletonList(CONFIG_ERROR));
+  }
+
+  @Test
+  public void processEventBatch_itShouldCloseTheEventFile() throws Exception {
+    final AtomicBoolean closed = new AtomicBoolean();
+    testModel.shutdown();
+    testModel = new PaasLogCrawlerEventService(mockCredentialHelper, mockParserHelper, mockConfigurationHelper, 2) {
+      @Override
+      InputStream getFileInputStream(String eventPath) throws IOException {
+        return new ByteArrayInputStream(TEST_SNS_EVENT.getBytes(StandardCharsets.UTF_8)) {
+          @Override
+          public void close() throws IOException {
+            closed.set(true);
+            super.close();
+          }
+        };
+      }
+    };
+    doReturn(Collections.singletonList("only")).when(mockParserHelper).getSnsMessages(TEST_SNS_EVENT);
+
+    assertEquals(testModel.processEventBatch("event.json"), Collections.singletonList(0));
+    assertTrue(closed.get());
+  }
+}
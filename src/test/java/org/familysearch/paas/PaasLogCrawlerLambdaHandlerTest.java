@@ -0,0 +1,107 @@
+package org.familysearch.paas;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.api.client.util.Charsets;
+import org.familysearch.paas.metrics.EmfMetricsReporter;
+import org.familysearch.paas.utils.ParserHelperTest;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for PaasLogCrawlerLambdaHandler class.
+ */
+public class PaasLogCrawlerLambdaHandlerTest {
+
+  @Mock
+  private PaasLogCrawlerEventService mockEventService;
+  @Mock
+  private Context mockContext;
+  @Mock
+  private EmfMetricsReporter mockMetricsReporter;
+
+  private PaasLogCrawlerLambdaHandler testModel;
+  private ByteArrayOutputStream output;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockEventService.processSnsEventBatch(anyString())).thenReturn(Arrays.asList(0));
+    testModel = new PaasLogCrawlerLambdaHandler(mockEventService, mockMetricsReporter);
+    output = new ByteArrayOutputStream();
+  }
+
+  private InputStream getInputStream(String input) {
+    return new ByteArrayInputStream(input.getBytes(Charsets.UTF_8));
+  }
+
+  @Test
+  public void itShouldProcessTheEventFromTheInvocationStream() throws Exception {
+    String snsEvent = ParserHelperTest.getSnsEventJsonContent();
+
+    testModel.handleRequest(getInputStream(snsEvent), output, mockContext);
+
+    verify(mockEventService).processSnsEventBatch(snsEvent);
+  }
+
+  @Test
+  public void itShouldWriteTheStatusToTheOutputStream() throws Exception {
+    testModel.handleRequest(getInputStream("{}"), output, mockContext);
+
+    assertEquals(output.toString("UTF-8"), "{\"status\":0,\"recordStatuses\":[0]}");
+  }
+
+  @Test
+  public void itShouldReportTheStatusOfEveryRecord() throws Exception {
+    when(mockEventService.processSnsEventBatch(anyString())).thenReturn(Arrays.asList(0, -1, 0));
+
+    try {
+      testModel.handleRequest(getInputStream("{}"), output, mockContext);
+    }
+    catch (IllegalStateException e) {
+      // expected, one of the records failed.
+    }
+
+    assertEquals(output.toString("UTF-8"), "{\"status\":-1,\"recordStatuses\":[0,-1,0]}");
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void itShouldFailTheInvocationWhenProcessingFails() throws Exception {
+    when(mockEventService.processSnsEventBatch(anyString())).thenReturn(Arrays.asList(-1));
+
+    testModel.handleRequest(getInputStream("{}"), output, mockContext);
+  }
+
+  @Test
+  public void itShouldFlushTheMetricsAfterEveryInvocation() throws Exception {
+    testModel.handleRequest(getInputStream("{}"), output, mockContext);
+
+    verify(mockMetricsReporter).flush();
+  }
+
+  @Test
+  public void itShouldFlushTheMetricsWhenProcessingThrows() throws Exception {
+    when(mockEventService.processSnsEventBatch(anyString())).thenThrow(new IllegalArgumentException("bad event"));
+
+    try {
+      testModel.handleRequest(getInputStream("{}"), output, mockContext);
+    }
+    catch (IllegalArgumentException e) {
+      // expected.
+    }
+
+    verify(mockMetricsReporter).flush();
+  }
+}
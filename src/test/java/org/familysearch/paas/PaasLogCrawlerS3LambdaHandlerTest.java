@@ -0,0 +1,88 @@
+package org.familysearch.paas;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import org.familysearch.paas.crawler.CrawlResult;
+import org.familysearch.paas.crawler.LogCrawler;
+import org.familysearch.paas.crawler.LogCrawlerException;
+import org.familysearch.paas.metrics.EmfMetricsReporter;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+/**
+ * Unit Tests for PaasLogCrawlerS3LambdaHandler class.
+ */
+public class PaasLogCrawlerS3LambdaHandlerTest {
+
+  private static final String S3_EVENT = "{\"Records\":["
+      + "{\"s3\":{\"bucket\":{\"name\":\"access-logs\"},\"object\":{\"key\":\"first+log.log\"}}},"
+      + "{\"s3\":{\"bucket\":{\"name\":\"access-logs\"},\"object\":{\"key\":\"second.log\"}}}]}";
+
+  @Mock
+  private LogCrawler mockLogCrawler;
+  @Mock
+  private EmfMetricsReporter mockMetricsReporter;
+  @Mock
+  private Context mockContext;
+
+  private PaasLogCrawlerS3LambdaHandler testModel;
+  private ByteArrayOutputStream output;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockLogCrawler.crawlS3Object("access-logs", "first log.log")).thenReturn(new CrawlResult(10, 1, 9, 0));
+    when(mockLogCrawler.crawlS3Object("access-logs", "second.log")).thenReturn(new CrawlResult(5, 0, 4, 1));
+    testModel = new PaasLogCrawlerS3LambdaHandler(mockLogCrawler, mockMetricsReporter);
+    output = new ByteArrayOutputStream();
+  }
+
+  private InputStream getInputStream(String input) {
+    return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void itShouldCrawlEveryObjectOfTheEventInOrder() throws Exception {
+    testModel.handleRequest(getInputStream(S3_EVENT), output, mockContext);
+
+    InOrder inOrder = inOrder(mockLogCrawler);
+    inOrder.verify(mockLogCrawler).crawlS3Object("access-logs", "first log.log");
+    inOrder.verify(mockLogCrawler).crawlS3Object("access-logs", "second.log");
+  }
+
+  @Test
+  public void itShouldWriteTheTotalsToTheOutputStream() throws Exception {
+    testModel.handleRequest(getInputStream(S3_EVENT), output, mockContext);
+
+    assertEquals(output.toString("UTF-8"), "{\"objects\":2,\"lines\":15,\"skippedLines\":1,\"indexed\":13,\"failed\":1}");
+    verify(mockMetricsReporter).flush();
+  }
+
+  @Test
+  public void itShouldFailTheInvocationAndFlushTheMetricsWhenAnObjectCanNotBeCrawled() throws Exception {
+    when(mockLogCrawler.crawlS3Object("access-logs", "second.log")).thenThrow(new LogCrawlerException("NoSuchKey"));
+
+    try {
+      testModel.handleRequest(getInputStream(S3_EVENT), output, mockContext);
+      fail("Expected a LogCrawlerException.");
+    }
+    catch (LogCrawlerException e) {
+      assertEquals(e.getMessage(), "NoSuchKey");
+    }
+    verify(mockMetricsReporter).flush();
+  }
+}
@@ -0,0 +1,32 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for AwsRequestSigner class.
+ */
+public class AwsRequestSignerTest {
+
+  @Test
+  public void itShouldGiveSignatureVersion4HeadersWithoutHost() {
+    AwsRequestSigner testModel = new AwsRequestSigner(
+        new StaticCredentialsProvider(new BasicAWSCredentials("AKIDEXAMPLE", "secret")), "es", "us-east-1");
+
+    Map<String, String> headers = testModel.signPost("https://search.example.org/_bulk", "application/x-ndjson",
+        "{}\n".getBytes(StandardCharsets.UTF_8));
+
+    assertTrue(headers.get("Authorization").startsWith("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/"));
+    assertTrue(headers.get("Authorization").contains("/us-east-1/es/aws4_request"));
+    assertNotNull(headers.get("X-Amz-Date"));
+    assertFalse(headers.containsKey("Host"));
+  }
+}
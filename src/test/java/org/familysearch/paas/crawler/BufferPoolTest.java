@@ -0,0 +1,50 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit Tests for BufferPool class.
+ */
+public class BufferPoolTest {
+
+  private BufferPool testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    testModel = new BufferPool(2, 64 * 1024);
+  }
+
+  @Test
+  public void acquire_shouldReuseAReleasedArray() {
+    byte[] buffer = testModel.acquire(5000);
+    testModel.release(buffer);
+
+    assertEquals(buffer.length, 8192);
+    assertSame(testModel.acquire(8000), buffer);
+  }
+
+  @Test
+  public void release_shouldNotPoolAnArrayLargerThanTheMaximum() {
+    byte[] buffer = testModel.acquire(100 * 1024);
+    testModel.release(buffer);
+
+    assertEquals(buffer.length, 128 * 1024);
+    assertNotSame(testModel.acquire(100 * 1024), buffer);
+  }
+
+  @Test
+  public void grow_shouldCopyTheContent() {
+    byte[] buffer = testModel.acquire(4096);
+    buffer[4095] = 7;
+
+    byte[] grown = testModel.grow(buffer, 4096, 4097);
+
+    assertEquals(grown.length, 8192);
+    assertEquals(grown[4095], 7);
+  }
+}
@@ -0,0 +1,107 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.crawler.LogLineRecord.Field;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for CommonLogFormatByteParser class.
+ */
+public class CommonLogFormatByteParserTest {
+
+  private CommonLogFormatByteParser testModel;
+  private LogLineRecord record;
+
+  @BeforeMethod
+  public void setUp() {
+    testModel = new CommonLogFormatByteParser();
+    record = new LogLineRecord();
+  }
+
+  private String toJson(LogLineRecord parsed) {
+    ByteArrayBuilder json = new ByteArrayBuilder(256);
+    parsed.writeJson(json);
+    return new String(json.array(), 0, json.length(), StandardCharsets.UTF_8);
+  }
+
+  @DataProvider(name = "lines")
+  public Object[][] lines() {
+    return new Object[][] {
+        {CommonLogFormatParserTest.COMBINED_LINE},
+        {CommonLogFormatParserTest.COMMON_LINE},
+        {"::1 - - [29/Feb/2016:23:59:59 +1345] \"OPTIONS * HTTP/1.1\" 200 0 \"-\" \"curl/7.43.0\""},
+        {"10.0.0.1 - - [31/Apr/2015:12:00:00 -0000] \"GET /a\\\"b HTTP/1.1\" 404 12 \"-\" \"tab\there\" trailing"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"\" 400 -"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET  /double HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET /x HTTP/1.1 \" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET /x\" 200 1 \"only referer\""},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET /\u00fcn\u00efcode HTTP/1.1\" 200 1 \"-\" \"Mozilla/5.0 (\u65e5\u672c\u8a9e)\""},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET / HTTP/1.1\" 200 12x"},
+        {"10.0.0.1 - - [01/jan/1999:00:00:00 +0000] \"GET / HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:24:00:00 +0000] \"GET / HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00] \"GET / HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET / HTTP/1.1\" 2000 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET / HTTP/1.1\" 200"},
+        {"10.0.0.1  - - [01/Jan/1999:00:00:00 +0000] \"GET / HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [] \"GET / HTTP/1.1\" 200 1"},
+        {"10.0.0.1 - - [01/Jan/1999:00:00:00 +0000] \"GET / HTTP/1.1 200 1"},
+        {"not an access log line"},
+        {""},
+    };
+  }
+
+  @Test(dataProvider = "lines")
+  public void itShouldAgreeWithTheReferenceParser(String line) {
+    LogRecord expected = new CommonLogFormatParser().parse(line);
+    byte[] bytes = ("prefix\n" + line + "\nsuffix").getBytes(StandardCharsets.UTF_8);
+    int offset = "prefix\n".length();
+    int length = line.getBytes(StandardCharsets.UTF_8).length;
+
+    boolean parsed = testModel.parse(bytes, offset, length, record);
+
+    assertEquals(parsed, expected != null);
+    if (parsed) {
+      assertEquals(toJson(record), expected.toJson());
+    }
+  }
+
+  @Test
+  public void itShouldExposeFieldsAsOffsetsAndOnlyDecodeOnRequest() {
+    byte[] bytes = CommonLogFormatParserTest.COMBINED_LINE.getBytes(StandardCharsets.UTF_8);
+
+    assertTrue(testModel.parse(bytes, 0, bytes.length, record));
+
+    assertEquals(record.getStart(Field.REMOTE_ADDR), 0);
+    assertEquals(record.getEnd(Field.REMOTE_ADDR), "127.0.0.1".length());
+    assertEquals(record.getString(Field.PATH), "/apache_pb.gif");
+    assertEquals(record.getStatus(), 200);
+    assertEquals(record.getBodyBytesSent(), 2326);
+    assertEquals(record.getTimeEpochSeconds(), 971211336L);
+  }
+
+  @Test
+  public void itShouldParseFromADirectBufferAndReuseTheRecord() {
+    byte[] bytes = CommonLogFormatParserTest.COMMON_LINE.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 10);
+    direct.position(10);
+    direct.put(bytes);
+
+    testModel.parse(CommonLogFormatParserTest.COMBINED_LINE.getBytes(StandardCharsets.UTF_8), 0,
+        CommonLogFormatParserTest.COMBINED_LINE.length(), record);
+    assertTrue(testModel.parse(direct, 10, bytes.length, record));
+
+    assertEquals(record.getString(Field.REMOTE_ADDR), "10.1.2.3");
+    assertFalse(record.isPresent(Field.REMOTE_USER));
+    assertNull(record.getString(Field.HTTP_USER_AGENT));
+    assertEquals(toJson(record), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMMON_LINE).toJson());
+  }
+}
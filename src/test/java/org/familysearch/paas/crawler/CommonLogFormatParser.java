@@ -0,0 +1,70 @@
+package org.familysearch.paas.crawler;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses Apache Common Log Format lines, and the Combined Log Format that adds the referer and user agent:
+ * <pre>
+ * 127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] "GET /apache_pb.gif HTTP/1.0" 200 2326 "http://example.com/" "Mozilla/4.08"
+ * </pre>
+ * A field that is logged as <code>-</code> is given as null, or 0 for the byte count.
+ *
+ * The readable reference for {@link CommonLogFormatByteParser}, which the crawlers use; kept with the tests that
+ * hold the two to the same lines and documents.
+ *
+ * @author kriskrishna
+ */
+public class CommonLogFormatParser {
+  private static final Pattern LINE = Pattern.compile(
+      "^(\\S+) \\S+ (\\S+) \\[([^\\]]+)\\] \"([^\"]*)\" (\\d{3}) (\\S+)(?: \"([^\"]*)\" \"([^\"]*)\")?.*$");
+  private static final DateTimeFormatter TIME_LOCAL = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+  private static final String ABSENT = "-";
+
+  /**
+   * Parse one log line.
+   * @param line without its line terminator.
+   * @return the record, or null if the line is not in Common Log Format.
+   */
+  public LogRecord parse(String line) {
+    Matcher matcher = LINE.matcher(line);
+    if (!matcher.matches()) {
+      return null;
+    }
+    LogRecord record = new LogRecord();
+    record.remoteAddr = matcher.group(1);
+    record.remoteUser = orNull(matcher.group(2));
+    try {
+      record.timeLocal = OffsetDateTime.parse(matcher.group(3), TIME_LOCAL).toInstant().toString();
+    }
+    catch (DateTimeParseException e) {
+      return null;
+    }
+    record.request = matcher.group(4);
+    String[] requestParts = record.request.split(" ");
+    if (requestParts.length == 3) {
+      record.method = requestParts[0];
+      record.path = requestParts[1];
+      record.protocol = requestParts[2];
+    }
+    record.status = Integer.parseInt(matcher.group(5));
+    String bodyBytesSent = matcher.group(6);
+    try {
+      record.bodyBytesSent = ABSENT.equals(bodyBytesSent) ? 0 : Long.parseLong(bodyBytesSent);
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+    record.httpReferer = orNull(matcher.group(7));
+    record.httpUserAgent = orNull(matcher.group(8));
+    return record;
+  }
+
+  private static String orNull(String value) {
+    return value == null || ABSENT.equals(value) ? null : value;
+  }
+}
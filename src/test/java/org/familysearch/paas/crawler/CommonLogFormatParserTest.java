@@ -0,0 +1,66 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit Tests for CommonLogFormatParser class.
+ */
+public class CommonLogFormatParserTest {
+
+  static final String COMBINED_LINE = "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 "
+      + "\"http://www.example.com/start.html\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"";
+  static final String COMMON_LINE = "10.1.2.3 - - [01/Jan/2016:00:00:01 +0000] \"POST /api/v1/things HTTP/1.1\" 503 -";
+
+  private CommonLogFormatParser testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    testModel = new CommonLogFormatParser();
+  }
+
+  @Test
+  public void itShouldParseTheCombinedLogFormat() {
+    LogRecord record = testModel.parse(COMBINED_LINE);
+
+    assertEquals(record.getRemoteAddr(), "127.0.0.1");
+    assertEquals(record.getRemoteUser(), "frank");
+    assertEquals(record.getTimeLocal(), "2000-10-10T20:55:36Z");
+    assertEquals(record.getRequest(), "GET /apache_pb.gif HTTP/1.0");
+    assertEquals(record.getMethod(), "GET");
+    assertEquals(record.getPath(), "/apache_pb.gif");
+    assertEquals(record.getProtocol(), "HTTP/1.0");
+    assertEquals(record.getStatus(), 200);
+    assertEquals(record.getBodyBytesSent(), 2326);
+    assertEquals(record.getHttpReferer(), "http://www.example.com/start.html");
+    assertEquals(record.getHttpUserAgent(), "Mozilla/4.08 [en] (Win98; I ;Nav)");
+  }
+
+  @Test
+  public void itShouldGiveNullForAbsentFields() {
+    LogRecord record = testModel.parse(COMMON_LINE);
+
+    assertNull(record.getRemoteUser());
+    assertEquals(record.getStatus(), 503);
+    assertEquals(record.getBodyBytesSent(), 0);
+    assertNull(record.getHttpReferer());
+    assertNull(record.getHttpUserAgent());
+  }
+
+  @Test
+  public void itShouldReturnNullForLinesThatAreNotInCommonLogFormat() {
+    assertNull(testModel.parse("this is not an access log line"));
+    assertNull(testModel.parse("127.0.0.1 - - [not a time] \"GET / HTTP/1.0\" 200 1"));
+  }
+
+  @Test
+  public void itShouldSerializeTheClfParserFieldNames() {
+    assertEquals(testModel.parse(COMMON_LINE).toJson(),
+        "{\"remote_addr\":\"10.1.2.3\",\"remote_user\":null,\"time_local\":\"2016-01-01T00:00:01Z\","
+            + "\"request\":\"POST /api/v1/things HTTP/1.1\",\"method\":\"POST\",\"path\":\"/api/v1/things\",\"protocol\":\"HTTP/1.1\","
+            + "\"status\":503,\"body_bytes_sent\":0,\"http_referer\":null,\"http_user_agent\":null}");
+  }
+}
@@ -0,0 +1,35 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for Compression enum.
+ */
+public class CompressionTest {
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void detect_shouldUseTheMagicBytes() {
+    assertEquals(Compression.detect("access.log", bytes(0x1f, 0x8b, 0x08, 0x00), 4), Compression.GZIP);
+    assertEquals(Compression.detect("access.log", bytes(0x28, 0xb5, 0x2f, 0xfd), 4), Compression.ZSTD);
+    assertEquals(Compression.detect("access.log", bytes(0x50, 0x2a, 0x4d, 0x18), 4), Compression.ZSTD);
+    assertEquals(Compression.detect("access.log.gz", "127.".getBytes(), 4), Compression.NONE);
+  }
+
+  @Test
+  public void detect_shouldUseTheName_whenTheContentIsTooShort() {
+    assertEquals(Compression.detect("2016/01/01/access.log.GZ", new byte[0], 0), Compression.GZIP);
+    assertEquals(Compression.detect("access.log.zst", new byte[0], 0), Compression.ZSTD);
+    assertEquals(Compression.detect("access.log", new byte[0], 0), Compression.NONE);
+    assertEquals(Compression.detect(null, new byte[0], 0), Compression.NONE);
+  }
+}
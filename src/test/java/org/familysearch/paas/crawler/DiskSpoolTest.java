@@ -0,0 +1,235 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit Tests for DiskSpool class.
+ */
+public class DiskSpoolTest {
+
+  // Two records of 16 bytes and their headers fit in a segment.
+  private static final int SEGMENT_BYTES = 64;
+
+  private Path directory;
+  private DiskSpool testModel;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("spool");
+    testModel = new DiskSpool(directory, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    testModel.close();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private long append(DiskSpool spool, String record) {
+    byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+    return spool.append(bytes, 0, bytes.length);
+  }
+
+  private static List<String> readAll(DiskSpool spool, long position) {
+    List<String> records = new ArrayList<>();
+    spool.read(position, Integer.MAX_VALUE, (buffer, offset, length) -> {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+      records.add(new String(bytes, StandardCharsets.UTF_8));
+    });
+    return records;
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.seg")) {
+      files.forEach(segments::add);
+    }
+    return segments;
+  }
+
+  @Test
+  public void read_itShouldGiveTheRecordsInTheOrderTheyWereAppendedAcrossSegments() {
+    for (int i = 0; i < 6; i++) {
+      append(testModel, "record-" + i + "-padding");
+    }
+
+    assertEquals(readAll(testModel, 0), Arrays.asList("record-0-padding", "record-1-padding", "record-2-padding",
+        "record-3-padding", "record-4-padding", "record-5-padding"));
+  }
+
+  @Test
+  public void read_itShouldStopAtMaxRecordsAndContinueFromThePositionItGives() {
+    append(testModel, "one");
+    append(testModel, "two");
+    append(testModel, "three");
+    List<String> records = new ArrayList<>();
+
+    long position = testModel.read(0, 2, (buffer, offset, length) -> records.add("record"));
+    assertEquals(records.size(), 2);
+    assertEquals(readAll(testModel, position), Arrays.asList("three"));
+  }
+
+  @Test
+  public void ack_itShouldDeleteDeliveredSegmentsAndReplayOnlyTheRestAfterARestart() throws Exception {
+    long position = 0;
+    for (int i = 0; i < 6; i++) {
+      position = append(testModel, "record-" + i + "-padding");
+      if (i == 3) {
+        testModel.ack(position);
+      }
+    }
+    assertEquals(segmentFiles().size(), 2);
+    testModel.close();
+
+    testModel = new DiskSpool(directory, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+    assertEquals(readAll(testModel, testModel.getAckPosition()), Arrays.asList("record-4-padding", "record-5-padding"));
+    assertEquals(testModel.getWritePosition(), position);
+
+    append(testModel, "record-6-padding");
+    assertEquals(readAll(testModel, 0), Arrays.asList("record-4-padding", "record-5-padding", "record-6-padding"));
+  }
+
+  @Test
+  public void open_itShouldKeepTheSegmentSizeOfTheSegmentsItHolds() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      append(testModel, "record-" + i + "-padding");
+    }
+    testModel.close();
+
+    testModel = new DiskSpool(directory, 2 * SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+    append(testModel, "record-3-padding");
+
+    assertEquals(readAll(testModel, 0), Arrays.asList("record-0-padding", "record-1-padding", "record-2-padding",
+        "record-3-padding"));
+    assertEquals(segmentFiles().size(), 2);
+  }
+
+  @Test
+  public void open_itShouldCutOffATornRecordAtTheEnd() throws Exception {
+    append(testModel, "whole");
+    long position = append(testModel, "torn");
+    testModel.close();
+    Path segment = segmentFiles().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{'X'}), position - 1);
+    }
+
+    testModel = new DiskSpool(directory, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+    assertEquals(readAll(testModel, 0), Arrays.asList("whole"));
+
+    append(testModel, "again");
+    assertEquals(readAll(testModel, 0), Arrays.asList("whole", "again"));
+  }
+
+  @Test
+  public void read_itShouldSkipTheRestOfASegmentAtACorruptRecord() throws Exception {
+    append(testModel, "record-0-padding");
+    append(testModel, "record-1-padding");
+    append(testModel, "record-2-padding");
+    append(testModel, "record-3-padding");
+    testModel.flush();
+    Path first = segmentFiles().stream().sorted().findFirst().get();
+    try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{'X'}), DiskSpool.HEADER_BYTES);
+    }
+
+    assertEquals(readAll(testModel, 0), Arrays.asList("record-2-padding", "record-3-padding"));
+    assertEquals(testModel.getCorruptRecords(), 1);
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void append_itShouldRefuseARecordLargerThanASegment() {
+    testModel.append(new byte[SEGMENT_BYTES], 0, SEGMENT_BYTES);
+  }
+
+  @Test
+  public void append_itShouldWaitWhileTheSpoolIsFull() throws Exception {
+    long firstSegmentEnd = 0;
+    for (int i = 0; i < 6; i++) {
+      long position = append(testModel, "record-" + i + "-padding");
+      if (i == 1) {
+        firstSegmentEnd = position;
+      }
+    }
+    CountDownLatch appended = new CountDownLatch(1);
+    Thread writer = new Thread(() -> {
+      append(testModel, "record-6-padding");
+      appended.countDown();
+    });
+    writer.start();
+
+    assertFalse(appended.await(200, TimeUnit.MILLISECONDS));
+    testModel.ack(firstSegmentEnd);
+    assertTrue(appended.await(10, TimeUnit.SECONDS));
+    assertEquals(readAll(testModel, testModel.getAckPosition()).size(), 5);
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void itShouldRefuseADirectoryThatAnotherSpoolHas() {
+    new DiskSpool(directory, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+  }
+
+  @Test
+  public void close_itShouldReleaseTheDirectory() {
+    testModel.close();
+
+    testModel = new DiskSpool(directory, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+  }
+
+  @Test
+  public void openFreeSlot_itShouldGiveEachOpenSpoolADirectoryOfItsOwn() throws Exception {
+    Path slots = Files.createTempDirectory("spool-slots");
+    DiskSpool first = DiskSpool.openFreeSlot(slots, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+    DiskSpool second = DiskSpool.openFreeSlot(slots, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+    try {
+      long position = append(first, "first");
+      append(second, "second");
+      first.close();
+      DiskSpool reopened = DiskSpool.openFreeSlot(slots, SEGMENT_BYTES, 3, DiskSpool.FsyncPolicy.ON_FLUSH);
+      try {
+        assertEquals(readAll(reopened, reopened.getAckPosition()), Arrays.asList("first"));
+        assertEquals(readAll(second, second.getAckPosition()), Arrays.asList("second"));
+        assertEquals(reopened.getWritePosition(), position);
+      }
+      finally {
+        reopened.close();
+      }
+    }
+    finally {
+      first.close();
+      second.close();
+      deleteTree(slots);
+    }
+  }
+
+  private static void deleteTree(Path root) throws IOException {
+    Files.walk(root).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+  }
+}
@@ -0,0 +1,186 @@
+package org.familysearch.paas.crawler;
+
+import org.familysearch.paas.utils.HttpRequestHelper;
+import org.familysearch.paas.utils.RetryPolicy;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for ElasticsearchBulkSink class.
+ */
+public class ElasticsearchBulkSinkTest {
+
+  private static final String TEST_ENDPOINT = "https://search.example.org";
+  private static final String TEST_BULK_URL = TEST_ENDPOINT + "/_bulk";
+  private static final String ACTION = "{\"index\":{\"_index\":\"logs\",\"_type\":\"apache\"}}\n";
+  private static final String OK_RESPONSE = "{\"took\":3,\"errors\":false,\"items\":[]}";
+  private static final String DOCUMENT = "{\"status\":200}";
+
+  @Mock
+  private HttpRequestHelper mockHttpRequestHelper;
+
+  private ElasticsearchBulkSink testModel;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+
+    whenBulkRequest_Return(OK_RESPONSE);
+    testModel = new ElasticsearchBulkSink(mockHttpRequestHelper, TEST_ENDPOINT, "logs", "apache", 3, 1024, null);
+  }
+
+  private void whenBulkRequest_Return(String response) throws IOException {
+    when(mockHttpRequestHelper.executeRawPostRequest(anyString(), anyString(), any(byte[].class), anyMapOf(String.class, String.class)))
+        .thenReturn(response);
+  }
+
+  private List<String> captureBulkBodies(int requests) throws IOException {
+    ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+    verify(mockHttpRequestHelper, times(requests)).executeRawPostRequest(eq(TEST_BULK_URL), eq(ElasticsearchBulkSink.BULK_CONTENT_TYPE),
+        content.capture(), anyMapOf(String.class, String.class));
+    List<String> bodies = new ArrayList<>();
+    for (byte[] body : content.getAllValues()) {
+      bodies.add(new String(body, StandardCharsets.UTF_8));
+    }
+    return bodies;
+  }
+
+  @Test
+  public void itShouldSendNothingUntilTheBatchIsFullOrFlushed() throws Exception {
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+
+    verifyZeroInteractions(mockHttpRequestHelper);
+
+    testModel.flush();
+    assertEquals(captureBulkBodies(1).get(0), ACTION + DOCUMENT + "\n" + ACTION + DOCUMENT + "\n");
+    assertEquals(testModel.getIndexedDocuments(), 2);
+  }
+
+  @Test
+  public void itShouldSendABatchWhenItReachesTheDocumentLimit() throws Exception {
+    for (int i = 0; i < 7; i++) {
+      testModel.add(DOCUMENT);
+    }
+    testModel.close();
+
+    List<String> bodies = captureBulkBodies(3);
+    assertEquals(bodies.get(0).split("\n").length, 6);
+    assertEquals(bodies.get(2).split("\n").length, 2);
+    assertEquals(testModel.getBulkRequests(), 3);
+    assertEquals(testModel.getIndexedDocuments(), 7);
+  }
+
+  @Test
+  public void itShouldSendABatchBeforeItWouldExceedTheByteLimit() throws Exception {
+    int documentSize = ACTION.length() + DOCUMENT.length() + 1;
+    testModel = new ElasticsearchBulkSink(mockHttpRequestHelper, TEST_ENDPOINT, "logs", "apache", 100, documentSize * 2 + 1, null);
+
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+    testModel.flush();
+
+    List<String> bodies = captureBulkBodies(2);
+    assertEquals(bodies.get(0).length(), documentSize * 2);
+    assertEquals(bodies.get(1).length(), documentSize);
+  }
+
+  @Test
+  public void itShouldCountTheDocumentsElasticsearchRejected() throws Exception {
+    whenBulkRequest_Return("{\"took\":3,\"errors\":true,\"items\":["
+        + "{\"index\":{\"_id\":\"1\",\"status\":201}},"
+        + "{\"index\":{\"_id\":\"2\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}},"
+        + "{\"index\":{\"_id\":\"3\",\"status\":429}}]}");
+
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+
+    assertEquals(testModel.getIndexedDocuments(), 1);
+    assertEquals(testModel.getFailedDocuments(), 2);
+  }
+
+  @Test
+  public void itShouldResendOnlyTheDocumentsElasticsearchWasTooBusyFor() throws Exception {
+    testModel = new ElasticsearchBulkSink(mockHttpRequestHelper, TEST_ENDPOINT, "logs", "apache", 3, 1024, null,
+        new RetryPolicy(3, 0, 0, 0));
+    doReturn("{\"took\":3,\"errors\":true,\"items\":["
+        + "{\"index\":{\"_id\":\"1\",\"status\":201}},"
+        + "{\"index\":{\"_id\":\"2\",\"status\":400}},"
+        + "{\"index\":{\"_id\":\"3\",\"status\":429}}]}")
+        .doReturn(OK_RESPONSE)
+        .when(mockHttpRequestHelper).executeRawPostRequest(anyString(), anyString(), any(byte[].class), anyMapOf(String.class, String.class));
+
+    testModel.add("{\"n\":1}");
+    testModel.add("{\"n\":2}");
+    testModel.add("{\"n\":3}");
+
+    List<String> bodies = captureBulkBodies(2);
+    assertEquals(bodies.get(1), ACTION + "{\"n\":3}\n");
+    assertEquals(testModel.getIndexedDocuments(), 2);
+    assertEquals(testModel.getFailedDocuments(), 1);
+    assertEquals(testModel.getBulkRequests(), 2);
+  }
+
+  @Test
+  public void itShouldCountTheBusyDocumentsAsFailedWhenTheAttemptsRunOut() throws Exception {
+    testModel = new ElasticsearchBulkSink(mockHttpRequestHelper, TEST_ENDPOINT, "logs", "apache", 2, 1024, null,
+        new RetryPolicy(2, 0, 0, 0));
+    whenBulkRequest_Return("{\"took\":3,\"errors\":true,\"items\":["
+        + "{\"index\":{\"_id\":\"1\",\"status\":503}},"
+        + "{\"index\":{\"_id\":\"2\",\"status\":503}}]}");
+
+    testModel.add(DOCUMENT);
+    testModel.add(DOCUMENT);
+
+    captureBulkBodies(2);
+    assertEquals(testModel.getIndexedDocuments(), 0);
+    assertEquals(testModel.getFailedDocuments(), 2);
+  }
+
+  @Test
+  public void itShouldThrowWhenTheBulkRequestFails() throws Exception {
+    when(mockHttpRequestHelper.executeRawPostRequest(anyString(), anyString(), any(byte[].class), anyMapOf(String.class, String.class)))
+        .thenThrow(new IOException("connection refused"));
+    testModel.add(DOCUMENT);
+
+    try {
+      testModel.flush();
+    }
+    catch (LogCrawlerException e) {
+      assertEquals(testModel.getFailedDocuments(), 1);
+      return;
+    }
+    throw new AssertionError("expected a LogCrawlerException");
+  }
+
+  @Test
+  public void itShouldAddTheSignatureHeaders() throws Exception {
+    AwsRequestSigner mockSigner = mock(AwsRequestSigner.class);
+    Map<String, String> signature = Collections.singletonMap("Authorization", "AWS4-HMAC-SHA256 ...");
+    when(mockSigner.signPost(eq(TEST_BULK_URL), eq(ElasticsearchBulkSink.BULK_CONTENT_TYPE), any(byte[].class))).thenReturn(signature);
+    testModel = new ElasticsearchBulkSink(mockHttpRequestHelper, TEST_ENDPOINT, "logs", "apache", 1, 1024, mockSigner);
+
+    testModel.add(DOCUMENT);
+
+    verify(mockHttpRequestHelper).executeRawPostRequest(eq(TEST_BULK_URL), eq(ElasticsearchBulkSink.BULK_CONTENT_TYPE), any(byte[].class), eq(signature));
+  }
+}
@@ -0,0 +1,277 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.InvalidArgumentException;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+import org.familysearch.paas.utils.RetryPolicy;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Unit Tests for FirehoseBatchSink class.
+ */
+public class FirehoseBatchSinkTest {
+
+  private static final String TEST_STREAM = "access-logs";
+  private static final byte[] DOCUMENT = "{\"status\":200}".getBytes(StandardCharsets.UTF_8);
+
+  @Mock
+  private AmazonKinesisFirehose mockFirehoseClient;
+
+  private ExecutorService executor;
+  private long nanoTime;
+  private FirehoseBatchSink testModel;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockFirehoseClient.putRecordBatch(any(PutRecordBatchRequest.class))).thenAnswer(invocation ->
+        result(((PutRecordBatchRequest) invocation.getArguments()[0]).getRecords().size(), 0));
+    executor = Executors.newFixedThreadPool(2);
+    // One document per record, unless a test aggregates.
+    testModel = new FirehoseBatchSink(mockFirehoseClient, TEST_STREAM, executor, 2, new RetryPolicy(3, 0, 0, 0), 1, 1000, () -> nanoTime);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static PutRecordBatchResult result(int records, int failed) {
+    List<PutRecordBatchResponseEntry> entries = new ArrayList<>();
+    for (int i = 0; i < records; i++) {
+      entries.add(i < failed
+          ? new PutRecordBatchResponseEntry().withErrorCode("ServiceUnavailableException").withErrorMessage("Slow down.")
+          : new PutRecordBatchResponseEntry().withRecordId("record-" + i));
+    }
+    return new PutRecordBatchResult().withFailedPutCount(failed).withRequestResponses(entries);
+  }
+
+  private List<PutRecordBatchRequest> captureRequests(int requests) {
+    ArgumentCaptor<PutRecordBatchRequest> request = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+    verify(mockFirehoseClient, times(requests)).putRecordBatch(request.capture());
+    return request.getAllValues();
+  }
+
+  private static String data(Record record) {
+    return StandardCharsets.UTF_8.decode(record.getData().duplicate()).toString();
+  }
+
+  @Test
+  public void add_itShouldSendNewlineTerminatedDocumentsOnFlush() {
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    testModel.add("xx{\"status\":404}".getBytes(StandardCharsets.UTF_8), 2, 14);
+    testModel.flush();
+
+    PutRecordBatchRequest request = captureRequests(1).get(0);
+    assertEquals(request.getDeliveryStreamName(), TEST_STREAM);
+    assertEquals(request.getRecords().size(), 2);
+    assertEquals(data(request.getRecords().get(0)), "{\"status\":200}\n");
+    assertEquals(data(request.getRecords().get(1)), "{\"status\":404}\n");
+    assertEquals(testModel.getIndexedDocuments(), 2);
+    assertEquals(testModel.getFailedDocuments(), 0);
+  }
+
+  @Test
+  public void add_itShouldAggregateDocumentsInOrderIntoRecordsOfAtMostMaxRecordBytes() {
+    testModel = new FirehoseBatchSink(mockFirehoseClient, TEST_STREAM, executor, 2, new RetryPolicy(3, 0, 0, 0), 20, 1000, () -> nanoTime);
+    for (int i = 0; i < 5; i++) {
+      testModel.add(("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8), 0, 7);
+    }
+    testModel.flush();
+
+    List<Record> records = captureRequests(1).get(0).getRecords();
+    assertEquals(records.size(), 3);
+    assertEquals(data(records.get(0)), "{\"n\":0}\n{\"n\":1}\n");
+    assertEquals(data(records.get(1)), "{\"n\":2}\n{\"n\":3}\n");
+    assertEquals(data(records.get(2)), "{\"n\":4}\n");
+    assertEquals(testModel.getIndexedDocuments(), 5);
+  }
+
+  @Test
+  public void add_itShouldSendARecordOnceItsFirstDocumentIsMaxRecordMillisOld() {
+    testModel = new FirehoseBatchSink(mockFirehoseClient, TEST_STREAM, executor, 2, new RetryPolicy(3, 0, 0, 0), 1000 * 1024, 1000, () -> nanoTime);
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(999);
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(1);
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+
+    // Sent in the background, without a flush.
+    ArgumentCaptor<PutRecordBatchRequest> request = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+    verify(mockFirehoseClient, timeout(5000)).putRecordBatch(request.capture());
+    List<Record> records = request.getValue().getRecords();
+    assertEquals(records.size(), 1);
+    assertEquals(data(records.get(0)), "{\"status\":200}\n{\"status\":200}\n");
+
+    testModel.flush();
+    assertEquals(testModel.getIndexedDocuments(), 3);
+  }
+
+  @Test
+  public void flush_itShouldCountTheDocumentsOfAFailedAggregatedRecord() {
+    testModel = new FirehoseBatchSink(mockFirehoseClient, TEST_STREAM, executor, 2, RetryPolicy.none(), 1000 * 1024, 1000, () -> nanoTime);
+    doReturn(result(1, 1)).when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    testModel.flush();
+
+    assertEquals(testModel.getIndexedDocuments(), 0);
+    assertEquals(testModel.getFailedDocuments(), 2);
+  }
+
+  @Test
+  public void add_itShouldSendBatchesOfAtMost500Records() {
+    for (int i = 0; i < 1001; i++) {
+      testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    }
+    testModel.flush();
+
+    List<PutRecordBatchRequest> requests = captureRequests(3);
+    List<Integer> sizes = new ArrayList<>();
+    for (PutRecordBatchRequest request : requests) {
+      sizes.add(request.getRecords().size());
+    }
+    sizes.sort(null);
+    assertEquals(sizes.toString(), "[1, 500, 500]");
+    assertEquals(testModel.getIndexedDocuments(), 1001);
+    assertEquals(testModel.getPutRecordBatchCalls(), 3);
+  }
+
+  @Test
+  public void add_itShouldSendBatchesOfAtMost4MiB() {
+    byte[] document = new byte[FirehoseBatchSink.MAX_RECORD_BYTES - 1];
+    for (int i = 0; i < 5; i++) {
+      testModel.add(document, 0, document.length);
+    }
+    testModel.flush();
+
+    for (PutRecordBatchRequest request : captureRequests(2)) {
+      int bytes = 0;
+      for (Record record : request.getRecords()) {
+        bytes += record.getData().remaining();
+      }
+      assertTrue(bytes <= FirehoseBatchSink.MAX_BATCH_BYTES);
+    }
+    assertEquals(testModel.getIndexedDocuments(), 5);
+  }
+
+  @Test
+  public void add_itShouldCountDocumentsTooLargeForARecordAsFailed() {
+    byte[] document = new byte[FirehoseBatchSink.MAX_RECORD_BYTES];
+    testModel.add(document, 0, document.length);
+    testModel.flush();
+
+    verifyZeroInteractions(mockFirehoseClient);
+    assertEquals(testModel.getFailedDocuments(), 1);
+  }
+
+  @Test
+  public void flush_itShouldResubmitOnlyTheFailedRecords() {
+    doReturn(result(3, 2)).doReturn(result(2, 0)).when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    testModel.add("{\"n\":1}".getBytes(StandardCharsets.UTF_8), 0, 7);
+    testModel.add("{\"n\":2}".getBytes(StandardCharsets.UTF_8), 0, 7);
+    testModel.add("{\"n\":3}".getBytes(StandardCharsets.UTF_8), 0, 7);
+    testModel.flush();
+
+    List<PutRecordBatchRequest> requests = captureRequests(2);
+    List<Record> resubmitted = requests.get(1).getRecords();
+    assertEquals(resubmitted.size(), 2);
+    assertEquals(data(resubmitted.get(0)), "{\"n\":1}\n");
+    assertEquals(data(resubmitted.get(1)), "{\"n\":2}\n");
+    assertEquals(testModel.getIndexedDocuments(), 3);
+    assertEquals(testModel.getFailedDocuments(), 0);
+  }
+
+  @Test
+  public void flush_itShouldCountRecordsStillFailingAfterTheLastAttempt() {
+    doAnswer(invocation -> result(((PutRecordBatchRequest) invocation.getArguments()[0]).getRecords().size(), 1))
+        .when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    testModel.flush();
+
+    assertEquals(captureRequests(3).get(2).getRecords().size(), 1);
+    assertEquals(testModel.getIndexedDocuments(), 1);
+    assertEquals(testModel.getFailedDocuments(), 1);
+  }
+
+  @Test
+  public void flush_itShouldThrowWhenEveryCallFails() {
+    doThrow(new AmazonClientException("Unable to connect.")).when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    try {
+      testModel.flush();
+      fail("Expected a LogCrawlerException.");
+    }
+    catch (LogCrawlerException e) {
+      assertTrue(e.getCause() instanceof AmazonClientException);
+    }
+    verify(mockFirehoseClient, times(3)).putRecordBatch(any(PutRecordBatchRequest.class));
+    assertEquals(testModel.getFailedDocuments(), 1);
+  }
+
+  @Test
+  public void flush_itShouldNotRepeatACallFirehoseFoundInvalid() {
+    doThrow(new InvalidArgumentException("Record is too large.")).when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    try {
+      testModel.flush();
+      fail("Expected a LogCrawlerException.");
+    }
+    catch (LogCrawlerException e) {
+      assertTrue(e.getCause() instanceof InvalidArgumentException);
+    }
+    verify(mockFirehoseClient, times(1)).putRecordBatch(any(PutRecordBatchRequest.class));
+    assertEquals(testModel.getFailedDocuments(), 1);
+  }
+
+  @Test
+  public void add_itShouldKeepBatchesInFlightAndFlushShouldWaitForThem() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger mostInFlight = new AtomicInteger();
+    doAnswer(invocation -> {
+      mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      started.countDown();
+      release.await(10, TimeUnit.SECONDS);
+      inFlight.decrementAndGet();
+      return result(((PutRecordBatchRequest) invocation.getArguments()[0]).getRecords().size(), 0);
+    }).when(mockFirehoseClient).putRecordBatch(any(PutRecordBatchRequest.class));
+    for (int i = 0; i < 1000; i++) {
+      testModel.add(DOCUMENT, 0, DOCUMENT.length);
+    }
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertEquals(testModel.getIndexedDocuments(), 0);
+
+    release.countDown();
+    testModel.flush();
+    assertEquals(mostInFlight.get(), 2);
+    assertEquals(testModel.getIndexedDocuments(), 1000);
+  }
+}
@@ -0,0 +1,172 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for LogCrawler class.
+ */
+public class LogCrawlerTest {
+
+  private static final String TEST_BUCKET = "access-logs";
+  private static final String TEST_KEY = "2016/01/01/access.log";
+
+  @Mock
+  private AmazonS3Client mockS3Client;
+  @Mock
+  private ElasticsearchBulkSink mockSink;
+
+  private LogCrawler testModel;
+  private List<String> documents;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    documents = new ArrayList<>();
+    doAnswer(invocation -> {
+      // The crawler reuses its document buffer, so copy what was added.
+      Object[] arguments = invocation.getArguments();
+      documents.add(new String((byte[]) arguments[0], (Integer) arguments[1], (Integer) arguments[2], StandardCharsets.UTF_8));
+      return null;
+    }).when(mockSink).add(any(byte[].class), anyInt(), anyInt());
+    testModel = new LogCrawler(mockS3Client, mockSink, new CommonLogFormatByteParser());
+  }
+
+  private void whenGetObject_Return(String content) {
+    S3Object s3Object = new S3Object();
+    s3Object.setObjectContent(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    when(mockS3Client.getObject(TEST_BUCKET, TEST_KEY)).thenReturn(s3Object);
+  }
+
+  @Test
+  public void itShouldShipEveryParsedLineAndFlush() {
+    whenGetObject_Return(CommonLogFormatParserTest.COMBINED_LINE + "\n" + CommonLogFormatParserTest.COMMON_LINE + "\r\n");
+    when(mockSink.getIndexedDocuments()).thenReturn(0L, 2L);
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(documents.size(), 2);
+    assertEquals(documents.get(0), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMBINED_LINE).toJson());
+    verify(mockSink).flush();
+    assertEquals(result.getLines(), 2);
+    assertEquals(result.getIndexedDocuments(), 2);
+    assertTrue(result.isComplete());
+  }
+
+  @Test
+  public void itShouldDecompressAGzipObject() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write((CommonLogFormatParserTest.COMBINED_LINE + "\n" + CommonLogFormatParserTest.COMMON_LINE).getBytes(StandardCharsets.UTF_8));
+    }
+    S3Object s3Object = new S3Object();
+    s3Object.setObjectContent(new ByteArrayInputStream(compressed.toByteArray()));
+    when(mockS3Client.getObject(TEST_BUCKET, TEST_KEY)).thenReturn(s3Object);
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(result.getLines(), 2);
+    assertEquals(documents.get(1), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMMON_LINE).toJson());
+  }
+
+  @Test
+  public void itShouldSkipLinesThatCanNotBeParsed() {
+    whenGetObject_Return("garbage\n\n" + CommonLogFormatParserTest.COMMON_LINE);
+    when(mockSink.getIndexedDocuments()).thenReturn(0L, 1L);
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(documents.size(), 1);
+    assertEquals(result.getLines(), 2);
+    assertEquals(result.getSkippedLines(), 1);
+    assertTrue(result.isComplete());
+  }
+
+  @Test
+  public void itShouldHandleLinesLongerThanTheReadBuffer() {
+    StringBuilder userAgent = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      userAgent.append('x');
+    }
+    String longLine = CommonLogFormatParserTest.COMMON_LINE + " \"-\" \"" + userAgent + "\"";
+    whenGetObject_Return(longLine + "\n" + CommonLogFormatParserTest.COMMON_LINE);
+    when(mockSink.getIndexedDocuments()).thenReturn(0L, 2L);
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(result.getLines(), 2);
+    assertEquals(documents.get(0), new CommonLogFormatParser().parse(longLine).toJson());
+    assertEquals(documents.get(1), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMMON_LINE).toJson());
+  }
+
+  @Test
+  public void itShouldReadTheObjectWithTheDownloader_whenThereIsOne() {
+    RangedS3Downloader mockDownloader = mock(RangedS3Downloader.class);
+    when(mockDownloader.open(TEST_BUCKET, TEST_KEY))
+        .thenReturn(new ByteArrayInputStream(CommonLogFormatParserTest.COMMON_LINE.getBytes(StandardCharsets.UTF_8)));
+    testModel = new LogCrawler(mockS3Client, mockDownloader, mockSink, new CommonLogFormatByteParser());
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(result.getLines(), 1);
+    assertEquals(documents.size(), 1);
+    verifyZeroInteractions(mockS3Client);
+  }
+
+  @Test
+  public void crawlFile_shouldShipEveryParsedLineOfTheFile() throws IOException {
+    Path file = Files.createTempFile("access", ".log");
+    try {
+      Files.write(file, ("garbage\r\n" + CommonLogFormatParserTest.COMBINED_LINE + "\r\n" + CommonLogFormatParserTest.COMMON_LINE)
+          .getBytes(StandardCharsets.UTF_8));
+      when(mockSink.getIndexedDocuments()).thenReturn(0L, 2L);
+
+      CrawlResult result = testModel.crawlFile(file);
+
+      assertEquals(documents.size(), 2);
+      assertEquals(documents.get(0), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMBINED_LINE).toJson());
+      assertEquals(documents.get(1), new CommonLogFormatParser().parse(CommonLogFormatParserTest.COMMON_LINE).toJson());
+      verify(mockSink).flush();
+      assertEquals(result.getLines(), 3);
+      assertEquals(result.getSkippedLines(), 1);
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void crawlFile_shouldThrow_whenTheFileDoesNotExist() {
+    testModel.crawlFile(Paths.get("does-not-exist.log"));
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void itShouldThrowWhenTheObjectCanNotBeRead() {
+    when(mockS3Client.getObject(TEST_BUCKET, TEST_KEY)).thenThrow(new AmazonServiceException("NoSuchKey"));
+
+    testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+  }
+}
@@ -0,0 +1,297 @@
+package org.familysearch.paas.crawler;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for LogDecompressor class.
+ */
+public class LogDecompressorTest {
+
+  private ExecutorService executor;
+  private AtomicInteger submittedMembers;
+  private LogDecompressor testModel;
+  private byte[] log;
+
+  @BeforeMethod
+  public void setUp() {
+    submittedMembers = new AtomicInteger();
+    ExecutorService threads = Executors.newFixedThreadPool(3);
+    // Counts the members that are handed to the threads.
+    executor = new AbstractExecutorService() {
+      @Override
+      public void execute(Runnable command) {
+        submittedMembers.incrementAndGet();
+        threads.execute(command);
+      }
+
+      @Override
+      public void shutdown() {
+        threads.shutdown();
+      }
+
+      @Override
+      public List<Runnable> shutdownNow() {
+        return threads.shutdownNow();
+      }
+
+      @Override
+      public boolean isShutdown() {
+        return threads.isShutdown();
+      }
+
+      @Override
+      public boolean isTerminated() {
+        return threads.isTerminated();
+      }
+
+      @Override
+      public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threads.awaitTermination(timeout, unit);
+      }
+    };
+    testModel = new LogDecompressor(executor, false, 3, 64 * 1024);
+
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      lines.append(CommonLogFormatParserTest.COMMON_LINE.replace("/api/v1/things", "/line/" + i)).append('\n');
+    }
+    log = lines.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    try (InputStream in = inputStream) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4000];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  /**
+   * Gives a stream whose available() is 0, as a network stream may be at a member boundary.
+   */
+  private static InputStream unavailable(byte[] bytes) {
+    return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+      @Override
+      public int available() {
+        return 0;
+      }
+    };
+  }
+
+  private static byte[] gzip(byte[] content, int offset, int length) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(content, offset, length);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Compress in gzip members of memberSize bytes of content each, with or without the BGZF extra field.
+   */
+  private static byte[] gzipMembers(byte[] content, int memberSize, boolean bgzf) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int offset = 0; offset < content.length; offset += memberSize) {
+      int length = Math.min(memberSize, content.length - offset);
+      out.write(bgzf ? bgzfMember(content, offset, length) : gzip(content, offset, length));
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] bgzfMember(byte[] content, int offset, int length) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    deflater.setInput(content, offset, length);
+    deflater.finish();
+    byte[] deflated = new byte[length + 1024];
+    int deflatedLength = deflater.deflate(deflated);
+    deflater.end();
+    CRC32 crc = new CRC32();
+    crc.update(content, offset, length);
+
+    int size = 18 + deflatedLength + 8;
+    byte[] member = new byte[size];
+    byte[] header = {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+        (byte) (size - 1), (byte) ((size - 1) >>> 8)};
+    System.arraycopy(header, 0, member, 0, header.length);
+    System.arraycopy(deflated, 0, member, 18, deflatedLength);
+    writeIntLittleEndian(member, 18 + deflatedLength, (int) crc.getValue());
+    writeIntLittleEndian(member, 18 + deflatedLength + 4, length);
+    return member;
+  }
+
+  private static void writeIntLittleEndian(byte[] bytes, int offset, int value) {
+    for (int i = 0; i < 4; i++) {
+      bytes[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  /**
+   * Compress in zstd frames with the content size in their header, as the zstd command line writes them.
+   */
+  private static byte[] zstdFrames(byte[] content, int frameSize) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int offset = 0; offset < content.length; offset += frameSize) {
+      ZstdCompressCtx zstd = new ZstdCompressCtx();
+      try {
+        zstd.setContentSize(true);
+        zstd.setChecksum(offset % 2 == 0);
+        out.write(zstd.compress(Arrays.copyOfRange(content, offset, Math.min(offset + frameSize, content.length))));
+      }
+      finally {
+        zstd.close();
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Compress in zstd frames written by a stream, which does not know the content size.
+   */
+  private static byte[] streamedZstdFrames(byte[] content, int frameSize) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int offset = 0; offset < content.length; offset += frameSize) {
+      try (ZstdOutputStream zstd = new ZstdOutputStream(out)) {
+        zstd.write(content, offset, Math.min(frameSize, content.length - offset));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void decompress_shouldPassPlainTextThrough() throws IOException {
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(log), "access.log")), log);
+    assertEquals(submittedMembers.get(), 0);
+  }
+
+  @Test
+  public void decompress_shouldReadEveryMemberOfAConcatenatedGzip_onTheReadingThread() throws IOException {
+    byte[] compressed = gzipMembers(log, 100000, false);
+
+    assertEquals(readFully(testModel.decompress(unavailable(compressed), "access.log.gz")), log);
+    assertEquals(submittedMembers.get(), 0);
+  }
+
+  @Test
+  public void decompress_shouldDecompressBgzfMembersInParallel_inOrder() throws IOException {
+    byte[] compressed = gzipMembers(log, 60000, true);
+
+    assertEquals(readFully(testModel.decompress(unavailable(compressed), "access.log.gz")), log);
+    assertEquals(submittedMembers.get(), (log.length + 59999) / 60000);
+  }
+
+  @Test
+  public void decompress_shouldDecompressZstdFramesInParallel_inOrder() throws IOException {
+    byte[] compressed = zstdFrames(log, 50000);
+
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst")), log);
+    assertEquals(submittedMembers.get(), (log.length + 49999) / 50000);
+  }
+
+  @Test
+  public void decompress_shouldSkipSkippableZstdFrames() throws IOException {
+    byte[] frames = zstdFrames(log, 50000);
+    byte[] skippable = {0x50, 0x2a, 0x4d, 0x18, 3, 0, 0, 0, 'x', 'y', 'z'};
+    byte[] compressed = Arrays.copyOf(skippable, skippable.length + frames.length);
+    System.arraycopy(frames, 0, compressed, skippable.length, frames.length);
+
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst")), log);
+  }
+
+  @Test
+  public void decompress_shouldFallBackToTheReadingThread_forAFrameLargerThanTheMemberLimit() throws IOException {
+    byte[] small = Arrays.copyOf(log, 500);
+    byte[] large = Arrays.copyOfRange(log, 500, log.length);
+    byte[] compressed = concat(zstdFrames(small, small.length), zstdFrames(large, large.length));
+    testModel = new LogDecompressor(executor, false, 3, 1024);
+
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst")), log);
+    assertEquals(submittedMembers.get(), 1);
+  }
+
+  @Test
+  public void decompress_shouldFallBackToTheReadingThread_forAFrameWithoutAContentSize() throws IOException {
+    byte[] compressed = concat(zstdFrames(log, 50000), streamedZstdFrames(log, 50000));
+
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst")), concat(log, log));
+    assertEquals(submittedMembers.get(), (log.length + 49999) / 50000);
+  }
+
+  @Test
+  public void decompress_shouldFallBackToTheReadingThread_forAFrameThatDecompressesPastTheMemberLimit() throws IOException {
+    byte[] compressed = zstdFrames(log, 50000);
+    testModel = new LogDecompressor(executor, false, 3, 40000);
+
+    assertEquals(readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst")), log);
+    assertEquals(submittedMembers.get(), 0);
+  }
+
+  @Test
+  public void decompress_shouldFallBackToTheReadingThread_forABgzfMemberThatDecompressesPastTheMemberLimit() throws IOException {
+    byte[] compressed = gzipMembers(log, 60000, true);
+    testModel = new LogDecompressor(executor, false, 3, 40000);
+
+    assertEquals(readFully(testModel.decompress(unavailable(compressed), "access.log.gz")), log);
+    assertEquals(submittedMembers.get(), 0);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void decompress_shouldFail_whenAFrameDecompressesPastItsContentSize() throws IOException {
+    byte[] compressed = zstdFrames(log, 50000);
+    compressed[6] = (byte) (compressed[6] - 1);
+
+    readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.zst"));
+  }
+
+  @Test
+  public void decompress_shouldDecompressOnTheReadingThread_whenItIsSequential() throws IOException {
+    byte[] compressed = zstdFrames(log, 50000);
+
+    assertEquals(readFully(LogDecompressor.sequential().decompress(new ByteArrayInputStream(compressed), null)), log);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void decompress_shouldFail_whenAMemberIsCorrupt() throws IOException {
+    byte[] compressed = gzipMembers(log, 60000, true);
+    compressed[40] ^= 0x55;
+
+    readFully(testModel.decompress(new ByteArrayInputStream(compressed), "access.log.gz"));
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] both = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, both, first.length, second.length);
+    return both;
+  }
+}
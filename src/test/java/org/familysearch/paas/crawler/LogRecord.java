@@ -0,0 +1,100 @@
+package org.familysearch.paas.crawler;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * One parsed Apache Common (or Combined) Log Format line.  The JSON field names are the ones the clf-parser
+ * node module produced, so documents indexed by the Java crawler line up with the ones already in Elasticsearch.
+ *
+ * @author kriskrishna
+ */
+public class LogRecord {
+  String remoteAddr;
+  String remoteUser;
+  String timeLocal;
+  String request;
+  String method;
+  String path;
+  String protocol;
+  int status;
+  long bodyBytesSent;
+  String httpReferer;
+  String httpUserAgent;
+
+  public String getRemoteAddr() {
+    return remoteAddr;
+  }
+
+  public String getRemoteUser() {
+    return remoteUser;
+  }
+
+  /**
+   * @return the time of the request as an ISO-8601 instant.
+   */
+  public String getTimeLocal() {
+    return timeLocal;
+  }
+
+  public String getRequest() {
+    return request;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getProtocol() {
+    return protocol;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public long getBodyBytesSent() {
+    return bodyBytesSent;
+  }
+
+  public String getHttpReferer() {
+    return httpReferer;
+  }
+
+  public String getHttpUserAgent() {
+    return httpUserAgent;
+  }
+
+  /**
+   * @return the record as the JSON document that is indexed.
+   */
+  public String toJson() {
+    StringWriter json = new StringWriter(256);
+    try (JsonWriter writer = new JsonWriter(json)) {
+      writer.beginObject();
+      writer.name("remote_addr").value(remoteAddr);
+      writer.name("remote_user").value(remoteUser);
+      writer.name("time_local").value(timeLocal);
+      writer.name("request").value(request);
+      writer.name("method").value(method);
+      writer.name("path").value(path);
+      writer.name("protocol").value(protocol);
+      writer.name("status").value(status);
+      writer.name("body_bytes_sent").value(bodyBytesSent);
+      writer.name("http_referer").value(httpReferer);
+      writer.name("http_user_agent").value(httpUserAgent);
+      writer.endObject();
+    }
+    catch (IOException e) {
+      // StringWriter does not throw.
+      throw new IllegalStateException(e);
+    }
+    return json.toString();
+  }
+}
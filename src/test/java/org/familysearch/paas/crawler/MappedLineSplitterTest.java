@@ -0,0 +1,130 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for MappedLineSplitter class.
+ */
+public class MappedLineSplitterTest {
+
+  private Path file;
+  private List<String> lines;
+  private LineHandler handler;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = Files.createTempFile("lines", ".log");
+    lines = new ArrayList<>();
+    handler = (buffer, offset, length) -> {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+      lines.add(new String(bytes, StandardCharsets.UTF_8));
+    };
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  private void givenFile(String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void split_shouldHandEveryLineInOrder() throws IOException {
+    givenFile("first\nsecond line\n\nlast\n");
+
+    long count = new MappedLineSplitter().split(file, handler);
+
+    assertEquals(count, 4);
+    assertEquals(lines, Arrays.asList("first", "second line", "", "last"));
+  }
+
+  @Test
+  public void split_shouldHandTheLastLine_whenItHasNoNewline() throws IOException {
+    givenFile("first\r\nlast");
+
+    new MappedLineSplitter().split(file, handler);
+
+    assertEquals(lines, Arrays.asList("first\r", "last"));
+  }
+
+  @Test
+  public void split_shouldNotSplitLines_acrossWindows() throws IOException {
+    StringBuilder content = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      String line = "line " + i + " of the file";
+      expected.add(line);
+      content.append(line).append('\n');
+    }
+    givenFile(content.toString());
+
+    long count = new MappedLineSplitter(64).split(file, handler);
+
+    assertEquals(count, 500);
+    assertEquals(lines, expected);
+  }
+
+  @Test
+  public void split_shouldGrowTheWindow_forLinesLongerThanIt() throws IOException {
+    char[] longLine = new char[1000];
+    Arrays.fill(longLine, 'x');
+    givenFile("short\n" + new String(longLine) + "\nshort again");
+
+    new MappedLineSplitter(16).split(file, handler);
+
+    assertEquals(lines, Arrays.asList("short", new String(longLine), "short again"));
+  }
+
+  @Test
+  public void split_shouldHandNothing_whenTheFileIsEmpty() throws IOException {
+    givenFile("");
+
+    assertEquals(new MappedLineSplitter().split(file, handler), 0);
+    assertEquals(lines.size(), 0);
+  }
+
+  @Test
+  public void nextLineStart_shouldMoveToTheStartOfTheFollowingLine() throws IOException {
+    givenFile("first\nsecond\nthird");
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 0), 0);
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 2), 6);
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 6), 6);
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 7), 13);
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 14), 18);
+      assertEquals(MappedLineSplitter.nextLineStart(channel, 100), 18);
+    }
+  }
+
+  @Test
+  public void split_shouldOnlyHandTheLinesOfTheRange() throws IOException {
+    givenFile("first\nsecond\nthird");
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long count = new MappedLineSplitter(4).split(channel, 6, 13, handler);
+
+      assertEquals(count, 1);
+      assertEquals(lines, Arrays.asList("second"));
+    }
+  }
+}
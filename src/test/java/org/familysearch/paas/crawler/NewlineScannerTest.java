@@ -0,0 +1,46 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for NewlineScanner class.
+ */
+public class NewlineScannerTest {
+
+  @DataProvider
+  public Object[][] byteOrders() {
+    return new Object[][] {{ByteOrder.LITTLE_ENDIAN}, {ByteOrder.BIG_ENDIAN}};
+  }
+
+  @Test(dataProvider = "byteOrders")
+  public void indexOf_shouldFindTheFirstNewline_atEveryPosition(ByteOrder order) {
+    for (int newline = 0; newline < 40; newline++) {
+      ByteBuffer buffer = ByteBuffer.allocate(40).order(order);
+      for (int i = 0; i < 40; i++) {
+        // 0x0B and 0x8A differ from '\n' in one bit, which a sloppy zero byte test would match.
+        buffer.put(i, (byte) (i % 2 == 0 ? 0x0B : 0x8A));
+      }
+      buffer.put(newline, (byte) '\n');
+      if (newline + 1 < 40) {
+        buffer.put(newline + 1, (byte) '\n');
+      }
+
+      assertEquals(NewlineScanner.indexOf(buffer, 0, 40), newline);
+    }
+  }
+
+  @Test(dataProvider = "byteOrders")
+  public void indexOf_shouldOnlyLookInTheRange(ByteOrder order) {
+    ByteBuffer buffer = ByteBuffer.wrap("\nabcdefghijklmnop\nq".getBytes()).order(order);
+
+    assertEquals(NewlineScanner.indexOf(buffer, 1, 17), -1);
+    assertEquals(NewlineScanner.indexOf(buffer, 1, 18), 17);
+    assertEquals(NewlineScanner.indexOf(buffer, 3, 3), -1);
+  }
+}
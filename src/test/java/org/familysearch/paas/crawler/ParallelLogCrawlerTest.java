@@ -0,0 +1,184 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for ParallelLogCrawler class.
+ */
+public class ParallelLogCrawlerTest {
+
+  private static final String TEST_BUCKET = "access-logs";
+  private static final String TEST_KEY = "2016/01/01/access.log";
+
+  @Mock
+  private AmazonS3Client mockS3Client;
+  @Mock
+  private ElasticsearchBulkSink mockSink;
+  @Mock
+  private RangedS3Downloader mockDownloader;
+
+  private ForkJoinPool pool;
+  private ParallelLogCrawler testModel;
+  private List<String> documents;
+  private Path file;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    MockitoAnnotations.initMocks(this);
+
+    documents = new ArrayList<>();
+    doAnswer(invocation -> {
+      Object[] arguments = invocation.getArguments();
+      documents.add(new String((byte[]) arguments[0], (Integer) arguments[1], (Integer) arguments[2], StandardCharsets.UTF_8));
+      return null;
+    }).when(mockSink).add(any(byte[].class), anyInt(), anyInt());
+    pool = new ForkJoinPool(4);
+    // Small chunks and windows, so lines are cut at every kind of boundary.
+    testModel = new ParallelLogCrawler(mockS3Client, null, mockSink, pool, 500, new MappedLineSplitter(128), false);
+    file = Files.createTempFile("access", ".log");
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    pool.shutdownNow();
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * @return numbered log lines, every tenth of them garbage, and the documents they should give in order.
+   */
+  private List<String> givenLogFile(int lines) throws IOException {
+    CommonLogFormatParser referenceParser = new CommonLogFormatParser();
+    StringBuilder content = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < lines; i++) {
+      if (i % 10 == 9) {
+        content.append("garbage ").append(i).append("\r\n");
+        continue;
+      }
+      String line = CommonLogFormatParserTest.COMMON_LINE.replace("/api/v1/things", "/line/" + i);
+      expected.add(referenceParser.parse(line).toJson());
+      content.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+    }
+    Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    return expected;
+  }
+
+  @Test
+  public void crawlFile_shouldShipTheDocumentsInFileOrder() throws IOException {
+    List<String> expected = givenLogFile(1000);
+    when(mockSink.getIndexedDocuments()).thenReturn(0L, 900L);
+
+    CrawlResult result = testModel.crawlFile(file);
+
+    assertEquals(documents, expected);
+    verify(mockSink).flush();
+    assertEquals(result.getLines(), 1000);
+    assertEquals(result.getSkippedLines(), 100);
+    assertEquals(result.getIndexedDocuments(), 900);
+  }
+
+  @Test
+  public void crawlFile_shouldDecompressACompressedFile() throws IOException {
+    List<String> expected = givenLogFile(1000);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(Files.readAllBytes(file));
+    }
+    Files.write(file, compressed.toByteArray());
+
+    CrawlResult result = testModel.crawlFile(file);
+
+    assertEquals(documents, expected);
+    assertEquals(result.getLines(), 1000);
+  }
+
+  @Test
+  public void crawlFile_shouldShipNothing_whenTheFileIsEmpty() {
+    CrawlResult result = testModel.crawlFile(file);
+
+    assertEquals(documents.size(), 0);
+    assertEquals(result.getLines(), 0);
+  }
+
+  @Test
+  public void crawlS3Object_shouldDownloadTheObjectAndCrawlIt() throws IOException {
+    List<String> expected = givenLogFile(50);
+    byte[] content = Files.readAllBytes(file);
+    doAnswer(invocation -> {
+      Files.write(((File) invocation.getArguments()[1]).toPath(), content);
+      return null;
+    }).when(mockS3Client).getObject(any(GetObjectRequest.class), any(File.class));
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(documents, expected);
+    assertEquals(result.getLines(), 50);
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void crawlS3Object_shouldThrow_whenTheObjectCanNotBeDownloaded() {
+    when(mockS3Client.getObject(any(GetObjectRequest.class), any(File.class))).thenThrow(new AmazonServiceException("NoSuchKey"));
+
+    testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+  }
+
+  @Test
+  public void crawlS3Object_shouldDownloadWithTheRangedDownloader() throws IOException {
+    List<String> expected = givenLogFile(50);
+    when(mockDownloader.open(TEST_BUCKET, TEST_KEY)).thenReturn(new ByteArrayInputStream(Files.readAllBytes(file)));
+    testModel = new ParallelLogCrawler(mockS3Client, mockDownloader, mockSink, pool, 500);
+
+    CrawlResult result = testModel.crawlS3Object(TEST_BUCKET, TEST_KEY);
+
+    assertEquals(documents, expected);
+    assertEquals(result.getLines(), 50);
+    verify(mockS3Client, never()).getObject(any(GetObjectRequest.class), any(File.class));
+  }
+
+  @Test
+  public void shutdown_shouldStopTheThreadsTheCrawlerBuilt() {
+    testModel = new ParallelLogCrawler(mockS3Client, mockDownloader, mockSink, pool, 500, new MappedLineSplitter(), true);
+
+    testModel.shutdown();
+
+    assertTrue(pool.isShutdown());
+    verify(mockDownloader).shutdown();
+  }
+
+  @Test
+  public void shutdown_shouldLeaveAGivenPoolAndDownloaderAlone() {
+    testModel = new ParallelLogCrawler(mockS3Client, mockDownloader, mockSink, pool, 500);
+
+    testModel.shutdown();
+
+    assertFalse(pool.isShutdown());
+    verify(mockDownloader, never()).shutdown();
+  }
+}
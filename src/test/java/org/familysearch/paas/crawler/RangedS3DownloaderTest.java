@@ -0,0 +1,96 @@
+package org.familysearch.paas.crawler;
+
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.S3ClientOptions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for RangedS3Downloader class, against a local stand-in for S3.
+ */
+public class RangedS3DownloaderTest {
+
+  private static final String TEST_BUCKET = "access-logs";
+  private static final String TEST_KEY = "2016/01/01/access.log";
+
+  private S3StandIn s3StandIn;
+  private RangedS3Downloader testModel;
+  private byte[] object;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    s3StandIn = new S3StandIn();
+    AmazonS3Client s3Client = new AmazonS3Client(new AnonymousAWSCredentials());
+    s3Client.setEndpoint(s3StandIn.getEndpoint());
+    s3Client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+    testModel = new RangedS3Downloader(s3Client, 1000, 3);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    testModel.shutdown();
+    s3StandIn.close();
+  }
+
+  private void givenObject(int size) {
+    object = new byte[size];
+    new Random(42).nextBytes(object);
+    s3StandIn.setObject(object);
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    try (InputStream in = inputStream) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[333];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  @Test
+  public void open_shouldReadTheWholeObjectInOrder_fromRangedGets() throws IOException {
+    givenObject(10500);
+
+    byte[] content = readFully(testModel.open(TEST_BUCKET, TEST_KEY));
+
+    assertEquals(content, object);
+    assertEquals(s3StandIn.getRangedGets(), 11);
+  }
+
+  @Test
+  public void open_shouldReadAnObjectSmallerThanAPart() throws IOException {
+    givenObject(10);
+
+    assertEquals(readFully(testModel.open(TEST_BUCKET, TEST_KEY)), object);
+    assertEquals(s3StandIn.getRangedGets(), 1);
+  }
+
+  @Test
+  public void open_shouldReadNothing_whenTheObjectIsEmpty() throws IOException {
+    givenObject(0);
+
+    assertEquals(readFully(testModel.open(TEST_BUCKET, TEST_KEY)).length, 0);
+    assertEquals(s3StandIn.getRangedGets(), 0);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void open_shouldFail_whenTheObjectChangesDuringTheDownload() throws IOException {
+    givenObject(10500);
+    InputStream inputStream = testModel.open(TEST_BUCKET, TEST_KEY);
+    s3StandIn.setETag("\"v2\"");
+
+    readFully(inputStream);
+  }
+}
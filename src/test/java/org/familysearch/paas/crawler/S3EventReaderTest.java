@@ -0,0 +1,46 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for S3EventReader class.
+ */
+public class S3EventReaderTest {
+
+  private static final String S3_EVENT = "{\"Records\":["
+      + "{\"eventVersion\":\"2.0\",\"eventSource\":\"aws:s3\",\"eventName\":\"ObjectCreated:Put\","
+      + "\"s3\":{\"s3SchemaVersion\":\"1.0\",\"bucket\":{\"name\":\"access-logs\",\"arn\":\"arn:aws:s3:::access-logs\"},"
+      + "\"object\":{\"key\":\"2016/01/01/access+log%2B1.log\",\"size\":1024,\"eTag\":\"abc\"}}},"
+      + "{\"eventSource\":\"aws:s3\",\"s3\":{\"object\":{\"key\":\"second.log\"},\"bucket\":{\"name\":\"other-logs\"}}}"
+      + "]}";
+
+  @Test
+  public void readObjects_itShouldGiveTheBucketAndDecodedKeyOfEveryRecord() {
+    List<S3EventReader.LogObject> objects = S3EventReader.readObjects(S3_EVENT);
+
+    assertEquals(objects.size(), 2);
+    assertEquals(objects.get(0).getBucket(), "access-logs");
+    assertEquals(objects.get(0).getKey(), "2016/01/01/access log+1.log");
+    assertEquals(objects.get(1).getBucket(), "other-logs");
+    assertEquals(objects.get(1).getKey(), "second.log");
+  }
+
+  @Test
+  public void readObjects_itShouldGiveNothingWhenThereAreNoRecords() {
+    assertEquals(S3EventReader.readObjects("{\"Records\":[]}").size(), 0);
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void readObjects_itShouldThrowWhenARecordHasNoObject() {
+    S3EventReader.readObjects("{\"Records\":[{\"s3\":{\"bucket\":{\"name\":\"access-logs\"}}}]}");
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void readObjects_itShouldThrowWhenTheEventIsNotJson() {
+    S3EventReader.readObjects("not json");
+  }
+}
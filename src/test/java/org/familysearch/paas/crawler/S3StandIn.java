@@ -0,0 +1,138 @@
+package org.familysearch.paas.crawler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for S3 that serves one object to HEAD and ranged GET requests, for tests of code that downloads
+ * objects.  The AWS SDK reads response headers case sensitively, which com.sun.net.httpserver does not preserve,
+ * so this answers over a plain socket, one request per connection.
+ */
+class S3StandIn implements AutoCloseable {
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger rangedGets = new AtomicInteger();
+  private volatile byte[] object = new byte[0];
+  private volatile String eTag = "\"v1\"";
+
+  S3StandIn() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    executor.execute(this::accept);
+  }
+
+  String getEndpoint() {
+    return "http://localhost:" + serverSocket.getLocalPort();
+  }
+
+  void setObject(byte[] object) {
+    this.object = object;
+  }
+
+  void setETag(String eTag) {
+    this.eTag = eTag;
+  }
+
+  int getRangedGets() {
+    return rangedGets.get();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      }
+      catch (IOException e) {
+        return;
+      }
+      try {
+        executor.execute(() -> answer(socket));
+      }
+      catch (RejectedExecutionException e) {
+        // Closed while a connection was being accepted.
+        closeQuietly(socket);
+        return;
+      }
+    }
+  }
+
+  private void answer(Socket socket) {
+    try (Socket s = socket) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+      String method = reader.readLine().split(" ")[0];
+      Map<String, String> headers = new HashMap<>();
+      String line;
+      while ((line = reader.readLine()) != null && !line.isEmpty()) {
+        int colon = line.indexOf(':');
+        headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+      }
+
+      byte[] content = object;
+      String ifMatch = headers.get("if-match");
+      OutputStream out = s.getOutputStream();
+      if ("HEAD".equals(method)) {
+        respond(out, "200 OK", "Content-Length: " + content.length, null, 0, 0);
+      }
+      else if (ifMatch != null && !unquote(ifMatch).equals(unquote(eTag))) {
+        respond(out, "412 Precondition Failed", "Content-Length: 0", null, 0, 0);
+      }
+      else {
+        Matcher range = RANGE.matcher(headers.get("range"));
+        range.matches();
+        int start = Integer.parseInt(range.group(1));
+        int end = Math.min(Integer.parseInt(range.group(2)), content.length - 1);
+        rangedGets.incrementAndGet();
+        respond(out, "206 Partial Content", "Content-Length: " + (end - start + 1) + "\r\nContent-Range: bytes " + start + "-"
+            + end + "/" + content.length, content, start, end - start + 1);
+      }
+    }
+    catch (IOException e) {
+      // The client went away, nothing to answer.
+    }
+  }
+
+  private void respond(OutputStream out, String status, String headers, byte[] body, int offset, int length) throws IOException {
+    String head = "HTTP/1.1 " + status + "\r\nETag: " + eTag + "\r\n" + headers + "\r\nConnection: close\r\n\r\n";
+    out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+    if (body != null) {
+      out.write(body, offset, length);
+    }
+    out.flush();
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    }
+    catch (IOException e) {
+      // Nothing to answer anyway.
+    }
+  }
+
+  private static String unquote(String eTag) {
+    return eTag.replace("\"", "");
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,170 @@
+package org.familysearch.paas.crawler;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for SpoolingLogSink class.
+ */
+public class SpoolingLogSinkTest {
+
+  private Path directory;
+  private RecordingSink sink;
+  private SpoolingLogSink testModel;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("spool");
+    sink = new RecordingSink();
+    testModel = new SpoolingLogSink(new DiskSpool(directory, 4096, 4, DiskSpool.FsyncPolicy.ON_FLUSH), sink, 2, 10);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    testModel.close();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private void add(SpoolingLogSink spoolingSink, String document) {
+    byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+    spoolingSink.add(bytes, 0, bytes.length);
+  }
+
+  @Test
+  public void add_itShouldDeliverTheDocumentsInOrder() throws Exception {
+    add(testModel, "{\"n\":1}");
+    add(testModel, "{\"n\":2}");
+    add(testModel, "{\"n\":3}");
+    testModel.flush();
+
+    assertTrue(testModel.awaitDelivered(10, TimeUnit.SECONDS));
+    assertEquals(sink.delivered(), Arrays.asList("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"));
+    assertEquals(testModel.getIndexedDocuments(), 3);
+  }
+
+  @Test
+  public void flush_itShouldWaitUntilTheSinkHasTheDocuments() {
+    sink.failures = 1;
+    add(testModel, "{\"n\":1}");
+    add(testModel, "{\"n\":2}");
+    add(testModel, "{\"n\":3}");
+
+    testModel.flush();
+
+    assertEquals(testModel.getIndexedDocuments(), 3);
+  }
+
+  @Test(expectedExceptions = LogCrawlerException.class)
+  public void flush_itShouldFailWhenTheSinkDoesNotTakeTheDocumentsInTime() {
+    testModel.close();
+    sink.failures = Integer.MAX_VALUE;
+    testModel = new SpoolingLogSink(new DiskSpool(directory, 4096, 4, DiskSpool.FsyncPolicy.ON_FLUSH), sink, 2, 10, 200);
+    add(testModel, "{\"n\":1}");
+
+    testModel.flush();
+  }
+
+  @Test
+  public void add_itShouldReplayTheDocumentsAfterTheSinkFailed() throws Exception {
+    sink.failures = 2;
+    add(testModel, "{\"n\":1}");
+    add(testModel, "{\"n\":2}");
+    add(testModel, "{\"n\":3}");
+
+    assertTrue(testModel.awaitDelivered(10, TimeUnit.SECONDS));
+    assertEquals(sink.delivered(), Arrays.asList("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"));
+  }
+
+  @Test
+  public void close_itShouldLeaveUndeliveredDocumentsToReplayAfterARestart() throws Exception {
+    sink.failures = Integer.MAX_VALUE;
+    add(testModel, "{\"n\":1}");
+    add(testModel, "{\"n\":2}");
+    assertFalse(testModel.awaitDelivered(100, TimeUnit.MILLISECONDS));
+    testModel.close();
+
+    sink = new RecordingSink();
+    testModel = new SpoolingLogSink(new DiskSpool(directory, 4096, 4, DiskSpool.FsyncPolicy.ON_FLUSH), sink, 2, 10);
+    assertTrue(testModel.awaitDelivered(10, TimeUnit.SECONDS));
+    assertEquals(sink.delivered(), Arrays.asList("{\"n\":1}", "{\"n\":2}"));
+  }
+
+  @Test
+  public void getIndexedDocuments_itShouldCountAReplayedDocumentOnce() throws Exception {
+    sink.lostAcknowledgements = 1;
+    add(testModel, "{\"n\":1}");
+    add(testModel, "{\"n\":2}");
+
+    testModel.flush();
+
+    assertEquals(sink.delivered(), Arrays.asList("{\"n\":1}", "{\"n\":2}", "{\"n\":1}", "{\"n\":2}"));
+    assertEquals(testModel.getIndexedDocuments(), 2);
+  }
+
+  /**
+   * Keeps what is flushed and fails the first flushes it is told to, either before or after it delivers them.
+   */
+  private static final class RecordingSink implements LogSink {
+    private final List<String> pending = new ArrayList<>();
+    private final List<String> delivered = new ArrayList<>();
+    private volatile int failures;
+    private volatile int lostAcknowledgements;
+
+    @Override
+    public void add(byte[] documentJson, int offset, int length) {
+      pending.add(new String(documentJson, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void flush() {
+      List<String> batch = new ArrayList<>(pending);
+      pending.clear();
+      if (failures > 0) {
+        failures--;
+        throw new LogCrawlerException("Sink is down.");
+      }
+      delivered.addAll(batch);
+      if (lostAcknowledgements > 0) {
+        lostAcknowledgements--;
+        throw new LogCrawlerException("Sink took the documents but the response was lost.");
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public synchronized long getIndexedDocuments() {
+      return delivered.size();
+    }
+
+    @Override
+    public long getFailedDocuments() {
+      return 0;
+    }
+
+    synchronized List<String> delivered() {
+      return new ArrayList<>(delivered);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.familysearch.paas.kinesis;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.BufferingHints;
+import com.amazonaws.services.kinesisfirehose.model.ConcurrentModificationException;
+import com.amazonaws.services.kinesisfirehose.model.DeliveryStreamDescription;
+import com.amazonaws.services.kinesisfirehose.model.DescribeDeliveryStreamRequest;
+import com.amazonaws.services.kinesisfirehose.model.DescribeDeliveryStreamResult;
+import com.amazonaws.services.kinesisfirehose.model.DestinationDescription;
+import com.amazonaws.services.kinesisfirehose.model.S3DestinationDescription;
+import com.amazonaws.services.kinesisfirehose.model.UpdateDestinationRequest;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit Tests for FirehoseBufferingTuner class.
+ */
+public class FirehoseBufferingTunerTest {
+
+  private static final String TEST_STREAM = "access-logs";
+  private static final double MB = 1024 * 1024;
+
+  @Mock
+  private AmazonKinesisFirehose mockFirehoseClient;
+
+  private FirehoseBufferingTuner testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    testModel = new FirehoseBufferingTuner(mockFirehoseClient, TEST_STREAM, 300, 64);
+  }
+
+  private void whenDescribe_Return(int sizeInMBs, int intervalInSeconds) {
+    when(mockFirehoseClient.describeDeliveryStream(any(DescribeDeliveryStreamRequest.class))).thenReturn(
+        new DescribeDeliveryStreamResult().withDeliveryStreamDescription(new DeliveryStreamDescription()
+            .withDeliveryStreamName(TEST_STREAM).withVersionId("7")
+            .withDestinations(new DestinationDescription().withDestinationId("destinationId-000000000001")
+                .withS3DestinationDescription(new S3DestinationDescription().withBufferingHints(
+                    new BufferingHints().withSizeInMBs(sizeInMBs).withIntervalInSeconds(intervalInSeconds))))));
+  }
+
+  private static BufferingHints hints(int sizeInMBs, int intervalInSeconds) {
+    return new BufferingHints().withSizeInMBs(sizeInMBs).withIntervalInSeconds(intervalInSeconds);
+  }
+
+  @Test
+  public void recommend_itShouldAimForTheTargetSizeOnABusyStream() {
+    assertEquals(testModel.recommend(hints(5, 300), 10 * MB, -1), hints(64, 300));
+  }
+
+  @Test
+  public void recommend_itShouldDeliverAQuietStreamEveryMinute() {
+    assertEquals(testModel.recommend(hints(5, 300), 100, -1), hints(1, 60));
+  }
+
+  @Test
+  public void recommend_itShouldFillWhatArrivesWithinTheLatencyBudget() {
+    assertEquals(testModel.recommend(hints(5, 300), 100 * 1024, -1), hints(29, 300));
+  }
+
+  @Test
+  public void recommend_itShouldTakeDeliveryOverheadOutOfTheLatencyBudget() {
+    // 300 s of the 420 s are spent in the buffer, 120 s delivering.
+    assertEquals(testModel.recommend(hints(128, 300), 0.1 * MB, 420), hints(18, 180));
+  }
+
+  @Test
+  public void tune_itShouldUpdateTheS3DestinationOfTheCurrentVersion() {
+    whenDescribe_Return(5, 300);
+
+    assertTrue(testModel.tune(10 * MB, -1));
+
+    ArgumentCaptor<UpdateDestinationRequest> request = ArgumentCaptor.forClass(UpdateDestinationRequest.class);
+    verify(mockFirehoseClient).updateDestination(request.capture());
+    assertEquals(request.getValue().getDeliveryStreamName(), TEST_STREAM);
+    assertEquals(request.getValue().getCurrentDeliveryStreamVersionId(), "7");
+    assertEquals(request.getValue().getDestinationId(), "destinationId-000000000001");
+    assertEquals(request.getValue().getS3DestinationUpdate().getBufferingHints(), hints(64, 300));
+  }
+
+  @Test
+  public void tune_itShouldNotUpdateForASmallChange() {
+    whenDescribe_Return(60, 300);
+
+    assertFalse(testModel.tune(10 * MB, -1));
+    verify(mockFirehoseClient, never()).updateDestination(any(UpdateDestinationRequest.class));
+  }
+
+  @Test
+  public void tune_itShouldGiveUpWhenTheStreamChangedMeanwhile() {
+    whenDescribe_Return(5, 300);
+    when(mockFirehoseClient.updateDestination(any(UpdateDestinationRequest.class)))
+        .thenThrow(new ConcurrentModificationException("Version 7 is not current."));
+
+    assertFalse(testModel.tune(10 * MB, -1));
+  }
+
+  @Test(expectedExceptions = KinesisFireHoseElasticSearchFacadeException.class)
+  public void tune_itShouldWrapOtherErrors() {
+    when(mockFirehoseClient.describeDeliveryStream(any(DescribeDeliveryStreamRequest.class)))
+        .thenThrow(new AmazonServiceException("Stream not found."));
+
+    testModel.tune(10 * MB, -1);
+  }
+}
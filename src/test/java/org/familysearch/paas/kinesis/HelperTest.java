@@ -0,0 +1,41 @@
+package org.familysearch.paas.kinesis;
+
+import com.amazonaws.services.kinesisfirehose.model.BufferingHints;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for Helper class.
+ */
+public class HelperTest {
+
+  @Test
+  public void bufferingHints_itShouldPreferTheSettingsOfTheStream() {
+    Properties properties = new Properties();
+    properties.setProperty("bufferingIntervalSeconds", "120");
+    properties.setProperty("bufferingSizeMBs", "10");
+    properties.setProperty("bufferingSizeMBs.access-logs", "64");
+
+    assertEquals(Helper.bufferingHints(properties, "access-logs"), new BufferingHints().withIntervalInSeconds(120).withSizeInMBs(64));
+    assertEquals(Helper.bufferingHints(properties, "audit-logs"), new BufferingHints().withIntervalInSeconds(120).withSizeInMBs(10));
+  }
+
+  @Test
+  public void bufferingHints_itShouldDefaultWhenNothingIsConfigured() {
+    assertEquals(Helper.bufferingHints(new Properties(), "access-logs"), new BufferingHints().withIntervalInSeconds(300).withSizeInMBs(5));
+    assertEquals(Helper.bufferingHints(null, "access-logs"), new BufferingHints().withIntervalInSeconds(300).withSizeInMBs(5));
+  }
+
+  @Test
+  public void intProperty_itShouldDefaultWhenTheValueIsNotANumber() {
+    Properties properties = new Properties();
+    properties.setProperty("bufferingSizeMBs", "64MB");
+    properties.setProperty("bufferingIntervalSeconds", " 120 ");
+
+    assertEquals(Helper.intProperty(properties, "bufferingSizeMBs", "access-logs", 5), 5);
+    assertEquals(Helper.intProperty(properties, "bufferingIntervalSeconds", "access-logs", 300), 120);
+  }
+}
@@ -0,0 +1,55 @@
+package org.familysearch.paas.metrics;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for Counter class.
+ */
+public class CounterTest {
+
+  private Counter testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    testModel = new Counter();
+  }
+
+  @Test
+  public void itShouldCountSinceThePreviousReport() {
+    testModel.add(5);
+    assertEquals(testModel.getAndReset(), 5);
+
+    testModel.increment();
+
+    assertEquals(testModel.get(), 1);
+    assertEquals(testModel.getAndReset(), 1);
+    assertEquals(testModel.getAndReset(), 0);
+  }
+
+  @Test
+  public void itShouldNotLoseCountsAddedWhileItIsReported() throws Exception {
+    int threads = 4;
+    int increments = 20000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        for (int i = 0; i < increments; i++) {
+          testModel.increment();
+        }
+        done.countDown();
+      }).start();
+    }
+
+    long reported = 0;
+    while (done.getCount() > 0) {
+      reported += testModel.getAndReset();
+    }
+
+    assertEquals(reported + testModel.getAndReset(), (long) threads * increments);
+  }
+}
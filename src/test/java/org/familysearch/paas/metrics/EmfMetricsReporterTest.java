@@ -0,0 +1,119 @@
+package org.familysearch.paas.metrics;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit Tests for EmfMetricsReporter class.
+ */
+public class EmfMetricsReporterTest {
+
+  private MetricsRegistry registry;
+  private EmfMetricsReporter testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    registry = new MetricsRegistry();
+    testModel = new EmfMetricsReporter(registry, "CWEventService", "paas-cw-event-service", () -> 1500000000000L);
+  }
+
+  @Test
+  public void document_itShouldBeNullWithoutMetrics() {
+    assertNull(testModel.document(1));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void document_itShouldDeclareEveryMetricInTheNamespaceWithTheServiceDimension() {
+    registry.counter("UnknownErrors").add(2);
+    registry.gauge("Backlog", () -> 7);
+    registry.timer("HttpRequest").record(250);
+
+    Map<String, Object> document = testModel.document(1500000000000L);
+
+    Map<String, Object> metadata = (Map<String, Object>) document.get("_aws");
+    assertEquals(metadata.get("Timestamp"), 1500000000000L);
+    List<Map<String, Object>> directives = (List<Map<String, Object>>) metadata.get("CloudWatchMetrics");
+    assertEquals(directives.size(), 1);
+    assertEquals(directives.get(0).get("Namespace"), "CWEventService");
+    assertEquals(directives.get(0).get("Dimensions"), Collections.singletonList(Collections.singletonList("Service")));
+    assertEquals(directives.get(0).get("Metrics"), Arrays.asList(
+        definition("UnknownErrors", "Count"),
+        definition("Backlog", "None"),
+        definition("HttpRequest.count", "Count"),
+        definition("HttpRequest.p50", "Microseconds"),
+        definition("HttpRequest.p99", "Microseconds"),
+        definition("HttpRequest.max", "Microseconds")));
+    assertEquals(document.get("Service"), "paas-cw-event-service");
+    assertEquals(document.get("UnknownErrors"), 2L);
+    assertEquals(document.get("Backlog"), 7L);
+    assertEquals(document.get("HttpRequest.count"), 1L);
+    assertEquals(document.get("HttpRequest.max"), 250L);
+  }
+
+  @Test
+  public void document_itShouldReportOnlyWhatHappenedSinceThePreviousReport() {
+    registry.counter("UnknownErrors").increment();
+    registry.timer("HttpRequest").record(250);
+    testModel.document(1);
+
+    Map<String, Object> document = testModel.document(2);
+
+    assertEquals(document.get("UnknownErrors"), 0L);
+    assertEquals(document.get("HttpRequest.count"), 0L);
+    assertEquals(document.containsKey("HttpRequest.p99"), false);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void document_itShouldSplitTheMetricsIntoDirectivesOfAHundred() {
+    for (int i = 0; i < 150; i++) {
+      registry.counter("Counter" + i).increment();
+    }
+
+    Map<String, Object> metadata = (Map<String, Object>) testModel.document(1).get("_aws");
+
+    List<Map<String, Object>> directives = (List<Map<String, Object>>) metadata.get("CloudWatchMetrics");
+    assertEquals(directives.size(), 2);
+    assertEquals(((List<?>) directives.get(0).get("Metrics")).size(), EmfMetricsReporter.MAX_METRICS_PER_DIRECTIVE);
+    assertEquals(((List<?>) directives.get(1).get("Metrics")).size(), 50);
+  }
+
+  @Test
+  public void document_itShouldLeaveOutAGaugeThatFails() {
+    registry.counter("UnknownErrors").increment();
+    registry.gauge("Backlog", () -> {
+      throw new IllegalStateException("closed");
+    });
+
+    Map<String, Object> document = testModel.document(1);
+
+    assertEquals(document.containsKey("Backlog"), false);
+    assertEquals(document.get("UnknownErrors"), 1L);
+  }
+
+  @Test
+  public void flush_itShouldResetTheCounters() {
+    registry.counter("UnknownErrors").add(3);
+
+    testModel.flush();
+
+    assertEquals(registry.counter("UnknownErrors").get(), 0);
+  }
+
+  private static Map<String, String> definition(String name, String unit) {
+    Map<String, String> definition = new LinkedHashMap<>();
+    definition.put("Name", name);
+    definition.put("Unit", unit);
+    return definition;
+  }
+}
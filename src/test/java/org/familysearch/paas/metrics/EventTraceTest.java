@@ -0,0 +1,102 @@
+package org.familysearch.paas.metrics;
+
+import org.slf4j.MDC;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for EventTrace class.
+ */
+public class EventTraceTest {
+
+  @AfterMethod
+  public void tearDown() {
+    EventTrace.attach(null);
+  }
+
+  @Test
+  public void begin_itShouldMakeTheTraceCurrentAndPutItsIdInTheMdc() {
+    EventTrace testModel = EventTrace.begin("event.json", 100);
+
+    assertSame(EventTrace.current(), testModel);
+    assertEquals(MDC.get(EventTrace.TRACE_ID), testModel.getTraceId());
+  }
+
+  @Test
+  public void end_itShouldStopTracingOnTheThread() {
+    EventTrace testModel = EventTrace.begin("event.json", 100);
+
+    testModel.end(null);
+
+    assertNull(EventTrace.current());
+    assertNull(MDC.get(EventTrace.TRACE_ID));
+  }
+
+  @Test
+  public void span_itShouldRecordTheStagesOfASampledEvent() {
+    EventTrace testModel = EventTrace.begin("event.json", 100);
+    long start = System.nanoTime();
+
+    EventTrace.span("LoadEvent", start, start + 1500);
+    new MetricsRegistry().stage("HttpRequest").recordSince(System.nanoTime());
+
+    List<EventTrace.Span> spans = testModel.getSpans();
+    assertEquals(spans.size(), 2);
+    assertEquals(spans.get(0).getStage(), "LoadEvent");
+    assertEquals(spans.get(0).getDurationNanos(), 1500);
+    assertTrue(spans.get(0).getStartNanos() >= 0);
+    assertEquals(spans.get(0).getThread(), Thread.currentThread().getName());
+    assertEquals(spans.get(1).getStage(), "HttpRequest");
+  }
+
+  @Test
+  public void span_itShouldRecordNothingWhenTheEventIsNotSampled() {
+    EventTrace testModel = EventTrace.begin("event.json", 0);
+
+    EventTrace.span("LoadEvent", System.nanoTime());
+
+    assertFalse(testModel.isSampled());
+    assertEquals(MDC.get(EventTrace.TRACE_ID), testModel.getTraceId());
+  }
+
+  @Test
+  public void span_itShouldBeIgnoredWithoutATrace() {
+    EventTrace.span("LoadEvent", System.nanoTime());
+
+    assertNull(EventTrace.current());
+  }
+
+  @Test
+  public void attach_itShouldCarryTheTraceToAnotherThread() throws Exception {
+    EventTrace testModel = EventTrace.begin("event.json", 100);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> {
+        EventTrace previous = EventTrace.attach(testModel);
+        try {
+          EventTrace.span("ProcessRecord", System.nanoTime());
+        }
+        finally {
+          EventTrace.attach(previous);
+        }
+      }).get();
+      assertNull(executor.submit(EventTrace::current).get());
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertEquals(testModel.getSpans().size(), 1);
+    assertFalse(testModel.getSpans().get(0).getThread().equals(Thread.currentThread().getName()));
+  }
+}
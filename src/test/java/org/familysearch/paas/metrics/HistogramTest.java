@@ -0,0 +1,120 @@
+package org.familysearch.paas.metrics;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for Histogram class.
+ */
+public class HistogramTest {
+
+  private Histogram testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    testModel = new Histogram(MetricsRegistry.MICROSECONDS);
+  }
+
+  @Test
+  public void bucket_itShouldKeepSmallValuesExact() {
+    for (int value = 0; value < Histogram.SUB_BUCKETS; value++) {
+      assertEquals(Histogram.lowestValue(Histogram.bucket(value)), value);
+      assertEquals(Histogram.highestValue(Histogram.bucket(value)), value);
+    }
+  }
+
+  @Test
+  public void bucket_itShouldHoldEveryValueWithinASixteenthOfIt() {
+    long[] values = {16, 17, 31, 32, 33, 1000, 123456, 987654321, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = Histogram.bucket(value);
+      assertTrue(Histogram.lowestValue(bucket) <= value && value <= Histogram.highestValue(bucket), "value=" + value);
+      assertTrue(Histogram.highestValue(bucket) - Histogram.lowestValue(bucket) <= value / Histogram.SUB_BUCKETS, "value=" + value);
+    }
+    assertEquals(Histogram.bucket(Long.MAX_VALUE), Histogram.BUCKETS - 1);
+  }
+
+  @Test
+  public void bucket_itShouldCoverTheValuesWithoutGaps() {
+    for (int bucket = 1; bucket < Histogram.BUCKETS; bucket++) {
+      assertEquals(Histogram.lowestValue(bucket), Histogram.highestValue(bucket - 1) + 1);
+    }
+  }
+
+  @Test
+  public void itShouldReportPercentilesOfTheRecordedValues() {
+    for (int value = 1; value <= 1000; value++) {
+      testModel.record(value);
+    }
+
+    Histogram.Snapshot snapshot = testModel.snapshotAndReset();
+
+    assertEquals(snapshot.getCount(), 1000);
+    assertEquals(snapshot.getSum(), 500500);
+    assertEquals(snapshot.getMax(), 1000);
+    assertTrue(Math.abs(snapshot.percentile(0.5) - 500) <= 500 / Histogram.SUB_BUCKETS, "p50=" + snapshot.percentile(0.5));
+    assertTrue(Math.abs(snapshot.percentile(0.99) - 990) <= 990 / Histogram.SUB_BUCKETS, "p99=" + snapshot.percentile(0.99));
+    assertEquals(snapshot.percentile(1), 1000);
+  }
+
+  @Test
+  public void itShouldStartAgainAfterASnapshot() {
+    testModel.record(5000);
+    testModel.snapshotAndReset();
+    testModel.record(3);
+
+    Histogram.Snapshot snapshot = testModel.snapshotAndReset();
+
+    assertEquals(snapshot.getCount(), 1);
+    assertEquals(snapshot.getMax(), 3);
+    assertEquals(snapshot.percentile(0.99), 3);
+  }
+
+  @Test
+  public void itShouldRecordNegativeValuesAsZero() {
+    testModel.record(-7);
+
+    Histogram.Snapshot snapshot = testModel.snapshotAndReset();
+
+    assertEquals(snapshot.getCount(), 1);
+    assertEquals(snapshot.getSum(), 0);
+    assertEquals(snapshot.percentile(0.5), 0);
+  }
+
+  @Test
+  public void itShouldNotLoseValuesRecordedWhileASnapshotIsTaken() throws Exception {
+    int threads = 4;
+    int values = 20000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        for (int i = 0; i < values; i++) {
+          testModel.record(2);
+        }
+        done.countDown();
+      }).start();
+    }
+
+    long count = 0;
+    long sum = 0;
+    while (done.getCount() > 0) {
+      Histogram.Snapshot snapshot = testModel.snapshotAndReset();
+      count += snapshot.getCount();
+      sum += snapshot.getSum();
+    }
+    Histogram.Snapshot last = testModel.snapshotAndReset();
+
+    assertEquals(count + last.getCount(), (long) threads * values);
+    assertEquals(sum + last.getSum(), 2L * threads * values);
+  }
+
+  @Test
+  public void percentile_itShouldBeZeroWhenNothingWasRecorded() {
+    assertEquals(testModel.snapshotAndReset().percentile(0.99), 0);
+  }
+}
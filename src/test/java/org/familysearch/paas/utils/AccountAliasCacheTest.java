@@ -0,0 +1,175 @@
+package org.familysearch.paas.utils;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit Tests for AccountAliasCache class.
+ */
+public class AccountAliasCacheTest {
+
+  private static final String TEST_AWS_ACCOUNT_ID = "000111222333";
+  private static final long TTL_MILLIS = 1000;
+  private static final long REFRESH_AFTER_MILLIS = 600;
+
+  private MutableClock clock;
+  private List<Runnable> backgroundTasks;
+  private Executor backgroundExecutor;
+  private List<String> aliases;
+  private int loadCount;
+  private AccountAliasCache.AliasLoader loader;
+
+  @BeforeMethod
+  public void setUp() {
+    clock = new MutableClock();
+    backgroundTasks = new ArrayList<>();
+    backgroundExecutor = backgroundTasks::add;
+    aliases = new ArrayList<>();
+    aliases.add("first-alias");
+    loadCount = 0;
+    loader = awsAccountId -> {
+      loadCount++;
+      if (aliases.isEmpty()) {
+        throw new IllegalStateException("IAM is down");
+      }
+      return aliases.remove(0);
+    };
+  }
+
+  private AccountAliasCache newCache(File snapshotFile) {
+    return new AccountAliasCache(loader, TTL_MILLIS, REFRESH_AFTER_MILLIS, snapshotFile, backgroundExecutor, clock);
+  }
+
+  private void runBackgroundTasks() {
+    List<Runnable> tasks = new ArrayList<>(backgroundTasks);
+    backgroundTasks.clear();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+
+  @Test
+  public void itShouldLoadOnceWithinTheRefreshWindow() {
+    AccountAliasCache testModel = newCache(null);
+
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+    clock.advance(REFRESH_AFTER_MILLIS - 1);
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+
+    assertEquals(loadCount, 1);
+    assertEquals(backgroundTasks.size(), 0);
+  }
+
+  @Test
+  public void itShouldServeTheCachedAliasWhileRefreshingInTheBackground() {
+    AccountAliasCache testModel = newCache(null);
+    testModel.get(TEST_AWS_ACCOUNT_ID);
+    aliases.add("second-alias");
+
+    clock.advance(REFRESH_AFTER_MILLIS);
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+    assertEquals(backgroundTasks.size(), 1, "Only one refresh should be started");
+
+    runBackgroundTasks();
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "second-alias");
+  }
+
+  @Test
+  public void itShouldReloadSynchronouslyOnceExpired() {
+    AccountAliasCache testModel = newCache(null);
+    testModel.get(TEST_AWS_ACCOUNT_ID);
+    aliases.add("second-alias");
+
+    clock.advance(TTL_MILLIS);
+
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "second-alias");
+  }
+
+  @Test
+  public void itShouldKeepServingTheStaleAliasWhenTheReloadFails() {
+    AccountAliasCache testModel = newCache(null);
+    testModel.get(TEST_AWS_ACCOUNT_ID);
+
+    clock.advance(TTL_MILLIS * 5);
+
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+  }
+
+  @Test
+  public void itShouldReturnNullWhenNothingWasEverLoaded() {
+    aliases.clear();
+    AccountAliasCache testModel = newCache(null);
+
+    assertNull(testModel.get(TEST_AWS_ACCOUNT_ID));
+  }
+
+  @Test
+  public void itShouldStartFromTheSnapshotAndRefreshIt() throws Exception {
+    File snapshotFile = File.createTempFile("account-aliases", ".properties");
+    snapshotFile.deleteOnExit();
+    newCache(snapshotFile).get(TEST_AWS_ACCOUNT_ID);
+
+    aliases.add("second-alias");
+    clock.advance(REFRESH_AFTER_MILLIS);
+    AccountAliasCache restarted = newCache(snapshotFile);
+
+    assertEquals(restarted.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+    assertEquals(loadCount, 1, "The restored alias should be served without waiting for IAM");
+    runBackgroundTasks();
+    assertEquals(restarted.get(TEST_AWS_ACCOUNT_ID), "second-alias");
+  }
+
+  @Test
+  public void itShouldNotRefreshARestoredAliasThatIsStillFresh() throws Exception {
+    File snapshotFile = File.createTempFile("account-aliases", ".properties");
+    snapshotFile.deleteOnExit();
+    newCache(snapshotFile).get(TEST_AWS_ACCOUNT_ID);
+
+    aliases.add("second-alias");
+    clock.advance(REFRESH_AFTER_MILLIS - 1);
+    AccountAliasCache restarted = newCache(snapshotFile);
+
+    assertEquals(restarted.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+    assertEquals(loadCount, 1);
+    assertEquals(backgroundTasks.size(), 0);
+  }
+
+  @Test
+  public void itShouldReloadARestoredAliasThatHasExpired() throws Exception {
+    File snapshotFile = File.createTempFile("account-aliases", ".properties");
+    snapshotFile.deleteOnExit();
+    newCache(snapshotFile).get(TEST_AWS_ACCOUNT_ID);
+
+    aliases.add("second-alias");
+    clock.advance(TTL_MILLIS);
+    AccountAliasCache restarted = newCache(snapshotFile);
+
+    assertEquals(restarted.get(TEST_AWS_ACCOUNT_ID), "second-alias");
+    assertEquals(loadCount, 2);
+  }
+
+  @Test
+  public void itShouldRefreshARestoredAliasWithoutAFetchTime() throws Exception {
+    File snapshotFile = File.createTempFile("account-aliases", ".properties");
+    snapshotFile.deleteOnExit();
+    Files.write(snapshotFile.toPath(), (TEST_AWS_ACCOUNT_ID + "=old-alias\n").getBytes(StandardCharsets.ISO_8859_1));
+
+    AccountAliasCache testModel = newCache(snapshotFile);
+
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "old-alias");
+    assertEquals(loadCount, 0);
+    runBackgroundTasks();
+    assertEquals(testModel.get(TEST_AWS_ACCOUNT_ID), "first-alias");
+  }
+}
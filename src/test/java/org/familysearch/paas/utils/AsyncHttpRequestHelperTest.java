@@ -0,0 +1,160 @@
+package org.familysearch.paas.utils;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Unit Tests for AsyncHttpRequestHelper class.
+ */
+public class AsyncHttpRequestHelperTest {
+
+  private static final String TEST_URL = "https://jira.example.org/rest/api/2/issue";
+  private static final String OTHER_HOST_URL = "https://search.example.org/_bulk";
+  private static final Object TEST_BODY = "body";
+  private static final List<String> TEST_COOKIES = Arrays.asList("JSESSIONID=1234");
+  private static final long WAIT_SECONDS = 5;
+
+  @Mock
+  private HttpRequestHelper mockHttpRequestHelper;
+
+  private AsyncHttpRequestHelper testModel;
+  private ExecutorService ioExecutor;
+  private CountDownLatch blocked;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    blocked = new CountDownLatch(1);
+    testModel = newTestModel(1, 60000);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    blocked.countDown();
+    testModel.shutdown();
+  }
+
+  private AsyncHttpRequestHelper newTestModel(int maxConcurrentRequestsPerHost, long timeoutMillis) {
+    ioExecutor = Executors.newFixedThreadPool(4);
+    return new AsyncHttpRequestHelper(mockHttpRequestHelper, maxConcurrentRequestsPerHost, 10, timeoutMillis,
+        ioExecutor, Executors.newSingleThreadScheduledExecutor());
+  }
+
+  private void whenPutToTestUrl_Block() throws Exception {
+    when(mockHttpRequestHelper.executePutRequest(eq(TEST_URL), any(), anyListOf(String.class))).thenAnswer(invocation -> {
+      blocked.await();
+      return 204;
+    });
+  }
+
+  private Throwable getCause(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+      fail("expected the request to fail");
+      return null;
+    }
+    catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test
+  public void itShouldCompleteWithTheStatusCode() throws Exception {
+    when(mockHttpRequestHelper.executePostRequest(TEST_URL, TEST_BODY, TEST_COOKIES)).thenReturn(201);
+
+    assertEquals(testModel.executePostRequest(TEST_URL, TEST_BODY, TEST_COOKIES).get(WAIT_SECONDS, TimeUnit.SECONDS), Integer.valueOf(201));
+  }
+
+  @Test
+  public void itShouldCompleteWithTheLoginCookies() throws Exception {
+    when(mockHttpRequestHelper.executePostLoginRequest(TEST_URL, TEST_BODY)).thenReturn(TEST_COOKIES);
+
+    assertEquals(testModel.executePostLoginRequest(TEST_URL, TEST_BODY).get(WAIT_SECONDS, TimeUnit.SECONDS), TEST_COOKIES);
+  }
+
+  @Test
+  public void itShouldCompleteExceptionallyWhenTheRequestFails() throws Exception {
+    IOException failure = new IOException("connection reset");
+    when(mockHttpRequestHelper.executePostRequest(TEST_URL, TEST_BODY, TEST_COOKIES, String.class)).thenThrow(failure);
+
+    assertEquals(getCause(testModel.executePostRequest(TEST_URL, TEST_BODY, TEST_COOKIES, String.class)), failure);
+  }
+
+  @Test
+  public void itShouldCompleteExceptionallyWhenTheUrlHasNoHost() throws Exception {
+    assertTrue(getCause(testModel.executePutRequest("not a url", TEST_BODY, null)) instanceof IllegalArgumentException);
+    verifyZeroInteractions(mockHttpRequestHelper);
+  }
+
+  @Test
+  public void itShouldQueueRequestsOverThePerHostCap() throws Exception {
+    whenPutToTestUrl_Block();
+    when(mockHttpRequestHelper.executePutRequest(eq(OTHER_HOST_URL), any(), anyListOf(String.class))).thenReturn(200);
+
+    CompletableFuture<Integer> first = testModel.executePutRequest(TEST_URL, TEST_BODY, null);
+    CompletableFuture<Integer> second = testModel.executePutRequest(TEST_URL, TEST_BODY, null);
+
+    // Another host is not held up by the busy one.
+    assertEquals(testModel.executePutRequest(OTHER_HOST_URL, TEST_BODY, null).get(WAIT_SECONDS, TimeUnit.SECONDS), Integer.valueOf(200));
+    verify(mockHttpRequestHelper, timeout(1000).times(1)).executePutRequest(eq(TEST_URL), any(), anyListOf(String.class));
+    assertFalse(second.isDone());
+
+    blocked.countDown();
+    assertEquals(first.get(WAIT_SECONDS, TimeUnit.SECONDS), Integer.valueOf(204));
+    assertEquals(second.get(WAIT_SECONDS, TimeUnit.SECONDS), Integer.valueOf(204));
+    verify(mockHttpRequestHelper, times(2)).executePutRequest(eq(TEST_URL), any(), anyListOf(String.class));
+  }
+
+  @Test
+  public void itShouldTimeOutAndNotSendARequestThatTimedOutWhileQueued() throws Exception {
+    testModel.shutdown();
+    testModel = newTestModel(1, 100);
+    whenPutToTestUrl_Block();
+
+    CompletableFuture<Integer> first = testModel.executePutRequest(TEST_URL, TEST_BODY, null);
+    CompletableFuture<Integer> second = testModel.executePutRequest(TEST_URL, TEST_BODY, null);
+
+    assertTrue(getCause(first) instanceof TimeoutException);
+    assertTrue(getCause(second) instanceof TimeoutException);
+    blocked.countDown();
+    testModel.shutdown();
+    assertTrue(ioExecutor.awaitTermination(WAIT_SECONDS, TimeUnit.SECONDS));
+    verify(mockHttpRequestHelper, times(1)).executePutRequest(anyString(), any(), anyListOf(String.class));
+  }
+
+  @Test
+  public void itShouldRejectRequestsWhenTheHostQueueIsFull() throws Exception {
+    whenPutToTestUrl_Block();
+
+    for (int i = 0; i < 11; i++) {
+      testModel.executePutRequest(TEST_URL, TEST_BODY, null);
+    }
+
+    assertTrue(getCause(testModel.executePutRequest(TEST_URL, TEST_BODY, null)) instanceof RejectedExecutionException);
+  }
+}
@@ -0,0 +1,116 @@
+package org.familysearch.paas.utils;
+
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehoseClient;
+import com.amazonaws.services.s3.AmazonS3Client;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for AwsClientRegistry class.
+ */
+public class AwsClientRegistryTest {
+
+  @Mock
+  private AmazonS3Client mockS3Client;
+  @Mock
+  private AmazonIdentityManagementClient mockIamClient;
+  @Mock
+  private AmazonKinesisFirehoseClient mockFirehoseClient;
+  @Mock
+  private HttpRequestHelper mockHttpRequestHelper;
+
+  private AtomicInteger s3Creations;
+  private AwsClientRegistry testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    s3Creations = new AtomicInteger();
+    testModel = new AwsClientRegistry(() -> {
+      s3Creations.incrementAndGet();
+      return mockS3Client;
+    }, () -> mockIamClient, () -> mockFirehoseClient, () -> mockHttpRequestHelper);
+  }
+
+  @Test
+  public void itShouldNotBuildAnyClientUntilItIsUsed() {
+    assertFalse(testModel.isS3Created());
+    assertFalse(testModel.isIamCreated());
+    assertFalse(testModel.isFirehoseCreated());
+    assertFalse(testModel.isHttpRequestHelperCreated());
+  }
+
+  @Test
+  public void itShouldBuildOnlyTheClientThatIsUsed() {
+    assertSame(testModel.iam(), mockIamClient);
+
+    assertTrue(testModel.isIamCreated());
+    assertFalse(testModel.isS3Created());
+    assertFalse(testModel.isFirehoseCreated());
+    assertFalse(testModel.isHttpRequestHelperCreated());
+  }
+
+  @Test
+  public void itShouldBuildEachClientOnceAcrossThreads() throws Exception {
+    int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<AmazonS3Client>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit((Callable<AmazonS3Client>) () -> {
+          start.await();
+          return testModel.s3();
+        }));
+      }
+      start.countDown();
+      for (Future<AmazonS3Client> future : futures) {
+        assertSame(future.get(), mockS3Client);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertEquals(s3Creations.get(), 1);
+  }
+
+  @Test
+  public void itShouldTryAgainWhenBuildingAClientFails() {
+    final AtomicInteger attempts = new AtomicInteger();
+    testModel = new AwsClientRegistry(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw new IllegalStateException("no region");
+      }
+      return mockS3Client;
+    }, () -> mockIamClient, () -> mockFirehoseClient, () -> mockHttpRequestHelper);
+
+    try {
+      testModel.s3();
+    }
+    catch (IllegalStateException e) {
+      // expected, the first attempt fails.
+    }
+
+    assertSame(testModel.s3(), mockS3Client);
+    assertEquals(attempts.get(), 2);
+  }
+}
@@ -15,6 +15,10 @@ public class ConfigurationHelperTest {
   private static final String TEST_JIRA_URL_VALUE = "http://testjira.org";
   private static final String SYS_PROPERTY_TEST_JIRA_URL = "TEST_JIRA_URL";
   private static final String SYS_PROPERTY_TEST_JIRA_CREDENTIALS_FILE = "TEST_JIRA_CREDENTIALS_FILE";
+  private static final String SYS_PROPERTY_ACCOUNT_ALIAS_SNAPSHOT_FILE = "ACCOUNT_ALIAS_SNAPSHOT_FILE";
+  private static final String SYS_PROPERTY_CRAWL_PARALLELISM = "CRAWL_PARALLELISM";
+  private static final String SYS_PROPERTY_FIREHOSE_DELIVERY_STREAM = "FIREHOSE_DELIVERY_STREAM";
+  private static final String SYS_PROPERTY_ES_BULK_MAX_DOCUMENTS = "ES_BULK_MAX_DOCUMENTS";
 
   @Mock
   private InputStream mockInputStream;
@@ -77,4 +81,95 @@ public class ConfigurationHelperTest {
       System.clearProperty(SYS_PROPERTY_TEST_JIRA_CREDENTIALS_FILE);
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void accountAliasSnapshotFile_itShouldReturnNullWhenNoEnvDefined() {
+    assertNull(testModel.accountAliasSnapshotFile());
+  }
+
+  @Test
+  public void accountAliasSnapshotFile_itShouldReturnEnvDefinedFile() {
+    System.setProperty(SYS_PROPERTY_ACCOUNT_ALIAS_SNAPSHOT_FILE, "/tmp/aliases.properties");
+    try {
+      assertEquals(testModel.accountAliasSnapshotFile(), new File("/tmp/aliases.properties"));
+    }
+    finally {
+      // Make sure we clean up the mess, so no other tests will be affected.
+      System.clearProperty(SYS_PROPERTY_ACCOUNT_ALIAS_SNAPSHOT_FILE);
+    }
+  }
+
+  @Test
+  public void elasticsearch_itShouldReturnDefaultsWhenNoEnvDefined() {
+    assertNull(testModel.elasticsearchEndpoint());
+    assertNull(testModel.elasticsearchRegion());
+    assertEquals(testModel.elasticsearchIndex(), "logs");
+    assertEquals(testModel.elasticsearchDocumentType(), "apache");
+    assertEquals(testModel.elasticsearchBulkMaxDocuments(), 5000);
+    assertEquals(testModel.elasticsearchBulkMaxBytes(), 5 * 1024 * 1024);
+    assertEquals(testModel.crawlParallelism(), Runtime.getRuntime().availableProcessors());
+    assertEquals(testModel.crawlChunkBytes(), 8 * 1024 * 1024);
+    assertEquals(testModel.s3DownloadPartBytes(), 8 * 1024 * 1024);
+    assertEquals(testModel.s3DownloadParallelism(), 4);
+    assertNull(testModel.firehoseDeliveryStream());
+    assertEquals(testModel.firehoseBatchesInFlight(), 4);
+    assertEquals(testModel.firehoseRecordBytes(), 1000 * 1024);
+    assertEquals(testModel.firehoseRecordMillis(), 1000);
+    assertNull(testModel.spoolDirectory());
+    assertEquals(testModel.spoolSegmentBytes(), 64 * 1024 * 1024);
+    assertEquals(testModel.spoolMaxSegments(), 16);
+    assertEquals(testModel.spoolFsync(), "ON_FLUSH");
+    assertEquals(testModel.metricsNamespace(), "CWEventService");
+    assertEquals(testModel.metricsService(), "paas-cw-event-service");
+    assertEquals(testModel.metricsFlushSeconds(), 60);
+    assertEquals(testModel.traceSamplePercent(), 100);
+  }
+
+  @Test
+  public void firehoseDeliveryStream_itShouldReturnEnvDefinedValue() {
+    System.setProperty(SYS_PROPERTY_FIREHOSE_DELIVERY_STREAM, "access-logs");
+    try {
+      assertEquals(testModel.firehoseDeliveryStream(), "access-logs");
+    }
+    finally {
+      // Make sure we clean up the mess, so no other tests will be affected.
+      System.clearProperty(SYS_PROPERTY_FIREHOSE_DELIVERY_STREAM);
+    }
+  }
+
+  @Test
+  public void crawlParallelism_itShouldReturnEnvDefinedValue() {
+    System.setProperty(SYS_PROPERTY_CRAWL_PARALLELISM, "3");
+    try {
+      assertEquals(testModel.crawlParallelism(), 3);
+    }
+    finally {
+      // Make sure we clean up the mess, so no other tests will be affected.
+      System.clearProperty(SYS_PROPERTY_CRAWL_PARALLELISM);
+    }
+  }
+
+  @Test
+  public void elasticsearchBulkMaxDocuments_itShouldReturnEnvDefinedValue() {
+    System.setProperty(SYS_PROPERTY_ES_BULK_MAX_DOCUMENTS, "250");
+    try {
+      assertEquals(testModel.elasticsearchBulkMaxDocuments(), 250);
+    }
+    finally {
+      // Make sure we clean up the mess, so no other tests will be affected.
+      System.clearProperty(SYS_PROPERTY_ES_BULK_MAX_DOCUMENTS);
+    }
+  }
+
+  @Test
+  public void elasticsearchBulkMaxDocuments_itShouldReturnTheDefaultWhenEnvIsNotANumber() {
+    System.setProperty(SYS_PROPERTY_ES_BULK_MAX_DOCUMENTS, "lots");
+    try {
+      assertEquals(testModel.elasticsearchBulkMaxDocuments(), 5000);
+    }
+    finally {
+      // Make sure we clean up the mess, so no other tests will be affected.
+      System.clearProperty(SYS_PROPERTY_ES_BULK_MAX_DOCUMENTS);
+    }
+  }
+}
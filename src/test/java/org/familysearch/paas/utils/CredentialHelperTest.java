@@ -2,9 +2,12 @@ package org.familysearch.paas.utils;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.google.api.client.util.Charsets;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
@@ -13,6 +16,7 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
@@ -27,6 +31,8 @@ public class CredentialHelperTest {
   private static final String TEST_AWS_ACCOUNT_ID = "000111222333";
   private static final String TEST_BUCKET_NAME = "account-info-"+ TEST_AWS_ACCOUNT_ID;
   private static final String TEST_KEY_NAME = "superadmin/us-east-1/jira-creds";
+  private static final String TEST_ETAG = "9b2cf535f27731c974343645a3985328";
+  private static final long TTL_MILLIS = 1000;
 
   @Mock
   private AmazonS3Client mockS3Client;
@@ -38,6 +44,7 @@ public class CredentialHelperTest {
   private ConfigurationHelper mockConfigurationHelper;
 
   private CredentialHelper testModel;
+  private MutableClock clock;
 
   @BeforeMethod
   public void setup() throws Exception {
@@ -47,7 +54,8 @@ public class CredentialHelperTest {
     mockS3ObjectInputStream = new S3ObjectInputStream(getInputStream(getCredentialJsonContents()), null);
     when(mockS3Object.getObjectContent()).thenReturn(mockS3ObjectInputStream);
     when(mockConfigurationHelper.jiraCredentialsInputStream()).thenReturn(null);
-    testModel = new CredentialHelper(mockS3Client, mockConfigurationHelper);
+    clock = new MutableClock();
+    testModel = new CredentialHelper(mockS3Client, mockConfigurationHelper, TTL_MILLIS, clock);
   }
 
   public static String getCredentialJsonContents() {
@@ -96,4 +104,67 @@ public class CredentialHelperTest {
 
     assertEquals(runTestJiraCreds(), credentialJsonContents);
   }
+
+  @Test
+  public void itShouldNotBuildTheS3ClientWhenUsingConfigurationHelperInputStream() throws Exception {
+    AwsClientRegistry registry = new AwsClientRegistry(() -> mockS3Client, () -> null, () -> null, () -> null);
+    testModel = new CredentialHelper(registry::s3, mockConfigurationHelper);
+    when(mockConfigurationHelper.jiraCredentialsInputStream()).thenReturn(getInputStream(getCredentialJsonContents()));
+
+    runTestJiraCreds();
+
+    assertEquals(registry.isS3Created(), false);
+  }
+
+  @Test
+  public void itShouldCacheTheCredentialsOfAnAccount() {
+    runTestJiraCreds();
+
+    assertEquals(runTestJiraCreds(), getCredentialJsonContents());
+    verify(mockS3Client, times(1)).getObject(TEST_BUCKET_NAME, TEST_KEY_NAME);
+  }
+
+  @Test
+  public void itShouldRevalidateWithTheETagOnceTheTtlHasPassed() {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setHeader("ETag", TEST_ETAG);
+    when(mockS3Object.getObjectMetadata()).thenReturn(metadata);
+    when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(null);
+    runTestJiraCreds();
+
+    clock.advance(TTL_MILLIS);
+
+    assertEquals(runTestJiraCreds(), getCredentialJsonContents());
+    ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+    verify(mockS3Client).getObject(requestCaptor.capture());
+    assertEquals(requestCaptor.getValue().getNonmatchingETagConstraints(), Arrays.asList(TEST_ETAG));
+    verify(mockS3Client, times(1)).getObject(TEST_BUCKET_NAME, TEST_KEY_NAME);
+  }
+
+  @Test
+  public void itShouldReadTheObjectAgainWhenTheETagChanged() throws Exception {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setHeader("ETag", TEST_ETAG);
+    when(mockS3Object.getObjectMetadata()).thenReturn(metadata);
+    runTestJiraCreds();
+
+    String rotated = getCredentialJsonContents("myUsername", "rotatedPass");
+    S3Object rotatedObject = mock(S3Object.class);
+    when(rotatedObject.getObjectContent()).thenReturn(new S3ObjectInputStream(getInputStream(rotated), null));
+    when(mockS3Client.getObject(any(GetObjectRequest.class))).thenReturn(rotatedObject);
+    clock.advance(TTL_MILLIS);
+
+    assertEquals(runTestJiraCreds(), rotated);
+  }
+
+  @Test
+  public void itShouldReadFromS3AgainAfterInvalidate() throws Exception {
+    runTestJiraCreds();
+    when(mockS3Object.getObjectContent()).thenReturn(new S3ObjectInputStream(getInputStream(getCredentialJsonContents()), null));
+
+    testModel.invalidate(TEST_AWS_ACCOUNT_ID);
+
+    assertEquals(runTestJiraCreds(), getCredentialJsonContents());
+    verify(mockS3Client, times(2)).getObject(TEST_BUCKET_NAME, TEST_KEY_NAME);
+  }
 }
@@ -10,6 +10,8 @@ import com.google.api.client.testing.http.MockHttpTransport;
 import com.google.api.client.testing.http.MockLowLevelHttpRequest;
 import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import com.google.api.client.util.Key;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.pool.PoolStats;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
@@ -17,13 +19,20 @@ import org.testng.annotations.Test;
 
 import javax.ws.rs.core.HttpHeaders;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 
 @Test
 public class HttpRequestHelperTest
@@ -108,6 +117,17 @@ public class HttpRequestHelperTest
     };
   }
 
+  private MockLowLevelHttpRequest createMockHttpRequestResponseWithStatusCodes(final List<Integer> requests, final int... statusCodes) {
+    return new MockLowLevelHttpRequest() {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        int statusCode = statusCodes[Math.min(requests.size(), statusCodes.length - 1)];
+        requests.add(statusCode);
+        return statusCode == 200 ? successfulResponse() : new MockLowLevelHttpResponse().setStatusCode(statusCode);
+      }
+    };
+  }
+
   private void whenHttpRequest_ReturnHttpResponse(final MockLowLevelHttpRequest mockHttpRequestResponse) {
     MockHttpTransport mockHttpTransport = new MockHttpTransport() {
       @Override
@@ -450,6 +470,192 @@ public class HttpRequestHelperTest
     assertEquals(cookieHeaders, Arrays.asList(cookieOne, cookieTwo));
   }
 
+  //################# Retries ##########################################################################################
+  @Test
+  public void executePostRequestWithStatusCode_shouldRetry_whenTheRequestIsThrottled() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 429, 503, 200));
+
+    int responseStatusCode = fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 200);
+    assertEquals(requests, Arrays.asList(429, 503, 200));
+  }
+
+  @Test
+  public void executePostRequestWithStatusCode_shouldReturnTheLastStatusCode_whenTheAttemptsRunOut() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(2, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 503));
+
+    int responseStatusCode = fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 503);
+    assertEquals(requests.size(), 2);
+  }
+
+  @Test
+  public void executePostRequestWithStatusCode_shouldNotRetry_whenTheStatusCodeIs500() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 500, 200));
+
+    int responseStatusCode = fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 500);
+    assertEquals(requests.size(), 1);
+  }
+
+  @Test
+  public void executePostRequestWithStatusCode_shouldNotRetry_whenTheGatewayFailed() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 502, 200));
+
+    int responseStatusCode = fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 502);
+    assertEquals(requests.size(), 1);
+  }
+
+  @Test
+  public void executePutRequest_shouldRetry_whenTheGatewayFailed() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 502, 200));
+
+    int responseStatusCode = fixture.executePutRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 200);
+    assertEquals(requests, Arrays.asList(502, 200));
+  }
+
+  @Test
+  public void executePostRequestWithStatusCode_shouldNotRetry_whenRetryAfterIsLongerThanTheMaxDelay() throws Exception {
+    final List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 1000));
+    whenHttpRequest_ReturnHttpResponse(new MockLowLevelHttpRequest() {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        requests.add(429);
+        return new MockLowLevelHttpResponse().setStatusCode(429).addHeader("Retry-After", "120");
+      }
+    });
+
+    int responseStatusCode = fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertEquals(responseStatusCode, 429);
+    assertEquals(requests.size(), 1);
+  }
+
+  @Test
+  public void executeRawPostRequest_shouldRetry_whenTheServiceIsUnavailable() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 503, 200));
+
+    String response = fixture.executeRawPostRequest(TEST_URL, "application/x-ndjson", new byte[0], null);
+
+    assertEquals(response, getTestObjectAsJson());
+    assertEquals(requests, Arrays.asList(503, 200));
+  }
+
+  @Test
+  public void executeRawPostRequest_shouldNotRetry_whenTheGatewayFailed() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    fixture.setRetryPolicy(new RetryPolicy(3, 0, 0, 0));
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestResponseWithStatusCodes(requests, 502, 200));
+
+    try {
+      fixture.executeRawPostRequest(TEST_URL, "application/x-ndjson", new byte[0], null);
+      fail("Expected an HttpResponseException.");
+    }
+    catch (HttpResponseException e) {
+      assertEquals(e.getStatusCode(), 502);
+    }
+    assertEquals(requests.size(), 1);
+  }
+
+  //################# Raw POST #########################################################################################
+  @Test
+  public void executeRawPostRequest_shouldSendTheContentAndHeadersAsIs() throws Exception {
+    whenHttpRequest_ReturnHttpResponse(new MockLowLevelHttpRequest() {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        assertEquals(getContentAsString(), "{\"index\":{}}\n{}\n");
+        assertEquals(getContentType(), "application/x-ndjson");
+        assertEquals(getFirstHeaderValue("x-amz-date"), "20160101T000000Z");
+        return successfulResponse();
+      }
+    });
+
+    String response = fixture.executeRawPostRequest(TEST_URL, "application/x-ndjson",
+        "{\"index\":{}}\n{}\n".getBytes(StandardCharsets.UTF_8), Collections.singletonMap("x-amz-date", "20160101T000000Z"));
+
+    assertEquals(response, getTestObjectAsJson());
+  }
+
+  //################# Connection Pool ##################################################################################
+  @Test
+  public void executePostRequest_shouldReleaseTheResponseWithoutDisconnecting() throws Exception {
+    MockLowLevelHttpResponse response = successfulResponse();
+    whenHttpRequest_ReturnHttpResponse(createMockHttpRequestWithSuccessfulResponse(response));
+
+    fixture.executePostRequest(TEST_URL, getTestObject(), null);
+
+    assertFalse(response.isDisconnected());
+  }
+
+  @Test
+  public void getPoolStats_shouldBeNull_whenTheHelperIsNotPooled() throws Exception {
+    assertNull(fixture.getPoolStats());
+  }
+
+  @Test
+  public void pooled_shouldReturnTheConnectionToThePool_afterTheResponseIsRead() throws Exception {
+    System.clearProperty(HttpRequestHelper.HTTP_PROXYHOST_PROPERTY);
+    System.clearProperty(HttpRequestHelper.HTTP_PROXYPORT_PROPERTY);
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] body = getTestObjectAsJson().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, Json.MEDIA_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.start();
+    HttpRequestHelper pooled = new HttpRequestHelper(4, 2, 60000);
+    try {
+      String url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+      assertEquals(pooled.executePostRequest(url, getTestObject(), null, TestObject.class), getTestObject());
+      assertEquals(pooled.executePostRequest(url, getTestObject(), null), 200);
+
+      PoolStats poolStats = pooled.getPoolStats();
+      assertEquals(poolStats.getMax(), 4);
+      assertEquals(poolStats.getLeased(), 0);
+      assertEquals(poolStats.getAvailable(), 1);
+    }
+    finally {
+      pooled.shutdown();
+      server.stop(0);
+    }
+  }
+
+  //################# Warm Up ##########################################################################################
+  @Test
+  public void warmUp_shouldNotSendARequest() throws Exception {
+    whenHttpRequest_ReturnHttpResponse(new MockLowLevelHttpRequest() {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        throw new AssertionError("warmUp must not execute the request");
+      }
+    });
+
+    fixture.warmUp();
+  }
+
   private TestObject getTestObject() {
     return new TestObject("one", "two");
   }
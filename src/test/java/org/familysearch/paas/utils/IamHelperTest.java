@@ -1,5 +1,6 @@
 package org.familysearch.paas.utils;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClient;
 import com.amazonaws.services.identitymanagement.model.ListAccountAliasesResult;
 import org.mockito.Mock;
@@ -9,6 +10,8 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.*;
 
@@ -31,7 +34,7 @@ public class IamHelperTest {
     aliasList.add("bogus");
     when(mockListAccountAliasResult.getAccountAliases()).thenReturn(aliasList);
     when(mockIamClient.listAccountAliases()).thenReturn(mockListAccountAliasResult);
-    testModel = new IamHelper(mockIamClient);
+    testModel = new IamHelper(mockIamClient, null);
   }
 
   @Test
@@ -41,7 +44,30 @@ public class IamHelperTest {
 
   @Test
   public void itShouldReturnUnknownOnError() {
-    aliasList.clear();
+    when(mockIamClient.listAccountAliases()).thenThrow(new AmazonServiceException("IAM is down"));
     assertEquals(testModel.getFirstAccountAlias(), "unknown");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void itShouldCacheUnknownWhenTheAccountHasNoAlias() {
+    aliasList.clear();
+    assertEquals(testModel.getFirstAccountAlias(), IamHelper.UNKNOWN);
+    assertEquals(testModel.getFirstAccountAlias(), IamHelper.UNKNOWN);
+
+    verify(mockIamClient, times(1)).listAccountAliases();
+  }
+
+  @Test
+  public void itShouldCacheTheAlias() {
+    assertEquals(testModel.getFirstAccountAlias(), FIRST_ALIAS);
+    assertEquals(testModel.getFirstAccountAlias(), FIRST_ALIAS);
+
+    verify(mockIamClient, times(1)).listAccountAliases();
+  }
+
+  @Test
+  public void itShouldReturnUnknownWhenNothingIsCached() {
+    aliasList.clear();
+    assertEquals(testModel.getFirstAccountAlias(), IamHelper.UNKNOWN);
+  }
+}
@@ -0,0 +1,177 @@
+package org.familysearch.paas.utils;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for JiraSessionManager class.
+ */
+public class JiraSessionManagerTest {
+
+  private static final String TEST_AWS_ACCOUNT_ID = "000111222333";
+  private static final String TEST_BASE_URL = "https://jira.example.org:443";
+  private static final String TEST_LOGIN_URL = TEST_BASE_URL + JiraSessionManager.LOGIN_PATH;
+  private static final String TEST_PATH = "/rest/api/2/issue";
+  private static final String TEST_CREDS = "{\"username\":\"user\",\"password\":\"secret\"}";
+  private static final List<String> FIRST_COOKIES = Arrays.asList("JSESSIONID=first");
+  private static final List<String> SECOND_COOKIES = Arrays.asList("JSESSIONID=second");
+  private static final Object TEST_BODY = "body";
+
+  @Mock
+  private HttpRequestHelper mockHttpRequestHelper;
+  @Mock
+  private CredentialHelper mockCredentialHelper;
+  @Mock
+  private ParserHelper mockParserHelper;
+  @Mock
+  private ConfigurationHelper mockConfigurationHelper;
+
+  private JiraSessionManager testModel;
+  private Map<String, String> jiraCreds;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+
+    jiraCreds = new HashMap<>();
+    jiraCreds.put("username", "user");
+    jiraCreds.put("password", "secret");
+    when(mockConfigurationHelper.jiraBaseUrl()).thenReturn(TEST_BASE_URL);
+    when(mockCredentialHelper.getJiraCreds(TEST_AWS_ACCOUNT_ID)).thenReturn(TEST_CREDS);
+    when(mockParserHelper.getJiraCreds(TEST_CREDS)).thenReturn(jiraCreds);
+    when(mockHttpRequestHelper.executePostLoginRequest(TEST_LOGIN_URL, jiraCreds)).thenReturn(FIRST_COOKIES, SECOND_COOKIES);
+    testModel = new JiraSessionManager(mockHttpRequestHelper, mockCredentialHelper, mockParserHelper, mockConfigurationHelper);
+  }
+
+  private HttpResponseException unauthorized() {
+    return new HttpResponseException.Builder(401, "Unauthorized", new HttpHeaders()).build();
+  }
+
+  @Test
+  public void itShouldLogInOnceAndReuseTheCookies() throws Exception {
+    when(mockHttpRequestHelper.executePutRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, FIRST_COOKIES)).thenReturn(204);
+
+    assertEquals(testModel.executePutRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY), 204);
+    assertEquals(testModel.executePutRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY), 204);
+
+    verify(mockHttpRequestHelper, times(1)).executePostLoginRequest(TEST_LOGIN_URL, jiraCreds);
+  }
+
+  @Test
+  public void itShouldLogInAgainAndRetryOnA401() throws Exception {
+    when(mockHttpRequestHelper.executePostRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, FIRST_COOKIES)).thenReturn(401);
+    when(mockHttpRequestHelper.executePostRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, SECOND_COOKIES)).thenReturn(201);
+
+    assertEquals(testModel.executePostRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY), 201);
+
+    verify(mockHttpRequestHelper, times(2)).executePostLoginRequest(TEST_LOGIN_URL, jiraCreds);
+    assertEquals(testModel.getCookies(TEST_AWS_ACCOUNT_ID), SECOND_COOKIES);
+  }
+
+  @Test
+  public void itShouldNotLogInAgainOnOtherFailures() throws Exception {
+    when(mockHttpRequestHelper.executePostRequest(anyString(), any(), anyListOf(String.class))).thenReturn(500);
+
+    assertEquals(testModel.executePostRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY), 500);
+
+    verify(mockHttpRequestHelper, times(1)).executePostLoginRequest(TEST_LOGIN_URL, jiraCreds);
+  }
+
+  @Test
+  public void itShouldLogInAgainAndRetryWhenATypedRequestThrowsA401() throws Exception {
+    when(mockHttpRequestHelper.executePostRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, FIRST_COOKIES, String.class)).thenThrow(unauthorized());
+    when(mockHttpRequestHelper.executePostRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, SECOND_COOKIES, String.class)).thenReturn("issue");
+
+    assertEquals(testModel.executePostRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY, String.class), "issue");
+  }
+
+  @Test
+  public void itShouldLogInOnceWhenManyRequestsSeeTheSessionExpire() throws Exception {
+    when(mockHttpRequestHelper.executePutRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, FIRST_COOKIES)).thenReturn(401);
+    when(mockHttpRequestHelper.executePutRequest(TEST_BASE_URL + TEST_PATH, TEST_BODY, SECOND_COOKIES)).thenReturn(204);
+    testModel.getCookies(TEST_AWS_ACCOUNT_ID);
+
+    int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      results.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          start.await();
+          return testModel.executePutRequest(TEST_AWS_ACCOUNT_ID, TEST_PATH, TEST_BODY);
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<Integer> result : results) {
+      assertEquals(result.get(5, TimeUnit.SECONDS), Integer.valueOf(204));
+    }
+    executor.shutdown();
+
+    verify(mockHttpRequestHelper, times(2)).executePostLoginRequest(TEST_LOGIN_URL, jiraCreds);
+  }
+
+  @Test
+  public void itShouldReReadTheCredentialsWhenTheLoginIsRejected() throws Exception {
+    when(mockHttpRequestHelper.executePostLoginRequest(TEST_LOGIN_URL, jiraCreds)).thenThrow(unauthorized()).thenReturn(SECOND_COOKIES);
+
+    assertEquals(testModel.getCookies(TEST_AWS_ACCOUNT_ID), SECOND_COOKIES);
+
+    verify(mockCredentialHelper).invalidate(TEST_AWS_ACCOUNT_ID);
+    verify(mockCredentialHelper, times(2)).getJiraCreds(TEST_AWS_ACCOUNT_ID);
+  }
+
+  @Test
+  public void itShouldLogInAgainAfterInvalidate() throws Exception {
+    testModel.getCookies(TEST_AWS_ACCOUNT_ID);
+    testModel.invalidate();
+
+    assertEquals(testModel.getCookies(TEST_AWS_ACCOUNT_ID), SECOND_COOKIES);
+  }
+
+  @Test
+  public void itShouldLogInSeparatelyForEachAccount() throws Exception {
+    String otherAccountId = "444555666777";
+    String otherCreds = "{\"username\":\"other\",\"password\":\"secret\"}";
+    Map<String, String> otherJiraCreds = new HashMap<>();
+    otherJiraCreds.put("username", "other");
+    otherJiraCreds.put("password", "secret");
+    List<String> otherCookies = Arrays.asList("JSESSIONID=other");
+    when(mockCredentialHelper.getJiraCreds(otherAccountId)).thenReturn(otherCreds);
+    when(mockParserHelper.getJiraCreds(otherCreds)).thenReturn(otherJiraCreds);
+    when(mockHttpRequestHelper.executePostLoginRequest(TEST_LOGIN_URL, otherJiraCreds)).thenReturn(otherCookies);
+
+    assertEquals(testModel.getCookies(TEST_AWS_ACCOUNT_ID), FIRST_COOKIES);
+    assertEquals(testModel.getCookies(otherAccountId), otherCookies);
+    assertEquals(testModel.getCookies(TEST_AWS_ACCOUNT_ID), FIRST_COOKIES);
+    assertEquals(testModel.getCookies(otherAccountId), otherCookies);
+
+    verify(mockHttpRequestHelper, times(1)).executePostLoginRequest(TEST_LOGIN_URL, jiraCreds);
+    verify(mockHttpRequestHelper, times(1)).executePostLoginRequest(TEST_LOGIN_URL, otherJiraCreds);
+  }
+}
@@ -0,0 +1,35 @@
+package org.familysearch.paas.utils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A Clock that only moves when a test tells it to.
+ */
+public class MutableClock extends Clock {
+  private long millis = 1000000;
+
+  /**
+   * @param delta in milliseconds that the clock should move forward.
+   */
+  public void advance(long delta) {
+    millis += delta;
+  }
+
+  @Override
+  public ZoneId getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  @Override
+  public Clock withZone(ZoneId zone) {
+    return this;
+  }
+
+  @Override
+  public Instant instant() {
+    return Instant.ofEpochMilli(millis);
+  }
+}
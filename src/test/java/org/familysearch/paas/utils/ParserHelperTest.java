@@ -5,6 +5,7 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -101,6 +102,15 @@ public class ParserHelperTest {
     assertTrue(description.contains(expectedToContain), message);
   }
 
+  @Test
+  public void itShouldBuildTheSummaryAndDescription() throws Exception {
+    Map<String, String> map = runJiraComponentsTest();
+
+    assertEquals(map.get("summary"), "CloudWatch Alert [ my cool account - US - N. Virginia ] - paas sps s3 Check WorkflowsTimedOut");
+    assertEquals(map.get("summary_search"), "CloudWatch Alert   my cool account   US   N. Virginia     paas sps s3 Check WorkflowsTimedOut");
+    assertEquals(map.get("description"), "Reason:  Threshold Crossed: 1 datapoint (1.0) was greater than or equal to the threshold (0.0). \nAlarm Link: https://console.aws.amazon.com/cloudwatch/home?region=us-east-1#alarm:alarmFilter=ANY;name=paas%20sps%20s3%20Check%20WorkflowsTimedOut\nRunbook Link: https://almtools.ldschurch.org/fhconfluence/dosearchsite.action?where=ORB&spaceSearch=true&queryString=CloudWatch%20Alert%20%20%20my%20cool%20account%20%20%20US%20%20%20N.%20Virginia%20%20%20%20%20paas%20sps%20s3%20Check%20WorkflowsTimedOut");
+  }
+
   @Test
   public void itShouldReturnDescriptionWithRunbookLink() throws Exception {
     Map<String, String> map = runJiraComponentsTest();
@@ -131,6 +141,44 @@ public class ParserHelperTest {
     runJiraComponentsTest();
   }
 
+  @Test
+  public void itShouldReturnComponentsForEveryRecord() throws Exception {
+    List<Map<String, String>> batch = testModel.getKinesisComponentsBatch(getSnsEventJsonContent(3));
+
+    assertEquals(batch.size(), 3);
+    for (Map<String, String> map : batch) {
+      assertEquals(map.get("project"), "DPT");
+    }
+  }
+
+  @Test
+  public void itShouldReturnTheMessageOfEveryRecord() throws Exception {
+    List<String> messages = testModel.getSnsMessages(getSnsEventJsonContent(2));
+
+    assertEquals(messages.size(), 2);
+    assertEquals(testModel.getKinesisComponentsFromMessage(messages.get(1)).get("aws_account_id"), TEST_AWS_ACCOUNT_ID);
+  }
+
+  @Test(expectedExceptions = ParserHelperException.class)
+  public void itShouldThrowParserHelperExceptionWhenThereAreNoRecords() throws Exception {
+    testModel.getSnsMessages("{\"Records\":[]}");
+  }
+
+  /**
+   * @param records is the number of copies of the test record that the event should contain.
+   * @return an SNS event with several records.
+   */
+  public static String getSnsEventJsonContent(int records) {
+    String single = getSnsEventJsonContent();
+    String prefix = "{\"Records\":[";
+    String record = single.substring(prefix.length(), single.length() - 2);
+    StringBuilder event = new StringBuilder(prefix);
+    for (int i = 0; i < records; i++) {
+      event.append(i == 0 ? "" : ",").append(record);
+    }
+    return event.append("]}").toString();
+  }
+
   public static String getSnsEventJsonContent() {
     return "{\"Records\":[{\"EventSource\":\"aws:sns\",\"EventVersion\":\"1.0\",\"EventSubscriptionArn\":\"arn:aws:sns:us-east-1:"+TEST_AWS_ACCOUNT_ID+":barclays-test-topic:1a1c3a30-271d-4a73-a840-97a26d3a0581\",\"Sns\":{\"Type\":\"Notification\",\"MessageId\":\"55e9f511-b020-57bd-be60-b8c5ebfe07d7\",\"TopicArn\":\"arn:aws:sns:us-east-1:"+TEST_AWS_ACCOUNT_ID+":barclays-test-topic\",\"Subject\":\"ALARM: \\\"paas-sps-s3-check-completed\\\" in US - N. Virginia\",\"Message\":\"{\\\"AlarmName\\\":\\\"paas sps s3 Check WorkflowsTimedOut\\\",\\\"AlarmDescription\\\":\\\"{\\\\\\\"project\\\\\\\":\\\\\\\"DPT\\\\\\\",\\\\\\\"component\\\\\\\":\\\\\\\"Platform\\\\\\\",\\\\\\\"priority\\\\\\\":\\\\\\\"3\\\\\\\",\\\\\\\"recipient\\\\\\\":\\\\\\\"test\\\\\\\"}\\\",\\\"AWSAccountId\\\":\\\""+TEST_AWS_ACCOUNT_ID+"\\\",\\\"NewStateValue\\\":\\\"ALARM\\\",\\\"NewStateReason\\\":\\\"Threshold Crossed: 1 datapoint (1.0) was greater than or equal to the threshold (0.0).\\\",\\\"StateChangeTime\\\":\\\"2015-05-18T21:29:02.273+0000\\\",\\\"Region\\\":\\\"US - N. Virginia\\\",\\\"OldStateValue\\\":\\\"OK\\\",\\\"Trigger\\\":{\\\"MetricName\\\":\\\"WorkflowsCompleted\\\",\\\"Namespace\\\":\\\"AWS/SWF\\\",\\\"Statistic\\\":\\\"SUM\\\",\\\"Unit\\\":null,\\\"Dimensions\\\":[{\\\"name\\\":\\\"WorkflowTypeVersion\\\",\\\"value\\\":\\\"0.0.1\\\"},{\\\"name\\\":\\\"Domain\\\",\\\"value\\\":\\\"paas-sps\\\"},{\\\"name\\\":\\\"WorkflowTypeName\\\",\\\"value\\\":\\\"S3Provisioner.check\\\"}],\\\"Period\\\":60,\\\"EvaluationPeriods\\\":1,\\\"ComparisonOperator\\\":\\\"GreaterThanOrEqualToThreshold\\\",\\\"Threshold\\\":0.0}}\",\"Timestamp\":\"2015-05-18T21:29:02.335Z\",\"SignatureVersion\":\"1\",\"Signature\":\"NDW1h8yZFho++38J+iteAppMDodQn0G/ex1M03ns3F49wNiY1kIozmiHD7TSGkPZZ0GEOVbI1uEqp7hpqta2XcRgevJZELyb4N++G0HZDQcydmY5/qnAmYwWOx5Kyd7amWkOJJH/dZ5m/rNeS4CdoH8sUNU/E/K4Q17U79NCHVgJF+aTfAkYkcj7ElLKRG3gPgG8iR67HZ1dn23wNPPo1rZzYp3Cgy0TiYHtJrGVARStl8a5CZfppmy84hDQefR5I4iM4Xkwj+Xlrodv992cJ1BPWuciVo36h+tZoaSZ3QVU6FDETix+BClG9/wR+X1+fM5mnGKPuDu0OCl/9mqS2g==\",\"SigningCertUrl\":\"https://sns.us-east-1.amazonaws.com/SimpleNotificationService-d6d679a1d18e95c2f9ffcf11f4f9e198.pem\",\"UnsubscribeUrl\":\"https://sns.us-east-1.amazonaws.com/?Action=Unsubscribe&SubscriptionArn=arn:aws:sns:us-east-1:074150922133:barclays-test-topic:1a1c3a30-271d-4a73-a840-97a26d3a0581\",\"MessageAttributes\":{}}}]}";
   }
@@ -0,0 +1,128 @@
+package org.familysearch.paas.utils;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit Tests for RetryPolicy class.
+ */
+public class RetryPolicyTest {
+
+  private List<Long> sleeps;
+  private RetryPolicy testModel;
+
+  @BeforeMethod
+  public void setUp() {
+    sleeps = new ArrayList<>();
+    testModel = new RetryPolicy(3, 100, 500, 1000, sleeps::add);
+  }
+
+  @Test
+  public void retry_itShouldStopAtTheMaxAttempts() {
+    assertTrue(testModel.retry(1, false));
+    assertTrue(testModel.retry(2, false));
+    assertFalse(testModel.retry(3, false));
+
+    assertEquals(sleeps.size(), 2);
+    assertEquals(testModel.getRetries(), 2);
+  }
+
+  @Test
+  public void retry_itShouldWaitAtMostTheExponentialBound() {
+    testModel = new RetryPolicy(20, 100, 500, 1000, sleeps::add);
+    for (int i = 0; i < 50; i++) {
+      testModel.retry(1, false);
+      testModel.retry(3, false);
+      testModel.retry(2, true);
+      testModel.retry(10, false);
+    }
+
+    for (int i = 0; i < sleeps.size(); i += 4) {
+      assertTrue(sleeps.get(i) >= 0 && sleeps.get(i) <= 100);
+      assertTrue(sleeps.get(i + 1) >= 0 && sleeps.get(i + 1) <= 400);
+      assertTrue(sleeps.get(i + 2) >= 0 && sleeps.get(i + 2) <= 1000);
+      assertTrue(sleeps.get(i + 3) >= 0 && sleeps.get(i + 3) <= 1000);
+    }
+  }
+
+  @Test
+  public void retry_itShouldRefuseOnceTheBudgetIsSpent() {
+    int retries = RetryPolicy.BUDGET_CAPACITY / RetryPolicy.THROTTLED_RETRY_COST;
+    for (int i = 0; i < retries; i++) {
+      assertTrue(testModel.retry(1, true));
+    }
+
+    assertFalse(testModel.retry(1, false));
+    assertEquals(testModel.getBudget(), 0);
+    assertEquals(testModel.getBudgetExhausted(), 1);
+    assertEquals(sleeps.size(), retries);
+  }
+
+  @Test
+  public void onSuccess_itShouldRefillTheBudgetUpToItsCapacity() {
+    testModel.retry(1, false);
+    assertEquals(testModel.getBudget(), RetryPolicy.BUDGET_CAPACITY - RetryPolicy.RETRY_COST);
+
+    for (int i = 0; i < RetryPolicy.RETRY_COST * 2; i++) {
+      testModel.onSuccess();
+    }
+    assertEquals(testModel.getBudget(), RetryPolicy.BUDGET_CAPACITY);
+  }
+
+  @Test
+  public void retry_itShouldNotRetryWhenInterrupted() {
+    testModel = new RetryPolicy(3, 100, 500, 1000, millis -> {
+      throw new InterruptedException();
+    });
+
+    assertFalse(testModel.retry(1, false));
+    assertTrue(Thread.interrupted());
+  }
+
+  @Test
+  public void none_itShouldNeverRetry() {
+    assertFalse(RetryPolicy.none().retry(1, true));
+  }
+
+  @Test
+  public void isRetryableStatus_itShouldOnlyAcceptStatusesOfUnprocessedRequests() {
+    assertTrue(RetryPolicy.isRetryableStatus(429, false));
+    assertTrue(RetryPolicy.isRetryableStatus(503, false));
+    assertTrue(RetryPolicy.isRetryableStatus(502, true));
+    assertFalse(RetryPolicy.isRetryableStatus(502, false));
+    assertFalse(RetryPolicy.isRetryableStatus(500, true));
+    assertFalse(RetryPolicy.isRetryableStatus(400, true));
+    assertFalse(RetryPolicy.isThrottlingStatus(502));
+  }
+
+  @Test
+  public void retry_itShouldWaitAtLeastTheRetryAfter() {
+    assertTrue(testModel.retry(1, true, 800));
+    assertEquals(sleeps, Arrays.asList(800L));
+  }
+
+  @Test
+  public void retry_itShouldNotRetryWhenTheRetryAfterIsLongerThanTheMaxDelay() {
+    assertFalse(testModel.retry(1, true, 1001));
+    assertTrue(sleeps.isEmpty());
+    assertEquals(testModel.getBudget(), RetryPolicy.BUDGET_CAPACITY);
+  }
+
+  @Test
+  public void retryAfterMillis_itShouldParseSecondsAndDates() {
+    assertEquals(RetryPolicy.retryAfterMillis("3", 0), 3000);
+    assertEquals(RetryPolicy.retryAfterMillis(" 0 ", 0), 0);
+    assertEquals(RetryPolicy.retryAfterMillis("Thu, 01 Jan 1970 00:00:05 GMT", 1000), 4000);
+    assertEquals(RetryPolicy.retryAfterMillis("Thu, 01 Jan 1970 00:00:05 GMT", 9000), 0);
+    assertEquals(RetryPolicy.retryAfterMillis("soon", 0), 0);
+    assertEquals(RetryPolicy.retryAfterMillis(null, 0), 0);
+  }
+}
@@ -0,0 +1,54 @@
+package org.familysearch.paas.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for SnsEventReader class.
+ */
+public class SnsEventReaderTest {
+
+  private static final String ALARM_MESSAGE = "{\"AlarmName\":\"my alarm\",\"Trigger\":{\"Dimensions\":[{\"name\":\"a\",\"value\":\"b\"}],\"Unit\":null},"
+      + "\"AlarmDescription\":\"{\\\"project\\\":\\\"DPT\\\",\\\"component\\\":\\\"Platform\\\",\\\"priority\\\":3,\\\"recipient\\\":\\\"test\\\",\\\"extra\\\":[1,2]}\","
+      + "\"AWSAccountId\":\"000111222333\",\"NewStateReason\":\"Threshold Crossed\",\"Region\":\"US - N. Virginia\"}";
+
+  @Test
+  public void itShouldReadEveryRecordMessage() {
+    List<String> messages = SnsEventReader.readMessages(ParserHelperTest.getSnsEventJsonContent(2));
+
+    assertEquals(messages.size(), 2);
+    assertEquals(messages.get(0), messages.get(1));
+  }
+
+  @Test
+  public void itShouldReadTheAlarmFieldsAndSkipTheRest() {
+    SnsEventReader.AlarmMessage alarm = SnsEventReader.readAlarm(ALARM_MESSAGE);
+
+    assertEquals(alarm.alarmName, "my alarm");
+    assertEquals(alarm.region, "US - N. Virginia");
+    assertEquals(alarm.newStateReason, "Threshold Crossed");
+    assertEquals(alarm.awsAccountId, "000111222333");
+    assertEquals(alarm.project, "DPT");
+    assertEquals(alarm.component, "Platform");
+    assertEquals(alarm.priority, "3");
+    assertEquals(alarm.recipient, "test");
+  }
+
+  @Test(expectedExceptions = ParserHelperException.class)
+  public void itShouldThrowWhenAFieldIsMissing() {
+    SnsEventReader.readAlarm(ALARM_MESSAGE.replace("\"Region\"", "\"Place\""));
+  }
+
+  @Test(expectedExceptions = ParserHelperException.class)
+  public void itShouldThrowWhenARecordHasNoMessage() {
+    SnsEventReader.readMessages("{\"Records\":[{\"Sns\":{\"Type\":\"Notification\"}}]}");
+  }
+
+  @Test(expectedExceptions = ParserHelperException.class)
+  public void itShouldThrowWhenTheEnvelopeIsNotAnObject() {
+    SnsEventReader.readMessages("[1,2,3]");
+  }
+}
@@ -0,0 +1,80 @@
+package org.familysearch.paas.utils;
+
+import org.testng.annotations.Test;
+
+import java.net.URLEncoder;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit Tests for TextEncoding class.
+ */
+public class TextEncodingTest {
+
+  @Test
+  public void toSearchText_itShouldReplaceEverySpecialCharacterWithASpace() {
+    assertEquals(TextEncoding.toSearchText("CloudWatch Alert [ my-account - US ] - a+b&c|d!e(f)g{h}i^j~k*l?m:n"),
+        "CloudWatch Alert   my account   US     a b c d e f g h i j k l m n");
+  }
+
+  @Test
+  public void toSearchText_itShouldMatchTheRegularExpressionItReplaced() {
+    Random random = new Random(7);
+    for (int i = 0; i < 1000; i++) {
+      String text = randomText(random);
+      assertEquals(TextEncoding.toSearchText(text), text.replaceAll("[+&|!(){}^~*?\\:\\[\\]-]", " "), text);
+    }
+  }
+
+  @Test
+  public void toSearchText_itShouldReturnTheSameInstanceWhenThereIsNothingToReplace() {
+    String text = "paas sps s3 Check WorkflowsTimedOut";
+    assertSame(TextEncoding.toSearchText(text), text);
+  }
+
+  @Test
+  public void appendSearchText_itShouldAppendToTheBuilder() {
+    StringBuilder out = new StringBuilder("summary: ");
+    assertEquals(TextEncoding.appendSearchText(out, "a-b").toString(), "summary: a b");
+  }
+
+  @Test
+  public void percentEncode_itShouldEncodeSpacesAsPercent20() {
+    assertEquals(TextEncoding.percentEncode("paas sps s3 Check"), "paas%20sps%20s3%20Check");
+  }
+
+  @Test
+  public void percentEncode_itShouldOnlyLeaveTheUnreservedCharacters() {
+    assertEquals(TextEncoding.percentEncode("aZ09-._~*+&=/?#[]%"), "aZ09-._~%2A%2B%26%3D%2F%3F%23%5B%5D%25");
+  }
+
+  @Test
+  public void percentEncode_itShouldEncodeTheUtf8BytesOfOtherCharacters() {
+    assertEquals(TextEncoding.percentEncode("\u00e9\u20ac\ud83d\ude00"), "%C3%A9%E2%82%AC%F0%9F%98%80");
+  }
+
+  @Test
+  public void percentEncode_itShouldEncodeAnUnpairedSurrogateAsAQuestionMark() {
+    assertEquals(TextEncoding.percentEncode("a\uD83Db"), "a%3Fb");
+  }
+
+  @Test
+  public void percentEncode_itShouldMatchUrlEncoderExceptWhereRfc3986Differs() throws Exception {
+    Random random = new Random(11);
+    for (int i = 0; i < 1000; i++) {
+      String text = randomText(random);
+      String expected = URLEncoder.encode(text, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+      assertEquals(TextEncoding.percentEncode(text), expected, text);
+    }
+  }
+
+  private static String randomText(Random random) {
+    char[] chars = new char[random.nextInt(40)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = random.nextInt(4) == 0 ? (char) (0xA0 + random.nextInt(0x2000)) : (char) (0x20 + random.nextInt(0x5F));
+    }
+    return new String(chars);
+  }
+}
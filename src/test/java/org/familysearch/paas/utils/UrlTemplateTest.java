@@ -0,0 +1,42 @@
+package org.familysearch.paas.utils;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit Tests for UrlTemplate class.
+ */
+public class UrlTemplateTest {
+
+  @Test
+  public void expand_itShouldPutTheEncodedValueInPlaceOfThePlaceholder() {
+    UrlTemplate testModel = new UrlTemplate("https://example.org/search?q=%s&limit=10");
+
+    assertEquals(testModel.expand("a b&c"), "https://example.org/search?q=a%20b%26c&limit=10");
+  }
+
+  @Test
+  public void expand_itShouldAllowThePlaceholderAtTheEnd() {
+    assertEquals(new UrlTemplate(ParserHelper.ALARM_URL_PATTERN).expand("paas sps"),
+        "https://console.aws.amazon.com/cloudwatch/home?region=us-east-1#alarm:alarmFilter=ANY;name=paas%20sps");
+  }
+
+  @Test
+  public void appendTo_itShouldAppendToTheBuilder() {
+    StringBuilder out = new StringBuilder("Link: ");
+    new UrlTemplate("https://example.org/%s").appendTo(out, "a/b");
+
+    assertEquals(out.toString(), "Link: https://example.org/a%2Fb");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void itShouldRejectAPatternWithoutAPlaceholder() {
+    new UrlTemplate("https://example.org/");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void itShouldRejectAPatternWithTwoPlaceholders() {
+    new UrlTemplate("https://example.org/%s/%s");
+  }
+}